@@ -50,8 +50,15 @@ dependencies {
     implementation("io.github.resilience4j:resilience4j-spring-boot3:2.2.0")
     implementation("org.springframework.boot:spring-boot-starter-aop")
 
-    // Rate Limiting
+    // Rate Limiting. The JDBC backend for cluster-wide buckets is opt-in: build with
+    // -PrateLimitJdbcDriver=<driver coordinates>, e.g. org.postgresql:postgresql:42.7.1, to package
+    // spring-boot-starter-jdbc and that driver; without it the app has no DataSource at all
     implementation("com.bucket4j:bucket4j-core:8.10.1")
+    compileOnly("org.springframework.boot:spring-boot-starter-jdbc")
+    providers.gradleProperty("rateLimitJdbcDriver").orNull?.let { driver ->
+        runtimeOnly("org.springframework.boot:spring-boot-starter-jdbc")
+        runtimeOnly(driver)
+    }
 
     // Lombok (optional but recommended for reducing boilerplate)
     compileOnly("org.projectlombok:lombok")
@@ -66,10 +73,13 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter")
     testImplementation("org.mockito:mockito-core")
     testImplementation("org.mockito:mockito-junit-jupiter")
+    testImplementation("org.springframework.boot:spring-boot-starter-jdbc")
+    testRuntimeOnly("com.h2database:h2")
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
+    jvmArgs("--enable-preview") // StructuredTaskScope is a preview API in Java 21
 }
 
 tasks.withType<JavaCompile> {
@@ -77,6 +87,10 @@ tasks.withType<JavaCompile> {
     options.compilerArgs.add("--enable-preview")
 }
 
+tasks.withType<JavaExec> {
+    jvmArgs("--enable-preview")
+}
+
 // Checkstyle configuration
 checkstyle {
     toolVersion = "10.12.7"
@@ -26,12 +26,13 @@ import org.springframework.context.annotation.EnableAspectJAutoProxy;
  * <p>
  * Configuration:
  * - @EnableCaching: Enables response caching with Caffeine
- * - @EnableAspectJAutoProxy(exposeProxy = true): Exposes AOP proxy for internal method calls
- *   This is required for @Cacheable, @Retry, @CircuitBreaker to work on self-invocations
+ * - @EnableAspectJAutoProxy: Applies @Cacheable to the derived top-albums/top-genres views
+ *   through proxies; the top tracks/artists pages go through TopItemsPipeline instead.
+ *   Annotated methods are only ever called from other beans, so the proxy is not exposed
  */
 @SpringBootApplication
 @EnableCaching
-@EnableAspectJAutoProxy(exposeProxy = true)
+@EnableAspectJAutoProxy
 public class SpotifyWrappedApplication {
 
     public static void main(String[] args) {
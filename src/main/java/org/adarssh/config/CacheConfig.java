@@ -0,0 +1,212 @@
+package org.adarssh.config;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.service.DiskCacheStore;
+import org.adarssh.service.TopItemsCacheKey;
+import org.adarssh.service.TopItemsCodec;
+import org.adarssh.service.TopItemsRefresher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Configuration for the Caffeine cache manager.
+ * <p>
+ * Caches listed in spring.cache.cache-names use spring.cache.caffeine.spec. The top-items
+ * caches (topTracks, topArtists and their derived views topAlbums, topGenres) are built
+ * here instead, because their policy cannot be expressed as a spec:
+ * - Entry lifetime depends on the time range of the key: short_term changes faster than
+ *   long_term, so it expires sooner (spotify.api.cache.*-ttl)
+ * - topTracks and topArtists refresh ahead: an entry read after
+ *   spotify.api.cache.refresh-ahead.after is reloaded in the background by
+ *   {@link TopItemsRefresher} while the current value keeps being served
+ * - topAlbums and topGenres are derived from topTracks and topArtists, so a view is evicted
+ *   whenever its source entry is replaced, expires or is removed; /wrapped never pairs a page
+ *   with a view built from an older one for longer than the removal listener takes to run
+ * - With spotify.api.cache.disk.enabled, topTracks and topArtists are backed by the
+ *   {@link DiskCacheStore}, so their entries survive restarts
+ * - With spotify.api.cache.compact.enabled, entries are kept as compact byte arrays and each
+ *   cache is bounded by a byte budget instead of an entry count; {@link HeapPressureMonitor}
+ *   shrinks the budgets while the heap is under pressure
+ */
+@Configuration
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheConfig.class);
+
+    // Source cache -> the view derived from it
+    private static final Map<String, String> DERIVED_VIEWS =
+            Map.of("topTracks", "topAlbums", "topArtists", "topGenres");
+    private static final List<String> TOP_ITEMS_CACHES = List.of("topTracks", "topArtists", "topAlbums", "topGenres");
+
+    @Bean
+    public CaffeineCacheManager cacheManager(
+            CacheProperties cacheProperties,
+            SpotifyProperties properties,
+            TopItemsRefresher refresher,
+            DiskCacheStore diskCacheStore,
+            TopItemsCodec codec) {
+        var cache = properties.cache();
+        var compact = cache.compact().enabled() ? new CompactValues(codec, cache.compact().compress()) : null;
+        var cacheManager = new TopItemsCacheManager(diskCacheStore, compact);
+        String spec = cacheProperties.getCaffeine().getSpec();
+        if (StringUtils.hasText(spec)) {
+            cacheManager.setCacheSpecification(spec);
+        }
+        if (!cacheProperties.getCacheNames().isEmpty()) {
+            cacheManager.setCacheNames(cacheProperties.getCacheNames());
+        }
+
+        var refreshAhead = cache.refreshAhead();
+        if (refreshAhead.enabled()) {
+            if (refreshAhead.after().compareTo(cache.shortTermTtl()) >= 0) {
+                log.warn("spotify.api.cache.refresh-ahead.after ({}) is not below short-term-ttl ({}); "
+                        + "short_term entries will expire before they are refreshed",
+                        refreshAhead.after(), cache.shortTermTtl());
+            }
+            cacheManager.registerCustomCache("topTracks", sourceCache(cache, cacheManager, "topTracks")
+                    .refreshAfterWrite(refreshAhead.after())
+                    .build(storing(refresher.topTracksLoader(), compact)));
+            cacheManager.registerCustomCache("topArtists", sourceCache(cache, cacheManager, "topArtists")
+                    .refreshAfterWrite(refreshAhead.after())
+                    .build(storing(refresher.topArtistsLoader(), compact)));
+        } else {
+            cacheManager.registerCustomCache("topTracks", sourceCache(cache, cacheManager, "topTracks").build());
+            cacheManager.registerCustomCache("topArtists", sourceCache(cache, cacheManager, "topArtists").build());
+        }
+        DERIVED_VIEWS.values().forEach(name -> cacheManager.registerCustomCache(name, topItemsCache(cache).build()));
+
+        log.info("Top-items caches: ttl short={} medium={} long={}, refreshAhead={} (after {}), disk={}, compact={}",
+                cache.shortTermTtl(), cache.mediumTermTtl(), cache.longTermTtl(),
+                refreshAhead.enabled(), refreshAhead.after(), diskCacheStore.isEnabled(), compact != null);
+        return cacheManager;
+    }
+
+    private static Caffeine<Object, Object> topItemsCache(SpotifyProperties.Cache cache) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        if (cache.compact().enabled()) {
+            builder.maximumWeight(cache.compact().maximumWeight().toBytes()).weigher(CompactValues::weigh);
+        } else {
+            builder.maximumSize(cache.maximumSize());
+        }
+        return builder
+                .expireAfter(new TimeRangeExpiry(cache))
+                .recordStats();
+    }
+
+    /**
+     * A top-items cache whose removals (replacement, expiry, eviction) also evict the derived
+     * view of the same key.
+     */
+    private static Caffeine<Object, Object> sourceCache(
+            SpotifyProperties.Cache cache, CaffeineCacheManager cacheManager, String name) {
+        String derivedName = DERIVED_VIEWS.get(name);
+        return topItemsCache(cache).removalListener((key, value, cause) -> {
+            Cache derived = cacheManager.getCache(derivedName);
+            if (key != null && derived != null) {
+                derived.evict(key);
+            }
+        });
+    }
+
+    private static CacheLoader<Object, Object> storing(CacheLoader<Object, Object> loader, CompactValues compact) {
+        return compact != null ? new CompactLoader(loader, compact) : loader;
+    }
+
+    /**
+     * Cache manager that stores the top-items caches compactly and puts the
+     * {@link DiskCacheStore} behind topTracks and topArtists, when enabled.
+     */
+    private static final class TopItemsCacheManager extends CaffeineCacheManager {
+
+        private final DiskCacheStore diskCacheStore;
+        private final CompactValues compact;
+
+        TopItemsCacheManager(DiskCacheStore diskCacheStore, CompactValues compact) {
+            this.diskCacheStore = diskCacheStore;
+            this.compact = compact;
+        }
+
+        @Override
+        protected Cache adaptCaffeineCache(
+                String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+            Cache memory = compact != null && TOP_ITEMS_CACHES.contains(name)
+                    ? new CompactCaffeineCache(name, cache, isAllowNullValues(), compact)
+                    : super.adaptCaffeineCache(name, cache);
+            return diskCacheStore.isEnabled() && DiskCacheStore.CACHES.contains(name)
+                    ? new TieredCache(memory, cache, diskCacheStore)
+                    : memory;
+        }
+    }
+
+    /**
+     * Stores the pages produced by a refresh-ahead reload in their compact form, like a put would.
+     */
+    private record CompactLoader(CacheLoader<Object, Object> delegate, CompactValues compact)
+            implements CacheLoader<Object, Object> {
+
+        @Override
+        public Object load(Object key) throws Exception {
+            return stored(delegate.load(key));
+        }
+
+        @Override
+        public CompletableFuture<Object> asyncReload(Object key, Object oldValue, Executor executor) throws Exception {
+            return delegate.asyncReload(key, oldValue, executor).thenApply(this::stored);
+        }
+
+        private Object stored(Object value) {
+            return value instanceof UserTopItemsResponse<?> page ? compact.encode(page) : value;
+        }
+    }
+
+    /**
+     * Expires top-items entries after the TTL configured for their key's time range.
+     * Reloads restart the lifetime; reads do not extend it.
+     */
+    static final class TimeRangeExpiry implements Expiry<Object, Object> {
+
+        private final SpotifyProperties.Cache cache;
+
+        TimeRangeExpiry(SpotifyProperties.Cache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return ttlNanos(key);
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return ttlNanos(key);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        private long ttlNanos(Object key) {
+            if (key instanceof TopItemsCacheKey topItemsKey) {
+                return cache.ttl(topItemsKey.timeRange()).toNanos();
+            }
+            return cache.mediumTermTtl().toNanos();
+        }
+    }
+}
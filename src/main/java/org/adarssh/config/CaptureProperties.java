@@ -0,0 +1,46 @@
+package org.adarssh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Configuration properties for request/response capture (see {@link RequestCaptureFilter}).
+ *
+ * @param enabled capture at all; when false the filter only passes requests on
+ * @param sampleRate fraction of requests captured regardless of outcome, from 0 to 1
+ * @param slowThreshold requests taking at least this long are always captured
+ * @param errorStatus responses with at least this status, and requests that throw, are always
+ *                    captured
+ * @param maxBodyBytes bytes of each request and response body kept; the rest is only counted
+ * @param bufferSize captures waiting to be written at most; more are dropped, never waited for
+ * @param drainInterval how often waiting captures are written to the log
+ * @param redactedHeaders headers whose values are replaced by [REDACTED]
+ */
+@ConfigurationProperties(prefix = "spotify.capture")
+public record CaptureProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("0.01") double sampleRate,
+        @DefaultValue("2s") Duration slowThreshold,
+        @DefaultValue("500") int errorStatus,
+        @DefaultValue("4096") int maxBodyBytes,
+        @DefaultValue("1024") int bufferSize,
+        @DefaultValue("200ms") Duration drainInterval,
+        List<String> redactedHeaders
+) {
+
+    public CaptureProperties {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Capture sample rate must be between 0 and 1");
+        }
+        if (maxBodyBytes < 0 || bufferSize < 1 || bufferSize > 1 << 30) {
+            throw new IllegalArgumentException(
+                    "Capture needs max-body-bytes of at least 0 and a buffer size of 1 to 2^30");
+        }
+        redactedHeaders = redactedHeaders != null
+                ? List.copyOf(redactedHeaders)
+                : List.of("Authorization", "Cookie", "Set-Cookie", "Proxy-Authorization");
+    }
+}
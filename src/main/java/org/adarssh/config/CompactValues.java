@@ -0,0 +1,112 @@
+package org.adarssh.config;
+
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.service.TopItemsCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Turns top-items pages into the byte arrays kept by compact caches, and back.
+ * <p>
+ * The first byte tells whether the rest is the encoded page as is or deflated. Only
+ * pages of at least {@link #COMPRESSION_THRESHOLD} bytes are deflated; below that the
+ * deflate header costs more than it saves.
+ */
+final class CompactValues {
+
+    /**
+     * Encoded size from which pages are deflated.
+     */
+    static final int COMPRESSION_THRESHOLD = 256;
+
+    /**
+     * Approximate heap cost of an entry besides its bytes (key, node and array headers).
+     */
+    static final int ENTRY_OVERHEAD = 96;
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+
+    private final TopItemsCodec codec;
+    private final boolean compress;
+
+    CompactValues(TopItemsCodec codec, boolean compress) {
+        this.codec = codec;
+        this.compress = compress;
+    }
+
+    byte[] encode(UserTopItemsResponse<?> page) {
+        byte[] encoded = codec.encode(page);
+        if (compress && encoded.length >= COMPRESSION_THRESHOLD) {
+            byte[] deflated = deflate(encoded);
+            if (deflated.length < encoded.length) {
+                return withFlag(DEFLATED, deflated);
+            }
+        }
+        return withFlag(RAW, encoded);
+    }
+
+    UserTopItemsResponse<?> decode(String cacheName, byte[] stored) {
+        byte[] encoded = Arrays.copyOfRange(stored, 1, stored.length);
+        return codec.decode(cacheName, stored[0] == DEFLATED ? inflate(encoded) : encoded);
+    }
+
+    /**
+     * Weigh an entry by the bytes it keeps on the heap.
+     *
+     * @param key the cache key
+     * @param value the stored value
+     * @return the approximate size in bytes
+     */
+    static int weigh(Object key, Object value) {
+        return ENTRY_OVERHEAD + (value instanceof byte[] bytes ? bytes.length : 0);
+    }
+
+    private static byte[] withFlag(byte flag, byte[] bytes) {
+        byte[] stored = new byte[bytes.length + 1];
+        stored[0] = flag;
+        System.arraycopy(bytes, 0, stored, 1, bytes.length);
+        return stored;
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        var deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            var out = new ByteArrayOutputStream(bytes.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes) {
+        var inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            var out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && inflater.needsInput()) {
+                    throw new IllegalStateException("Truncated compressed cache entry");
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed cache entry", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package org.adarssh.config;
+
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Correlation IDs: generation and propagation across threads.
+ * <p>
+ * IDs are ULIDs: 26 Crockford base32 characters, a 48-bit millisecond timestamp followed by 80
+ * random bits. They sort by creation time, and:
+ * - Are generated without contention: the random bits come from {@link ThreadLocalRandom}, which
+ *   is seeded per thread, instead of the SecureRandom shared by every UUID.randomUUID() call
+ * - Are monotonic per thread: an ID generated in the same millisecond as the thread's previous
+ *   one is that ID's random part plus one
+ * - Are not secrets; they only correlate log lines
+ * <p>
+ * An ID sent by the client is only adopted if it is {@link #isValid(String) valid}: at most 64
+ * letters, digits and dashes, so it cannot forge log lines or bloat headers sent upstream.
+ * <p>
+ * The current request's ID lives in the logging MDC under {@link #MDC_KEY}. MDC is thread-local,
+ * so work handed to another thread is wrapped with {@link #wrap(Runnable)} (or one of its
+ * overloads) to keep the ID.
+ */
+public final class CorrelationId {
+
+    /**
+     * Request and response header carrying the correlation ID, also sent on upstream calls.
+     */
+    public static final String HEADER = "X-Correlation-ID";
+
+    /**
+     * MDC key the current correlation ID is stored under.
+     */
+    public static final String MDC_KEY = "correlationId";
+
+    private static final int MAX_ACCEPTED_LENGTH = 64;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int LENGTH = 26;
+    private static final long MAX_TIMESTAMP = (1L << 48) - 1;
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private CorrelationId() {
+    }
+
+    /**
+     * Generate a new correlation ID.
+     *
+     * @return a 26 character ULID
+     */
+    public static String generate() {
+        return generate(System.currentTimeMillis());
+    }
+
+    static String generate(long now) {
+        State state = STATE.get();
+        if (now > state.millis) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            state.millis = now;
+            state.high = random.nextInt() & 0xFFFF;
+            state.low = random.nextLong();
+        } else if (++state.low == 0) {
+            state.high = (state.high + 1) & 0xFFFF;
+            if (state.high == 0) {
+                // 2^80 IDs in one millisecond: borrow the next one
+                state.millis++;
+            }
+        }
+        return encode(state.millis & MAX_TIMESTAMP, state.high, state.low);
+    }
+
+    /**
+     * Check whether an ID from outside can be used as is: 1 to 64 ASCII letters, digits or dashes.
+     *
+     * @param id the candidate, e.g. the request's X-Correlation-ID header
+     * @return whether it is valid
+     */
+    public static boolean isValid(String id) {
+        if (id == null || id.isEmpty() || id.length() > MAX_ACCEPTED_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            boolean allowed = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-';
+            if (!allowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the correlation ID of the current request.
+     *
+     * @return the ID, or null outside a request
+     */
+    public static String current() {
+        return MDC.get(MDC_KEY);
+    }
+
+    /**
+     * Wrap a task so that it runs with the caller's MDC, including the correlation ID.
+     *
+     * @param task the task
+     * @return the wrapped task
+     */
+    public static Runnable wrap(Runnable task) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = install(mdc);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Wrap a task so that it runs with the caller's MDC, including the correlation ID.
+     *
+     * @param task the task
+     * @param <T> the result type
+     * @return the wrapped task
+     */
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = install(mdc);
+            try {
+                return task.get();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Wrap a task so that it runs with the caller's MDC, including the correlation ID.
+     *
+     * @param task the task
+     * @param <T> the result type
+     * @return the wrapped task
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = install(mdc);
+            try {
+                return task.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    private static Map<String, String> install(Map<String, String> mdc) {
+        Map<String, String> previous = MDC.getCopyOfContextMap();
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        } else {
+            MDC.clear();
+        }
+        return previous;
+    }
+
+    private static void restore(Map<String, String> previous) {
+        // A task run on the caller's thread (e.g. a rejected executor fallback) gets its MDC back
+        if (previous != null) {
+            MDC.setContextMap(previous);
+        } else {
+            MDC.clear();
+        }
+    }
+
+    private static String encode(long millis, long high, long low) {
+        char[] chars = new char[LENGTH];
+        for (int i = 9; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (millis & 31)];
+            millis >>>= 5;
+        }
+        // 80 random bits as 16 characters: bits 0-59 from low, 60-64 straddle, 65-79 from high
+        for (int i = LENGTH - 1; i >= 14; i--) {
+            chars[i] = ALPHABET[(int) (low & 31)];
+            low >>>= 5;
+        }
+        chars[13] = ALPHABET[(int) ((low & 15) | ((high & 1) << 4))];
+        high >>>= 1;
+        for (int i = 12; i >= 10; i--) {
+            chars[i] = ALPHABET[(int) (high & 31)];
+            high >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * The thread's previous ID, so the next one in the same millisecond can follow it.
+     */
+    private static final class State {
+        private long millis = -1;
+        private long high;
+        private long low;
+    }
+}
@@ -0,0 +1,29 @@
+package org.adarssh.config;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * RestClient interceptor that sends the current correlation ID to Spotify.
+ * <p>
+ * The ID is taken from the MDC of the thread making the call, so calls on other threads carry
+ * it as long as their task was wrapped with {@link CorrelationId#wrap(Runnable)}. Calls outside
+ * a request (e.g. background refreshes nobody triggered), or whose ID is not
+ * {@link CorrelationId#isValid(String) valid}, are sent without one.
+ */
+public class CorrelationIdInterceptor implements ClientHttpRequestInterceptor {
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String correlationId = CorrelationId.current();
+        if (CorrelationId.isValid(correlationId) && !request.getHeaders().containsKey(CorrelationId.HEADER)) {
+            request.getHeaders().set(CorrelationId.HEADER, correlationId);
+        }
+        return execution.execute(request, body);
+    }
+}
@@ -0,0 +1,77 @@
+package org.adarssh.config;
+
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+
+/**
+ * Shared bucket backends for cluster-wide rate limits.
+ * <p>
+ * With spotify.rate-limit.cluster.backend=jdbc (or in-memory), a {@link ProxyManager} bean is
+ * created and {@link RateLimitPolicyEngine} limits through {@link DistributedRateLimiter}s on it;
+ * with the default, local, there is no such bean and each replica limits on its own. The JDBC
+ * backend uses the application DataSource (spring.datasource.*), a database all replicas reach,
+ * e.g. PostgreSQL or MySQL. It is opt-in: spring-boot-starter-jdbc and a driver are only packaged
+ * when the build is given -PrateLimitJdbcDriver, so other deployments carry no DataSource.
+ */
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class DistributedRateLimitConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(DistributedRateLimitConfig.class);
+    private static final String JDBC_TEMPLATE = "org.springframework.jdbc.core.JdbcTemplate";
+
+    @Bean
+    @ConditionalOnProperty(name = "spotify.rate-limit.cluster.backend", havingValue = "in-memory")
+    public InMemoryBucketProxyManager inMemoryRateLimitProxyManager() {
+        log.info("Rate limits kept in an in-memory Bucket4j proxy; not shared with other replicas");
+        return new InMemoryBucketProxyManager();
+    }
+
+    /**
+     * The JDBC backend, when spring-boot-starter-jdbc is on the classpath.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = JDBC_TEMPLATE)
+    @ConditionalOnProperty(name = "spotify.rate-limit.cluster.backend", havingValue = "jdbc")
+    static class Jdbc {
+
+        @Bean
+        public JdbcBucketProxyManager jdbcRateLimitProxyManager(
+                JdbcTemplate jdbcTemplate,
+                RateLimitProperties properties) {
+            var cluster = properties.cluster();
+            var proxyManager = new JdbcBucketProxyManager(jdbcTemplate, cluster, Clock.systemUTC());
+            if (cluster.initializeSchema()) {
+                proxyManager.initializeSchema();
+            }
+            log.info("Cluster-wide rate limits in table {} (lease of {} requests for {})",
+                    cluster.table(), cluster.leaseSize(), cluster.leaseTtl());
+            return proxyManager;
+        }
+    }
+
+    /**
+     * Fails startup when the JDBC backend is chosen but the build did not package it, rather than
+     * silently limiting per replica.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnMissingClass(JDBC_TEMPLATE)
+    @ConditionalOnProperty(name = "spotify.rate-limit.cluster.backend", havingValue = "jdbc")
+    static class JdbcMissing {
+
+        JdbcMissing() {
+            throw new IllegalStateException("spotify.rate-limit.cluster.backend=jdbc needs a build with "
+                    + "-PrateLimitJdbcDriver=<driver coordinates>, which packages spring-boot-starter-jdbc");
+        }
+    }
+}
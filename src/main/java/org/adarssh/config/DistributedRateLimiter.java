@@ -0,0 +1,158 @@
+package org.adarssh.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.Refill;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter whose state is shared by all replicas through a Bucket4j {@link ProxyManager}.
+ * <p>
+ * Every key has one bucket in the shared backend with the configured limits (greedy refill, like
+ * {@link GcraRateLimiter}). To keep the backend off the hot path, each replica leases requests:
+ * - A request that finds no leased allowance takes lease-size requests from the shared bucket in
+ *   one round trip and admits the following requests of that key locally
+ * - Near the limit, when the bucket cannot cover a whole lease, only what the request needs is
+ *   taken, so the cluster-wide limit stays exact
+ * - Leased requests not used within lease-ttl are given up; a replica can therefore admit fewer
+ *   requests than the limit, never more
+ * - Requests of the same key on one replica wait for each other while a lease is taken, so a
+ *   burst costs one round trip, not one per request
+ * - While the backend fails, the key is limited by a local {@link GcraRateLimiter} with the same
+ *   limits, so an outage of the shared store neither blocks nor unthrottles traffic
+ * <p>
+ * X-Rate-Limit-Remaining is approximate in this mode: the leased allowance plus what the shared
+ * bucket had left when the lease was taken.
+ */
+public class DistributedRateLimiter implements KeyedRateLimiter<String> {
+
+    private static final Logger log = LoggerFactory.getLogger(DistributedRateLimiter.class);
+
+    private final ProxyManager<String> proxyManager;
+    private final String prefix;
+    private final BucketConfiguration configuration;
+    private final long maximumCharge;
+    private final long leaseSize;
+    private final long leaseTtl;
+    private final Cache<String, Lease> leases;
+    private final GcraRateLimiter<String> fallback;
+    private final LongSupplier clock;
+
+    /**
+     * Constructs a new DistributedRateLimiter on the system clock.
+     *
+     * @param proxyManager the shared bucket backend
+     * @param prefix prefix of this limiter's keys in the backend, e.g. user:
+     * @param limits one or two limits; all of them have to allow a request
+     * @param cluster the lease settings
+     * @param maximumKeys maximum number of keys leases are kept for on this replica
+     */
+    public DistributedRateLimiter(
+            ProxyManager<String> proxyManager,
+            String prefix,
+            List<GcraRateLimiter.Limit> limits,
+            RateLimitProperties.Cluster cluster,
+            long maximumKeys) {
+        this(proxyManager, prefix, limits, cluster, maximumKeys, System::nanoTime);
+    }
+
+    /**
+     * Constructs a new DistributedRateLimiter on the given nanosecond clock.
+     */
+    DistributedRateLimiter(
+            ProxyManager<String> proxyManager,
+            String prefix,
+            List<GcraRateLimiter.Limit> limits,
+            RateLimitProperties.Cluster cluster,
+            long maximumKeys,
+            LongSupplier clock) {
+        this.proxyManager = proxyManager;
+        this.prefix = prefix;
+        var builder = BucketConfiguration.builder();
+        Duration longestPeriod = Duration.ZERO;
+        for (GcraRateLimiter.Limit limit : limits) {
+            builder.addLimit(Bandwidth.classic(limit.capacity(), Refill.greedy(limit.capacity(), limit.period())));
+            longestPeriod = limit.period().compareTo(longestPeriod) > 0 ? limit.period() : longestPeriod;
+        }
+        if (cluster.retention().compareTo(longestPeriod) < 0) {
+            throw new IllegalArgumentException("spotify.rate-limit.cluster.retention must be at least the "
+                    + "longest limit period (" + longestPeriod + ")");
+        }
+        this.configuration = builder.build();
+        // A request costing more than the smallest capacity could never be admitted
+        this.maximumCharge = limits.stream().mapToLong(GcraRateLimiter.Limit::capacity).min().orElseThrow();
+        this.leaseSize = Math.min(cluster.leaseSize(), maximumCharge);
+        this.leaseTtl = cluster.leaseTtl().toNanos();
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(cluster.leaseTtl())
+                .build();
+        this.fallback = new GcraRateLimiter<>(limits, maximumKeys, longestPeriod);
+        this.clock = clock;
+    }
+
+    @Override
+    public Decision tryAcquire(String key, int cost) {
+        long charge = Math.min(cost, maximumCharge);
+        Lease lease = leases.get(key, k -> new Lease());
+        lease.lock.lock();
+        try {
+            long now = clock.getAsLong();
+            if (now - lease.expiresAt >= 0) {
+                lease.tokens = 0;
+            }
+            if (lease.tokens >= charge) {
+                lease.tokens -= charge;
+                return Decision.allowed(lease.tokens + lease.sharedRemaining);
+            }
+            return takeLease(key, lease, charge, now);
+        } finally {
+            lease.lock.unlock();
+        }
+    }
+
+    private Decision takeLease(String key, Lease lease, long charge, long now) {
+        long needed = charge - lease.tokens;
+        long wanted = Math.min(Math.max(needed, leaseSize), maximumCharge);
+        ConsumptionProbe probe;
+        try {
+            var bucket = proxyManager.builder().build(prefix + key, () -> configuration);
+            probe = bucket.tryConsumeAndReturnRemaining(wanted);
+            if (!probe.isConsumed() && wanted > needed) {
+                wanted = needed;
+                probe = bucket.tryConsumeAndReturnRemaining(needed);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Shared rate limit backend failed for {}{}; limiting locally: {}", prefix, key, e.toString());
+            return fallback.tryAcquire(key, (int) charge);
+        }
+        if (!probe.isConsumed()) {
+            return Decision.rejected(Duration.ofNanos(probe.getNanosToWaitForRefill()));
+        }
+        lease.tokens += wanted - charge;
+        lease.sharedRemaining = probe.getRemainingTokens();
+        lease.expiresAt = now + leaseTtl;
+        return Decision.allowed(lease.tokens + lease.sharedRemaining);
+    }
+
+    /**
+     * Requests of one key this replica has taken from the shared bucket but not admitted yet.
+     */
+    private static final class Lease {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private long tokens;
+        private long sharedRemaining;
+        private long expiresAt;
+    }
+}
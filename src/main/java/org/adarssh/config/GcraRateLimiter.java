@@ -0,0 +1,173 @@
+package org.adarssh.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free rate limiter based on the generic cell rate algorithm (GCRA), keyed by an arbitrary
+ * identity.
+ * <p>
+ * Instead of a token count, GCRA keeps one theoretical arrival time (TAT) per limit: the instant at
+ * which the key's allowance would be completely refilled. A request is allowed when pushing the TAT
+ * forward by one emission interval (period / capacity) keeps it within one period of now.
+ * <p>
+ * Implementation:
+ * - Up to two limits per key (e.g. a per-minute burst and a per-hour budget); a request is only
+ *   charged when every limit allows it
+ * - The TATs of both limits are packed into a single {@link AtomicLong} per key as two 32-bit
+ *   millisecond lanes and updated with one compare-and-set, so there are no locks and no
+ *   per-request allocation
+ * - Lanes wrap around every 2^32 ms and are compared with serial-number arithmetic; this is exact
+ *   as long as no TAT is older than 2^31 ms (about 24 days), which the idle expiry guarantees
+ * - Keys live in a size-capped Caffeine store and are dropped after idle-expiry without requests;
+ *   the expiry is at least the longest period, by which time an idle key is fully refilled anyway,
+ *   so expiring it gives away nothing. Only size-based eviction can forget a partly drained key
+ * - Emission intervals are whole milliseconds, so a capacity that does not divide its period
+ *   evenly is enforced very slightly more generously
+ *
+ * @param <K> the key type
+ */
+public class GcraRateLimiter<K> implements KeyedRateLimiter<K> {
+
+    private static final int MAX_LIMITS = 2;
+    private static final long LANE_MASK = 0xFFFF_FFFFL;
+    private static final long MAX_AGE_MILLIS = Integer.MAX_VALUE;
+
+    private final long[] intervals;
+    private final long[] tolerances;
+    private final Cache<K, AtomicLong> states;
+    private final LongSupplier clock;
+    private final long origin;
+
+    /**
+     * Constructs a new GcraRateLimiter on the system clock.
+     *
+     * @param limits one or two limits; all of them have to allow a request
+     * @param maximumKeys maximum number of keys kept; least recently used keys are evicted first
+     * @param idleExpiry how long a key is kept without requests; at least the longest limit period
+     */
+    public GcraRateLimiter(List<Limit> limits, long maximumKeys, Duration idleExpiry) {
+        this(limits, maximumKeys, idleExpiry, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    /**
+     * Constructs a new GcraRateLimiter on the given millisecond clock.
+     *
+     * @param limits one or two limits; all of them have to allow a request
+     * @param maximumKeys maximum number of keys kept; least recently used keys are evicted first
+     * @param idleExpiry how long a key is kept without requests; at least the longest limit period
+     * @param clock monotonic clock in milliseconds
+     */
+    GcraRateLimiter(List<Limit> limits, long maximumKeys, Duration idleExpiry, LongSupplier clock) {
+        if (limits.isEmpty() || limits.size() > MAX_LIMITS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_LIMITS + " limits are supported");
+        }
+        this.intervals = new long[MAX_LIMITS];
+        this.tolerances = new long[MAX_LIMITS];
+        long longestPeriod = 0;
+        for (int lane = 0; lane < MAX_LIMITS; lane++) {
+            // A single limit is enforced on both lanes
+            Limit limit = limits.get(Math.min(lane, limits.size() - 1));
+            intervals[lane] = Math.max(1, limit.period().toMillis() / limit.capacity());
+            tolerances[lane] = intervals[lane] * limit.capacity();
+            longestPeriod = Math.max(longestPeriod, tolerances[lane]);
+        }
+        long idleMillis = idleExpiry.toMillis();
+        if (idleMillis < longestPeriod || idleMillis + longestPeriod >= MAX_AGE_MILLIS) {
+            throw new IllegalArgumentException("Idle expiry must be at least the longest limit period ("
+                    + Duration.ofMillis(longestPeriod) + ") and well below 24 days, but was " + idleExpiry);
+        }
+        this.states = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(idleExpiry)
+                .build();
+        this.clock = clock;
+        this.origin = clock.getAsLong();
+    }
+
+    /**
+     * Try to charge one request to a key.
+     *
+     * @param key the identity the request is charged to
+     * @return whether it was allowed, and the remaining allowance or the wait until the next one
+     */
+    public Decision tryAcquire(K key) {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * Try to charge a request of the given cost to a key.
+     * <p>
+     * A cost above a limit's capacity is charged as its capacity, so it can still be allowed once
+     * the key is fully refilled; a cost of 0 charges nothing and only reports the remaining allowance.
+     *
+     * @param key the identity the request is charged to
+     * @param cost number of requests charged
+     * @return whether it was allowed, and the remaining allowance or the wait until the next one
+     */
+    @Override
+    public Decision tryAcquire(K key, int cost) {
+        long now = clock.getAsLong() - origin;
+        AtomicLong state = states.get(key, k -> new AtomicLong(pack(now, now)));
+        long firstCharge = Math.min(cost * intervals[0], tolerances[0]);
+        long secondCharge = Math.min(cost * intervals[1], tolerances[1]);
+        while (true) {
+            long current = state.get();
+            long first = Math.max(lane(current, 0, now), now) + firstCharge;
+            long second = Math.max(lane(current, 1, now), now) + secondCharge;
+            long firstDebt = first - now - tolerances[0];
+            long secondDebt = second - now - tolerances[1];
+            if (firstDebt > 0 || secondDebt > 0) {
+                return Decision.rejected(Duration.ofMillis(Math.max(firstDebt, secondDebt)));
+            }
+            long remaining = Math.min(-firstDebt / intervals[0], -secondDebt / intervals[1]);
+            if (cost == 0 || state.compareAndSet(current, pack(first, second))) {
+                return Decision.allowed(remaining);
+            }
+        }
+    }
+
+    /**
+     * Number of keys currently tracked.
+     *
+     * @return the approximate key count
+     */
+    public long size() {
+        states.cleanUp();
+        return states.estimatedSize();
+    }
+
+    /**
+     * Unpack one lane's TAT relative to the origin, using now to resolve the wrap-around; a TAT in
+     * the past counts as now when it is used.
+     */
+    private static long lane(long state, int lane, long now) {
+        int bits = (int) (state >>> (lane * Integer.SIZE));
+        return now + (bits - (int) now);
+    }
+
+    private static long pack(long first, long second) {
+        return (first & LANE_MASK) | ((second & LANE_MASK) << Integer.SIZE);
+    }
+
+    /**
+     * A rate limit.
+     *
+     * @param capacity requests allowed per period, which is also the largest burst
+     * @param period the period over which capacity refills completely
+     */
+    public record Limit(long capacity, Duration period) {
+
+        public Limit {
+            if (capacity <= 0 || period == null || period.toMillis() <= 0) {
+                throw new IllegalArgumentException("Limit needs a positive capacity and period");
+            }
+        }
+    }
+}
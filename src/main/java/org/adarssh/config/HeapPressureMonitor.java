@@ -0,0 +1,154 @@
+package org.adarssh.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shrinks the byte budgets of the compact top-items caches while the heap is under pressure.
+ * <p>
+ * Heap pressure is read from the {@link MemoryPoolMXBean}s of the heap: the usage left after
+ * the last collection of each pool (in practice the old generation), as a fraction of its
+ * maximum. Usage right after a GC is what the cache actually competes for; usage between
+ * collections mostly reflects garbage that has not been collected yet.
+ * <p>
+ * Behavior:
+ * - Only active when spotify.api.cache.compact.enabled=true
+ * - Checked every spotify.api.cache.compact.check-interval
+ * - At or above spotify.api.cache.compact.shrink-at-heap-usage, each cache's budget is halved,
+ *   down to an eighth of maximum-weight; Caffeine evicts the coldest entries to fit
+ * - Below three quarters of that threshold, the budgets double back up to maximum-weight
+ * <p>
+ * Metrics:
+ * - spotify.cache.weight.limit: current byte budget of each top-items cache
+ */
+@Component
+@ConditionalOnProperty(name = "spotify.api.cache.compact.enabled", havingValue = "true")
+public class HeapPressureMonitor implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(HeapPressureMonitor.class);
+    private static final List<String> CACHES = List.of("topTracks", "topArtists", "topAlbums", "topGenres");
+    private static final int MIN_FRACTION = 8;
+    private static final double RECOVER_FACTOR = 0.75;
+
+    private final SpotifyProperties.Compact properties;
+    private final ObjectProvider<CacheManager> cacheManager;
+    private final long maximumWeight;
+    private final AtomicLong limit;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a new HeapPressureMonitor.
+     *
+     * @param properties the Spotify configuration properties
+     * @param cacheManager provides the caches whose budgets are adjusted
+     * @param meterRegistry the registry the budget gauge is published to
+     */
+    public HeapPressureMonitor(
+            SpotifyProperties properties,
+            ObjectProvider<CacheManager> cacheManager,
+            MeterRegistry meterRegistry) {
+        this.properties = properties.cache().compact();
+        this.cacheManager = cacheManager;
+        this.maximumWeight = this.properties.maximumWeight().toBytes();
+        this.limit = new AtomicLong(maximumWeight);
+        Gauge.builder("spotify.cache.weight.limit", limit, AtomicLong::get)
+                .description("Current byte budget of each top-items cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("heap-pressure-monitor").daemon().factory());
+        long interval = properties.checkInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(() -> check(heapUsageAfterGc()), interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Heap pressure monitor started (shrink at {}% heap usage after GC)",
+                Math.round(properties.shrinkAtHeapUsage() * 100));
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * Adjust the cache budgets to the given heap usage.
+     *
+     * @param heapUsage heap usage after GC, from 0 to 1
+     */
+    void check(double heapUsage) {
+        long current = limit.get();
+        long target = current;
+        if (heapUsage >= properties.shrinkAtHeapUsage()) {
+            target = Math.max(maximumWeight / MIN_FRACTION, current / 2);
+        } else if (heapUsage < properties.shrinkAtHeapUsage() * RECOVER_FACTOR) {
+            target = Math.min(maximumWeight, current * 2);
+        }
+        if (target == current) {
+            return;
+        }
+        limit.set(target);
+        CacheManager caches = cacheManager.getObject();
+        for (String name : CACHES) {
+            resize(caches.getCache(name), target);
+        }
+        log.info("Heap usage after GC at {}%: top-items cache budgets {} from {} to {} bytes",
+                Math.round(heapUsage * 100), target < current ? "shrunk" : "restored", current, target);
+    }
+
+    /**
+     * Get the current byte budget of each top-items cache.
+     *
+     * @return the budget in bytes
+     */
+    long limit() {
+        return limit.get();
+    }
+
+    private static void resize(Cache cache, long maximum) {
+        if (cache != null && cache.getNativeCache()
+                instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            nativeCache.policy().eviction()
+                    .filter(eviction -> eviction.isWeighted())
+                    .ifPresent(eviction -> eviction.setMaximum(maximum));
+        }
+    }
+
+    private static double heapUsageAfterGc() {
+        double highest = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null && usage.getMax() > 0) {
+                highest = Math.max(highest, (double) usage.getUsed() / usage.getMax());
+            }
+        }
+        return highest;
+    }
+}
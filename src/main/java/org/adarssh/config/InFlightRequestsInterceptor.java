@@ -0,0 +1,55 @@
+package org.adarssh.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RestClient interceptor that publishes how many upstream requests are in flight.
+ * <p>
+ * The JDK HttpClient does not expose its connection pool, so in-flight requests are
+ * the closest signal for pool saturation.
+ */
+public class InFlightRequestsInterceptor implements ClientHttpRequestInterceptor {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Constructs a new InFlightRequestsInterceptor and registers its gauge.
+     *
+     * @param meterRegistry the registry the gauge is published to
+     * @param client the client name used as the gauge's client tag
+     */
+    public InFlightRequestsInterceptor(MeterRegistry meterRegistry, String client) {
+        Gauge.builder("spotify.http.client.in.flight", inFlight, AtomicInteger::get)
+                .description("Upstream Spotify requests currently in flight")
+                .tag("client", client)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        inFlight.incrementAndGet();
+        try {
+            return execution.execute(request, body);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get the number of requests currently in flight.
+     *
+     * @return the in-flight request count
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,104 @@
+package org.adarssh.config;
+
+import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AbstractCompareAndSwapBasedProxyManager;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AsyncCompareAndSwapOperation;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.CompareAndSwapOperation;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bucket4j proxy manager that keeps serialized bucket state in a map in this JVM.
+ * <p>
+ * It goes through the same serialize / compare-and-swap cycle as a remote backend, so it stands
+ * in for {@link JdbcBucketProxyManager} in tests (spotify.rate-limit.cluster.backend=in-memory);
+ * it does not share anything between replicas.
+ */
+public class InMemoryBucketProxyManager extends AbstractCompareAndSwapBasedProxyManager<String> {
+
+    private final ConcurrentMap<String, Versioned> states = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new InMemoryBucketProxyManager.
+     */
+    public InMemoryBucketProxyManager() {
+        super(ClientSideConfig.getDefault());
+    }
+
+    /**
+     * Number of buckets currently stored.
+     *
+     * @return the bucket count
+     */
+    public int size() {
+        return states.size();
+    }
+
+    @Override
+    protected CompareAndSwapOperation beginCompareAndSwapOperation(String key) {
+        return new CompareAndSwapOperation() {
+
+            private Versioned read;
+
+            @Override
+            public Optional<byte[]> getStateData(Optional<Long> timeoutNanos) {
+                read = states.get(key);
+                return Optional.ofNullable(read).map(Versioned::state);
+            }
+
+            @Override
+            public boolean compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState,
+                                          Optional<Long> timeoutNanos) {
+                if (read == null) {
+                    return states.putIfAbsent(key, new Versioned(newData, 0)) == null;
+                }
+                return states.replace(key, read, new Versioned(newData, read.version() + 1));
+            }
+        };
+    }
+
+    @Override
+    protected AsyncCompareAndSwapOperation beginAsyncCompareAndSwapOperation(String key) {
+        // Map operations never block, so they complete on the caller's thread
+        CompareAndSwapOperation operation = beginCompareAndSwapOperation(key);
+        return new AsyncCompareAndSwapOperation() {
+
+            @Override
+            public CompletableFuture<Optional<byte[]>> getStateData(Optional<Long> timeoutNanos) {
+                return CompletableFuture.completedFuture(operation.getStateData(timeoutNanos));
+            }
+
+            @Override
+            public CompletableFuture<Boolean> compareAndSwap(byte[] originalData, byte[] newData,
+                                                             RemoteBucketState newState, Optional<Long> timeoutNanos) {
+                return CompletableFuture.completedFuture(
+                        operation.compareAndSwap(originalData, newData, newState, timeoutNanos));
+            }
+        };
+    }
+
+    @Override
+    public boolean isAsyncModeSupported() {
+        return true;
+    }
+
+    @Override
+    public void removeProxy(String key) {
+        states.remove(key);
+    }
+
+    @Override
+    protected CompletableFuture<Void> removeAsync(String key) {
+        states.remove(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Serialized bucket state; the array compares by identity, so a swap fails if anyone wrote in between.
+     */
+    private record Versioned(byte[] state, long version) { }
+}
@@ -0,0 +1,209 @@
+package org.adarssh.config;
+
+import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AbstractCompareAndSwapBasedProxyManager;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AsyncCompareAndSwapOperation;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.CompareAndSwapOperation;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Bucket4j proxy manager that keeps bucket state in a database table shared by all replicas.
+ * <p>
+ * Table (created on startup when spotify.rate-limit.cluster.initialize-schema=true):
+ * - id: the bucket key, e.g. user:alice
+ * - state: the serialized bucket; BYTEA on PostgreSQL, VARBINARY(4096) elsewhere
+ * - version: incremented on every write; a write only succeeds if the version is still the one
+ *   read, which makes each consume a compare-and-swap without row locks
+ * - expires_at: epoch millis after which the row is deleted, spotify.rate-limit.cluster.retention
+ *   after its last write; a deleted bucket was fully refilled, so it is recreated identical
+ * <p>
+ * Expired rows are deleted every spotify.rate-limit.cluster.cleanup-interval. Asynchronous
+ * buckets run the same statements on virtual threads, so they never block the caller.
+ */
+public class JdbcBucketProxyManager extends AbstractCompareAndSwapBasedProxyManager<String>
+        implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcBucketProxyManager.class);
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RateLimitProperties.Cluster properties;
+    private final Clock clock;
+    private final String selectSql;
+    private final String insertSql;
+    private final String updateSql;
+    private final ExecutorService asyncExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a new JdbcBucketProxyManager.
+     *
+     * @param jdbcTemplate the template for the shared database
+     * @param properties the cluster settings
+     * @param clock the clock row expiry is computed from
+     */
+    public JdbcBucketProxyManager(JdbcTemplate jdbcTemplate, RateLimitProperties.Cluster properties, Clock clock) {
+        super(ClientSideConfig.getDefault());
+        if (!TABLE_NAME.matcher(properties.table()).matches()) {
+            throw new IllegalArgumentException("Invalid rate limit table name: " + properties.table());
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.clock = clock;
+        String table = properties.table();
+        this.selectSql = "SELECT state, version FROM " + table + " WHERE id = ?";
+        this.insertSql = "INSERT INTO " + table + " (id, state, version, expires_at) VALUES (?, ?, 0, ?)";
+        this.updateSql = "UPDATE " + table + " SET state = ?, version = version + 1, expires_at = ?"
+                + " WHERE id = ? AND version = ?";
+    }
+
+    /**
+     * Create the bucket table if it does not exist, in the dialect of the connected database.
+     */
+    public void initializeSchema() {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        jdbcTemplate.execute(createTableSql(properties.table(), product));
+    }
+
+    /**
+     * The CREATE TABLE statement for the bucket table.
+     *
+     * @param table the table name
+     * @param databaseProduct the database product name reported by the JDBC driver
+     * @return the statement
+     */
+    static String createTableSql(String table, String databaseProduct) {
+        boolean postgres = databaseProduct != null && databaseProduct.toLowerCase(Locale.ROOT).contains("postgres");
+        return "CREATE TABLE IF NOT EXISTS " + table + " ("
+                + "id VARCHAR(255) PRIMARY KEY, "
+                + "state " + (postgres ? "BYTEA" : "VARBINARY(4096)") + " NOT NULL, "
+                + "version BIGINT NOT NULL, "
+                + "expires_at BIGINT NOT NULL)";
+    }
+
+    /**
+     * Delete the rows past their retention.
+     *
+     * @return number of rows deleted
+     */
+    public int deleteExpired() {
+        return jdbcTemplate.update("DELETE FROM " + properties.table() + " WHERE expires_at < ?", clock.millis());
+    }
+
+    @Override
+    protected CompareAndSwapOperation beginCompareAndSwapOperation(String key) {
+        return new CompareAndSwapOperation() {
+
+            private Long version;
+
+            @Override
+            public Optional<byte[]> getStateData(Optional<Long> timeoutNanos) {
+                return jdbcTemplate.query(selectSql, rs -> {
+                    if (!rs.next()) {
+                        version = null;
+                        return Optional.empty();
+                    }
+                    version = rs.getLong("version");
+                    return Optional.of(rs.getBytes("state"));
+                }, key);
+            }
+
+            @Override
+            public boolean compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState,
+                                          Optional<Long> timeoutNanos) {
+                long expiresAt = clock.millis() + properties.retention().toMillis();
+                if (version == null) {
+                    try {
+                        return jdbcTemplate.update(insertSql, key, newData, expiresAt) == 1;
+                    } catch (DuplicateKeyException e) {
+                        // Another replica created the bucket first; Bucket4j retries with its state
+                        return false;
+                    }
+                }
+                return jdbcTemplate.update(updateSql, newData, expiresAt, key, version) == 1;
+            }
+        };
+    }
+
+    @Override
+    protected AsyncCompareAndSwapOperation beginAsyncCompareAndSwapOperation(String key) {
+        CompareAndSwapOperation operation = beginCompareAndSwapOperation(key);
+        return new AsyncCompareAndSwapOperation() {
+
+            @Override
+            public CompletableFuture<Optional<byte[]>> getStateData(Optional<Long> timeoutNanos) {
+                return CompletableFuture.supplyAsync(() -> operation.getStateData(timeoutNanos), asyncExecutor);
+            }
+
+            @Override
+            public CompletableFuture<Boolean> compareAndSwap(byte[] originalData, byte[] newData,
+                                                             RemoteBucketState newState, Optional<Long> timeoutNanos) {
+                return CompletableFuture.supplyAsync(
+                        () -> operation.compareAndSwap(originalData, newData, newState, timeoutNanos), asyncExecutor);
+            }
+        };
+    }
+
+    @Override
+    public boolean isAsyncModeSupported() {
+        return true;
+    }
+
+    @Override
+    public void removeProxy(String key) {
+        jdbcTemplate.update("DELETE FROM " + properties.table() + " WHERE id = ?", key);
+    }
+
+    @Override
+    protected CompletableFuture<Void> removeAsync(String key) {
+        return CompletableFuture.runAsync(() -> removeProxy(key), asyncExecutor);
+    }
+
+    @Override
+    public synchronized void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("rate-limit-cleanup").daemon().factory());
+        long interval = properties.cleanupInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::cleanUp, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+
+    private void cleanUp() {
+        try {
+            int deleted = deleteExpired();
+            log.debug("Deleted {} expired rate limit buckets", deleted);
+        } catch (DataAccessException e) {
+            log.warn("Could not delete expired rate limit buckets: {}", e.getMessage());
+        }
+    }
+}
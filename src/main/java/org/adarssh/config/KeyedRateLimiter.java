@@ -0,0 +1,42 @@
+package org.adarssh.config;
+
+import java.time.Duration;
+
+/**
+ * A rate limiter that charges requests to a key, e.g. a username or a client subnet.
+ *
+ * @param <K> the key type
+ */
+public interface KeyedRateLimiter<K> {
+
+    /**
+     * Try to charge a request of the given cost to a key.
+     *
+     * @param key the identity the request is charged to
+     * @param cost number of requests charged; 0 only reports the remaining allowance
+     * @return whether it was allowed, and the remaining allowance or the wait until the next one
+     */
+    Decision tryAcquire(K key, int cost);
+
+    /**
+     * Outcome of {@link #tryAcquire}.
+     *
+     * @param allowed whether the request was charged
+     * @param remaining further requests allowed right now; -1 for a request that is not metered
+     * @param retryAfter how long until the next request is allowed; zero when allowed
+     */
+    record Decision(boolean allowed, long remaining, Duration retryAfter) {
+
+        static Decision allowed(long remaining) {
+            return new Decision(true, remaining, Duration.ZERO);
+        }
+
+        static Decision unmetered() {
+            return new Decision(true, -1, Duration.ZERO);
+        }
+
+        static Decision rejected(Duration retryAfter) {
+            return new Decision(false, 0, retryAfter);
+        }
+    }
+}
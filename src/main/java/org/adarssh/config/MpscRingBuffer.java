@@ -0,0 +1,92 @@
+package org.adarssh.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue for many producers and a single consumer.
+ * <p>
+ * Producers claim a slot by compare-and-set on the tail and then publish their element into it;
+ * a full buffer rejects the element instead of blocking. The consumer takes elements in claim
+ * order. A slot that is claimed but not yet published reads as empty, so the consumer simply
+ * finds it on its next poll.
+ *
+ * @param <E> the element type
+ */
+final class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    // Next sequence producers claim
+    private final AtomicLong tail = new AtomicLong();
+    // Next sequence the consumer reads; only written by the consumer
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Constructs a new MpscRingBuffer.
+     *
+     * @param capacity minimum number of elements held; rounded up to a power of two
+     */
+    MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Ring buffer capacity must be between 1 and 2^30");
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add an element without blocking. Safe to call from any thread.
+     *
+     * @param element the element
+     * @return false if the buffer was full and the element was not added
+     */
+    boolean offer(E element) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() >= slots.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.set((int) sequence & mask, element);
+        return true;
+    }
+
+    /**
+     * Take the oldest element. Only called by the single consumer.
+     *
+     * @return the element, or null if none is published yet
+     */
+    E poll() {
+        long sequence = head.get();
+        int index = (int) sequence & mask;
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        // Free the slot before moving head, so a producer that sees the new head finds it empty
+        slots.set(index, null);
+        head.set(sequence + 1);
+        return element;
+    }
+
+    /**
+     * Get the number of claimed slots, including ones still being published.
+     *
+     * @return the number of elements waiting
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * Get the capacity.
+     *
+     * @return the number of slots
+     */
+    int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,37 @@
+package org.adarssh.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.AuthorizedClientServiceOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientProviderBuilder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+
+/**
+ * Configuration for obtaining and renewing signed-in users' Spotify access tokens.
+ * <p>
+ * The manager works from the {@link OAuth2AuthorizedClientService} rather than the HTTP
+ * session, so tokens can also be renewed outside of a request (e.g. by cache refresh-ahead).
+ * A token that expires within spotify.api.user-token.expiry-skew plus refresh-ahead is renewed
+ * with its refresh token, and the renewed client is saved back to the service.
+ */
+@Configuration
+public class OAuth2ClientConfig {
+
+    @Bean
+    public OAuth2AuthorizedClientManager authorizedClientManager(
+            ClientRegistrationRepository clientRegistrationRepository,
+            OAuth2AuthorizedClientService authorizedClientService,
+            SpotifyProperties properties) {
+        // No authorization_code provider: a user without a stored client has to sign in again,
+        // which cannot happen outside of their browser session
+        var provider = OAuth2AuthorizedClientProviderBuilder.builder()
+                .refreshToken(refreshToken -> refreshToken.clockSkew(properties.userToken().renewBeforeExpiry()))
+                .build();
+        var manager = new AuthorizedClientServiceOAuth2AuthorizedClientManager(
+                clientRegistrationRepository, authorizedClientService);
+        manager.setAuthorizedClientProvider(provider);
+        return manager;
+    }
+}
@@ -0,0 +1,50 @@
+package org.adarssh.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint for the inbound rate-limit policy.
+ * <p>
+ * - GET /actuator/ratelimits: the policy in force
+ * - POST /actuator/ratelimits: re-read spotify.rate-limit.* (and the file at
+ *   spotify.rate-limit.location) and put it in force; the request takes no body, so the endpoint
+ *   can only apply configuration the operator has already deployed
+ */
+@Component
+@Endpoint(id = "ratelimits")
+public class RateLimitEndpoint {
+
+    private final RateLimitPolicyEngine engine;
+
+    /**
+     * Constructs a new RateLimitEndpoint.
+     *
+     * @param engine the policy engine
+     */
+    public RateLimitEndpoint(RateLimitPolicyEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * The policy in force.
+     *
+     * @return the current settings
+     */
+    @ReadOperation
+    public RateLimitProperties policy() {
+        return engine.properties();
+    }
+
+    /**
+     * Reload the policy.
+     *
+     * @return the settings now in force
+     */
+    @WriteOperation
+    public RateLimitProperties reload() {
+        return engine.reload();
+    }
+}
@@ -0,0 +1,269 @@
+package org.adarssh.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.PropertySourcesPlaceholdersResolver;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySource;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Decides which identity a request is charged to, what it costs and whether it is allowed, from
+ * the spotify.rate-limit.* policy.
+ * <p>
+ * Policy:
+ * - Signed-in users are limited per username by the user limits
+ * - Other callers are limited per client subnet (ipv4-prefix / ipv6-prefix) by the anonymous
+ *   limits, so one abusive client cannot drain the allowance of every anonymous caller; behind a
+ *   proxy, set server.forward-headers-strategy so the client address is the real one
+ * - Each request is charged the cost of the first matching path pattern (default 1), e.g.
+ *   /wrapped, which makes four top-items lookups, costs 4
+ * - Requests that cost 0 (health checks, probes) are allowed without touching any limiter, so
+ *   they neither keep a key alive nor depend on the shared backend
+ * <p>
+ * Cluster mode:
+ * - With a shared Bucket4j backend (spotify.rate-limit.cluster.backend, see
+ *   {@link DistributedRateLimitConfig}), users and subnets are limited across all replicas by
+ *   {@link DistributedRateLimiter}s instead of per JVM
+ * <p>
+ * Reloading:
+ * - {@link #reload()} (the ratelimits actuator endpoint) re-binds the policy from the environment
+ *   and the optional spotify.rate-limit.location file and swaps it in atomically
+ * - Limiters whose limits and size did not change are kept, so a reload does not hand every
+ *   caller a fresh allowance; an invalid policy is rejected and the current one stays in force
+ */
+@Component
+public class RateLimitPolicyEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitPolicyEngine.class);
+    private static final String PREFIX = "spotify.rate-limit";
+
+    private final Supplier<RateLimitProperties> loader;
+    private final ProxyManager<String> proxyManager;
+    private volatile Policy policy;
+
+    /**
+     * Constructs a new RateLimitPolicyEngine bound to the application environment.
+     *
+     * @param environment the environment the policy is bound from
+     * @param proxyManager the shared bucket backend, if the limits are cluster-wide
+     */
+    @Autowired
+    public RateLimitPolicyEngine(Environment environment, ObjectProvider<ProxyManager<String>> proxyManager) {
+        this(() -> bind(environment), proxyManager.getIfAvailable());
+    }
+
+    /**
+     * Constructs a new RateLimitPolicyEngine with per-JVM limits bound to the given environment.
+     *
+     * @param environment the environment the policy is bound from
+     */
+    RateLimitPolicyEngine(Environment environment) {
+        this(() -> bind(environment), null);
+    }
+
+    /**
+     * Constructs a new RateLimitPolicyEngine that loads its policy from the given supplier.
+     *
+     * @param loader supplies the current policy settings, on startup and on every reload
+     * @param proxyManager the shared bucket backend, or null for per-JVM limits
+     */
+    RateLimitPolicyEngine(Supplier<RateLimitProperties> loader, ProxyManager<String> proxyManager) {
+        this.loader = loader;
+        this.proxyManager = proxyManager;
+        this.policy = Policy.create(loader.get(), null, proxyManager);
+    }
+
+    /**
+     * Charge a request to its identity.
+     *
+     * @param username the signed-in user, or null for anonymous callers
+     * @param request the request
+     * @return the limiter's decision, unmetered if the request costs nothing
+     */
+    public KeyedRateLimiter.Decision tryAcquire(String username, HttpServletRequest request) {
+        Policy current = policy;
+        int cost = current.cost(request);
+        if (cost == 0) {
+            return KeyedRateLimiter.Decision.unmetered();
+        }
+        if (username != null) {
+            return current.users().tryAcquire(username, cost);
+        }
+        return current.anonymous().tryAcquire(current.subnet(request.getRemoteAddr()), cost);
+    }
+
+    /**
+     * The policy settings in force.
+     *
+     * @return the current settings
+     */
+    public RateLimitProperties properties() {
+        return policy.properties();
+    }
+
+    /**
+     * Re-read the policy settings and put them in force.
+     *
+     * @return the new settings
+     * @throws IllegalArgumentException if the new settings are invalid; the current ones stay in force
+     */
+    public RateLimitProperties reload() {
+        Policy current = policy;
+        Policy reloaded = Policy.create(loader.get(), current, proxyManager);
+        policy = reloaded;
+        log.info("Reloaded rate limit policy: user={}, anonymous={}, costs={}",
+                reloaded.properties().user(), reloaded.properties().anonymous(), reloaded.properties().costs());
+        return reloaded.properties();
+    }
+
+    private static RateLimitProperties bind(Environment environment) {
+        Binder binder = Binder.get(environment);
+        String location = binder.bind(PREFIX + ".location", String.class).filter(StringUtils::hasText).orElse(null);
+        if (location == null) {
+            return binder.bindOrCreate(PREFIX, RateLimitProperties.class);
+        }
+        List<ConfigurationPropertySource> sources = new ArrayList<>();
+        try {
+            var resource = new DefaultResourceLoader().getResource(location);
+            for (PropertySource<?> source : new YamlPropertySourceLoader().load(location, resource)) {
+                sources.add(ConfigurationPropertySource.from(source));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read rate limits from " + location, e);
+        }
+        ConfigurationPropertySources.get(environment).forEach(sources::add);
+        return new Binder(sources, new PropertySourcesPlaceholdersResolver(environment))
+                .bindOrCreate(PREFIX, RateLimitProperties.class);
+    }
+
+    /**
+     * An immutable policy: the settings, their limiters and the compiled cost patterns.
+     */
+    private record Policy(
+            RateLimitProperties properties,
+            KeyedRateLimiter<String> users,
+            KeyedRateLimiter<String> anonymous,
+            List<CostRule> costs) {
+
+        static Policy create(RateLimitProperties properties, Policy previous, ProxyManager<String> proxyManager) {
+            if (properties.ipv4Prefix() < 0 || properties.ipv4Prefix() > 32
+                    || properties.ipv6Prefix() < 0 || properties.ipv6Prefix() > 128) {
+                throw new IllegalArgumentException("Subnet prefixes must be 0-32 (IPv4) and 0-128 (IPv6)");
+            }
+            boolean sameSize = previous != null
+                    && previous.properties().maximumKeys() == properties.maximumKeys()
+                    && previous.properties().cluster().equals(properties.cluster());
+            KeyedRateLimiter<String> users = sameSize && previous.properties().user().equals(properties.user())
+                    ? previous.users()
+                    : limiter("user:", properties.user(), properties, proxyManager);
+            boolean sameSubnets = sameSize && previous.properties().ipv4Prefix() == properties.ipv4Prefix()
+                    && previous.properties().ipv6Prefix() == properties.ipv6Prefix();
+            KeyedRateLimiter<String> anonymous = sameSubnets
+                    && previous.properties().anonymous().equals(properties.anonymous())
+                    ? previous.anonymous()
+                    : limiter("subnet:", properties.anonymous(), properties, proxyManager);
+            List<CostRule> costs = properties.costs().stream()
+                    .map(cost -> new CostRule(PathPatternParser.defaultInstance.parse(cost.pattern()), cost.cost()))
+                    .toList();
+            return new Policy(properties, users, anonymous, costs);
+        }
+
+        private static KeyedRateLimiter<String> limiter(
+                String prefix,
+                List<GcraRateLimiter.Limit> limits,
+                RateLimitProperties properties,
+                ProxyManager<String> proxyManager) {
+            if (proxyManager != null) {
+                return new DistributedRateLimiter(proxyManager, prefix, limits, properties.cluster(),
+                        properties.maximumKeys());
+            }
+            // Keys idle for the longest period are fully refilled, so forgetting them is exact
+            Duration longestPeriod = limits.stream()
+                    .map(GcraRateLimiter.Limit::period)
+                    .max(Duration::compareTo)
+                    .orElseThrow(() -> new IllegalArgumentException("At least one limit is required"));
+            return new GcraRateLimiter<>(limits, properties.maximumKeys(), longestPeriod);
+        }
+
+        int cost(HttpServletRequest request) {
+            if (costs.isEmpty()) {
+                return 1;
+            }
+            String uri = request.getRequestURI();
+            String path = uri.substring(Math.min(request.getContextPath().length(), uri.length()));
+            PathContainer container = PathContainer.parsePath(path);
+            for (CostRule rule : costs) {
+                if (rule.pattern().matches(container)) {
+                    return rule.cost();
+                }
+            }
+            return 1;
+        }
+
+        /**
+         * The subnet of a client address, e.g. 203.0.113.0/24; unparseable addresses are used as is.
+         */
+        String subnet(String remoteAddr) {
+            if (remoteAddr == null || !isAddressLiteral(remoteAddr)) {
+                return String.valueOf(remoteAddr);
+            }
+            try {
+                byte[] address = InetAddress.getByName(remoteAddr).getAddress();
+                int prefix = address.length == 4 ? properties.ipv4Prefix() : properties.ipv6Prefix();
+                for (int bit = prefix; bit < address.length * 8; bit++) {
+                    address[bit / 8] &= (byte) ~(0x80 >>> (bit % 8));
+                }
+                return InetAddress.getByAddress(address).getHostAddress() + "/" + prefix;
+            } catch (UnknownHostException e) {
+                return remoteAddr;
+            }
+        }
+
+        /**
+         * Digits and dots (IPv4) or hex digits, dots and colons (IPv6, before any zone id), so parsing
+         * can never trigger a DNS lookup.
+         */
+        private static boolean isAddressLiteral(String value) {
+            boolean ipv6 = value.indexOf(':') >= 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (ipv6 && c == '%') {
+                    return i > 0;
+                }
+                boolean digit = ipv6 ? Character.digit(c, 16) >= 0 : Character.isDigit(c);
+                if (!digit && c != '.' && !(ipv6 && c == ':')) {
+                    return false;
+                }
+            }
+            return !value.isEmpty();
+        }
+    }
+
+    /**
+     * A compiled cost pattern.
+     */
+    private record CostRule(PathPattern pattern, int cost) { }
+}
@@ -0,0 +1,121 @@
+package org.adarssh.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Configuration properties for inbound rate limiting (see {@link RateLimitPolicyEngine}).
+ * <p>
+ * Reloaded at runtime through the ratelimits actuator endpoint; a file at {@code location}, if
+ * set, is re-read on every reload and takes precedence over the application configuration.
+ *
+ * @param location optional YAML resource (e.g. file:./config/rate-limits.yml) with
+ *                 spotify.rate-limit.* settings
+ * @param maximumKeys maximum number of users, and separately of client subnets, that are tracked
+ * @param ipv4Prefix prefix length anonymous IPv4 clients are grouped by (32 = per address)
+ * @param ipv6Prefix prefix length anonymous IPv6 clients are grouped by (128 = per address)
+ * @param user limits per signed-in user; all of them have to allow a request
+ * @param anonymous limits per client subnet for callers that are not signed in
+ * @param costs request costs by path pattern; the first matching pattern wins, unmatched
+ *              paths cost 1 and a cost of 0 is never limited
+ * @param cluster where limiter state is kept when several replicas share the limits
+ */
+@ConfigurationProperties(prefix = "spotify.rate-limit")
+public record RateLimitProperties(
+        String location,
+        @DefaultValue("100000") long maximumKeys,
+        @DefaultValue("24") int ipv4Prefix,
+        @DefaultValue("64") int ipv6Prefix,
+        List<GcraRateLimiter.Limit> user,
+        List<GcraRateLimiter.Limit> anonymous,
+        List<Cost> costs,
+        @DefaultValue Cluster cluster
+) {
+
+    private static final List<GcraRateLimiter.Limit> DEFAULT_LIMITS = List.of(
+            new GcraRateLimiter.Limit(100, Duration.ofMinutes(1)),
+            new GcraRateLimiter.Limit(1000, Duration.ofHours(1)));
+
+    public RateLimitProperties {
+        user = user != null ? List.copyOf(user) : DEFAULT_LIMITS;
+        anonymous = anonymous != null ? List.copyOf(anonymous) : DEFAULT_LIMITS;
+        costs = costs != null ? List.copyOf(costs) : List.of(
+                new Cost("/api/spotify/wrapped", 4),
+                new Cost("/api/health", 0),
+                new Cost("/actuator/**", 0));
+        cluster = cluster != null ? cluster : new Cluster(Backend.LOCAL, "rate_limit_bucket", true,
+                Duration.ofHours(1), Duration.ofMinutes(5), 10, Duration.ofSeconds(1));
+    }
+
+    /**
+     * Where limiter state is kept.
+     */
+    public enum Backend {
+
+        /**
+         * In this JVM only; each replica enforces the limits on its own.
+         */
+        LOCAL,
+
+        /**
+         * In a table shared by all replicas, through JDBC.
+         */
+        JDBC,
+
+        /**
+         * In a Bucket4j proxy held in this JVM; stands in for a shared backend in tests.
+         */
+        IN_MEMORY
+    }
+
+    /**
+     * Settings for cluster-wide limits. The backend and its table are chosen on startup; a reload
+     * only applies the lease settings.
+     *
+     * @param backend where limiter state is kept
+     * @param table table holding the JDBC backend's buckets
+     * @param initializeSchema create the table on startup if it does not exist (PostgreSQL, MySQL
+     *                         or H2; create it yourself on databases without CREATE TABLE IF NOT EXISTS)
+     * @param retention how long a bucket row is kept without requests; at least the longest limit
+     *                  period, by which time the bucket is fully refilled anyway
+     * @param cleanupInterval how often rows past their retention are deleted
+     * @param leaseSize requests a replica takes from a shared bucket in one round trip and then
+     *                  admits locally; near the limit it takes only what a request needs
+     * @param leaseTtl how long leased requests stay usable; unused ones are given up, so a replica
+     *                 never holds on to allowance other replicas could use
+     */
+    public record Cluster(
+            @DefaultValue("local") Backend backend,
+            @DefaultValue("rate_limit_bucket") String table,
+            @DefaultValue("true") boolean initializeSchema,
+            @DefaultValue("1h") Duration retention,
+            @DefaultValue("5m") Duration cleanupInterval,
+            @DefaultValue("10") int leaseSize,
+            @DefaultValue("1s") Duration leaseTtl
+    ) {
+
+        public Cluster {
+            if (leaseSize < 1 || leaseTtl == null || leaseTtl.isNegative()) {
+                throw new IllegalArgumentException("Cluster leases need a size of at least 1 and a TTL");
+            }
+        }
+    }
+
+    /**
+     * Cost of requests to the paths matching a pattern.
+     *
+     * @param pattern path pattern, e.g. /api/spotify/top/**
+     * @param cost requests charged; more than a limit's capacity is charged as its capacity
+     */
+    public record Cost(String pattern, int cost) {
+
+        public Cost {
+            if (pattern == null || pattern.isBlank() || cost < 0) {
+                throw new IllegalArgumentException("Cost needs a path pattern and a cost of at least 0");
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package org.adarssh.config;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.adarssh.config.RequestCaptureLog.Body;
+import org.adarssh.config.RequestCaptureLog.Capture;
+import org.adarssh.config.RequestCaptureLog.Header;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Captures sampled, slow and failed requests with the start of their bodies, cheaply enough to
+ * stay on in production.
+ * <p>
+ * Bodies are not buffered: reads and writes pass straight through to the real request and
+ * response, and only their first spotify.capture.max-body-bytes are copied aside. Whether a
+ * request is kept is decided after it completes:
+ * - A spotify.capture.sample-rate fraction of all requests
+ * - Every request taking at least spotify.capture.slow-threshold
+ * - Every response with status spotify.capture.error-status or above, and every request that throws
+ * <p>
+ * A kept request's headers are copied, with sensitive ones redacted, and handed to
+ * {@link RequestCaptureLog}, which formats and writes it on its own thread. The request thread
+ * never formats or logs anything.
+ */
+@Component
+@Order(2) // After EdgeFilter, so the correlation ID is set and rejected requests are not captured
+public class RequestCaptureFilter implements Filter {
+
+    private static final String REDACTED = "[REDACTED]";
+
+    private final CaptureProperties properties;
+    private final RequestCaptureLog captureLog;
+    private final Set<String> redactedHeaders;
+
+    /**
+     * Constructs a new RequestCaptureFilter.
+     *
+     * @param properties the capture configuration properties
+     * @param captureLog writes the captures
+     */
+    public RequestCaptureFilter(CaptureProperties properties, RequestCaptureLog captureLog) {
+        this.properties = properties;
+        this.captureLog = captureLog;
+        this.redactedHeaders = properties.redactedHeaders().stream()
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        if (!properties.enabled()
+                || !(request instanceof HttpServletRequest httpRequest)
+                || !(response instanceof HttpServletResponse httpResponse)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        boolean sampled = ThreadLocalRandom.current().nextDouble() < properties.sampleRate();
+        var capturingRequest = new CapturingRequest(httpRequest, properties.maxBodyBytes());
+        var capturingResponse = new CapturingResponse(httpResponse, properties.maxBodyBytes());
+        Throwable failure = null;
+        long start = System.nanoTime();
+
+        try {
+            chain.doFilter(capturingRequest, capturingResponse);
+        } catch (IOException | ServletException | RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            capturingResponse.flushWriter();
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            String reason = reason(sampled, httpResponse.getStatus(), durationMillis, failure);
+            if (reason != null) {
+                captureLog.offer(new Capture(
+                        reason,
+                        CorrelationId.current(),
+                        httpRequest.getMethod(),
+                        httpRequest.getRequestURI(),
+                        httpRequest.getQueryString(),
+                        httpRequest.getProtocol(),
+                        httpResponse.getStatus(),
+                        durationMillis,
+                        failure != null ? failure.toString() : null,
+                        requestHeaders(httpRequest),
+                        capturingRequest.body.toBody(),
+                        responseHeaders(httpResponse),
+                        capturingResponse.body.toBody()));
+            }
+        }
+    }
+
+    private String reason(boolean sampled, int status, long durationMillis, Throwable failure) {
+        if (failure != null || status >= properties.errorStatus()) {
+            return "error";
+        }
+        if (durationMillis >= properties.slowThreshold().toMillis()) {
+            return "slow";
+        }
+        return sampled ? "sampled" : null;
+    }
+
+    private List<Header> requestHeaders(HttpServletRequest request) {
+        List<Header> headers = new ArrayList<>();
+        Enumeration<String> names = request.getHeaderNames();
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            Enumeration<String> values = request.getHeaders(name);
+            while (values.hasMoreElements()) {
+                headers.add(header(name, values.nextElement()));
+            }
+        }
+        return headers;
+    }
+
+    private List<Header> responseHeaders(HttpServletResponse response) {
+        List<Header> headers = new ArrayList<>();
+        for (String name : response.getHeaderNames()) {
+            for (String value : response.getHeaders(name)) {
+                headers.add(header(name, value));
+            }
+        }
+        return headers;
+    }
+
+    private Header header(String name, String value) {
+        return new Header(name, redactedHeaders.contains(name.toLowerCase(Locale.ROOT)) ? REDACTED : value);
+    }
+
+    /**
+     * Keeps the first bytes of a body and counts the rest.
+     */
+    private static final class BodyCapture {
+
+        private final int limit;
+        private byte[] bytes;
+        private int length;
+        private long total;
+
+        BodyCapture(int limit) {
+            this.limit = limit;
+        }
+
+        void write(int b) {
+            if (length < limit) {
+                ensureCapacity(length + 1);
+                bytes[length++] = (byte) b;
+            }
+            total++;
+        }
+
+        void write(byte[] source, int offset, int count) {
+            int kept = Math.min(count, limit - length);
+            if (kept > 0) {
+                ensureCapacity(length + kept);
+                System.arraycopy(source, offset, bytes, length, kept);
+                length += kept;
+            }
+            total += count;
+        }
+
+        Body toBody() {
+            return total == 0 ? Body.EMPTY : new Body(bytes != null ? bytes : new byte[0], length, total);
+        }
+
+        private void ensureCapacity(int needed) {
+            // Most bodies are small; grow towards the limit only as they arrive
+            if (bytes == null) {
+                bytes = new byte[Math.min(limit, Math.max(256, needed))];
+            } else if (needed > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.min(limit, Math.max(bytes.length * 2, needed)));
+            }
+        }
+    }
+
+    private static final class CapturingRequest extends HttpServletRequestWrapper {
+
+        private final BodyCapture body;
+        private ServletInputStream inputStream;
+        private BufferedReader reader;
+
+        CapturingRequest(HttpServletRequest request, int limit) {
+            super(request);
+            this.body = new BodyCapture(limit);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new CapturingInputStream(super.getInputStream(), body);
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                String encoding = getCharacterEncoding();
+                reader = new BufferedReader(new InputStreamReader(getInputStream(),
+                        encoding != null ? encoding : "ISO-8859-1"));
+            }
+            return reader;
+        }
+    }
+
+    private static final class CapturingInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+        private final BodyCapture body;
+
+        CapturingInputStream(ServletInputStream delegate, BodyCapture body) {
+            this.delegate = delegate;
+            this.body = body;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b != -1) {
+                body.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = delegate.read(buffer, offset, length);
+            if (count > 0) {
+                body.write(buffer, offset, count);
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+    }
+
+    private static final class CapturingResponse extends HttpServletResponseWrapper {
+
+        private final BodyCapture body;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        CapturingResponse(HttpServletResponse response, int limit) {
+            super(response);
+            this.body = new BodyCapture(limit);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new CapturingOutputStream(super.getOutputStream(), body);
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            super.flushBuffer();
+        }
+
+        /**
+         * Push characters still held by the writer's encoder to the real response.
+         */
+        void flushWriter() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+    }
+
+    private static final class CapturingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+        private final BodyCapture body;
+
+        CapturingOutputStream(ServletOutputStream delegate, BodyCapture body) {
+            this.delegate = delegate;
+            this.body = body;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            body.write(b);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            delegate.write(buffer, offset, length);
+            body.write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package org.adarssh.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes captured requests and responses to the log on a background thread.
+ * <p>
+ * {@link RequestCaptureFilter} hands each capture over through a lock-free ring buffer, so a
+ * request thread never formats, logs or waits: when the buffer is full the capture is dropped.
+ * Every spotify.capture.drain-interval the buffer is drained, and each capture is logged at INFO
+ * with the correlation ID of the request it belongs to.
+ * <p>
+ * Metrics:
+ * - spotify.capture{reason=sampled|slow|error, result=queued|dropped}: captures taken
+ * - spotify.capture.backlog: captures waiting to be written
+ */
+@Component
+@EnableConfigurationProperties(CaptureProperties.class)
+public class RequestCaptureLog implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestCaptureLog.class);
+    private static final String METRIC_NAME = "spotify.capture";
+    private static final String NEW_LINE = System.lineSeparator();
+    private static final List<String> REASONS = List.of("sampled", "slow", "error");
+
+    private final CaptureProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final MpscRingBuffer<Capture> buffer;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a new RequestCaptureLog.
+     *
+     * @param properties the capture configuration properties
+     * @param meterRegistry the registry the capture metrics are published to
+     */
+    public RequestCaptureLog(CaptureProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.buffer = new MpscRingBuffer<>(properties.bufferSize());
+        Gauge.builder(METRIC_NAME + ".backlog", buffer, MpscRingBuffer::size)
+                .description("Captured requests waiting to be written")
+                .register(meterRegistry);
+        REASONS.forEach(this::counters);
+    }
+
+    /**
+     * Queue a capture for writing, without blocking.
+     *
+     * @param capture the capture
+     * @return false if the buffer was full and the capture was dropped
+     */
+    public boolean offer(Capture capture) {
+        boolean queued = buffer.offer(capture);
+        Counters reasonCounters = counters(capture.reason());
+        (queued ? reasonCounters.queued() : reasonCounters.dropped()).increment();
+        return queued;
+    }
+
+    private Counters counters(String reason) {
+        return counters.computeIfAbsent(reason, key -> new Counters(
+                counter(key, "queued"), counter(key, "dropped")));
+    }
+
+    private Counter counter(String reason, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("Captured requests by reason and whether they were queued for writing")
+                .tag("reason", reason)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!properties.enabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("request-capture").daemon().factory());
+        long interval = properties.drainInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::drain, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Capturing {}% of requests, and all slower than {} or with status {} and above",
+                properties.sampleRate() * 100, properties.slowThreshold(), properties.errorStatus());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler = null;
+            // Write what was captured before shutdown
+            drain();
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * Write all waiting captures to the log.
+     *
+     * @return the number of captures written
+     */
+    int drain() {
+        int written = 0;
+        Capture capture;
+        while ((capture = buffer.poll()) != null) {
+            if (capture.correlationId() != null) {
+                MDC.put(CorrelationId.MDC_KEY, capture.correlationId());
+            }
+            try {
+                log.info(format(capture));
+            } catch (RuntimeException e) {
+                log.warn("Could not write request capture: {}", e.getMessage());
+            } finally {
+                MDC.remove(CorrelationId.MDC_KEY);
+            }
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Format a capture as a multi-line log message.
+     *
+     * @param capture the capture
+     * @return the message
+     */
+    static String format(Capture capture) {
+        StringBuilder sb = new StringBuilder(256)
+                .append("HTTP capture (").append(capture.reason()).append("): ")
+                .append(capture.method()).append(' ').append(capture.uri());
+        if (capture.query() != null) {
+            sb.append('?').append(capture.query());
+        }
+        sb.append(' ').append(capture.protocol())
+                .append(" -> ").append(capture.status())
+                .append(" in ").append(capture.durationMillis()).append(" ms");
+        if (capture.failure() != null) {
+            sb.append(" (").append(capture.failure()).append(')');
+        }
+        appendHeaders(sb, "Request headers:", capture.requestHeaders());
+        appendBody(sb, "Request body", capture.requestBody());
+        appendHeaders(sb, "Response headers:", capture.responseHeaders());
+        appendBody(sb, "Response body", capture.responseBody());
+        return sb.toString();
+    }
+
+    private static void appendHeaders(StringBuilder sb, String title, List<Header> headers) {
+        if (headers.isEmpty()) {
+            return;
+        }
+        sb.append(NEW_LINE).append(title);
+        for (Header header : headers) {
+            sb.append(NEW_LINE).append("  ").append(header.name()).append(": ").append(header.value());
+        }
+    }
+
+    private static void appendBody(StringBuilder sb, String title, Body body) {
+        if (body.total() == 0) {
+            return;
+        }
+        sb.append(NEW_LINE).append(title).append(" (");
+        if (body.truncated()) {
+            sb.append(body.length()).append(" of ");
+        }
+        sb.append(body.total()).append(" bytes):")
+                .append(NEW_LINE).append(new String(body.bytes(), 0, body.length(), StandardCharsets.UTF_8));
+        if (body.truncated()) {
+            sb.append("... [TRUNCATED]");
+        }
+    }
+
+    /**
+     * A captured request and its response.
+     *
+     * @param reason why it was captured: sampled, slow or error
+     * @param correlationId the request's correlation ID, or null
+     * @param method the HTTP method
+     * @param uri the request URI
+     * @param query the query string, or null
+     * @param protocol the protocol, e.g. HTTP/1.1
+     * @param status the response status
+     * @param durationMillis time spent in the filter chain
+     * @param failure the exception the chain threw, or null
+     * @param requestHeaders request headers, sensitive ones already redacted
+     * @param requestBody the first bytes of the request body that were read
+     * @param responseHeaders response headers, sensitive ones already redacted
+     * @param responseBody the first bytes of the response body
+     */
+    public record Capture(
+            String reason,
+            String correlationId,
+            String method,
+            String uri,
+            String query,
+            String protocol,
+            int status,
+            long durationMillis,
+            String failure,
+            List<Header> requestHeaders,
+            Body requestBody,
+            List<Header> responseHeaders,
+            Body responseBody
+    ) {
+    }
+
+    /**
+     * A header value.
+     *
+     * @param name the header name
+     * @param value the value, or [REDACTED]
+     */
+    public record Header(String name, String value) {
+    }
+
+    /**
+     * The kept part of a body.
+     *
+     * @param bytes buffer holding the kept bytes
+     * @param length number of bytes kept
+     * @param total number of bytes the body had
+     */
+    public record Body(byte[] bytes, int length, long total) {
+
+        static final Body EMPTY = new Body(new byte[0], 0, 0);
+
+        boolean truncated() {
+            return total > length;
+        }
+    }
+
+    /**
+     * The queued and dropped counters of one capture reason.
+     */
+    private record Counters(Counter queued, Counter dropped) { }
+}
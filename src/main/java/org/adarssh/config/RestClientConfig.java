@@ -1,28 +1,93 @@
 package org.adarssh.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
+import java.net.http.HttpClient;
+
 /**
- * Configuration for RestClient beans
+ * Configuration for RestClient beans.
+ * <p>
+ * Both RestClients share one JDK HttpClient so TLS connections to Spotify are pooled and
+ * reused. With HTTP/2 all requests to a host are multiplexed over a single connection;
+ * HTTP/1.1 falls back to the JDK keep-alive pool, which is sized by the JVM-wide
+ * jdk.httpclient.connectionPoolSize and jdk.httpclient.keepalive.timeout flags (set in the
+ * Dockerfile) because the JDK reads them once, before any bean could set them.
+ * Every call is bounded by the configured connect and read timeouts, so a stalled
+ * Spotify socket can no longer hold a request thread forever. Web API calls are paced by
+ * one {@link UpstreamRateGovernor} for the whole instance. Every call carries the current
+ * request's X-Correlation-ID, so a slow upstream call can be matched to its request.
  */
 @Configuration
 @EnableConfigurationProperties(SpotifyProperties.class)
 public class RestClientConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(RestClientConfig.class);
+
+    @Bean
+    public HttpClient spotifyHttpClient(SpotifyProperties properties) {
+        var http = properties.http();
+        log.info("Upstream HTTP client: version={}, connectTimeout={}, readTimeout={}",
+                http.version(), http.connectTimeout(), http.readTimeout());
+
+        return HttpClient.newBuilder()
+                .version(http.version())
+                .connectTimeout(http.connectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
     @Bean
-    public RestClient spotifyRestClient(SpotifyProperties properties) {
-        return RestClient.builder()
+    public UpstreamRateGovernor spotifyRateGovernor(SpotifyProperties properties, MeterRegistry meterRegistry) {
+        return new UpstreamRateGovernor(properties.http().governor(), meterRegistry);
+    }
+
+    @Bean
+    public RestClient spotifyRestClient(
+            RestClient.Builder builder,
+            HttpClient spotifyHttpClient,
+            UpstreamRateGovernor spotifyRateGovernor,
+            SpotifyProperties properties,
+            MeterRegistry meterRegistry) {
+        // First, so calls held back by the governor do not count as in flight
+        builder.requestInterceptor(spotifyRateGovernor);
+        return configure(builder, spotifyHttpClient, properties, meterRegistry, "api")
                 .baseUrl(properties.baseUrl())
                 .build();
     }
 
     @Bean
-    public RestClient spotifyAuthRestClient(SpotifyProperties properties) {
-        return RestClient.builder()
+    public RestClient spotifyAuthRestClient(
+            RestClient.Builder builder,
+            HttpClient spotifyHttpClient,
+            SpotifyProperties properties,
+            MeterRegistry meterRegistry) {
+        return configure(builder, spotifyHttpClient, properties, meterRegistry, "auth")
                 .baseUrl(properties.authUrl())
                 .build();
     }
+
+    private static RestClient.Builder configure(
+            RestClient.Builder builder,
+            HttpClient httpClient,
+            SpotifyProperties properties,
+            MeterRegistry meterRegistry,
+            String client) {
+        var requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(properties.http().readTimeout());
+
+        builder.requestFactory(requestFactory)
+                .requestInterceptor(new InFlightRequestsInterceptor(meterRegistry, client))
+                .requestInterceptor(new CorrelationIdInterceptor());
+        if (properties.http().compression()) {
+            builder.requestInterceptor(new GzipDecompressingInterceptor());
+        }
+        return builder;
+    }
 }
@@ -1,9 +1,15 @@
 package org.adarssh.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.csrf.CsrfTokenRequestAttributeHandler;
@@ -11,18 +17,31 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Security configuration for OAuth2 login with Spotify
+ * <p>
+ * Signed-in users whose Spotify id is listed in spotify.security.admins get the ADMIN role,
+ * which is required to reload the rate-limit policy (POST /actuator/ratelimits); the other
+ * actuator endpoints stay open.
  */
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    private static final String ADMIN_ROLE = "ADMIN";
+    // The Spotify user attribute configured as user-name-attribute
+    private static final String USER_ID_ATTRIBUTE = "id";
+
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(
+            HttpSecurity http,
+            @Value("${spotify.security.admins:}") Set<String> admins) throws Exception {
         // CSRF token handler for SPA
         CsrfTokenRequestAttributeHandler requestHandler = new CsrfTokenRequestAttributeHandler();
         requestHandler.setCsrfRequestAttributeName("_csrf");
@@ -34,6 +53,7 @@ public class SecurityConfig {
                 .csrfTokenRequestHandler(requestHandler)
             )
             .authorizeHttpRequests(auth -> auth
+                .requestMatchers(HttpMethod.POST, "/actuator/ratelimits").hasRole(ADMIN_ROLE)
                 .requestMatchers(
                     "/",
                     "/login**",
@@ -49,6 +69,7 @@ public class SecurityConfig {
                 .anyRequest().authenticated()
             )
             .oauth2Login(oauth2 -> oauth2
+                .userInfoEndpoint(userInfo -> userInfo.userAuthoritiesMapper(adminAuthoritiesMapper(admins)))
                 .defaultSuccessUrl("http://127.0.0.1:3000", true)
             )
             .logout(logout -> logout
@@ -59,6 +80,24 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Add the ADMIN role to the authorities of a user whose Spotify id is one of the admins.
+     *
+     * @param admins Spotify ids of the administrators
+     * @return the authorities mapper
+     */
+    static GrantedAuthoritiesMapper adminAuthoritiesMapper(Set<String> admins) {
+        return authorities -> {
+            Collection<GrantedAuthority> mapped = new ArrayList<>(authorities);
+            boolean admin = authorities.stream().anyMatch(authority -> authority instanceof OAuth2UserAuthority user
+                    && admins.contains(String.valueOf(user.getAttributes().get(USER_ID_ATTRIBUTE))));
+            if (admin) {
+                mapped.add(new SimpleGrantedAuthority("ROLE_" + ADMIN_ROLE));
+            }
+            return mapped;
+        };
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
@@ -1,9 +1,15 @@
 package org.adarssh.config;
 
 import jakarta.validation.constraints.NotBlank;
+import org.adarssh.dto.TimeRange;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.annotation.Validated;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 /**
  * Configuration properties for Spotify API
  */
@@ -14,5 +20,275 @@ public record SpotifyProperties(
         @NotBlank String authUrl,
         @NotBlank String clientId,
         @NotBlank String clientSecret,
-        Integer defaultLimit
-) { }
+        Integer defaultLimit,
+        @DefaultValue Wrapped wrapped,
+        @DefaultValue Http http,
+        @DefaultValue Cache cache,
+        @DefaultValue AppToken appToken,
+        @DefaultValue UserToken userToken,
+        @DefaultValue Catalog catalog,
+        @DefaultValue Hedging hedging,
+        @DefaultValue Concurrency concurrency
+) {
+
+    /**
+     * Settings for assembling the /wrapped summary.
+     *
+     * @param concurrent fetch top tracks and top artists in parallel instead of one after another
+     */
+    public record Wrapped(
+            @DefaultValue("true") boolean concurrent
+    ) { }
+
+    /**
+     * Settings for the upstream HTTP client shared by the API and accounts RestClients.
+     *
+     * @param version preferred HTTP version; HTTP_2 multiplexes requests over one TLS connection
+     * @param connectTimeout maximum time to establish a connection
+     * @param readTimeout maximum time to wait for a response once the request is sent
+     * @param compression request gzip-compressed responses from Spotify
+     * @param governor app-wide rate governor for calls to the Web API
+     */
+    public record Http(
+            @DefaultValue("HTTP_2") HttpClient.Version version,
+            @DefaultValue("2s") Duration connectTimeout,
+            @DefaultValue("5s") Duration readTimeout,
+            @DefaultValue("true") boolean compression,
+            @DefaultValue Governor governor
+    ) { }
+
+    /**
+     * Settings for the rate governor shared by every call to the Spotify Web API.
+     * <p>
+     * All users share one client id, so Spotify's rate limit applies to the instance as a whole.
+     *
+     * @param enabled gate calls through the governor
+     * @param requestsPerSecond highest outbound rate; the governor starts here and recovers to it
+     * @param minRequestsPerSecond lowest rate the governor backs off to after repeated 429s
+     * @param maxWait longest a call queues for a permit or a Retry-After pause before it fails with 429
+     * @param defaultRetryAfter pause applied when a 429 carries no usable Retry-After header
+     * @param jitter upper bound of the random delay added to each wait, so queued calls do not
+     *               all resume at the same instant
+     * @param recoverAfter time without a 429 after which the rate is raised one step
+     */
+    public record Governor(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("20") int requestsPerSecond,
+            @DefaultValue("2") int minRequestsPerSecond,
+            @DefaultValue("2s") Duration maxWait,
+            @DefaultValue("5s") Duration defaultRetryAfter,
+            @DefaultValue("250ms") Duration jitter,
+            @DefaultValue("30s") Duration recoverAfter
+    ) { }
+
+    /**
+     * Settings for the cached client-credentials (app) token.
+     *
+     * @param expirySkew how long before its stated expiry a token is no longer used, to absorb
+     *                   clock drift and request latency
+     * @param refreshAhead how long before that point the token is renewed in the background
+     *                     while callers keep using the current one
+     */
+    public record AppToken(
+            @DefaultValue("30s") Duration expirySkew,
+            @DefaultValue("5m") Duration refreshAhead
+    ) { }
+
+    /**
+     * Settings for signed-in users' access tokens.
+     *
+     * @param expirySkew how long before its stated expiry a token is no longer used
+     * @param refreshAhead how long before expiry a token is renewed with its refresh token; while
+     *                     it is still usable the renewal runs in the background
+     * @param maximumSize users whose tokens are kept in the in-memory lookup cache
+     * @param rejectionThreshold consecutive 401/403 answers after which a user's calls are short-circuited
+     * @param rejectionCooldown how long a user's calls are short-circuited
+     */
+    public record UserToken(
+            @DefaultValue("30s") Duration expirySkew,
+            @DefaultValue("5m") Duration refreshAhead,
+            @DefaultValue("10000") long maximumSize,
+            @DefaultValue("3") int rejectionThreshold,
+            @DefaultValue("1m") Duration rejectionCooldown
+    ) {
+
+        /**
+         * Get how long before its stated expiry a token is renewed. The token service and the
+         * refresh_token provider both use this, so a renewal the service asks for is never
+         * answered with the same, not yet renewable token.
+         *
+         * @return expiry-skew plus refresh-ahead
+         */
+        public Duration renewBeforeExpiry() {
+            return expirySkew.plus(refreshAhead);
+        }
+    }
+
+    /**
+     * Settings for hedging the top-items GETs against slow Spotify responses.
+     *
+     * @param enabled send a second, identical request when the first is slower than the hedge delay
+     * @param percentile observed latency percentile (0-1) used as the hedge delay
+     * @param initialDelay hedge delay used until {@code minSamples} latencies have been observed
+     * @param minDelay lower bound of the hedge delay
+     * @param maxDelay upper bound of the hedge delay
+     * @param minSamples latencies to observe before the percentile is trusted
+     * @param budgetPercent hedges allowed as a percentage of calls; hedges beyond it are skipped
+     */
+    public record Hedging(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("0.95") double percentile,
+            @DefaultValue("500ms") Duration initialDelay,
+            @DefaultValue("50ms") Duration minDelay,
+            @DefaultValue("2s") Duration maxDelay,
+            @DefaultValue("20") int minSamples,
+            @DefaultValue("10") int budgetPercent
+    ) { }
+
+    /**
+     * Settings for the adaptive limit on requests waiting for Spotify at the same time.
+     *
+     * @param enabled limit concurrent cache misses; cache hits are never limited
+     * @param initialLimit limit to start from
+     * @param minLimit lowest limit slow responses can shrink it to
+     * @param maxLimit highest limit fast responses can grow it to
+     * @param latencyThreshold a miss taking longer than this shrinks the limit; keep it below the
+     *                         circuit breaker's slow-call-duration-threshold
+     * @param backoffRatio factor the limit is multiplied by after a slow miss
+     * @param maxWait how long a miss waits for a free slot before it is shed
+     */
+    public record Concurrency(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("20") int initialLimit,
+            @DefaultValue("4") int minLimit,
+            @DefaultValue("200") int maxLimit,
+            @DefaultValue("1s") Duration latencyThreshold,
+            @DefaultValue("0.9") double backoffRatio,
+            @DefaultValue("50ms") Duration maxWait
+    ) { }
+
+    /**
+     * Settings for the shared, cross-user catalog of artists, albums and tracks.
+     *
+     * @param batchWindow how long id lookups from concurrent requests are collected before they are
+     *                    sent as one multi-id call; a full batch is sent at once
+     * @param ttl how long a catalog entity is kept; bounds how stale popularity and genres can get
+     * @param maximumSize maximum number of entities kept per type
+     * @param timeout how long a lookup waits for its batch before it fails
+     */
+    public record Catalog(
+            @DefaultValue("10ms") Duration batchWindow,
+            @DefaultValue("6h") Duration ttl,
+            @DefaultValue("20000") long maximumSize,
+            @DefaultValue("5s") Duration timeout
+    ) { }
+
+    /**
+     * Settings for the top-items caches (topTracks, topArtists and their derived views).
+     *
+     * @param maximumSize maximum number of entries per cache
+     * @param shortTermTtl lifetime of short_term entries; short_term changes fastest
+     * @param mediumTermTtl lifetime of medium_term entries
+     * @param longTermTtl lifetime of long_term entries
+     * @param refreshAhead background refresh of entries that are still being read
+     * @param stale serving of last known good pages while Spotify is failing or slow
+     * @param disk second cache tier on local disk that survives restarts
+     * @param compact storage of entries as compact byte arrays, bounded by bytes instead of entry count
+     */
+    public record Cache(
+            @DefaultValue("1000") long maximumSize,
+            @DefaultValue("5m") Duration shortTermTtl,
+            @DefaultValue("15m") Duration mediumTermTtl,
+            @DefaultValue("1h") Duration longTermTtl,
+            @DefaultValue RefreshAhead refreshAhead,
+            @DefaultValue Stale stale,
+            @DefaultValue Disk disk,
+            @DefaultValue Compact compact
+    ) {
+
+        /**
+         * Get the entry lifetime for a time range.
+         *
+         * @param timeRange the time range of the cached page
+         * @return how long the page stays cached after it was loaded
+         */
+        public Duration ttl(TimeRange timeRange) {
+            return switch (timeRange) {
+                case SHORT_TERM -> shortTermTtl;
+                case MEDIUM_TERM -> mediumTermTtl;
+                case LONG_TERM -> longTermTtl;
+            };
+        }
+    }
+
+    /**
+     * Settings for refresh-ahead of the topTracks and topArtists caches.
+     *
+     * @param enabled reload entries in the background once they are older than {@code after}
+     * @param after entry age after which the next read triggers a background reload;
+     *              keep it below the shortest TTL
+     * @param threads size of the background refresh pool
+     * @param queueCapacity refreshes that may wait for a free thread before new ones are dropped
+     * @param budgetPerMinute Spotify calls the refresh pool may make per minute
+     */
+    public record RefreshAhead(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("4m") Duration after,
+            @DefaultValue("2") int threads,
+            @DefaultValue("100") int queueCapacity,
+            @DefaultValue("120") int budgetPerMinute
+    ) { }
+
+    /**
+     * Settings for the last-known-good tier behind topTracks and topArtists.
+     *
+     * @param enabled keep pages past their TTL and serve them, marked stale, when Spotify fails or is slow
+     * @param grace how long a page is kept after its TTL has passed
+     * @param serveAfter how long a request waits for Spotify before it is answered with the stale page;
+     *                   the upstream call carries on in the background and refreshes the cache
+     * @param degradedTtl how long a degraded answer (a stale or empty page) is reused before Spotify is
+     *                    asked again; kept apart from the regular cache so it never replaces a good entry
+     */
+    public record Stale(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("24h") Duration grace,
+            @DefaultValue("1s") Duration serveAfter,
+            @DefaultValue("30s") Duration degradedTtl
+    ) { }
+
+    /**
+     * Settings for the disk tier behind topTracks and topArtists.
+     *
+     * @param enabled write pages to append-only segment files and read Caffeine misses from them
+     * @param directory where the segment files are kept; must survive restarts (e.g. a volume)
+     * @param segmentSize size after which a new segment file is started
+     * @param maxSegments segments kept on disk; the oldest is deleted when a new one is started
+     * @param writeQueueCapacity pages that may wait for the background writer; more are kept in
+     *                           memory only
+     */
+    public record Disk(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("data/cache") String directory,
+            @DefaultValue("16MB") DataSize segmentSize,
+            @DefaultValue("8") int maxSegments,
+            @DefaultValue("1000") int writeQueueCapacity
+    ) { }
+
+    /**
+     * Settings for compact storage of the top-items caches.
+     *
+     * @param enabled keep entries as encoded, optionally compressed byte arrays and decode them on hit
+     * @param maximumWeight byte budget of each top-items cache; replaces maximum-size
+     * @param compress deflate encoded entries larger than a few hundred bytes
+     * @param shrinkAtHeapUsage old-generation usage after GC (0-1) above which the budgets are halved,
+     *                          down to an eighth of maximum-weight; they grow back once usage drops
+     * @param checkInterval how often heap usage is checked
+     */
+    public record Compact(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("32MB") DataSize maximumWeight,
+            @DefaultValue("true") boolean compress,
+            @DefaultValue("0.85") double shrinkAtHeapUsage,
+            @DefaultValue("10s") Duration checkInterval
+    ) { }
+}
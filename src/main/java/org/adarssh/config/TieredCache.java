@@ -0,0 +1,110 @@
+package org.adarssh.config;
+
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.service.DiskCacheStore;
+import org.adarssh.service.TopItemsCacheKey;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Caffeine cache backed by the {@link DiskCacheStore}.
+ * <p>
+ * Reads try Caffeine first; a miss falls through to disk and a page found there is put back
+ * into Caffeine for its remaining lifetime. Writes, evictions and clears go to both tiers; the
+ * disk tier only queues them for its background writer, so a put costs no disk I/O.
+ */
+final class TieredCache implements Cache {
+
+    private final Cache memory;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache;
+    private final DiskCacheStore disk;
+
+    TieredCache(Cache memory, com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache,
+                DiskCacheStore disk) {
+        this.memory = memory;
+        this.nativeCache = nativeCache;
+        this.disk = disk;
+    }
+
+    @Override
+    public String getName() {
+        return memory.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return nativeCache;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper cached = memory.get(key);
+        if (cached != null || !(key instanceof TopItemsCacheKey topItemsKey)) {
+            return cached;
+        }
+        DiskCacheStore.StoredPage stored = disk.get(getName(), topItemsKey);
+        if (stored == null) {
+            return null;
+        }
+        // Put through the memory tier so it stores the page in its own form, then restore
+        // the page's remaining lifetime
+        memory.put(key, stored.page());
+        nativeCache.policy().expireVariably().ifPresent(
+                expiry -> expiry.setExpiresAfter(key, stored.timeToLive()));
+        return new SimpleValueWrapper(stored.page());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        memory.put(key, value);
+        if (key instanceof TopItemsCacheKey topItemsKey && value instanceof UserTopItemsResponse<?> page
+                && page.stale() == null) {
+            disk.put(getName(), topItemsKey, page);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        memory.evict(key);
+        if (key instanceof TopItemsCacheKey topItemsKey) {
+            disk.evict(getName(), topItemsKey);
+        }
+    }
+
+    @Override
+    public void clear() {
+        memory.clear();
+        disk.clear(getName());
+    }
+}
@@ -0,0 +1,254 @@
+package org.adarssh.config;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.Refill;
+import io.github.bucket4j.TokensInheritanceStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.adarssh.exception.SpotifyApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RestClient interceptor that paces every call to the Spotify Web API through one
+ * app-wide budget and honours Spotify's 429 Retry-After.
+ * <p>
+ * All users share one client id, so Spotify rate-limits the instance, not the user. Behavior:
+ * - Each call takes a permit from a token bucket refilled at the current rate; calls queue for
+ *   a permit for up to spotify.api.http.governor.max-wait
+ * - A 429 pauses all calls until its Retry-After has passed and halves the rate, down to
+ *   min-requests-per-second; after recover-after without a 429 the rate is raised one step
+ * - Calls that arrive during a pause wait it out with a random jitter, so they do not all
+ *   resume at once; the call that got the 429 is sent once more the same way. The jitter never
+ *   stretches the wait beyond max-wait, and after the pause a call again queues for a permit
+ *   for up to max-wait
+ * - A pause longer than max-wait is not waited out: queued and new calls fail at once with a
+ *   {@link SpotifyApiException} (429) carrying the remaining pause, and a 429 response is
+ *   handed back to the caller unchanged
+ * <p>
+ * Metrics:
+ * - spotify.http.client.rate.limit: current permitted requests per second
+ * - spotify.http.client.throttled{source=upstream|governor}: 429s received from Spotify and
+ *   calls failed by the governor without being sent
+ */
+public class UpstreamRateGovernor implements ClientHttpRequestInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamRateGovernor.class);
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int MAX_ATTEMPTS = 2;
+    private static final int RECOVERY_STEPS = 10;
+    // Concurrent 429s from the same burst count as one signal
+    private static final long BACK_OFF_INTERVAL_MILLIS = 1000;
+
+    private final SpotifyProperties.Governor properties;
+    private final Bucket bucket;
+    private final AtomicInteger rate;
+    private final AtomicLong pausedUntil = new AtomicLong();
+    private final ReentrantLock adjustLock = new ReentrantLock();
+    private final Counter upstreamThrottled;
+    private final Counter governorThrottled;
+    private volatile long lastThrottledAt;
+    private volatile long lastAdjustedAt;
+
+    /**
+     * Constructs a new UpstreamRateGovernor at the configured maximum rate.
+     *
+     * @param properties the governor settings
+     * @param meterRegistry the registry the governor metrics are published to
+     */
+    public UpstreamRateGovernor(SpotifyProperties.Governor properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.rate = new AtomicInteger(properties.requestsPerSecond());
+        this.bucket = Bucket.builder()
+                .addLimit(bandwidth(properties.requestsPerSecond()))
+                .build();
+        Gauge.builder("spotify.http.client.rate.limit", rate, AtomicInteger::get)
+                .description("Requests per second the rate governor currently permits to Spotify")
+                .register(meterRegistry);
+        this.upstreamThrottled = throttledCounter(meterRegistry, "upstream");
+        this.governorThrottled = throttledCounter(meterRegistry, "governor");
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        if (!properties.enabled()) {
+            return execution.execute(request, body);
+        }
+        for (int attempt = 1; ; attempt++) {
+            acquire();
+            ClientHttpResponse response = execution.execute(request, body);
+            if (response.getStatusCode().value() != TOO_MANY_REQUESTS) {
+                onSuccess();
+                return response;
+            }
+            Duration retryAfter = onThrottled(response.getHeaders());
+            log.warn("Spotify returned 429 for {} {}; pausing upstream calls for {}",
+                    request.getMethod(), request.getURI().getPath(), retryAfter);
+            if (attempt >= MAX_ATTEMPTS || retryAfter.compareTo(properties.maxWait()) > 0) {
+                return response;
+            }
+            response.close();
+        }
+    }
+
+    /**
+     * Get the requests per second currently permitted.
+     *
+     * @return the current rate
+     */
+    public int currentRate() {
+        return rate.get();
+    }
+
+    /**
+     * Parse a Retry-After header value, given either as delay-seconds or as an HTTP date.
+     *
+     * @param value the header value, may be null
+     * @return the delay, or null if the value is missing or malformed
+     */
+    public static Duration parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            // Not delay-seconds; try the HTTP-date form
+        }
+        try {
+            Instant at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            Duration delay = Duration.between(Instant.now(), at);
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private void acquire() throws IOException {
+        long maxWait = properties.maxWait().toMillis();
+        long pause = pausedUntil.get() - System.currentTimeMillis();
+        if (pause > 0) {
+            if (pause > maxWait) {
+                throw throttled(Duration.ofMillis(pause));
+            }
+            sleep(Math.min(pause + jitterMillis(), maxWait));
+        }
+
+        try {
+            // The pause has been waited out; queueing for a permit gets its own allowance
+            if (!bucket.asBlocking().tryConsume(1, properties.maxWait())) {
+                throw throttled(Duration.ofSeconds(1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the Spotify rate governor");
+        }
+    }
+
+    private Duration onThrottled(HttpHeaders headers) {
+        upstreamThrottled.increment();
+        Duration retryAfter = parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER));
+        if (retryAfter == null) {
+            retryAfter = properties.defaultRetryAfter();
+        }
+        long now = System.currentTimeMillis();
+        pausedUntil.accumulateAndGet(now + retryAfter.toMillis(), Math::max);
+        lastThrottledAt = now;
+
+        adjustLock.lock();
+        try {
+            if (now - lastAdjustedAt >= BACK_OFF_INTERVAL_MILLIS) {
+                setRate(Math.max(properties.minRequestsPerSecond(), rate.get() / 2), now);
+            }
+        } finally {
+            adjustLock.unlock();
+        }
+        return retryAfter;
+    }
+
+    private void onSuccess() {
+        long recoverAfter = properties.recoverAfter().toMillis();
+        long now = System.currentTimeMillis();
+        if (rate.get() >= properties.requestsPerSecond()
+                || now - lastThrottledAt < recoverAfter
+                || now - lastAdjustedAt < recoverAfter
+                || !adjustLock.tryLock()) {
+            return;
+        }
+        try {
+            if (now - lastAdjustedAt >= recoverAfter) {
+                int step = Math.max(1, properties.requestsPerSecond() / RECOVERY_STEPS);
+                setRate(Math.min(properties.requestsPerSecond(), rate.get() + step), now);
+            }
+        } finally {
+            adjustLock.unlock();
+        }
+    }
+
+    // Called with adjustLock held
+    private void setRate(int requestsPerSecond, long now) {
+        lastAdjustedAt = now;
+        int previous = rate.getAndSet(requestsPerSecond);
+        if (previous == requestsPerSecond) {
+            return;
+        }
+        bucket.replaceConfiguration(
+                BucketConfiguration.builder().addLimit(bandwidth(requestsPerSecond)).build(),
+                TokensInheritanceStrategy.AS_IS);
+        log.info("Spotify rate governor {} the outbound rate from {} to {} requests/s",
+                requestsPerSecond < previous ? "lowered" : "raised", previous, requestsPerSecond);
+    }
+
+    private SpotifyApiException throttled(Duration retryAfter) {
+        governorThrottled.increment();
+        return new SpotifyApiException("Spotify rate limit reached; upstream calls are paused", TOO_MANY_REQUESTS,
+                retryAfter, null);
+    }
+
+    private long jitterMillis() {
+        long bound = properties.jitter().toMillis();
+        return bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting out a Spotify Retry-After pause");
+        }
+    }
+
+    private static Bandwidth bandwidth(int requestsPerSecond) {
+        return Bandwidth.classic(requestsPerSecond, Refill.greedy(requestsPerSecond, Duration.ofSeconds(1)));
+    }
+
+    private static Counter throttledCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("spotify.http.client.throttled")
+                .description("Spotify calls rate-limited upstream or held back by the rate governor")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
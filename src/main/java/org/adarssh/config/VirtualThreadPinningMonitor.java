@@ -0,0 +1,96 @@
+package org.adarssh.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * Pinning audit for the virtual-thread serving mode.
+ * <p>
+ * A virtual thread that blocks while holding a monitor (synchronized block or method) or
+ * while inside a native frame stays mounted on its carrier thread. A few of those on the
+ * request path are enough to exhaust the small carrier pool and bring back the
+ * thread-starvation problem virtual threads are meant to solve.
+ * <p>
+ * Behavior:
+ * - Only active when spring.threads.virtual.enabled=true
+ * - Streams the JFR jdk.VirtualThreadPinned event in-process (threshold: 20ms)
+ * - Records every pinning event in the spotify.virtual.threads.pinned timer
+ * - Logs the top stack frames so the offending monitor can be found
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final Duration PINNED_THRESHOLD = Duration.ofMillis(20);
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Timer pinnedTimer;
+    private RecordingStream recordingStream;
+
+    /**
+     * Constructs a new VirtualThreadPinningMonitor.
+     *
+     * @param meterRegistry the registry the pinning timer is published to
+     */
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry) {
+        this.pinnedTimer = Timer.builder("spotify.virtual.threads.pinned")
+                .description("Time virtual threads spent pinned to their carrier thread")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void start() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(PINNED_THRESHOLD).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+        log.info("Virtual thread pinning audit started (threshold: {} ms)", PINNED_THRESHOLD.toMillis());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+            recordingStream = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return recordingStream != null;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedTimer.record(event.getDuration());
+        log.warn("Virtual thread pinned for {} ms:{}", event.getDuration().toMillis(), formatStackTrace(event));
+    }
+
+    private static String formatStackTrace(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return " (no stack trace)";
+        }
+        String separator = System.lineSeparator() + "    at ";
+        return event.getStackTrace().getFrames().stream()
+                .limit(LOGGED_FRAMES)
+                .map(VirtualThreadPinningMonitor::formatFrame)
+                .collect(Collectors.joining(separator, separator, ""));
+    }
+
+    private static String formatFrame(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber();
+    }
+}
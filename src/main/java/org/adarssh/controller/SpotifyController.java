@@ -12,9 +12,11 @@ import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import org.adarssh.dto.AlbumDto;
 import org.adarssh.dto.ArtistDto;
+import org.adarssh.dto.SpotifyWrappedResponse;
 import org.adarssh.dto.TrackDto;
 import org.adarssh.dto.UserTopItemsResponse;
 import org.adarssh.service.SpotifyService;
+import org.adarssh.service.WrappedService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
@@ -36,9 +38,11 @@ public class SpotifyController {
     private static final Logger log = LoggerFactory.getLogger(SpotifyController.class);
 
     private final SpotifyService spotifyService;
+    private final WrappedService wrappedService;
 
-    public SpotifyController(SpotifyService spotifyService) {
+    public SpotifyController(SpotifyService spotifyService, WrappedService wrappedService) {
         this.spotifyService = spotifyService;
+        this.wrappedService = wrappedService;
     }
 
     /**
@@ -282,23 +286,7 @@ public class SpotifyController {
             String timeRange) {
         log.info("GET /api/spotify/wrapped - limit: {}, timeRange: {}", limit, timeRange);
 
-        var tracks = spotifyService.getTopTracks(limit, timeRange);
-        var artists = spotifyService.getTopArtists(limit, timeRange);
-        var albums = spotifyService.getTopAlbums(limit, timeRange);
-        var genres = spotifyService.getTopGenres(limit, timeRange);
-
-        var wrapped = new SpotifyWrappedResponse(tracks, artists, albums, genres);
+        var wrapped = wrappedService.getWrapped(limit, timeRange);
         return ResponseEntity.ok(wrapped);
     }
-
-    /**
-     * DTO for the complete Spotify Wrapped response.
-     */
-    @Schema(description = "Complete Spotify Wrapped data with all top items")
-    public record SpotifyWrappedResponse(
-            @Schema(description = "User's top tracks") UserTopItemsResponse<TrackDto> topTracks,
-            @Schema(description = "User's top artists") UserTopItemsResponse<ArtistDto> topArtists,
-            @Schema(description = "User's top albums") UserTopItemsResponse<AlbumDto> topAlbums,
-            @Schema(description = "User's top genres") UserTopItemsResponse<String> topGenres
-    ) { }
 }
@@ -0,0 +1,14 @@
+package org.adarssh.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for the complete Spotify Wrapped response.
+ */
+@Schema(description = "Complete Spotify Wrapped data with all top items")
+public record SpotifyWrappedResponse(
+        @Schema(description = "User's top tracks") UserTopItemsResponse<TrackDto> topTracks,
+        @Schema(description = "User's top artists") UserTopItemsResponse<ArtistDto> topArtists,
+        @Schema(description = "User's top albums") UserTopItemsResponse<AlbumDto> topAlbums,
+        @Schema(description = "User's top genres") UserTopItemsResponse<String> topGenres
+) { }
@@ -4,9 +4,35 @@ import java.util.List;
 
 /**
  * Response DTO for user's top items (tracks, artists, etc.)
+ * <p>
+ * {@code stale} is only set when Spotify was failing or slow and the last known good copy,
+ * or an empty page if there was none, was served instead; it is omitted from the JSON of
+ * fresh responses.
  */
 public record UserTopItemsResponse<T>(
         String type,
         Integer count,
-        List<T> items
-) { }
+        List<T> items,
+        Boolean stale
+) {
+
+    /**
+     * Create a fresh response.
+     *
+     * @param type the item type (tracks, artists, albums, genres)
+     * @param count the number of items
+     * @param items the items
+     */
+    public UserTopItemsResponse(String type, Integer count, List<T> items) {
+        this(type, count, items, null);
+    }
+
+    /**
+     * Copy this response with the staleness marker set.
+     *
+     * @return the same items marked as stale
+     */
+    public UserTopItemsResponse<T> asStale() {
+        return new UserTopItemsResponse<>(type, count, items, Boolean.TRUE);
+    }
+}
@@ -1,9 +1,11 @@
 package org.adarssh.exception;
 
+import io.github.resilience4j.bulkhead.BulkheadFullException;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -53,7 +55,33 @@ public class GlobalExceptionHandler {
                 Instant.now()
         );
 
-        return ResponseEntity.status(status).body(errorResponse);
+        var response = ResponseEntity.status(status);
+        if (ex.getRetryAfter() != null) {
+            // Round up so the client never comes back before the upstream pause ends
+            long seconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        }
+        return response.body(errorResponse);
+    }
+
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<ErrorResponse> handleBulkheadFullException(
+            BulkheadFullException ex,
+            WebRequest request) {
+        log.warn("Upstream call shed: {}", ex.getMessage());
+
+        var errorResponse = new ErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Service busy",
+                "Too many concurrent requests to Spotify. Please try again shortly.",
+                request.getDescription(false),
+                Instant.now()
+        );
+
+        // Bulkhead permits free up within an upstream round trip
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorResponse);
     }
 
     @ExceptionHandler(ConstraintViolationException.class)
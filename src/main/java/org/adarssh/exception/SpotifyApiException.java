@@ -1,23 +1,47 @@
 package org.adarssh.exception;
 
+import java.time.Duration;
+
 /**
  * Custom exception for Spotify API errors
  */
 public class SpotifyApiException extends RuntimeException {
 
     private final int statusCode;
+    private final Duration retryAfter;
 
     public SpotifyApiException(String message, int statusCode) {
-        super(message);
-        this.statusCode = statusCode;
+        this(message, statusCode, null, null);
     }
 
     public SpotifyApiException(String message, int statusCode, Throwable cause) {
+        this(message, statusCode, null, cause);
+    }
+
+    /**
+     * Constructs an exception for a rate-limited call.
+     *
+     * @param message the detail message
+     * @param statusCode the status returned to our client
+     * @param retryAfter how long the client should wait before retrying, or null if unknown
+     * @param cause the cause, or null
+     */
+    public SpotifyApiException(String message, int statusCode, Duration retryAfter, Throwable cause) {
         super(message, cause);
         this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
     }
 
     public int getStatusCode() {
         return statusCode;
     }
+
+    /**
+     * Get how long the client should wait before retrying.
+     *
+     * @return the wait, or null if the error does not carry one
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
 }
@@ -0,0 +1,242 @@
+package org.adarssh.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.adarssh.config.SpotifyProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive limit on the requests waiting for Spotify at the same time (AIMD).
+ * <p>
+ * Every upstream call a cache miss makes holds a permit until its answer is ready; cache hits and
+ * misses that share another miss's call (see {@link SingleFlight}) never take one. The limit
+ * follows the latency the calls observe:
+ * - A call slower than spotify.api.concurrency.latency-threshold multiplies the limit by
+ *   backoff-ratio (multiplicative decrease), down to min-limit; at most once per latency-threshold,
+ *   so a burst of slow calls finishing together counts as one congestion signal, not one each
+ * - A faster call started while at least half the limit was in use adds one (additive increase),
+ *   up to max-limit; an idle limit is not grown, so it cannot drift far above real capacity
+ * - A call that finds the limit reached waits up to max-wait for a permit and is then shed
+ * <p>
+ * The limit shrinks while Spotify slows down, before slow calls open the shared circuit breaker,
+ * and excess misses are shed instead of queueing on request threads. Shed misses are answered
+ * from the last known good page where there is one (see {@link TopItemsPipeline}).
+ * <p>
+ * Metrics:
+ * - spotify.concurrency.limit: current limit
+ * - spotify.concurrency.in.flight: misses currently holding a permit
+ * - spotify.concurrency.shed{result=stale|rejected}: shed misses, answered with a stale page or
+ *   rejected with 503
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+    private static final String METRIC_NAME = "spotify.concurrency";
+
+    private final SpotifyProperties.Concurrency properties;
+    private final LongSupplier nanoClock;
+    private final long latencyThresholdNanos;
+    // The limit is fractional so that repeated decreases compound; stored as double bits
+    private final AtomicLong limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong lastDecreaseNanos;
+    private final Counter shedStale;
+    private final Counter shedRejected;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Permit unlimited = new Permit(0, -1);
+
+    /**
+     * Constructs a new AdaptiveConcurrencyLimiter.
+     *
+     * @param properties the Spotify configuration properties
+     * @param meterRegistry the registry the limiter metrics are published to
+     */
+    public AdaptiveConcurrencyLimiter(SpotifyProperties properties, MeterRegistry meterRegistry) {
+        this(properties.concurrency(), meterRegistry, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(
+            SpotifyProperties.Concurrency properties,
+            MeterRegistry meterRegistry,
+            LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        this.latencyThresholdNanos = properties.latencyThreshold().toNanos();
+        double initial = Math.clamp(properties.initialLimit(), properties.minLimit(), properties.maxLimit());
+        this.limit = new AtomicLong(Double.doubleToLongBits(initial));
+        this.lastDecreaseNanos = new AtomicLong(nanoClock.getAsLong() - latencyThresholdNanos);
+        this.shedStale = shedCounter(meterRegistry, "stale");
+        this.shedRejected = shedCounter(meterRegistry, "rejected");
+        Gauge.builder(METRIC_NAME + ".limit", this, AdaptiveConcurrencyLimiter::limit)
+                .description("Current limit on concurrent requests waiting for Spotify")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".in.flight", inFlight, AtomicInteger::get)
+                .description("Requests currently waiting for Spotify")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Take a permit for a request that has to wait for Spotify, waiting up to max-wait for one.
+     *
+     * @return the permit, to be released when the request's answer is ready, or null if the
+     *         request should be shed
+     */
+    public Permit tryAcquire() {
+        if (!properties.enabled()) {
+            return unlimited;
+        }
+        Permit permit = tryAcquireNow();
+        if (permit != null || properties.maxWait().isZero()) {
+            return permit;
+        }
+
+        long remaining = properties.maxWait().toNanos();
+        waiting.incrementAndGet();
+        lock.lock();
+        try {
+            while ((permit = tryAcquireNow()) == null && remaining > 0) {
+                remaining = released.awaitNanos(remaining);
+            }
+            return permit;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Count a shed request.
+     *
+     * @param servedStale whether it was answered with the last known good page
+     */
+    public void onShed(boolean servedStale) {
+        (servedStale ? shedStale : shedRejected).increment();
+    }
+
+    /**
+     * Get the current limit.
+     *
+     * @return the number of requests allowed to wait for Spotify at the same time
+     */
+    public int limit() {
+        return (int) currentLimit();
+    }
+
+    /**
+     * Get the number of requests holding a permit.
+     *
+     * @return the in-flight count
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private Permit tryAcquireNow() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit()) {
+                return null;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return new Permit(nanoClock.getAsLong(), current + 1);
+    }
+
+    private void onRelease(Permit permit) {
+        inFlight.decrementAndGet();
+        long now = nanoClock.getAsLong();
+        long latency = now - permit.startNanos;
+        boolean slow = latency > latencyThresholdNanos;
+        boolean decrease = slow && claimDecrease(now);
+        long current;
+        double next;
+        do {
+            current = limit.get();
+            double value = Double.longBitsToDouble(current);
+            if (decrease) {
+                next = Math.max(properties.minLimit(), value * properties.backoffRatio());
+            } else if (!slow && permit.inFlightAtStart * 2 >= value) {
+                next = Math.min(properties.maxLimit(), value + 1);
+            } else {
+                next = value;
+            }
+        } while (next != Double.longBitsToDouble(current)
+                && !limit.compareAndSet(current, Double.doubleToLongBits(next)));
+        if ((int) next < (int) Double.longBitsToDouble(current)) {
+            log.debug("Upstream miss took {} ms; concurrency limit lowered to {}",
+                    TimeUnit.NANOSECONDS.toMillis(latency), (int) next);
+        }
+
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Claim the multiplicative decrease of the current latency window; false if another slow call
+     * already lowered the limit less than latency-threshold ago.
+     */
+    private boolean claimDecrease(long now) {
+        long last = lastDecreaseNanos.get();
+        return now - last >= latencyThresholdNanos && lastDecreaseNanos.compareAndSet(last, now);
+    }
+
+    private static Counter shedCounter(MeterRegistry registry, String result) {
+        return Counter.builder(METRIC_NAME + ".shed")
+                .description("Requests shed because too many were waiting for Spotify")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private double currentLimit() {
+        return Double.longBitsToDouble(limit.get());
+    }
+
+    /**
+     * Held by a request while it waits for Spotify.
+     */
+    public final class Permit {
+
+        private final long startNanos;
+        private final int inFlightAtStart;
+        private boolean released;
+
+        private Permit(long startNanos, int inFlightAtStart) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Release the permit and let the request's latency adjust the limit. Only the first
+         * call has an effect.
+         */
+        public void release() {
+            if (released || inFlightAtStart < 0) {
+                return;
+            }
+            released = true;
+            onRelease(this);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.adarssh.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.adarssh.config.SpotifyProperties;
+import org.adarssh.dto.AlbumDto;
+import org.adarssh.dto.ArtistDto;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.exception.SpotifyApiException;
+import org.adarssh.exception.SpotifyAuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Shared catalog of Spotify artists, albums and tracks, looked up by id.
+ * <p>
+ * Catalog data is the same for every user, so it is fetched with the app token from
+ * {@link SpotifyAuthService} and kept in one cross-user cache per entity type. Lookups are
+ * batched DataLoader-style:
+ * - Ids that are not cached are collected for spotify.api.catalog.batch-window, across all
+ *   concurrent requests, and sent as one /artists?ids=, /albums?ids= or /tracks?ids= call
+ * - A batch is sent as soon as it is full: 50 ids, or 20 for albums (Spotify's limit there)
+ * - An id that is already being fetched joins that call instead of starting another
+ * - Ids Spotify does not know are left out of the result and not cached
+ * - Calls go through the catalog-interactive bulkhead of {@link UpstreamBulkheads}
+ * <p>
+ * Metrics:
+ * - spotify.catalog.batch.size{type}: ids per upstream call
+ * - cache.*{cache=catalog.artists|catalog.albums|catalog.tracks}: entity cache statistics
+ */
+@Service
+public class CatalogService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogService.class);
+    private static final int MAX_IDS = 50;
+    private static final int MAX_ALBUM_IDS = 20;
+
+    private final RestClient spotifyRestClient;
+    private final SpotifyAuthService authService;
+    private final UpstreamBulkheads bulkheads;
+    private final SpotifyProperties.Catalog properties;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("catalog-batch").daemon().factory());
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final EntityLoader<ArtistDto> artists;
+    private final EntityLoader<AlbumDto> albums;
+    private final EntityLoader<TrackDto> tracks;
+
+    /**
+     * Constructs a new CatalogService.
+     *
+     * @param spotifyRestClient the configured RestClient for Spotify API calls
+     * @param authService provides the app token catalog calls are made with
+     * @param bulkheads limits concurrent catalog calls to Spotify
+     * @param properties the Spotify configuration properties
+     * @param meterRegistry the registry the catalog metrics are published to
+     */
+    public CatalogService(
+            @Qualifier("spotifyRestClient") RestClient spotifyRestClient,
+            SpotifyAuthService authService,
+            UpstreamBulkheads bulkheads,
+            SpotifyProperties properties,
+            MeterRegistry meterRegistry) {
+        this.spotifyRestClient = spotifyRestClient;
+        this.authService = authService;
+        this.bulkheads = bulkheads;
+        this.properties = properties.catalog();
+        this.artists = new EntityLoader<>("artists", MAX_IDS, ArtistDto::id,
+                new ParameterizedTypeReference<Map<String, List<ArtistDto>>>() { }, meterRegistry);
+        this.albums = new EntityLoader<>("albums", MAX_ALBUM_IDS, AlbumDto::id,
+                new ParameterizedTypeReference<Map<String, List<AlbumDto>>>() { }, meterRegistry);
+        this.tracks = new EntityLoader<>("tracks", MAX_IDS, TrackDto::id,
+                new ParameterizedTypeReference<Map<String, List<TrackDto>>>() { }, meterRegistry);
+    }
+
+    /**
+     * Look up artists by id.
+     *
+     * @param ids Spotify artist ids
+     * @return the artists found, keyed by id
+     * @throws SpotifyApiException if the lookup fails or times out
+     */
+    public Map<String, ArtistDto> getArtists(Collection<String> ids) {
+        return artists.get(ids);
+    }
+
+    /**
+     * Look up albums by id.
+     *
+     * @param ids Spotify album ids
+     * @return the albums found, keyed by id
+     * @throws SpotifyApiException if the lookup fails or times out
+     */
+    public Map<String, AlbumDto> getAlbums(Collection<String> ids) {
+        return albums.get(ids);
+    }
+
+    /**
+     * Look up tracks by id.
+     *
+     * @param ids Spotify track ids
+     * @return the tracks found, keyed by id
+     * @throws SpotifyApiException if the lookup fails or times out
+     */
+    public Map<String, TrackDto> getTracks(Collection<String> ids) {
+        return tracks.get(ids);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Entity cache of one type whose misses are collected into multi-id calls.
+     */
+    private final class EntityLoader<T> implements AsyncCacheLoader<String, T> {
+
+        private final String type;
+        private final int batchSize;
+        private final Function<T, String> idOf;
+        private final ParameterizedTypeReference<Map<String, List<T>>> responseType;
+        private final AsyncLoadingCache<String, T> cache;
+        private final DistributionSummary batchSizes;
+        private final ReentrantLock lock = new ReentrantLock();
+        private Map<String, CompletableFuture<T>> pending = new LinkedHashMap<>();
+        private ScheduledFuture<?> scheduledFlush;
+
+        EntityLoader(String type, int batchSize, Function<T, String> idOf,
+                     ParameterizedTypeReference<Map<String, List<T>>> responseType, MeterRegistry meterRegistry) {
+            this.type = type;
+            this.batchSize = batchSize;
+            this.idOf = idOf;
+            this.responseType = responseType;
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(properties.maximumSize())
+                    .expireAfterWrite(properties.ttl())
+                    .executor(executor)
+                    .recordStats()
+                    .buildAsync(this);
+            this.batchSizes = DistributionSummary.builder("spotify.catalog.batch.size")
+                    .description("Ids per multi-id catalog call to Spotify")
+                    .tag("type", type)
+                    .register(meterRegistry);
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "catalog." + type);
+        }
+
+        Map<String, T> get(Collection<String> ids) {
+            Set<String> distinct = new LinkedHashSet<>();
+            for (String id : ids) {
+                if (id != null && !id.isBlank()) {
+                    distinct.add(id);
+                }
+            }
+            if (distinct.isEmpty()) {
+                return Map.of();
+            }
+
+            try {
+                return cache.getAll(distinct).get(properties.timeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new SpotifyApiException("Timed out looking up " + type + " in the Spotify catalog", 504, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new SpotifyApiException("Failed to look up " + type + " in the Spotify catalog", 502,
+                        e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SpotifyApiException("Interrupted while waiting for the Spotify catalog", 503, e);
+            }
+        }
+
+        @Override
+        public CompletableFuture<T> asyncLoad(String id, Executor loadExecutor) {
+            return enqueue(Set.of(id)).get(id);
+        }
+
+        @Override
+        public CompletableFuture<Map<String, T>> asyncLoadAll(Set<? extends String> ids, Executor loadExecutor) {
+            Map<String, CompletableFuture<T>> futures = enqueue(ids);
+            return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new))
+                    .thenApply(ignored -> {
+                        Map<String, T> found = new HashMap<>();
+                        futures.forEach((id, future) -> {
+                            T entity = future.join();
+                            if (entity != null) {
+                                found.put(id, entity);
+                            }
+                        });
+                        return found;
+                    });
+        }
+
+        private Map<String, CompletableFuture<T>> enqueue(Set<? extends String> ids) {
+            Map<String, CompletableFuture<T>> futures = new HashMap<>();
+            List<Map<String, CompletableFuture<T>>> full = new ArrayList<>();
+            lock.lock();
+            try {
+                for (String id : ids) {
+                    futures.put(id, pending.computeIfAbsent(id, key -> new CompletableFuture<>()));
+                    if (pending.size() >= batchSize) {
+                        full.add(pending);
+                        pending = new LinkedHashMap<>();
+                    }
+                }
+                if (!pending.isEmpty() && scheduledFlush == null) {
+                    scheduledFlush = scheduler.schedule(
+                            this::flush, properties.batchWindow().toNanos(), TimeUnit.NANOSECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+            full.forEach(this::dispatch);
+            return futures;
+        }
+
+        private void flush() {
+            Map<String, CompletableFuture<T>> batch;
+            lock.lock();
+            try {
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                scheduledFlush = null;
+            } finally {
+                lock.unlock();
+            }
+            if (!batch.isEmpty()) {
+                dispatch(batch);
+            }
+        }
+
+        private void dispatch(Map<String, CompletableFuture<T>> batch) {
+            try {
+                executor.execute(() -> fetch(batch));
+            } catch (RejectedExecutionException e) {
+                batch.values().forEach(future -> future.completeExceptionally(e));
+            }
+        }
+
+        private void fetch(Map<String, CompletableFuture<T>> batch) {
+            batchSizes.record(batch.size());
+            try {
+                Map<String, T> byId = new HashMap<>();
+                List<T> entities = bulkheads.execute(
+                        UpstreamBulkheads.Operation.CATALOG, UpstreamBulkheads.Priority.INTERACTIVE,
+                        () -> request(batch.keySet()));
+                for (T entity : entities) {
+                    if (idOf.apply(entity) != null) {
+                        byId.putIfAbsent(idOf.apply(entity), entity);
+                    }
+                }
+                batch.forEach((id, future) -> future.complete(byId.get(id)));
+            } catch (RuntimeException e) {
+                log.warn("Catalog lookup of {} {} failed: {}", batch.size(), type, e.getMessage());
+                batch.values().forEach(future -> future.completeExceptionally(e));
+            }
+        }
+
+        private List<T> request(Collection<String> ids) {
+            log.debug("Fetching {} {} from the Spotify catalog", ids.size(), type);
+
+            try {
+                var response = spotifyRestClient.get()
+                        .uri(uriBuilder -> uriBuilder
+                                .path("/" + type)
+                                .queryParam("ids", String.join(",", ids))
+                                .build())
+                        .header("Authorization", "Bearer " + authService.obtainAccessToken())
+                        .retrieve()
+                        .body(responseType);
+
+                if (response == null || response.get(type) == null) {
+                    throw new SpotifyApiException("Failed to look up " + type + ": null response", 502);
+                }
+
+                // Spotify answers unknown ids with null
+                return response.get(type).stream().filter(Objects::nonNull).toList();
+
+            } catch (SpotifyApiException | SpotifyAuthenticationException e) {
+                // Re-throw our own exceptions without wrapping
+                throw e;
+            } catch (RestClientResponseException e) {
+                throw UpstreamErrors.translate("Failed to look up " + type + " in the Spotify catalog", e);
+            } catch (Exception e) {
+                throw new SpotifyApiException("Failed to look up " + type + " in the Spotify catalog", 502, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,624 @@
+package org.adarssh.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.adarssh.config.SpotifyProperties;
+import org.adarssh.dto.TimeRange;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Disk tier behind the topTracks and topArtists caches, so a restart does not start with
+ * every user's cache empty.
+ * <p>
+ * Pages are appended to segment files in spotify.api.cache.disk.directory. Each record
+ * carries its key, its expiry time and the encoded page, framed by its length and a CRC32:
+ * <pre>
+ * int length | long expiresAtMillis | UTF cache | UTF username | UTF timeRange
+ *            | int payloadLength (-1 = evicted) | payload | int crc32
+ * </pre>
+ * Behavior:
+ * - An in-memory index maps each key to the position of its newest record; pages are
+ *   read from disk and decoded only when Caffeine misses
+ * - On startup a new segment is opened for writes and the existing segments are indexed
+ *   on a background thread; until that finishes lookups simply miss
+ * - Writes are appended by a single background writer, so cache fills never wait for disk
+ *   I/O, a segment roll or a segment deletion. Until a write lands, lookups of its key are
+ *   answered from the pending write. When spotify.api.cache.disk.write-queue-capacity writes
+ *   are waiting, further pages are dropped from the disk tier; evictions are then written on
+ *   the calling thread so an evicted page cannot come back after a restart
+ * - A torn record at the end of a segment (crash while writing) ends the scan of that segment
+ * - Once the active segment reaches spotify.api.cache.disk.segment-size a new one is started,
+ *   and segments beyond spotify.api.cache.disk.max-segments or with only expired records
+ *   are deleted. Segments are only deleted once the startup scan has finished, so a roll
+ *   during the scan cannot take a segment whose expiry is not known yet
+ * <p>
+ * Metrics:
+ * - spotify.cache.disk{cache, result=hit|miss}
+ * - spotify.cache.disk.dropped{cache}: pages not written because the write queue was full
+ */
+@Component
+public class DiskCacheStore implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskCacheStore.class);
+    private static final String METRIC_NAME = "spotify.cache.disk";
+    private static final int MAGIC = 0x53574331;
+    private static final int HEADER_SIZE = Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * The caches backed by the disk tier.
+     */
+    public static final List<String> CACHES = List.of("topTracks", "topArtists");
+
+    private final SpotifyProperties.Cache cacheProperties;
+    private final SpotifyProperties.Disk properties;
+    private final TopItemsCodec codec;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+    private final Map<Entry, Location> index = new ConcurrentHashMap<>();
+    // Latest write of each key that the writer has not appended yet
+    private final Map<Entry, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private Segment active;
+    // Whether the segments found on startup are still being indexed; guarded by writeLock
+    private boolean loading;
+    private Thread loader;
+    private ThreadPoolExecutor writer;
+
+    /**
+     * Constructs a new DiskCacheStore. Nothing is read or written until it is started.
+     *
+     * @param properties the Spotify configuration properties
+     * @param codec encodes pages for storage
+     * @param meterRegistry the registry the disk tier metrics are published to
+     */
+    public DiskCacheStore(SpotifyProperties properties, TopItemsCodec codec, MeterRegistry meterRegistry) {
+        this.cacheProperties = properties.cache();
+        this.properties = cacheProperties.disk();
+        this.codec = codec;
+        this.meterRegistry = meterRegistry;
+        CACHES.forEach(this::meters);
+    }
+
+    /**
+     * Check whether the disk tier is enabled.
+     *
+     * @return true if pages are written to and read from disk
+     */
+    public boolean isEnabled() {
+        return properties.enabled();
+    }
+
+    /**
+     * Open a new segment for writes and index the existing segments in the background.
+     *
+     * @throws IOException if the directory or the new segment cannot be created
+     */
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        Path directory = Path.of(properties.directory());
+        Files.createDirectories(directory);
+        List<Segment> existing = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(DiskCacheStore::isSegment).sorted().toList()) {
+                Segment segment = Segment.open(path, segmentId(path), StandardOpenOption.READ);
+                segments.put(segment.id, segment);
+                existing.add(segment);
+            }
+        }
+        long nextId = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        writeLock.lock();
+        try {
+            active = createSegment(directory, nextId);
+            loading = !existing.isEmpty();
+        } finally {
+            writeLock.unlock();
+        }
+        writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.writeQueueCapacity()),
+                Thread.ofPlatform().name("cache-disk-write").daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        loader = Thread.ofPlatform().name("cache-disk-load").daemon().start(() -> load(existing));
+    }
+
+    /**
+     * Look up a page.
+     *
+     * @param cacheName the cache the page belongs to
+     * @param key the page's cache key
+     * @return the page and its remaining lifetime, or null if there is no live page on disk
+     */
+    public StoredPage get(String cacheName, TopItemsCacheKey key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = new Entry(cacheName, key);
+        PendingWrite write = pending.get(entry);
+        if (write != null) {
+            return fromPendingWrite(cacheName, write);
+        }
+        Location location = index.get(entry);
+        long remaining = location != null ? location.expiresAt() - System.currentTimeMillis() : 0;
+        if (location == null || location.evicted() || remaining <= 0) {
+            return miss(cacheName);
+        }
+        Segment segment = segments.get(location.segmentId());
+        if (segment == null) {
+            index.remove(entry, location);
+            return miss(cacheName);
+        }
+        try {
+            byte[] payload = segment.read(location.payloadOffset(), location.payloadLength());
+            UserTopItemsResponse<?> page = codec.decode(cacheName, payload);
+            meters(cacheName).hit().increment();
+            return new StoredPage(page, Duration.ofMillis(remaining));
+        } catch (IOException | UncheckedIOException e) {
+            // The segment was deleted underneath us or the record no longer decodes
+            log.debug("Dropping unreadable {} record for {}: {}", cacheName, key, e.getMessage());
+            index.remove(entry, location);
+            return miss(cacheName);
+        }
+    }
+
+    /**
+     * Queue a page for writing. It expires on disk after the TTL of its time range, like the
+     * page in Caffeine.
+     *
+     * @param cacheName the cache the page belongs to
+     * @param key the page's cache key
+     * @param page the page
+     */
+    public void put(String cacheName, TopItemsCacheKey key, UserTopItemsResponse<?> page) {
+        if (!isEnabled()) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + cacheProperties.ttl(key.timeRange()).toMillis();
+        submit(new Entry(cacheName, key), new PendingWrite(page, expiresAt));
+    }
+
+    /**
+     * Drop a page, also across restarts.
+     *
+     * @param cacheName the cache the page belongs to
+     * @param key the page's cache key
+     */
+    public void evict(String cacheName, TopItemsCacheKey key) {
+        if (isEnabled()) {
+            submit(new Entry(cacheName, key), PendingWrite.EVICTION);
+        }
+    }
+
+    /**
+     * Drop every page of a cache, also across restarts.
+     *
+     * @param cacheName the cache to clear
+     */
+    public void clear(String cacheName) {
+        if (!isEnabled()) {
+            return;
+        }
+        index.forEach((entry, location) -> {
+            if (entry.cacheName().equals(cacheName) && !location.evicted()) {
+                submit(entry, PendingWrite.EVICTION);
+            }
+        });
+        pending.forEach((entry, write) -> {
+            if (entry.cacheName().equals(cacheName) && write.page() != null) {
+                submit(entry, PendingWrite.EVICTION);
+            }
+        });
+    }
+
+    /**
+     * Wait until the segments found on startup have been indexed.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitLoaded() throws InterruptedException {
+        if (loader != null) {
+            loader.join();
+        }
+    }
+
+    /**
+     * Wait until every write queued so far has been appended.
+     *
+     * @throws Exception if the writer stopped or failed
+     */
+    void awaitWritten() throws Exception {
+        if (writer != null) {
+            writer.submit(() -> { }).get();
+        }
+    }
+
+    /**
+     * Append the queued writes, then close the segments.
+     */
+    @Override
+    public void destroy() {
+        if (loader != null) {
+            loader.interrupt();
+        }
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                if (!writer.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                    log.warn("Dropped {} cache writes still queued at shutdown", writer.getQueue().size());
+                    writer.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                writer.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeLock.lock();
+        try {
+            segments.values().forEach(Segment::close);
+            segments.clear();
+            index.clear();
+            pending.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void load(List<Segment> existing) {
+        int records = 0;
+        for (Segment segment : existing) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            records += scan(segment);
+        }
+        writeLock.lock();
+        try {
+            loading = false;
+            deleteObsoleteSegments();
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Indexed {} cached pages from {} segments in {}", records, existing.size(), properties.directory());
+    }
+
+    private int scan(Segment segment) {
+        int records = 0;
+        long position = HEADER_SIZE;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path)))) {
+            if (in.readInt() != MAGIC) {
+                log.warn("Skipping {}: not a cache segment", segment.path);
+                return 0;
+            }
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    throw new EOFException("invalid record length " + length);
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                if (in.readInt() != crc(body)) {
+                    throw new EOFException("checksum mismatch");
+                }
+                index(segment, position, body);
+                position += Integer.BYTES + length + Integer.BYTES;
+                records++;
+            }
+        } catch (EOFException e) {
+            // End of the segment, or a record torn by a crash: everything before it is usable
+            if (e.getMessage() != null) {
+                log.warn("Stopped reading {} at offset {}: {}", segment.path, position, e.getMessage());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Stopped reading {} at offset {}", segment.path, position, e);
+        }
+        return records;
+    }
+
+    private void index(Segment segment, long position, byte[] body) throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(body));
+        long expiresAt = in.readLong();
+        String cacheName = in.readUTF();
+        var key = new TopItemsCacheKey(in.readUTF(), TimeRange.valueOf(in.readUTF()));
+        int payloadLength = in.readInt();
+        long payloadOffset = position + Integer.BYTES + body.length - Math.max(payloadLength, 0);
+        segment.extendExpiry(expiresAt);
+        index.merge(new Entry(cacheName, key),
+                new Location(segment.id, payloadOffset, payloadLength, expiresAt), Location::newer);
+    }
+
+    private void submit(Entry entry, PendingWrite write) {
+        if (writer == null) {
+            return;
+        }
+        pending.put(entry, write);
+        try {
+            writer.execute(() -> write(entry, write));
+        } catch (RejectedExecutionException e) {
+            if (write.page() == null) {
+                write(entry, write);
+                return;
+            }
+            pending.remove(entry, write);
+            meters(entry.cacheName()).dropped().increment();
+            log.debug("Disk write queue full; {} page for {} kept in memory only", entry.cacheName(), entry.key());
+        }
+    }
+
+    private void write(Entry entry, PendingWrite write) {
+        try {
+            byte[] payload = write.page() != null ? codec.encode(write.page()) : null;
+            append(entry.cacheName(), entry.key(), write.expiresAt(), payload);
+        } catch (RuntimeException e) {
+            log.warn("Failed to write {} page for {} to disk", entry.cacheName(), entry.key(), e);
+        } finally {
+            pending.remove(entry, write);
+        }
+    }
+
+    private StoredPage fromPendingWrite(String cacheName, PendingWrite write) {
+        long remaining = write.expiresAt() - System.currentTimeMillis();
+        if (write.page() == null || remaining <= 0) {
+            return miss(cacheName);
+        }
+        meters(cacheName).hit().increment();
+        return new StoredPage(write.page(), Duration.ofMillis(remaining));
+    }
+
+    private void append(String cacheName, TopItemsCacheKey key, long expiresAt, byte[] payload) {
+        byte[] body = body(cacheName, key, expiresAt, payload);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + body.length + Integer.BYTES)
+                .putInt(body.length)
+                .put(body)
+                .putInt(crc(body))
+                .flip();
+        int payloadLength = payload != null ? payload.length : -1;
+
+        writeLock.lock();
+        try {
+            if (active == null) {
+                return;
+            }
+            if (active.size >= properties.segmentSize().toBytes()) {
+                roll();
+            }
+            long position = active.append(record);
+            long payloadOffset = position + Integer.BYTES + body.length - Math.max(payloadLength, 0);
+            active.extendExpiry(expiresAt);
+            index.merge(new Entry(cacheName, key),
+                    new Location(active.id, payloadOffset, payloadLength, expiresAt), Location::newer);
+        } catch (IOException e) {
+            log.warn("Failed to write {} page for {} to disk", cacheName, key, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void roll() throws IOException {
+        active = createSegment(active.path.getParent(), active.id + 1);
+        if (!loading) {
+            deleteObsoleteSegments();
+        }
+    }
+
+    private Segment createSegment(Path directory, long id) throws IOException {
+        Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        Segment segment = Segment.open(path, id,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment.append(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).flip());
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void deleteObsoleteSegments() {
+        long now = System.currentTimeMillis();
+        for (Segment segment : List.copyOf(segments.values())) {
+            boolean tooMany = segments.size() > properties.maxSegments();
+            if (segment != active && (tooMany || segment.maxExpiresAt < now)) {
+                delete(segment);
+            }
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment.id);
+        index.values().removeIf(location -> location.segmentId() == segment.id);
+        segment.close();
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("Failed to delete cache segment {}", segment.path, e);
+        }
+    }
+
+    private StoredPage miss(String cacheName) {
+        meters(cacheName).miss().increment();
+        return null;
+    }
+
+    private Meters meters(String cacheName) {
+        return meters.computeIfAbsent(cacheName, name -> new Meters(
+                lookups(name, "hit"),
+                lookups(name, "miss"),
+                Counter.builder(METRIC_NAME + ".dropped")
+                        .description("Pages not written to disk because the write queue was full")
+                        .tag("cache", name)
+                        .register(meterRegistry)));
+    }
+
+    private Counter lookups(String cacheName, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("Disk cache lookups by outcome")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static byte[] body(String cacheName, TopItemsCacheKey key, long expiresAt, byte[] payload) {
+        var bytes = new ByteArrayOutputStream(64 + (payload != null ? payload.length : 0));
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeLong(expiresAt);
+            out.writeUTF(cacheName);
+            out.writeUTF(key.username());
+            out.writeUTF(key.timeRange().name());
+            out.writeInt(payload != null ? payload.length : -1);
+            if (payload != null) {
+                out.write(payload);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int crc(byte[] body) {
+        var crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long segmentId(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * A page read from disk.
+     *
+     * @param page the page
+     * @param timeToLive how long the page has left before it expires
+     */
+    public record StoredPage(UserTopItemsResponse<?> page, Duration timeToLive) { }
+
+    /**
+     * A write the writer has not appended yet; a null page is an eviction.
+     */
+    private record PendingWrite(UserTopItemsResponse<?> page, long expiresAt) {
+
+        static final PendingWrite EVICTION = new PendingWrite(null, 0);
+    }
+
+    /**
+     * The disk tier meters of one cache, registered once.
+     */
+    private record Meters(Counter hit, Counter miss, Counter dropped) { }
+
+    /**
+     * Identifies a page across the cached caches.
+     */
+    private record Entry(String cacheName, TopItemsCacheKey key) { }
+
+    /**
+     * Where the newest record of a page is; a negative payload length marks an eviction.
+     */
+    private record Location(long segmentId, long payloadOffset, int payloadLength, long expiresAt) {
+
+        boolean evicted() {
+            return payloadLength < 0;
+        }
+
+        static Location newer(Location a, Location b) {
+            if (a.segmentId != b.segmentId) {
+                return a.segmentId > b.segmentId ? a : b;
+            }
+            return a.payloadOffset >= b.payloadOffset ? a : b;
+        }
+    }
+
+    /**
+     * One segment file.
+     */
+    private static final class Segment {
+
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private volatile long maxExpiresAt;
+
+        private Segment(long id, Path path, FileChannel channel) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        static Segment open(Path path, long id, StandardOpenOption... options) throws IOException {
+            return new Segment(id, path, FileChannel.open(path, options));
+        }
+
+        long append(ByteBuffer record) throws IOException {
+            long position = size;
+            while (record.hasRemaining()) {
+                size += channel.write(record, size);
+            }
+            return position;
+        }
+
+        byte[] read(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("record extends past end of " + path);
+                }
+            }
+            return buffer.array();
+        }
+
+        void extendExpiry(long expiresAt) {
+            maxExpiresAt = Math.max(maxExpiresAt, expiresAt);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Failed to close {}", path, e);
+            }
+        }
+    }
+}
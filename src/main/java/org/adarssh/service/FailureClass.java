@@ -0,0 +1,68 @@
+package org.adarssh.service;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.adarssh.exception.SpotifyApiException;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * What a failed upstream call says about whom.
+ * <p>
+ * Only {@link #UPSTREAM} failures are a signal about Spotify's health and count toward the
+ * spotifyApi circuit breaker (see {@link UpstreamHealthFailure}). {@link #USER} failures are
+ * about one user's session and count toward that user's own breaker ({@link UserCircuitBreaker}),
+ * so a few broken sessions cannot open the breaker for everyone.
+ */
+enum FailureClass {
+
+    /**
+     * The user's token or scopes were rejected (401, 403) or there is no token.
+     */
+    USER,
+
+    /**
+     * Spotify rejected this particular request (400, 404, other 4xx).
+     */
+    REQUEST,
+
+    /**
+     * Load shedding: rate limited by Spotify (429), a full bulkhead or an open breaker.
+     */
+    THROTTLED,
+
+    /**
+     * Spotify failed, timed out or could not be reached (5xx, I/O errors, anything unknown).
+     */
+    UPSTREAM;
+
+    /**
+     * Classify a failure.
+     *
+     * @param failure the exception an upstream call failed with
+     * @return its failure class
+     */
+    static FailureClass of(Throwable failure) {
+        if (failure instanceof BulkheadFullException || failure instanceof CallNotPermittedException) {
+            return THROTTLED;
+        }
+        if (!(failure instanceof SpotifyApiException e)) {
+            return UPSTREAM;
+        }
+        int status = e.getStatusCode();
+        if (status == 401 || status == 403) {
+            return USER;
+        }
+        if (status == 429) {
+            return THROTTLED;
+        }
+        if (status >= 400 && status < 500) {
+            return REQUEST;
+        }
+        // UpstreamErrors reports Spotify's other 4xx as 502; they are still about this request
+        if (e.getCause() instanceof RestClientResponseException response
+                && response.getStatusCode().is4xxClientError()) {
+            return REQUEST;
+        }
+        return UPSTREAM;
+    }
+}
@@ -0,0 +1,207 @@
+package org.adarssh.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.adarssh.config.CorrelationId;
+import org.adarssh.config.SpotifyProperties;
+import org.adarssh.exception.SpotifyApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hedges idempotent upstream GETs against Spotify's slow tail.
+ * <p>
+ * The call is started on a virtual thread inside a {@link StructuredTaskScope}. If it has not
+ * answered within the hedge delay, an identical second call is started; whichever succeeds
+ * first is returned and the other is cancelled (its thread is interrupted, which aborts the
+ * HTTP exchange). A call that fails before the delay is not hedged; hedging is not a retry.
+ * <p>
+ * Behavior:
+ * - Only active when spotify.api.hedging.enabled=true; otherwise calls run on the caller's thread
+ * - The hedge delay is the spotify.api.hedging.percentile of the endpoint's recent successful
+ *   latencies, clamped to min-delay..max-delay; initial-delay until min-samples are observed
+ * - Every call earns budget-percent hedge credits and every hedge spends 100, so at most about
+ *   budget-percent of calls are hedged; without credits the call simply waits
+ * - Hedges pass through the rate governor like any other call
+ * <p>
+ * Metrics:
+ * - spotify.upstream.hedge.latency{endpoint}: latency of individual upstream attempts
+ * - spotify.upstream.hedge{endpoint, result=won|lost|skipped}: hedges that answered first,
+ *   hedges the original call beat, and hedges skipped for lack of budget
+ */
+@Component
+public class HedgedRequests {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgedRequests.class);
+    private static final String METRIC_NAME = "spotify.upstream.hedge";
+    private static final int HEDGE_COST = 100;
+    // Up to ten hedges can be spent in a burst
+    private static final int MAX_CREDITS = 10 * HEDGE_COST;
+    // The endpoints TopItemsClient hedges; their meters are registered up front
+    private static final List<String> ENDPOINTS = List.of("tracks", "artists");
+
+    private final SpotifyProperties.Hedging properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+    private final AtomicInteger credits = new AtomicInteger(MAX_CREDITS);
+
+    /**
+     * Constructs a new HedgedRequests.
+     *
+     * @param properties the Spotify configuration properties
+     * @param meterRegistry the registry the hedging metrics are published to
+     */
+    public HedgedRequests(SpotifyProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties.hedging();
+        this.meterRegistry = meterRegistry;
+        ENDPOINTS.forEach(this::meters);
+    }
+
+    /**
+     * Run an idempotent upstream call, hedging it if it is slow.
+     *
+     * @param endpoint the endpoint name, used for its latency percentile and the metrics
+     * @param call the upstream call; must be safe to run twice at the same time
+     * @param <T> the result type
+     * @return the result of whichever attempt succeeded first
+     */
+    public <T> T execute(String endpoint, Supplier<T> call) {
+        if (!properties.enabled()) {
+            return call.get();
+        }
+        // Attempts run on forked threads; keep the request's correlation ID on their upstream calls
+        Supplier<T> tracedCall = CorrelationId.wrap(call);
+        Meters endpointMeters = meters(endpoint);
+        Timer latency = endpointMeters.latency();
+        credits.accumulateAndGet(properties.budgetPercent(), (current, earned) ->
+                Math.min(MAX_CREDITS, current + earned));
+
+        try (var scope = new StructuredTaskScope.ShutdownOnSuccess<Attempt<T>>()) {
+            scope.fork(() -> attempt(tracedCall, latency, false));
+            boolean hedged = false;
+            Duration delay = hedgeDelay(latency);
+            try {
+                scope.joinUntil(Instant.now().plus(delay));
+            } catch (TimeoutException e) {
+                if (takeCredit()) {
+                    log.debug("{} slower than {}; sending a hedged request", endpoint, delay);
+                    scope.fork(() -> attempt(tracedCall, latency, true));
+                    hedged = true;
+                } else {
+                    endpointMeters.skipped().increment();
+                }
+                scope.join();
+            }
+
+            Attempt<T> winner = scope.result(HedgedRequests::propagate);
+            if (hedged) {
+                (winner.hedge() ? endpointMeters.won() : endpointMeters.lost()).increment();
+            }
+            return winner.value();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SpotifyApiException("Interrupted while waiting for Spotify API", 503, e);
+        }
+    }
+
+    private <T> Attempt<T> attempt(Supplier<T> call, Timer latency, boolean hedge) {
+        long start = System.nanoTime();
+        T value = call.get();
+        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Attempt<>(value, hedge);
+    }
+
+    /**
+     * Get the current hedge delay of an endpoint.
+     *
+     * @param endpoint the endpoint name
+     * @return how long a call may take before it is hedged
+     */
+    Duration hedgeDelay(String endpoint) {
+        return hedgeDelay(meters(endpoint).latency());
+    }
+
+    private Duration hedgeDelay(Timer latency) {
+        var snapshot = latency.takeSnapshot();
+        if (snapshot.count() < properties.minSamples()) {
+            return properties.initialDelay();
+        }
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == properties.percentile()) {
+                Duration observed = Duration.ofNanos((long) value.value(TimeUnit.NANOSECONDS));
+                return clamp(observed, properties.minDelay(), properties.maxDelay());
+            }
+        }
+        return properties.initialDelay();
+    }
+
+    private boolean takeCredit() {
+        int current;
+        do {
+            current = credits.get();
+            if (current < HEDGE_COST) {
+                return false;
+            }
+        } while (!credits.compareAndSet(current, current - HEDGE_COST));
+        return true;
+    }
+
+    private Meters meters(String endpoint) {
+        return meters.computeIfAbsent(endpoint, name -> new Meters(
+                Timer.builder(METRIC_NAME + ".latency")
+                        .description("Latency of individual upstream attempts of hedged calls")
+                        .tag("endpoint", name)
+                        .publishPercentiles(properties.percentile())
+                        .distributionStatisticExpiry(Duration.ofMinutes(2))
+                        .register(meterRegistry),
+                outcome(name, "won"),
+                outcome(name, "lost"),
+                outcome(name, "skipped")));
+    }
+
+    private Counter outcome(String endpoint, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("Hedged upstream requests by outcome")
+                .tag("endpoint", endpoint)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Duration clamp(Duration value, Duration min, Duration max) {
+        if (value.compareTo(min) < 0) {
+            return min;
+        }
+        return value.compareTo(max) > 0 ? max : value;
+    }
+
+    private static RuntimeException propagate(Throwable failure) {
+        if (failure instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new SpotifyApiException("Failed to call Spotify API", 502, failure);
+    }
+
+    /**
+     * The hedging meters of one endpoint, registered once.
+     */
+    private record Meters(Timer latency, Counter won, Counter lost, Counter skipped) { }
+
+    /**
+     * The successful result of one attempt.
+     */
+    private record Attempt<T>(T value, boolean hedge) { }
+}
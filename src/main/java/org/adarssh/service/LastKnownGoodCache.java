@@ -0,0 +1,202 @@
+package org.adarssh.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.adarssh.config.CorrelationId;
+import org.adarssh.config.SpotifyProperties;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.exception.SpotifyApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Last-known-good tier behind the topTracks and topArtists caches.
+ * <p>
+ * Every page fetched from Spotify is also kept here for its TTL plus a grace window
+ * (spotify.api.cache.stale.grace), so it outlives its regular cache entry. While Spotify is
+ * failing or slow, requests are answered with that copy, marked {@code stale: true}, instead
+ * of an empty list:
+ * - stale-if-error: the {@link TopItemsPipeline} fallback serves the last known good page
+ * - stale-while-revalidate: if Spotify has not answered within
+ *   spotify.api.cache.stale.serve-after, the request gets the stale page and the upstream
+ *   call carries on in the background; its result is written to the regular cache
+ * <p>
+ * Stale pages are never written to the regular caches, so requests keep revalidating (at most
+ * once per spotify.api.cache.stale.degraded-ttl) until Spotify answers again.
+ * <p>
+ * Metrics:
+ * - spotify.cache.stale.served{cache, reason=error|slow}
+ */
+@Component
+public class LastKnownGoodCache implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(LastKnownGoodCache.class);
+    private static final String METRIC_NAME = "spotify.cache.stale.served";
+
+    private final SpotifyProperties.Stale properties;
+    private final ObjectProvider<CacheManager> cacheManager;
+    private final MeterRegistry meterRegistry;
+    private final Cache<Entry, UserTopItemsResponse<?>> pages;
+    private final Map<String, ServedCounters> served = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Constructs a new LastKnownGoodCache.
+     *
+     * @param properties the Spotify configuration properties
+     * @param cacheManager provides the regular caches that background calls revalidate
+     * @param meterRegistry the registry the stale-serving metrics are published to
+     */
+    public LastKnownGoodCache(
+            SpotifyProperties properties,
+            ObjectProvider<CacheManager> cacheManager,
+            MeterRegistry meterRegistry) {
+        var cache = properties.cache();
+        this.properties = cache.stale();
+        this.cacheManager = cacheManager;
+        this.meterRegistry = meterRegistry;
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(cache.maximumSize())
+                .expireAfter(Expiry.<Entry, UserTopItemsResponse<?>>writing(
+                        (entry, page) -> cache.ttl(entry.key().timeRange()).plus(this.properties.grace())))
+                .build();
+        for (TopItemsPipeline.Endpoint endpoint : TopItemsPipeline.Endpoint.values()) {
+            served(endpoint.cacheName());
+        }
+    }
+
+    /**
+     * Keep a freshly fetched page as the last known good copy.
+     *
+     * @param cacheName the regular cache the page belongs to
+     * @param key the page's cache key
+     * @param page the fresh page
+     */
+    public void remember(String cacheName, TopItemsCacheKey key, UserTopItemsResponse<?> page) {
+        if (properties.enabled()) {
+            pages.put(new Entry(cacheName, key), page);
+        }
+    }
+
+    /**
+     * Get the last known good page to answer a failed upstream call with.
+     *
+     * @param cacheName the regular cache the page belongs to
+     * @param key the page's cache key
+     * @param <T> the item type
+     * @return the page marked stale, or null if there is none
+     */
+    public <T> UserTopItemsResponse<T> serveOnError(String cacheName, TopItemsCacheKey key) {
+        UserTopItemsResponse<T> stale = lookup(cacheName, key);
+        if (stale != null) {
+            served(cacheName).error().increment();
+        }
+        return stale;
+    }
+
+    /**
+     * Run an upstream call, answering with the last known good page if it takes longer than
+     * spotify.api.cache.stale.serve-after. The call then completes in the background and its
+     * result is written to the regular cache.
+     *
+     * @param cacheName the regular cache the page belongs to
+     * @param key the page's cache key
+     * @param loader the upstream call; must not depend on thread-local request state
+     * @param <T> the item type
+     * @return the fresh page, or the stale page if the call is slow
+     */
+    public <T> UserTopItemsResponse<T> execute(
+            String cacheName,
+            TopItemsCacheKey key,
+            Supplier<UserTopItemsResponse<T>> loader) {
+        UserTopItemsResponse<T> stale = lookup(cacheName, key);
+        if (stale == null) {
+            return loader.get();
+        }
+
+        CompletableFuture<UserTopItemsResponse<T>> call =
+                CompletableFuture.supplyAsync(CorrelationId.wrap(loader), executor);
+        try {
+            return call.get(properties.serveAfter().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            call.thenAccept(fresh -> revalidate(cacheName, key, fresh));
+            served(cacheName).slow().increment();
+            log.warn("Spotify slower than {} for {} ({}); serving last known good page",
+                    properties.serveAfter(), cacheName, key);
+            return stale;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new SpotifyApiException("Failed to fetch " + cacheName + " from Spotify API", 500, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SpotifyApiException("Interrupted while waiting for Spotify API", 503, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> UserTopItemsResponse<T> lookup(String cacheName, TopItemsCacheKey key) {
+        if (!properties.enabled()) {
+            return null;
+        }
+        UserTopItemsResponse<?> page = pages.getIfPresent(new Entry(cacheName, key));
+        return page != null ? (UserTopItemsResponse<T>) page.asStale() : null;
+    }
+
+    private void revalidate(String cacheName, TopItemsCacheKey key, UserTopItemsResponse<?> fresh) {
+        var cache = cacheManager.getObject().getCache(cacheName);
+        if (cache != null) {
+            cache.put(key, fresh);
+        }
+        log.debug("Revalidated {} entry for {} in the background", cacheName, key);
+    }
+
+    private ServedCounters served(String cacheName) {
+        return served.computeIfAbsent(cacheName, name -> new ServedCounters(
+                servedCounter(name, "error"), servedCounter(name, "slow")));
+    }
+
+    private Counter servedCounter(String cacheName, String reason) {
+        return Counter.builder(METRIC_NAME)
+                .description("Requests answered with a last known good page")
+                .tag("cache", cacheName)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The stale-serving counters of one cache, by reason.
+     */
+    private record ServedCounters(Counter error, Counter slow) { }
+
+    /**
+     * Identifies a page across the regular caches.
+     */
+    private record Entry(String cacheName, TopItemsCacheKey key) { }
+}
@@ -1,26 +1,74 @@
 package org.adarssh.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.adarssh.config.SpotifyProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
-import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthorizationException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Service for retrieving OAuth2 access tokens for authenticated users
+ * <p>
+ * Tokens are served from an in-memory lookup cache keyed by user, so the hot path does not
+ * go to the authorized client repository. Behavior:
+ * - A token is used until spotify.api.user-token.expiry-skew before it expires
+ * - Within spotify.api.user-token.refresh-ahead of expiry, callers keep the current token and
+ *   one background refresh renews it through the {@link OAuth2AuthorizedClientManager}
+ *   (refresh_token grant); the renewed client is saved back to the repository
+ * - A missing or expired token is loaded or renewed synchronously; concurrent requests of
+ *   the same user share one call through {@link SingleFlight}
+ * <p>
+ * Metrics:
+ * - spotify.upstream.single.flight{operation=user-token}: see {@link SingleFlight}
  */
 @Service
 public class OAuth2TokenService {
 
     private static final Logger log = LoggerFactory.getLogger(OAuth2TokenService.class);
+    private static final String REGISTRATION_ID = "spotify";
+    private static final Duration UNKNOWN_EXPIRY = Duration.ofMinutes(1);
 
-    private final OAuth2AuthorizedClientService authorizedClientService;
+    private final OAuth2AuthorizedClientManager authorizedClientManager;
+    private final SingleFlight singleFlight;
+    private final SpotifyProperties.UserToken properties;
+    private final Cache<TokenKey, UserToken> tokens;
+    private final Set<TokenKey> refreshing = ConcurrentHashMap.newKeySet();
 
-    public OAuth2TokenService(OAuth2AuthorizedClientService authorizedClientService) {
-        this.authorizedClientService = authorizedClientService;
+    /**
+     * Constructs a new OAuth2TokenService.
+     *
+     * @param authorizedClientManager loads and renews authorized clients
+     * @param properties the Spotify configuration properties
+     * @param meterRegistry the registry the token load metrics are published to
+     */
+    public OAuth2TokenService(
+            OAuth2AuthorizedClientManager authorizedClientManager,
+            SpotifyProperties properties,
+            MeterRegistry meterRegistry) {
+        this.authorizedClientManager = authorizedClientManager;
+        this.singleFlight = new SingleFlight(meterRegistry, "user-token");
+        this.properties = properties.userToken();
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(this.properties.maximumSize())
+                .expireAfter(Expiry.<TokenKey, UserToken>creating(
+                        (key, token) -> Duration.between(Instant.now(), token.usableUntil())))
+                .build();
     }
 
     /**
@@ -36,17 +84,109 @@ public class OAuth2TokenService {
             throw new IllegalStateException("User must be authenticated with Spotify");
         }
 
-        OAuth2AuthorizedClient client = authorizedClientService.loadAuthorizedClient(
-                oauthToken.getAuthorizedClientRegistrationId(),
-                oauthToken.getName()
-        );
-
-        if (client == null || client.getAccessToken() == null) {
+        var key = new TokenKey(oauthToken.getAuthorizedClientRegistrationId(), oauthToken.getName());
+        OAuth2AccessToken accessToken = token(key);
+        if (accessToken == null) {
             log.error("No authorized client or access token found for user");
             throw new IllegalStateException("No access token available. Please re-authenticate.");
         }
 
-        log.debug("Retrieved access token for user: {}", oauthToken.getName());
-        return client.getAccessToken().getTokenValue();
+        log.debug("Retrieved access token for user: {}", key.principalName());
+        return accessToken.getTokenValue();
+    }
+
+    /**
+     * Get the stored access token of a user outside of a request, e.g. for background refreshes.
+     * @param principalName the name the user authenticated with
+     * @return OAuth2 access token
+     * @throws IllegalStateException if no authorized client is stored for the user
+     */
+    public String getAccessToken(String principalName) {
+        OAuth2AccessToken accessToken = token(new TokenKey(REGISTRATION_ID, principalName));
+
+        if (accessToken == null) {
+            throw new IllegalStateException("No stored access token for user: " + principalName);
+        }
+
+        return accessToken.getTokenValue();
+    }
+
+    private OAuth2AccessToken token(TokenKey key) {
+        UserToken cached = tokens.getIfPresent(key);
+        if (cached != null && Instant.now().isBefore(cached.usableUntil())) {
+            if (!Instant.now().isBefore(cached.refreshAt())) {
+                refreshInBackground(key);
+            }
+            return cached.accessToken();
+        }
+        UserToken loaded = singleFlight.execute(key, () -> authorize(key));
+        return loaded != null ? loaded.accessToken() : null;
+    }
+
+    private void refreshInBackground(TokenKey key) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        Thread.ofVirtual().name("user-token-refresh").start(() -> {
+            try {
+                singleFlight.execute(key, () -> authorize(key));
+            } catch (RuntimeException e) {
+                // The current token stays in use until it expires; the next request retries
+                log.warn("Background refresh of the access token of {} failed: {}",
+                        key.principalName(), e.getMessage());
+            } finally {
+                refreshing.remove(key);
+            }
+        });
+    }
+
+    private UserToken authorize(TokenKey key) {
+        OAuth2AuthorizedClient client;
+        try {
+            client = authorizedClientManager.authorize(OAuth2AuthorizeRequest
+                    .withClientRegistrationId(key.registrationId())
+                    .principal(key.principalName())
+                    .build());
+        } catch (OAuth2AuthorizationException e) {
+            // e.g. invalid_grant: the refresh token was revoked and the user has to sign in again
+            log.warn("Could not renew the access token of {}: {}", key.principalName(), e.getError());
+            tokens.invalidate(key);
+            return null;
+        }
+
+        if (client == null || client.getAccessToken() == null) {
+            tokens.invalidate(key);
+            return null;
+        }
+
+        UserToken token = UserToken.of(client.getAccessToken(), properties);
+        tokens.put(key, token);
+        return token;
+    }
+
+    /**
+     * Identifies a user's authorized client.
+     */
+    private record TokenKey(String registrationId, String principalName) { }
+
+    /**
+     * A cached access token.
+     *
+     * @param accessToken the token
+     * @param usableUntil from when it is no longer used (stated expiry minus skew)
+     * @param refreshAt from when it is renewed in the background
+     */
+    private record UserToken(OAuth2AccessToken accessToken, Instant usableUntil, Instant refreshAt) {
+
+        static UserToken of(OAuth2AccessToken accessToken, SpotifyProperties.UserToken properties) {
+            Instant now = Instant.now();
+            if (accessToken.getExpiresAt() == null) {
+                return new UserToken(accessToken, now.plus(UNKNOWN_EXPIRY), now);
+            }
+            Instant usableUntil = accessToken.getExpiresAt().minus(properties.expirySkew());
+            // Same threshold as the refresh_token provider (see OAuth2ClientConfig)
+            Instant refreshAt = accessToken.getExpiresAt().minus(properties.renewBeforeExpiry());
+            return new UserToken(accessToken, usableUntil, refreshAt.isBefore(now) ? now : refreshAt);
+        }
     }
 }
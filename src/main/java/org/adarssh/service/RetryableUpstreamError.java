@@ -0,0 +1,23 @@
+package org.adarssh.service;
+
+import org.adarssh.exception.SpotifyApiException;
+
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Retry predicate for the spotifyApi Resilience4j instance, in addition to its
+ * retry-exceptions: transient Spotify failures (502, 503, 504) are retried.
+ * <p>
+ * 429 is deliberately not retried here; {@link org.adarssh.config.UpstreamRateGovernor} already
+ * waits out short Retry-After pauses, and retrying a longer one would only add to the storm.
+ */
+public class RetryableUpstreamError implements Predicate<Throwable> {
+
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(502, 503, 504);
+
+    @Override
+    public boolean test(Throwable throwable) {
+        return throwable instanceof SpotifyApiException e && RETRYABLE_STATUSES.contains(e.getStatusCode());
+    }
+}
@@ -0,0 +1,125 @@
+package org.adarssh.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical upstream calls into a single in-flight call.
+ * <p>
+ * The first caller for a key (the leader) runs the loader on its own thread; callers that
+ * arrive with the same key while it is running (followers) wait for the leader's result
+ * instead of going to Spotify themselves. Once the call completes the key is released, so
+ * this only removes duplicate concurrent work and never serves stale data.
+ * <p>
+ * The loader never runs inside a map compute block, so no monitor is held during the
+ * upstream call and virtual threads are not pinned.
+ * <p>
+ * The bean coalesces top-items page loads; other upstream calls (token refreshes) use their
+ * own instance so each operation is measured on its own.
+ * <p>
+ * Metrics:
+ * - spotify.upstream.single.flight{operation, result=leader}: calls that went upstream
+ * - spotify.upstream.single.flight{operation, result=coalesced}: calls that shared a leader's result
+ * - spotify.upstream.single.flight.in.flight{operation}: keys currently being loaded
+ */
+@Component
+public class SingleFlight {
+
+    private static final Logger log = LoggerFactory.getLogger(SingleFlight.class);
+    private static final String METRIC_NAME = "spotify.upstream.single.flight";
+
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter coalesced;
+
+    /**
+     * Constructs the SingleFlight for top-items page loads and registers its metrics.
+     *
+     * @param meterRegistry the registry the metrics are published to
+     */
+    @Autowired
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this(meterRegistry, "top-items");
+    }
+
+    /**
+     * Constructs a new SingleFlight and registers its metrics.
+     *
+     * @param meterRegistry the registry the metrics are published to
+     * @param operation the operation tag of the metrics
+     */
+    public SingleFlight(MeterRegistry meterRegistry, String operation) {
+        this.leaders = counter(meterRegistry, operation, "leader");
+        this.coalesced = counter(meterRegistry, operation, "coalesced");
+        Gauge.builder(METRIC_NAME + ".in.flight", inFlight, Map::size)
+                .description("Upstream calls currently in flight")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the loader unless an identical call is already in flight, in which case wait for
+     * and return that call's result.
+     *
+     * @param key identifies identical calls; must implement equals and hashCode
+     * @param loader the upstream call
+     * @param <T> the result type; all calls sharing a key must use the same type
+     * @return the loader's result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Supplier<T> loader) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.increment();
+            log.debug("Coalesced upstream call for key: {}", key);
+            return (T) await(existing);
+        }
+
+        leaders.increment();
+        try {
+            T result = loader.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String operation, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("Upstream calls by single-flight outcome")
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Object await(CompletableFuture<Object> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            // Rethrow the leader's exception as-is so callers see the same failure
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
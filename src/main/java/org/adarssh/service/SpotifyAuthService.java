@@ -1,5 +1,8 @@
 package org.adarssh.service;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.adarssh.config.SpotifyProperties;
 import org.adarssh.dto.SpotifyTokenResponse;
 import org.adarssh.exception.SpotifyAuthenticationException;
@@ -13,43 +16,133 @@ import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestClient;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Base64;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service for handling Spotify authentication
+ * <p>
+ * The client-credentials (app) token is cached until shortly before it expires:
+ * - While the token is fresh, {@link #obtainAccessToken()} is a single volatile read
+ * - Within spotify.api.app-token.refresh-ahead of its expiry, callers keep getting the current
+ *   token and one background refresh renews it
+ * - Once it is no longer usable (expires_in minus spotify.api.app-token.expiry-skew), callers
+ *   block on a refresh; concurrent callers share one accounts call through {@link SingleFlight}
+ * <p>
+ * Metrics:
+ * - spotify.auth.app.token.age: seconds since the current token was obtained
+ * - spotify.auth.app.token.refresh{result=success|failure}: accounts call latency
+ * - spotify.upstream.single.flight{operation=app-token}: see {@link SingleFlight}
  */
 @Service
 public class SpotifyAuthService {
 
     private static final Logger log = LoggerFactory.getLogger(SpotifyAuthService.class);
+    private static final String APP_TOKEN_KEY = "spotify-app-token";
+    private static final Duration DEFAULT_EXPIRES_IN = Duration.ofHours(1);
 
     private final RestClient authRestClient;
-    private final SpotifyProperties properties;
+    private final SpotifyProperties.AppToken properties;
+    private final SingleFlight singleFlight;
+    private final String basicAuthorization;
+    private final Timer refreshSuccess;
+    private final Timer refreshFailure;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile AppToken token;
 
+    /**
+     * Constructs a new SpotifyAuthService.
+     *
+     * @param authRestClient the RestClient for the Spotify accounts service
+     * @param properties the Spotify configuration properties
+     * @param meterRegistry the registry the token metrics are published to
+     */
     public SpotifyAuthService(
             @Qualifier("spotifyAuthRestClient") RestClient authRestClient,
-            SpotifyProperties properties) {
+            SpotifyProperties properties,
+            MeterRegistry meterRegistry) {
         this.authRestClient = authRestClient;
-        this.properties = properties;
+        this.properties = properties.appToken();
+        this.singleFlight = new SingleFlight(meterRegistry, "app-token");
+
+        var credentials = properties.clientId() + ":" + properties.clientSecret();
+        this.basicAuthorization = "Basic " + Base64.getEncoder()
+                .encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+
+        this.refreshSuccess = refreshTimer(meterRegistry, "success");
+        this.refreshFailure = refreshTimer(meterRegistry, "failure");
+        Gauge.builder("spotify.auth.app.token.age", this, SpotifyAuthService::tokenAgeSeconds)
+                .description("Seconds since the cached app token was obtained")
+                .baseUnit("seconds")
+                .register(meterRegistry);
     }
 
     /**
      * Obtains an access token using client credentials flow
+     * <p>
+     * Returns the cached token while it is usable and only calls the accounts service when
+     * there is none or it has expired.
+     *
+     * @return the app access token
+     * @throws SpotifyAuthenticationException if no token can be obtained
      */
     public String obtainAccessToken() {
+        AppToken current = token;
+        Instant now = Instant.now();
+        if (current != null && now.isBefore(current.expiresAt())) {
+            if (!now.isBefore(current.refreshAt())) {
+                refreshInBackground();
+            }
+            return current.value();
+        }
+        return singleFlight.execute(APP_TOKEN_KEY, () -> {
+            // A caller that finished just before us may already have renewed the token
+            AppToken latest = token;
+            return latest != null && Instant.now().isBefore(latest.expiresAt()) ? latest : refresh();
+        }).value();
+    }
+
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("app-token-refresh").start(() -> {
+            try {
+                singleFlight.execute(APP_TOKEN_KEY, this::refresh);
+            } catch (RuntimeException e) {
+                // The current token stays in use until it expires; the next caller retries
+                log.warn("Background refresh of the Spotify app token failed: {}", e.getMessage());
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    private AppToken refresh() {
+        long start = System.nanoTime();
         try {
-            log.debug("Requesting Spotify access token");
+            AppToken renewed = requestToken();
+            token = renewed;
+            refreshSuccess.record(Duration.ofNanos(System.nanoTime() - start));
+            return renewed;
+        } catch (RuntimeException e) {
+            refreshFailure.record(Duration.ofNanos(System.nanoTime() - start));
+            throw e;
+        }
+    }
 
-            var credentials = properties.clientId() + ":" + properties.clientSecret();
-            var encodedCredentials = Base64.getEncoder()
-                    .encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+    private AppToken requestToken() {
+        try {
+            log.debug("Requesting Spotify access token");
 
             MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
             formData.add("grant_type", "client_credentials");
 
             var response = authRestClient.post()
                     .contentType(MediaType.APPLICATION_FORM_URLENCODED)
-                    .header("Authorization", "Basic " + encodedCredentials)
+                    .header("Authorization", basicAuthorization)
                     .body(formData)
                     .retrieve()
                     .body(SpotifyTokenResponse.class);
@@ -58,8 +151,8 @@ public class SpotifyAuthService {
                 throw new SpotifyAuthenticationException("Failed to obtain access token: null response");
             }
 
-            log.debug("Successfully obtained Spotify access token");
-            return response.accessToken();
+            log.debug("Successfully obtained Spotify access token (expires in {}s)", response.expiresIn());
+            return AppToken.of(response, properties);
 
         } catch (SpotifyAuthenticationException e) {
             // Re-throw our own exception without wrapping
@@ -69,4 +162,39 @@ public class SpotifyAuthService {
             throw new SpotifyAuthenticationException("Failed to authenticate with Spotify API", e);
         }
     }
+
+    private double tokenAgeSeconds() {
+        AppToken current = token;
+        return current != null
+                ? Duration.between(current.obtainedAt(), Instant.now()).toMillis() / 1000.0
+                : Double.NaN;
+    }
+
+    private static Timer refreshTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("spotify.auth.app.token.refresh")
+                .description("Latency of app token requests to the Spotify accounts service")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A cached app token.
+     *
+     * @param value the access token
+     * @param obtainedAt when it was obtained
+     * @param expiresAt from when it is no longer used (stated expiry minus skew)
+     * @param refreshAt from when it is renewed in the background
+     */
+    private record AppToken(String value, Instant obtainedAt, Instant expiresAt, Instant refreshAt) {
+
+        static AppToken of(SpotifyTokenResponse response, SpotifyProperties.AppToken properties) {
+            Instant now = Instant.now();
+            Duration expiresIn = response.expiresIn() != null
+                    ? Duration.ofSeconds(response.expiresIn())
+                    : DEFAULT_EXPIRES_IN;
+            Instant expiresAt = now.plus(expiresIn).minus(properties.expirySkew());
+            Instant refreshAt = expiresAt.minus(properties.refreshAhead());
+            return new AppToken(response.accessToken(), now, expiresAt, refreshAt.isBefore(now) ? now : refreshAt);
+        }
+    }
 }
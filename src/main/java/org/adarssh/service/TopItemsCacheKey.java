@@ -0,0 +1,38 @@
+package org.adarssh.service;
+
+import org.adarssh.dto.TimeRange;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Cache key for a user's canonical top-items page.
+ * <p>
+ * The key deliberately has no limit: the cached entry always holds the largest page
+ * Spotify returns, and smaller limits are served as slices of it. The time range is the
+ * parsed enum, so "medium_term", "MEDIUM_TERM" and null all share one entry.
+ *
+ * @param username the authenticated user, or "anonymous"
+ * @param timeRange the normalized time range
+ */
+public record TopItemsCacheKey(String username, TimeRange timeRange) {
+
+    /**
+     * Create the key for the currently authenticated user.
+     *
+     * @param timeRange the normalized time range
+     * @return the cache key
+     */
+    public static TopItemsCacheKey forCurrentUser(TimeRange timeRange) {
+        return new TopItemsCacheKey(currentUsername(), timeRange);
+    }
+
+    /**
+     * Get the current authenticated username.
+     *
+     * @return the current username or "anonymous" if not authenticated
+     */
+    public static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "anonymous";
+    }
+}
@@ -0,0 +1,210 @@
+package org.adarssh.service;
+
+import org.adarssh.dto.ArtistDto;
+import org.adarssh.dto.SpotifyPagedResponse;
+import org.adarssh.dto.TimeRange;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.exception.SpotifyApiException;
+import org.adarssh.service.TopItemsPipeline.Endpoint;
+import org.adarssh.service.UpstreamBulkheads.Operation;
+import org.adarssh.service.UpstreamBulkheads.Priority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Fetches and caches the canonical top-items pages from the Spotify API.
+ * <p>
+ * Each user and time range has exactly one cached page per item type, always holding the
+ * maximum page size Spotify allows. {@link SpotifyService} serves any requested limit as a
+ * slice of that page, so limit=5, limit=10 and limit=50 share one upstream call and one
+ * cache entry.
+ * <p>
+ * Caching, single-flight, circuit breaking, retries and fallbacks are applied by
+ * {@link TopItemsPipeline}. Spotify error statuses are mapped by {@link UpstreamErrors}; calls
+ * are paced app-wide by the rate governor on the spotifyRestClient, and slow ones can be
+ * hedged ({@link HedgedRequests}).
+ */
+@Service
+public class TopItemsClient {
+
+    /**
+     * Largest page Spotify returns for /me/top/{type}.
+     */
+    public static final int MAX_PAGE_SIZE = 50;
+
+    private static final Logger log = LoggerFactory.getLogger(TopItemsClient.class);
+
+    private final RestClient spotifyRestClient;
+    private final OAuth2TokenService oauth2TokenService;
+    private final TopItemsPipeline pipeline;
+    private final HedgedRequests hedgedRequests;
+    private final UpstreamBulkheads bulkheads;
+    private final LastKnownGoodCache lastKnownGood;
+
+    /**
+     * Constructs a new TopItemsClient with required dependencies.
+     *
+     * @param spotifyRestClient the configured RestClient for Spotify API calls
+     * @param oauth2TokenService the service for managing OAuth2 tokens
+     * @param pipeline caches pages and applies the resilience stages around upstream calls
+     * @param hedgedRequests hedges upstream calls that are slower than usual
+     * @param bulkheads limits concurrent upstream calls per operation and priority
+     * @param lastKnownGood keeps fetched pages to serve while Spotify is failing or slow
+     */
+    public TopItemsClient(
+            @Qualifier("spotifyRestClient") RestClient spotifyRestClient,
+            OAuth2TokenService oauth2TokenService,
+            TopItemsPipeline pipeline,
+            HedgedRequests hedgedRequests,
+            UpstreamBulkheads bulkheads,
+            LastKnownGoodCache lastKnownGood) {
+        this.spotifyRestClient = spotifyRestClient;
+        this.oauth2TokenService = oauth2TokenService;
+        this.pipeline = pipeline;
+        this.hedgedRequests = hedgedRequests;
+        this.bulkheads = bulkheads;
+        this.lastKnownGood = lastKnownGood;
+    }
+
+    /**
+     * Get the user's canonical top-tracks page.
+     * Results are cached per user and time range.
+     * Concurrent cache misses for the same key share a single upstream call.
+     * Implements retry (3 attempts) and circuit breaker patterns for resilience.
+     * While Spotify is failing or slow the last known good page (or an empty page) is served,
+     * marked stale and kept out of the cache.
+     *
+     * @param timeRange the time range
+     * @return up to {@link #MAX_PAGE_SIZE} top tracks
+     */
+    public UserTopItemsResponse<TrackDto> getTopTracks(TimeRange timeRange) {
+        var key = TopItemsCacheKey.forCurrentUser(timeRange);
+        return pipeline.execute(Endpoint.TOP_TRACKS, key, oauth2TokenService::getUserAccessToken,
+                accessToken -> loadTopTracks(key, accessToken, Priority.INTERACTIVE));
+    }
+
+    /**
+     * Get the user's canonical top-artists page.
+     * Results are cached per user and time range.
+     * Concurrent cache misses for the same key share a single upstream call.
+     * Implements retry (3 attempts) and circuit breaker patterns for resilience.
+     * While Spotify is failing or slow the last known good page (or an empty page) is served,
+     * marked stale and kept out of the cache.
+     *
+     * @param timeRange the time range
+     * @return up to {@link #MAX_PAGE_SIZE} top artists
+     */
+    public UserTopItemsResponse<ArtistDto> getTopArtists(TimeRange timeRange) {
+        var key = TopItemsCacheKey.forCurrentUser(timeRange);
+        return pipeline.execute(Endpoint.TOP_ARTISTS, key, oauth2TokenService::getUserAccessToken,
+                accessToken -> loadTopArtists(key, accessToken, Priority.INTERACTIVE));
+    }
+
+    /**
+     * Reload a cached top-tracks page outside of a request, using the user's stored
+     * authorized client. Used by the refresh-ahead cache loader.
+     *
+     * @param key the cache entry to reload
+     * @return up to {@link #MAX_PAGE_SIZE} top tracks
+     */
+    public UserTopItemsResponse<TrackDto> refreshTopTracks(TopItemsCacheKey key) {
+        return loadTopTracks(key, oauth2TokenService.getAccessToken(key.username()), Priority.BACKGROUND);
+    }
+
+    /**
+     * Reload a cached top-artists page outside of a request, using the user's stored
+     * authorized client. Used by the refresh-ahead cache loader.
+     *
+     * @param key the cache entry to reload
+     * @return up to {@link #MAX_PAGE_SIZE} top artists
+     */
+    public UserTopItemsResponse<ArtistDto> refreshTopArtists(TopItemsCacheKey key) {
+        return loadTopArtists(key, oauth2TokenService.getAccessToken(key.username()), Priority.BACKGROUND);
+    }
+
+    private UserTopItemsResponse<TrackDto> loadTopTracks(
+            TopItemsCacheKey key, String accessToken, Priority priority) {
+        var page = hedgedRequests.execute("tracks", () -> bulkheads.execute(Operation.TOP_TRACKS, priority,
+                () -> fetchTopTracks(key.timeRange(), accessToken)));
+        lastKnownGood.remember(Endpoint.TOP_TRACKS.cacheName(), key, page);
+        return page;
+    }
+
+    private UserTopItemsResponse<ArtistDto> loadTopArtists(
+            TopItemsCacheKey key, String accessToken, Priority priority) {
+        var page = hedgedRequests.execute("artists", () -> bulkheads.execute(Operation.TOP_ARTISTS, priority,
+                () -> fetchTopArtists(key.timeRange(), accessToken)));
+        lastKnownGood.remember(Endpoint.TOP_ARTISTS.cacheName(), key, page);
+        return page;
+    }
+
+    private UserTopItemsResponse<TrackDto> fetchTopTracks(TimeRange timeRange, String accessToken) {
+        log.debug("Fetching top {} tracks for time range: {}", MAX_PAGE_SIZE, timeRange.getValue());
+
+        try {
+            var response = spotifyRestClient.get()
+                    .uri(uriBuilder -> uriBuilder
+                            .path("/me/top/tracks")
+                            .queryParam("limit", MAX_PAGE_SIZE)
+                            .queryParam("time_range", timeRange.getValue())
+                            .build())
+                    .header("Authorization", "Bearer " + accessToken)
+                    .retrieve()
+                    .body(new ParameterizedTypeReference<SpotifyPagedResponse<TrackDto>>() { });
+
+            if (response == null || response.items() == null) {
+                throw new SpotifyApiException("Failed to retrieve top tracks: null response", 500);
+            }
+
+            return new UserTopItemsResponse<>("tracks", response.items().size(), response.items());
+
+        } catch (SpotifyApiException e) {
+            // Re-throw our own exception without wrapping
+            throw e;
+        } catch (RestClientResponseException e) {
+            log.warn("Spotify returned {} for top tracks", e.getStatusCode().value());
+            throw UpstreamErrors.translate("Failed to fetch top tracks from Spotify API", e);
+        } catch (Exception e) {
+            log.error("Failed to fetch top tracks", e);
+            throw new SpotifyApiException("Failed to fetch top tracks from Spotify API", 500, e);
+        }
+    }
+
+    private UserTopItemsResponse<ArtistDto> fetchTopArtists(TimeRange timeRange, String accessToken) {
+        log.debug("Fetching top {} artists for time range: {}", MAX_PAGE_SIZE, timeRange.getValue());
+
+        try {
+            var response = spotifyRestClient.get()
+                    .uri(uriBuilder -> uriBuilder
+                            .path("/me/top/artists")
+                            .queryParam("limit", MAX_PAGE_SIZE)
+                            .queryParam("time_range", timeRange.getValue())
+                            .build())
+                    .header("Authorization", "Bearer " + accessToken)
+                    .retrieve()
+                    .body(new ParameterizedTypeReference<SpotifyPagedResponse<ArtistDto>>() { });
+
+            if (response == null || response.items() == null) {
+                throw new SpotifyApiException("Failed to retrieve top artists: null response", 500);
+            }
+
+            return new UserTopItemsResponse<>("artists", response.items().size(), response.items());
+
+        } catch (SpotifyApiException e) {
+            // Re-throw our own exception without wrapping
+            throw e;
+        } catch (RestClientResponseException e) {
+            log.warn("Spotify returned {} for top artists", e.getStatusCode().value());
+            throw UpstreamErrors.translate("Failed to fetch top artists from Spotify API", e);
+        } catch (Exception e) {
+            log.error("Failed to fetch top artists", e);
+            throw new SpotifyApiException("Failed to fetch top artists from Spotify API", 500, e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.adarssh.service;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.adarssh.dto.AlbumDto;
+import org.adarssh.dto.ArtistDto;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Encodes cached top-items pages to bytes and back.
+ * <p>
+ * The item type of a page is not part of the payload; it is implied by the cache the page
+ * belongs to (topTracks holds tracks, topGenres holds strings, and so on). Pages are always
+ * written compact, even when the application's mapper pretty-prints HTTP responses, since the
+ * encoded size is what the caches weigh and what the disk tier stores.
+ */
+@Component
+public class TopItemsCodec {
+
+    private final ObjectWriter writer;
+    private final Map<String, ObjectReader> readers;
+
+    /**
+     * Constructs a new TopItemsCodec.
+     *
+     * @param objectMapper the application's object mapper
+     */
+    public TopItemsCodec(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.readers = Map.of(
+                "topTracks", objectMapper.readerFor(pageOf(objectMapper, TrackDto.class)),
+                "topArtists", objectMapper.readerFor(pageOf(objectMapper, ArtistDto.class)),
+                "topAlbums", objectMapper.readerFor(pageOf(objectMapper, AlbumDto.class)),
+                "topGenres", objectMapper.readerFor(pageOf(objectMapper, String.class)));
+    }
+
+    /**
+     * Check whether pages of a cache can be encoded.
+     *
+     * @param cacheName the cache name
+     * @return true for the top-items caches
+     */
+    public boolean supports(String cacheName) {
+        return readers.containsKey(cacheName);
+    }
+
+    /**
+     * Encode a page.
+     *
+     * @param page the page
+     * @return the encoded page
+     */
+    public byte[] encode(UserTopItemsResponse<?> page) {
+        try {
+            return writer.writeValueAsBytes(page);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode top-items page", e);
+        }
+    }
+
+    /**
+     * Decode a page of the given cache.
+     *
+     * @param cacheName the cache the page belongs to
+     * @param bytes the encoded page
+     * @return the page
+     */
+    public UserTopItemsResponse<?> decode(String cacheName, byte[] bytes) {
+        ObjectReader reader = readers.get(cacheName);
+        if (reader == null) {
+            throw new IllegalArgumentException("Not a top-items cache: " + cacheName);
+        }
+        try {
+            return reader.readValue(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode " + cacheName + " page", e);
+        }
+    }
+
+    private static JavaType pageOf(ObjectMapper objectMapper, Class<?> itemType) {
+        return objectMapper.getTypeFactory().constructParametricType(UserTopItemsResponse.class, itemType);
+    }
+}
@@ -0,0 +1,23 @@
+package org.adarssh.service;
+
+import org.adarssh.dto.TimeRange;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+
+/**
+ * Compiled cache key generator for the topTracks and topArtists caches.
+ * <p>
+ * Replaces the SpEL key expression that was parsed and evaluated on every lookup and
+ * that produced a separate entry per limit and per time-range spelling.
+ * Expects the cached method's first parameter to be the {@link TimeRange}.
+ */
+@Component("topItemsKeyGenerator")
+public class TopItemsKeyGenerator implements KeyGenerator {
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        return TopItemsCacheKey.forCurrentUser((TimeRange) params[0]);
+    }
+}
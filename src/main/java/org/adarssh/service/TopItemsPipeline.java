@@ -0,0 +1,302 @@
+package org.adarssh.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.adarssh.config.SpotifyProperties;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.exception.SpotifyApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Explicit call pipeline for the topTracks and topArtists pages.
+ * <p>
+ * Replaces the stacked @Cacheable, @Retry and @CircuitBreaker annotations, whose relative
+ * order was implicit and whose empty fallback could be cached for the full TTL. A cache hit
+ * now costs one lookup and no interceptors. Stages, outermost first:
+ * 1. cache: the regular cache, then the degraded-answer cache; a hit returns at once
+ * 2. single-flight: concurrent misses for the same key share one pass through the rest
+ * 3. concurrency limit: the leader of a single flight takes an {@link AdaptiveConcurrencyLimiter}
+ *    permit, so misses waiting on it hold none; beyond the limit the flight is shed, answered
+ *    with the last known good page or rejected with 503, and its followers get the same answer
+ * 4. per-user breaker: users whose token Spotify keeps rejecting are short-circuited
+ * 5. stale-while-revalidate: a slow call is answered from {@link LastKnownGoodCache}
+ * 6. circuit breaker (spotifyApi): one outcome per request, retries included; only
+ *    {@link FailureClass#UPSTREAM} failures count, so broken sessions cannot open it
+ * 7. retry (spotifyApi)
+ * 8. HTTP: the caller's upstream call (hedging, bulkhead, rate governor)
+ * <p>
+ * Behavior:
+ * - Only fresh pages are written to the regular cache
+ * - A failed call is answered with the last known good page or, without one, an empty page;
+ *   both are marked stale and kept for spotify.api.cache.stale.degraded-ttl in a separate
+ *   cache, so an outage is not retried on every request and a good entry is never replaced
+ * - Rate-limited (429) and bulkhead-rejected calls without a stale page are rethrown and
+ *   not cached, so the client gets the Retry-After instead of an empty page
+ * <p>
+ * Metrics:
+ * - spotify.cache.degraded{cache, result=stored|served}
+ */
+@Component
+public class TopItemsPipeline {
+
+    /**
+     * The top-items pages that go through the pipeline.
+     */
+    public enum Endpoint {
+        TOP_TRACKS("topTracks", "tracks"),
+        TOP_ARTISTS("topArtists", "artists");
+
+        private final String cacheName;
+        private final String type;
+
+        Endpoint(String cacheName, String type) {
+            this.cacheName = cacheName;
+            this.type = type;
+        }
+
+        /**
+         * Get the name of the regular cache the endpoint's pages are kept in.
+         *
+         * @return the cache name
+         */
+        public String cacheName() {
+            return cacheName;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TopItemsPipeline.class);
+    private static final String METRIC_NAME = "spotify.cache.degraded";
+    // Permits free up within an upstream round trip
+    private static final Duration SHED_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final ObjectProvider<CacheManager> cacheManager;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final SingleFlight singleFlight;
+    private final CircuitBreaker circuitBreaker;
+    private final Retry retry;
+    private final UserCircuitBreaker userCircuitBreaker;
+    private final LastKnownGoodCache lastKnownGood;
+    private final Map<Endpoint, DegradedCounters> degradedCounters = new EnumMap<>(Endpoint.class);
+    private final com.github.benmanes.caffeine.cache.Cache<Flight, UserTopItemsResponse<?>> degraded;
+    private final Map<Endpoint, Cache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new TopItemsPipeline.
+     *
+     * @param cacheManager provides the regular topTracks and topArtists caches
+     * @param singleFlight coalesces concurrent misses for the same page
+     * @param resilience the concurrency limit, circuit breakers, retry and last-known-good tier
+     *                   a miss goes through
+     * @param properties the Spotify configuration properties
+     * @param meterRegistry the registry the degraded-answer metrics are published to
+     */
+    public TopItemsPipeline(
+            ObjectProvider<CacheManager> cacheManager,
+            SingleFlight singleFlight,
+            TopItemsResilience resilience,
+            SpotifyProperties properties,
+            MeterRegistry meterRegistry) {
+        this.cacheManager = cacheManager;
+        this.singleFlight = singleFlight;
+        this.circuitBreaker = resilience.circuitBreaker();
+        this.retry = resilience.retry();
+        this.userCircuitBreaker = resilience.userCircuitBreaker();
+        this.lastKnownGood = resilience.lastKnownGood();
+        this.concurrencyLimiter = resilience.concurrencyLimiter();
+        for (Endpoint endpoint : Endpoint.values()) {
+            degradedCounters.put(endpoint, new DegradedCounters(
+                    counter(meterRegistry, endpoint, "stored"), counter(meterRegistry, endpoint, "served")));
+        }
+        this.degraded = Caffeine.newBuilder()
+                .maximumSize(properties.cache().maximumSize())
+                .expireAfterWrite(properties.cache().stale().degradedTtl())
+                .build();
+    }
+
+    /**
+     * Get a page from the cache, or fetch it through the resilience stages on a miss.
+     *
+     * @param endpoint the page type
+     * @param key the page's cache key
+     * @param accessToken obtains the access token on a miss; runs on the caller's thread
+     * @param upstream the upstream call given the access token; must not depend on
+     *                 thread-local request state
+     * @param <T> the item type
+     * @return the cached or fresh page, or a degraded page marked stale
+     * @throws RuntimeException if the call was rate limited or shed by a bulkhead or the
+     *         concurrency limit and there is no stale page
+     */
+    @SuppressWarnings("unchecked")
+    public <T> UserTopItemsResponse<T> execute(
+            Endpoint endpoint,
+            TopItemsCacheKey key,
+            Supplier<String> accessToken,
+            Function<String, UserTopItemsResponse<T>> upstream) {
+        Cache cache = cache(endpoint);
+        if (cache != null) {
+            Cache.ValueWrapper hit = cache.get(key);
+            if (hit != null && hit.get() != null) {
+                return (UserTopItemsResponse<T>) hit.get();
+            }
+        }
+        var flight = new Flight(endpoint, key);
+        UserTopItemsResponse<T> previous = (UserTopItemsResponse<T>) degraded.getIfPresent(flight);
+        if (previous != null) {
+            degradedCounters.get(endpoint).served().increment();
+            return previous;
+        }
+
+        return singleFlight.execute(flight, () -> limited(flight, cache, accessToken, upstream));
+    }
+
+    /**
+     * Load a page under a concurrency-limit permit; runs once per single flight, on the leader.
+     */
+    private <T> UserTopItemsResponse<T> limited(
+            Flight flight,
+            Cache cache,
+            Supplier<String> accessToken,
+            Function<String, UserTopItemsResponse<T>> upstream) {
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            return shed(flight);
+        }
+        try {
+            return load(flight, cache, accessToken, upstream);
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Answer a miss the concurrency limit turned away from the cache only: the last known good
+     * page if there is one, otherwise 503 with Retry-After.
+     */
+    private <T> UserTopItemsResponse<T> shed(Flight flight) {
+        UserTopItemsResponse<T> stale = lastKnownGood.serveOnError(flight.endpoint().cacheName(), flight.key());
+        concurrencyLimiter.onShed(stale != null);
+        if (stale != null) {
+            return stale;
+        }
+        throw new SpotifyApiException("Too many requests are waiting for Spotify. Please try again shortly.",
+                503, SHED_RETRY_AFTER, null);
+    }
+
+    private <T> UserTopItemsResponse<T> load(
+            Flight flight,
+            Cache cache,
+            Supplier<String> accessToken,
+            Function<String, UserTopItemsResponse<T>> upstream) {
+        String cacheName = flight.endpoint().cacheName();
+        String username = flight.key().username();
+        UserTopItemsResponse<T> page;
+        try {
+            userCircuitBreaker.acquirePermission(username);
+            String token = token(accessToken);
+            Supplier<UserTopItemsResponse<T>> call = CircuitBreaker.decorateSupplier(circuitBreaker,
+                    Retry.decorateSupplier(retry, () -> upstream.apply(token)));
+            page = lastKnownGood.execute(cacheName, flight.key(), call);
+            if (page.stale() == null) {
+                userCircuitBreaker.onSuccess(username);
+            }
+        } catch (RuntimeException e) {
+            userCircuitBreaker.onFailure(username, e);
+            page = fallback(flight, e);
+        }
+
+        if (page.stale() == null) {
+            if (cache != null) {
+                cache.put(flight.key(), page);
+            }
+            degraded.invalidate(flight);
+        } else if (cache == null || cache.get(flight.key()) == null) {
+            // A background revalidation may have cached a fresh page in the meantime
+            degraded.put(flight, page);
+            degradedCounters.get(flight.endpoint()).stored().increment();
+        }
+        return page;
+    }
+
+    private <T> UserTopItemsResponse<T> fallback(Flight flight, RuntimeException ex) {
+        Endpoint endpoint = flight.endpoint();
+        UserTopItemsResponse<T> stale = lastKnownGood.serveOnError(endpoint.cacheName(), flight.key());
+        if (stale != null) {
+            log.warn("{} failed for {}; serving last known good page", endpoint.cacheName(), flight.key(), ex);
+            return stale;
+        }
+        rethrowIfThrottled(ex);
+        log.error("{} failed for {}; serving an empty page", endpoint.cacheName(), flight.key(), ex);
+        return new UserTopItemsResponse<T>(endpoint.type, 0, List.of()).asStale();
+    }
+
+    /**
+     * A missing or unusable token is a user-scoped failure, like Spotify answering 401.
+     */
+    private static String token(Supplier<String> accessToken) {
+        try {
+            return accessToken.get();
+        } catch (IllegalStateException e) {
+            throw new SpotifyApiException(e.getMessage(), 401, e);
+        }
+    }
+
+    /**
+     * A rate-limited (429) or bulkhead-rejected (503) call is reported with its Retry-After
+     * rather than answered with an empty page that tells the client to come straight back.
+     */
+    private static void rethrowIfThrottled(RuntimeException ex) {
+        if (ex instanceof SpotifyApiException e && e.getStatusCode() == 429) {
+            throw e;
+        }
+        if (ex instanceof BulkheadFullException) {
+            throw ex;
+        }
+    }
+
+    private Cache cache(Endpoint endpoint) {
+        Cache cache = caches.get(endpoint);
+        if (cache == null) {
+            CacheManager manager = cacheManager.getIfAvailable();
+            cache = manager != null ? manager.getCache(endpoint.cacheName()) : null;
+            if (cache != null) {
+                caches.put(endpoint, cache);
+            }
+        }
+        return cache;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, Endpoint endpoint, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("Degraded top-items answers kept briefly instead of in the regular cache")
+                .tag("cache", endpoint.cacheName())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Identifies one page for single-flight coalescing and the degraded-answer cache.
+     */
+    private record Flight(Endpoint endpoint, TopItemsCacheKey key) { }
+
+    /**
+     * The degraded-answer counters of one endpoint.
+     */
+    private record DegradedCounters(Counter stored, Counter served) { }
+}
@@ -0,0 +1,175 @@
+package org.adarssh.service;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.adarssh.config.CorrelationId;
+import org.adarssh.config.SpotifyProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Refresh-ahead reloader for the topTracks and topArtists caches.
+ * <p>
+ * Once an entry is older than spotify.api.cache.refresh-ahead.after, the next read still
+ * returns it immediately and Caffeine asks this loader to reload it in the background. The
+ * reload runs under the user's stored OAuth2 authorized client, so an active user keeps
+ * getting warm entries and never pays a cold Spotify fetch.
+ * <p>
+ * Behavior:
+ * - Cache misses are not loaded here; they go through {@link TopItemsPipeline} so retry,
+ *   circuit breaking and single-flight still apply
+ * - Reloads run on a small bounded pool; when its queue is full the reload is dropped
+ * - The pool has its own Spotify budget (calls per minute); beyond it reloads are dropped
+ * - A dropped or failed reload keeps the current entry until it expires (Caffeine logs
+ *   the failure and retries on a later read)
+ * - A successful reload only returns the page; Caffeine installs it, and the cache's removal
+ *   listener (see CacheConfig) evicts the derived view (topAlbums/topGenres) of the same key
+ * <p>
+ * Metrics:
+ * - spotify.cache.refresh{cache, result=success|failure|rejected}
+ */
+@Component
+public class TopItemsRefresher implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TopItemsRefresher.class);
+    private static final String METRIC_NAME = "spotify.cache.refresh";
+
+    private final TopItemsClient topItemsClient;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final Bucket budget;
+
+    /**
+     * Constructs a new TopItemsRefresher with its own bounded pool and Spotify budget.
+     *
+     * @param topItemsClient the client used to reload pages
+     * @param properties the Spotify configuration properties
+     * @param meterRegistry the registry the refresh metrics are published to
+     */
+    public TopItemsRefresher(
+            TopItemsClient topItemsClient,
+            SpotifyProperties properties,
+            MeterRegistry meterRegistry) {
+        this.topItemsClient = topItemsClient;
+        this.meterRegistry = meterRegistry;
+
+        var refreshAhead = properties.cache().refreshAhead();
+        this.executor = new ThreadPoolExecutor(
+                refreshAhead.threads(),
+                refreshAhead.threads(),
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(refreshAhead.queueCapacity()),
+                Thread.ofPlatform().name("cache-refresh-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.budget = Bucket.builder()
+                .addLimit(Bandwidth.classic(
+                        refreshAhead.budgetPerMinute(),
+                        Refill.greedy(refreshAhead.budgetPerMinute(), Duration.ofMinutes(1))))
+                .build();
+    }
+
+    /**
+     * Create the loader for the topTracks cache.
+     *
+     * @return a loader that only reloads existing entries
+     */
+    public CacheLoader<Object, Object> topTracksLoader() {
+        return new RefreshAheadLoader("topTracks", topItemsClient::refreshTopTracks);
+    }
+
+    /**
+     * Create the loader for the topArtists cache.
+     *
+     * @return a loader that only reloads existing entries
+     */
+    public CacheLoader<Object, Object> topArtistsLoader() {
+        return new RefreshAheadLoader("topArtists", topItemsClient::refreshTopArtists);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private Counter counter(String cacheName, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("Background cache refreshes by outcome")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Caffeine loader that reloads entries on the refresh pool and never loads misses.
+     */
+    private final class RefreshAheadLoader implements CacheLoader<Object, Object> {
+
+        private final String cacheName;
+        private final Function<TopItemsCacheKey, Object> reload;
+        private final Counter succeeded;
+        private final Counter failed;
+        private final Counter rejected;
+
+        RefreshAheadLoader(String cacheName, Function<TopItemsCacheKey, Object> reload) {
+            this.cacheName = cacheName;
+            this.reload = reload;
+            this.succeeded = counter(cacheName, "success");
+            this.failed = counter(cacheName, "failure");
+            this.rejected = counter(cacheName, "rejected");
+        }
+
+        @Override
+        public Object load(Object key) {
+            // Returning null leaves the miss to the TopItemsPipeline
+            return null;
+        }
+
+        @Override
+        public CompletableFuture<Object> asyncReload(Object key, Object oldValue, Executor ignored) {
+            if (!budget.tryConsume(1)) {
+                return rejected(key, "refresh budget exhausted");
+            }
+            try {
+                return CompletableFuture.supplyAsync(
+                        CorrelationId.wrap(() -> reload((TopItemsCacheKey) key)), executor);
+            } catch (RejectedExecutionException e) {
+                return rejected(key, "refresh queue full");
+            }
+        }
+
+        private Object reload(TopItemsCacheKey key) {
+            try {
+                Object value = reload.apply(key);
+                succeeded.increment();
+                log.debug("Refreshed {} entry for {}", cacheName, key);
+                return value;
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.debug("Background refresh of {} entry for {} failed: {}", cacheName, key, e.getMessage());
+                throw e;
+            }
+        }
+
+        private CompletableFuture<Object> rejected(Object key, String reason) {
+            rejected.increment();
+            log.debug("Skipped refresh of {} entry for {}: {}", cacheName, key, reason);
+            return CompletableFuture.failedFuture(new RejectedExecutionException(reason));
+        }
+    }
+}
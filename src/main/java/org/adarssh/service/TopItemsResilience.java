@@ -0,0 +1,90 @@
+package org.adarssh.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * The resilience stages a top-items miss passes through in {@link TopItemsPipeline}, held
+ * together so the pipeline takes them as one collaborator.
+ */
+@Component
+public class TopItemsResilience {
+
+    private static final String RESILIENCE_INSTANCE = "spotifyApi";
+
+    private final CircuitBreaker circuitBreaker;
+    private final Retry retry;
+    private final UserCircuitBreaker userCircuitBreaker;
+    private final LastKnownGoodCache lastKnownGood;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * Constructs a new TopItemsResilience.
+     *
+     * @param circuitBreakerRegistry provides the spotifyApi circuit breaker
+     * @param retryRegistry provides the spotifyApi retry
+     * @param userCircuitBreaker short-circuits users whose token Spotify keeps rejecting
+     * @param lastKnownGood serves the last known good page while Spotify is failing or slow
+     * @param concurrencyLimiter limits the misses waiting for Spotify at the same time
+     */
+    public TopItemsResilience(
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            RetryRegistry retryRegistry,
+            UserCircuitBreaker userCircuitBreaker,
+            LastKnownGoodCache lastKnownGood,
+            AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(RESILIENCE_INSTANCE);
+        this.retry = retryRegistry.retry(RESILIENCE_INSTANCE);
+        this.userCircuitBreaker = userCircuitBreaker;
+        this.lastKnownGood = lastKnownGood;
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Get the spotifyApi circuit breaker.
+     *
+     * @return the circuit breaker
+     */
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Get the spotifyApi retry.
+     *
+     * @return the retry
+     */
+    public Retry retry() {
+        return retry;
+    }
+
+    /**
+     * Get the per-user circuit breaker.
+     *
+     * @return the per-user circuit breaker
+     */
+    public UserCircuitBreaker userCircuitBreaker() {
+        return userCircuitBreaker;
+    }
+
+    /**
+     * Get the last-known-good tier.
+     *
+     * @return the last-known-good tier
+     */
+    public LastKnownGoodCache lastKnownGood() {
+        return lastKnownGood;
+    }
+
+    /**
+     * Get the concurrency limit on misses.
+     *
+     * @return the concurrency limiter
+     */
+    public AdaptiveConcurrencyLimiter concurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+}
@@ -0,0 +1,153 @@
+package org.adarssh.service;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Per-operation, per-priority bulkheads around upstream Spotify calls.
+ * <p>
+ * Each upstream operation gets two Resilience4j semaphore bulkheads, one for interactive calls
+ * made on behalf of a waiting request and one for background work (refresh-ahead), named
+ * {@code <operation>-<priority>}, e.g. {@code topTracks-background}. A burst of background
+ * refreshes or one slow endpoint can then only use up its own permits.
+ * <p>
+ * Behavior:
+ * - Bulkheads use the resilience4j.bulkhead.configs "interactive" and "background"; an instance of
+ *   the same name under resilience4j.bulkhead.instances overrides them
+ * - A call waits up to max-wait-duration for a permit and then fails with
+ *   {@link BulkheadFullException}, which the circuit breaker and retry ignore and the API maps
+ *   to 503 with Retry-After
+ * - Semaphore bulkheads suit virtual threads: calls run on the caller's thread and waiting
+ *   does not pin a carrier
+ * <p>
+ * Metrics (in addition to Resilience4j's resilience4j.bulkhead.* gauges):
+ * - spotify.upstream.bulkhead.waiting{bulkhead}: calls currently queued for a permit
+ * - spotify.upstream.bulkhead.rejected{bulkhead}: calls rejected because the bulkhead was full
+ */
+@Component
+public class UpstreamBulkheads {
+
+    /**
+     * Upstream operations with their own bulkheads.
+     */
+    public enum Operation {
+        TOP_TRACKS("topTracks"),
+        TOP_ARTISTS("topArtists"),
+        CATALOG("catalog");
+
+        private final String bulkheadName;
+
+        Operation(String bulkheadName) {
+            this.bulkheadName = bulkheadName;
+        }
+    }
+
+    /**
+     * Priority classes, each with its own bulkhead configuration.
+     */
+    public enum Priority {
+        INTERACTIVE("interactive"),
+        BACKGROUND("background");
+
+        private final String configName;
+
+        Priority(String configName) {
+            this.configName = configName;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamBulkheads.class);
+    private static final String METRIC_NAME = "spotify.upstream.bulkhead";
+
+    private final BulkheadRegistry bulkheadRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Guarded> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new UpstreamBulkheads, adding default priority configurations to the registry
+     * where none are configured.
+     *
+     * @param bulkheadRegistry the registry bulkheads are created in
+     * @param meterRegistry the registry the bulkhead metrics are published to
+     */
+    public UpstreamBulkheads(BulkheadRegistry bulkheadRegistry, MeterRegistry meterRegistry) {
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.meterRegistry = meterRegistry;
+        addDefaultConfiguration(Priority.INTERACTIVE, 25, Duration.ofMillis(250));
+        addDefaultConfiguration(Priority.BACKGROUND, 4, Duration.ZERO);
+    }
+
+    /**
+     * Run an upstream call inside the bulkhead of its operation and priority.
+     *
+     * @param operation the upstream operation
+     * @param priority whether a request is waiting for the call
+     * @param call the upstream call
+     * @param <T> the result type
+     * @return the result of the call
+     * @throws BulkheadFullException if no permit became free in time
+     */
+    public <T> T execute(Operation operation, Priority priority, Supplier<T> call) {
+        Guarded guarded = bulkheads.computeIfAbsent(
+                operation.bulkheadName + "-" + priority.configName, name -> guard(name, priority));
+
+        guarded.waiting().incrementAndGet();
+        try {
+            guarded.bulkhead().acquirePermission();
+        } catch (BulkheadFullException e) {
+            guarded.rejected().increment();
+            log.warn("Bulkhead {} is full; rejecting upstream call", guarded.bulkhead().getName());
+            throw e;
+        } finally {
+            guarded.waiting().decrementAndGet();
+        }
+
+        try {
+            return call.get();
+        } finally {
+            guarded.bulkhead().onComplete();
+        }
+    }
+
+    private Guarded guard(String name, Priority priority) {
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(name, priority.configName);
+        AtomicInteger waiting = new AtomicInteger();
+        Gauge.builder(METRIC_NAME + ".waiting", waiting, AtomicInteger::get)
+                .description("Upstream calls queued for a bulkhead permit")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Counter rejected = Counter.builder(METRIC_NAME + ".rejected")
+                .description("Upstream calls rejected by a full bulkhead")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        return new Guarded(bulkhead, waiting, rejected);
+    }
+
+    private void addDefaultConfiguration(Priority priority, int maxConcurrentCalls, Duration maxWait) {
+        if (bulkheadRegistry.getConfiguration(priority.configName).isEmpty()) {
+            bulkheadRegistry.addConfiguration(priority.configName, BulkheadConfig.custom()
+                    .maxConcurrentCalls(maxConcurrentCalls)
+                    .maxWaitDuration(maxWait)
+                    .build());
+        }
+    }
+
+    /**
+     * A bulkhead with its queue-depth gauge and rejection counter.
+     */
+    private record Guarded(Bulkhead bulkhead, AtomicInteger waiting, Counter rejected) { }
+}
@@ -0,0 +1,43 @@
+package org.adarssh.service;
+
+import org.adarssh.config.UpstreamRateGovernor;
+import org.adarssh.exception.SpotifyApiException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.Duration;
+
+/**
+ * Maps Spotify error responses to the status our clients see.
+ * <p>
+ * - 401, 403 and 404 are passed through: the user's token, scopes or the resource are at fault
+ * - 429 is passed through with Spotify's Retry-After
+ * - 503 and 504 are passed through; they are retried (see {@link RetryableUpstreamError})
+ * - Anything else is a 502: Spotify failed, or rejected a request we should not have sent
+ */
+final class UpstreamErrors {
+
+    private UpstreamErrors() {
+    }
+
+    /**
+     * Translate an error response from Spotify.
+     *
+     * @param message what failed, e.g. "Failed to fetch top tracks from Spotify API"
+     * @param e the error response
+     * @return the exception to throw
+     */
+    static SpotifyApiException translate(String message, RestClientResponseException e) {
+        int upstream = e.getStatusCode().value();
+        return switch (upstream) {
+            case 401, 403, 404, 503, 504 -> new SpotifyApiException(message, upstream, e);
+            case 429 -> new SpotifyApiException(message + ": rate limited by Spotify", upstream,
+                    retryAfter(e.getResponseHeaders()), e);
+            default -> new SpotifyApiException(message + " (Spotify returned " + upstream + ")", 502, e);
+        };
+    }
+
+    private static Duration retryAfter(HttpHeaders headers) {
+        return headers != null ? UpstreamRateGovernor.parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER)) : null;
+    }
+}
@@ -0,0 +1,18 @@
+package org.adarssh.service;
+
+import java.util.function.Predicate;
+
+/**
+ * Record-failure predicate for the spotifyApi circuit breaker: only failures that say something
+ * about Spotify's health ({@link FailureClass#UPSTREAM}) are recorded.
+ * <p>
+ * A 401 for one user's expired token or a 404 for one request means Spotify answered, so those
+ * calls count as successful; 429 is handled by the rate governor instead of the breaker.
+ */
+public class UpstreamHealthFailure implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable throwable) {
+        return FailureClass.of(throwable) == FailureClass.UPSTREAM;
+    }
+}
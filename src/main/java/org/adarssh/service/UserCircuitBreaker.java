@@ -0,0 +1,125 @@
+package org.adarssh.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.adarssh.config.SpotifyProperties;
+import org.adarssh.exception.SpotifyApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Per-user circuit breaker for sessions whose token Spotify keeps rejecting.
+ * <p>
+ * User-scoped failures ({@link FailureClass#USER}: 401, 403, no token) do not count toward the
+ * shared spotifyApi breaker. Instead they are counted per user here:
+ * - After spotify.api.user-token.rejection-threshold consecutive user-scoped failures, that
+ *   user's calls are short-circuited for spotify.api.user-token.rejection-cooldown without
+ *   asking Spotify or the token endpoint
+ * - Any successful call resets the count; other failures leave it unchanged
+ * - A count that sees no new failure for the cooldown is forgotten
+ * <p>
+ * Metrics:
+ * - spotify.upstream.user.circuit{result=opened|short_circuited}
+ */
+@Component
+public class UserCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(UserCircuitBreaker.class);
+    private static final String METRIC_NAME = "spotify.upstream.user.circuit";
+
+    private final int threshold;
+    private final Duration cooldown;
+    private final Cache<String, Strikes> strikes;
+    private final Counter opened;
+    private final Counter shortCircuited;
+
+    /**
+     * Constructs a new UserCircuitBreaker.
+     *
+     * @param properties the Spotify configuration properties
+     * @param meterRegistry the registry the per-user breaker metrics are published to
+     */
+    public UserCircuitBreaker(SpotifyProperties properties, MeterRegistry meterRegistry) {
+        var userToken = properties.userToken();
+        this.threshold = userToken.rejectionThreshold();
+        this.cooldown = userToken.rejectionCooldown();
+        this.strikes = Caffeine.newBuilder()
+                .maximumSize(userToken.maximumSize())
+                .expireAfterWrite(cooldown)
+                .build();
+        this.opened = counter(meterRegistry, "opened");
+        this.shortCircuited = counter(meterRegistry, "short_circuited");
+    }
+
+    /**
+     * Check that a user's calls may go upstream.
+     *
+     * @param username the user
+     * @throws SpotifyApiException with status 401 while the user's breaker is open
+     */
+    public void acquirePermission(String username) {
+        Strikes current = strikes.getIfPresent(username);
+        if (current != null && current.isOpen(Instant.now())) {
+            shortCircuited.increment();
+            throw new SpotifyApiException(
+                    "Spotify keeps rejecting this session. Please re-authenticate.", 401);
+        }
+    }
+
+    /**
+     * Record a successful call, closing the user's breaker.
+     *
+     * @param username the user
+     */
+    public void onSuccess(String username) {
+        strikes.invalidate(username);
+    }
+
+    /**
+     * Record a failed call; only user-scoped failures count.
+     *
+     * @param username the user
+     * @param failure the exception the call failed with
+     */
+    public void onFailure(String username, Throwable failure) {
+        if (FailureClass.of(failure) != FailureClass.USER) {
+            return;
+        }
+        Instant now = Instant.now();
+        Strikes updated = strikes.asMap().compute(username, (name, current) -> {
+            if (current != null && current.isOpen(now)) {
+                return current;
+            }
+            int count = current != null ? current.count() + 1 : 1;
+            return new Strikes(count, count >= threshold ? now.plus(cooldown) : null);
+        });
+        if (updated.count() == threshold && updated.isOpen(now)) {
+            opened.increment();
+            log.warn("Spotify rejected {} calls in a row for user {}; short-circuiting their calls for {}",
+                    threshold, username, cooldown);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("Per-user circuit breaker transitions and short-circuited calls")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Consecutive user-scoped failures of one user, and until when their calls are short-circuited.
+     */
+    private record Strikes(int count, Instant openUntil) {
+
+        boolean isOpen(Instant now) {
+            return openUntil != null && now.isBefore(openUntil);
+        }
+    }
+}
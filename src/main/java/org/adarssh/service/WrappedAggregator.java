@@ -0,0 +1,208 @@
+package org.adarssh.service;
+
+import org.adarssh.dto.AlbumDto;
+import org.adarssh.dto.ArtistDto;
+import org.adarssh.dto.TimeRange;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.exception.SpotifyApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Derives the top-albums and top-genres views from the canonical top-items pages.
+ * <p>
+ * Each view is built in a single pass over its source page and cached under the same
+ * (user, time range) key as the page it was derived from, so repeated requests neither
+ * re-aggregate nor compare full album records. A view built from a stale page is marked
+ * stale as well and is not cached. A cached view is evicted as soon as its source page is
+ * replaced, expires or is removed (see CacheConfig), so it never outlives the page.
+ * <p>
+ * Ranking:
+ * - Albums are deduplicated by id and ranked by how many top tracks they contain,
+ *   then by the position of their highest-ranked track
+ * - Genres are weighted by the rank of the artists that carry them (the #1 artist of
+ *   a 50-item page contributes 50, the last one 1), then ordered by first appearance
+ * - Albums without an id (local files) are left out
+ * - Artists listed without genres are looked up in the shared {@link CatalogService}; if
+ *   the lookup fails they are ranked without genres and the view is marked stale, so it is
+ *   not cached
+ */
+@Service
+public class WrappedAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(WrappedAggregator.class);
+
+    private static final Comparator<Ranked<?>> BY_SCORE_THEN_POSITION =
+            Comparator.<Ranked<?>>comparingInt(Ranked::score).reversed()
+                    .thenComparingInt(Ranked::firstPosition);
+
+    private final TopItemsClient topItemsClient;
+    private final CatalogService catalogService;
+
+    /**
+     * Constructs a new WrappedAggregator.
+     *
+     * @param topItemsClient the client for the cached, canonical top-items pages
+     * @param catalogService the shared catalog artists without genres are looked up in
+     */
+    public WrappedAggregator(TopItemsClient topItemsClient, CatalogService catalogService) {
+        this.topItemsClient = topItemsClient;
+        this.catalogService = catalogService;
+    }
+
+    /**
+     * Get the user's ranked albums, derived from the canonical top-tracks page.
+     *
+     * @param timeRange the time range
+     * @return every album in the top tracks, best ranked first
+     */
+    @Cacheable(value = "topAlbums", keyGenerator = "topItemsKeyGenerator", unless = "#result.stale() != null")
+    public UserTopItemsResponse<AlbumDto> getTopAlbums(TimeRange timeRange) {
+        log.debug("Aggregating top albums for time range: {}", timeRange.getValue());
+        var tracks = topItemsClient.getTopTracks(timeRange);
+        List<AlbumDto> albums = rankAlbums(tracks.items());
+        return new UserTopItemsResponse<>("albums", albums.size(), albums, tracks.stale());
+    }
+
+    /**
+     * Get the user's ranked genres, derived from the canonical top-artists page.
+     *
+     * @param timeRange the time range
+     * @return every genre of the top artists, best ranked first
+     */
+    @Cacheable(value = "topGenres", keyGenerator = "topItemsKeyGenerator", unless = "#result.stale() != null")
+    public UserTopItemsResponse<String> getTopGenres(TimeRange timeRange) {
+        log.debug("Aggregating top genres for time range: {}", timeRange.getValue());
+        var artists = topItemsClient.getTopArtists(timeRange);
+        List<ArtistDto> ranked = artists.items();
+        boolean degraded = false;
+        List<String> genreLess = genreLessIds(ranked);
+        if (!genreLess.isEmpty()) {
+            try {
+                ranked = withCatalogGenres(ranked, catalogService.getArtists(genreLess));
+            } catch (SpotifyApiException e) {
+                log.warn("Ranking genres without catalog data for {} artists: {}", genreLess.size(), e.getMessage());
+                degraded = true;
+            }
+        }
+        List<String> genres = rankGenres(ranked);
+        var response = new UserTopItemsResponse<>("genres", genres.size(), genres, artists.stale());
+        // Not cached, so the next request retries the catalog instead of keeping poorer genres
+        return degraded ? response.asStale() : response;
+    }
+
+    private static List<String> genreLessIds(List<ArtistDto> artists) {
+        List<String> ids = new ArrayList<>();
+        for (ArtistDto artist : artists) {
+            if (artist.id() != null && (artist.genres() == null || artist.genres().isEmpty())) {
+                ids.add(artist.id());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Replace artists listed without genres by their catalog entry, which carries them.
+     *
+     * @param artists the top artists, best ranked first
+     * @param catalog the catalog entries of the artists listed without genres, keyed by id
+     * @return the same artists in the same order, with genres where the catalog has them
+     */
+    private static List<ArtistDto> withCatalogGenres(List<ArtistDto> artists, Map<String, ArtistDto> catalog) {
+        List<ArtistDto> enriched = new ArrayList<>(artists.size());
+        for (ArtistDto artist : artists) {
+            enriched.add(artist.id() == null ? artist : catalog.getOrDefault(artist.id(), artist));
+        }
+        return enriched;
+    }
+
+    /**
+     * Deduplicate albums by id and rank them by track frequency, then by best track position.
+     *
+     * @param tracks the top tracks, best ranked first
+     * @return the ranked albums
+     */
+    static List<AlbumDto> rankAlbums(List<TrackDto> tracks) {
+        Map<String, Ranked<AlbumDto>> byId = new HashMap<>();
+        for (int position = 0; position < tracks.size(); position++) {
+            AlbumDto album = tracks.get(position).album();
+            // Local files have no album id; they would all merge into one album
+            if (album == null || album.id() == null) {
+                continue;
+            }
+            byId.computeIfAbsent(album.id(), id -> new Ranked<>(album, byId.size())).add(1);
+        }
+        return ranked(byId);
+    }
+
+    /**
+     * Rank genres by the summed rank weight of the artists that carry them.
+     *
+     * @param artists the top artists, best ranked first
+     * @return the ranked genres
+     */
+    static List<String> rankGenres(List<ArtistDto> artists) {
+        Map<String, Ranked<String>> byName = new HashMap<>();
+        for (int position = 0; position < artists.size(); position++) {
+            List<String> genres = artists.get(position).genres();
+            if (genres == null) {
+                continue;
+            }
+            int weight = artists.size() - position;
+            for (String genre : genres) {
+                byName.computeIfAbsent(genre, name -> new Ranked<>(name, byName.size())).add(weight);
+            }
+        }
+        return ranked(byName);
+    }
+
+    private static <T> List<T> ranked(Map<String, Ranked<T>> entries) {
+        List<Ranked<T>> sorted = new ArrayList<>(entries.values());
+        sorted.sort(BY_SCORE_THEN_POSITION);
+        List<T> items = new ArrayList<>(sorted.size());
+        for (Ranked<T> entry : sorted) {
+            items.add(entry.item());
+        }
+        return List.copyOf(items);
+    }
+
+    /**
+     * Accumulates the score of one distinct item during aggregation.
+     */
+    private static final class Ranked<T> {
+
+        private final T item;
+        private final int firstPosition;
+        private int score;
+
+        Ranked(T item, int firstPosition) {
+            this.item = item;
+            this.firstPosition = firstPosition;
+        }
+
+        void add(int weight) {
+            score += weight;
+        }
+
+        T item() {
+            return item;
+        }
+
+        int firstPosition() {
+            return firstPosition;
+        }
+
+        int score() {
+            return score;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.adarssh.service;
+
+import org.adarssh.config.CorrelationId;
+import org.adarssh.config.SpotifyProperties;
+import org.adarssh.dto.SpotifyWrappedResponse;
+import org.adarssh.exception.SpotifyApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.StructuredTaskScope;
+
+/**
+ * Service for assembling the complete Spotify Wrapped summary.
+ * <p>
+ * Top albums and top genres are cached views derived from top tracks and top artists (see
+ * {@link WrappedAggregator}), so only two upstream fetches are needed. In concurrent mode
+ * (the default) all four categories are requested at the same time on virtual threads
+ * inside a {@link StructuredTaskScope}; a view and its source page share one upstream call
+ * through the single-flight layer. If one task fails, the others are cancelled and the
+ * failure is propagated to the caller.
+ */
+@Service
+public class WrappedService {
+
+    private static final Logger log = LoggerFactory.getLogger(WrappedService.class);
+
+    private final SpotifyService spotifyService;
+    private final SpotifyProperties properties;
+
+    /**
+     * Constructs a new WrappedService.
+     *
+     * @param spotifyService the service used to fetch the top items
+     * @param properties the Spotify configuration properties
+     */
+    public WrappedService(SpotifyService spotifyService, SpotifyProperties properties) {
+        this.spotifyService = spotifyService;
+        this.properties = properties;
+    }
+
+    /**
+     * Get all of the user's top items at once.
+     *
+     * @param limit the maximum number of items per category
+     * @param timeRange the time range (short_term, medium_term, long_term)
+     * @return top tracks, artists, albums and genres
+     */
+    public SpotifyWrappedResponse getWrapped(Integer limit, String timeRange) {
+        if (properties.wrapped().concurrent()) {
+            return getWrappedConcurrently(limit, timeRange);
+        }
+        log.debug("Assembling wrapped sequentially for time range: {}", timeRange);
+        return new SpotifyWrappedResponse(
+                spotifyService.getTopTracks(limit, timeRange),
+                spotifyService.getTopArtists(limit, timeRange),
+                spotifyService.getTopAlbums(limit, timeRange),
+                spotifyService.getTopGenres(limit, timeRange));
+    }
+
+    private SpotifyWrappedResponse getWrappedConcurrently(Integer limit, String timeRange) {
+        log.debug("Assembling wrapped concurrently for time range: {}", timeRange);
+        try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            var tracks = scope.fork(withRequestContext(() -> spotifyService.getTopTracks(limit, timeRange)));
+            var artists = scope.fork(withRequestContext(() -> spotifyService.getTopArtists(limit, timeRange)));
+            var albums = scope.fork(withRequestContext(() -> spotifyService.getTopAlbums(limit, timeRange)));
+            var genres = scope.fork(withRequestContext(() -> spotifyService.getTopGenres(limit, timeRange)));
+
+            scope.join().throwIfFailed(WrappedService::propagate);
+
+            return new SpotifyWrappedResponse(tracks.get(), artists.get(), albums.get(), genres.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SpotifyApiException("Interrupted while assembling Spotify Wrapped", 503, e);
+        }
+    }
+
+    /**
+     * Wrap a task so that it runs with the caller's security context and logging MDC.
+     * Both are thread-local and would otherwise be missing on the forked virtual thread.
+     */
+    private static <T> Callable<T> withRequestContext(Callable<T> task) {
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        return CorrelationId.wrap(() -> {
+            SecurityContextHolder.setContext(securityContext);
+            try {
+                return task.call();
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        });
+    }
+
+    private static RuntimeException propagate(Throwable failure) {
+        if (failure instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new SpotifyApiException("Failed to assemble Spotify Wrapped", 500, failure);
+    }
+}
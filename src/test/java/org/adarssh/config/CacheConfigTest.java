@@ -0,0 +1,242 @@
+package org.adarssh.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.dto.TimeRange;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.service.DiskCacheStore;
+import org.adarssh.service.TopItemsCacheKey;
+import org.adarssh.service.TopItemsClient;
+import org.adarssh.service.TopItemsCodec;
+import org.adarssh.service.TopItemsRefresher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class CacheConfigTest {
+
+    private final SpotifyProperties properties = TestSpotifyProperties.builder()
+            .refreshAhead(TestSpotifyProperties.refreshAhead(true, 60))
+            .stale(TestSpotifyProperties.stale(true, Duration.ofSeconds(1)))
+            .build();
+
+    @TempDir
+    private Path directory;
+
+    private TopItemsRefresher refresher;
+    private DiskCacheStore diskCacheStore;
+
+    @AfterEach
+    void tearDown() {
+        if (refresher != null) {
+            refresher.destroy();
+        }
+        if (diskCacheStore != null) {
+            diskCacheStore.destroy();
+        }
+    }
+
+    @Test
+    void expiryFollowsTimeRangeOfKey() {
+        // given
+        var expiry = new CacheConfig.TimeRangeExpiry(properties.cache());
+
+        // when/then
+        assertThat(expiry.expireAfterCreate(key(TimeRange.SHORT_TERM), "value", 0))
+                .isEqualTo(TimeUnit.MINUTES.toNanos(5));
+        assertThat(expiry.expireAfterCreate(key(TimeRange.MEDIUM_TERM), "value", 0))
+                .isEqualTo(TimeUnit.MINUTES.toNanos(15));
+        assertThat(expiry.expireAfterUpdate(key(TimeRange.LONG_TERM), "value", 0, 1))
+                .isEqualTo(TimeUnit.HOURS.toNanos(1));
+    }
+
+    @Test
+    void readsDoNotExtendLifetime() {
+        // given
+        var expiry = new CacheConfig.TimeRangeExpiry(properties.cache());
+
+        // when/then
+        assertThat(expiry.expireAfterRead(key(TimeRange.SHORT_TERM), "value", 0, 42)).isEqualTo(42);
+    }
+
+    @Test
+    void cacheManagerRefreshesTopItemsAheadOfExpiry() throws Exception {
+        // when
+        CaffeineCacheManager cacheManager = cacheManager(properties);
+
+        // then
+        assertThat(nativeCache(cacheManager, "topTracks")).isInstanceOf(LoadingCache.class);
+        assertThat(nativeCache(cacheManager, "topArtists")).isInstanceOf(LoadingCache.class);
+        assertThat(nativeCache(cacheManager, "topTracks").policy().refreshAfterWrite())
+                .hasValueSatisfying(policy -> assertThat(policy.getRefreshesAfter()).isEqualTo(Duration.ofMinutes(4)));
+        assertThat(nativeCache(cacheManager, "topAlbums").policy().refreshAfterWrite()).isEmpty();
+        assertThat(nativeCache(cacheManager, "topAlbums").policy().expireVariably()).isPresent();
+    }
+
+    @Test
+    void cacheManagerWithoutRefreshAheadOnlyExpires() throws Exception {
+        // given
+        var noRefresh = TestSpotifyProperties.builder()
+                .refreshAhead(TestSpotifyProperties.refreshAhead(false, 60))
+                .stale(TestSpotifyProperties.stale(true, Duration.ofSeconds(1)))
+                .build();
+
+        // when
+        CaffeineCacheManager cacheManager = cacheManager(noRefresh);
+
+        // then
+        assertThat(nativeCache(cacheManager, "topTracks")).isNotInstanceOf(LoadingCache.class);
+        assertThat(nativeCache(cacheManager, "topTracks").policy().expireVariably()).isPresent();
+    }
+
+    @Test
+    void cacheManagerEvictsDerivedViewWhenItsSourcePageChanges() throws Exception {
+        // given
+        CaffeineCacheManager cacheManager = cacheManager(properties);
+        var albums = new UserTopItemsResponse<>("albums", 0, List.of());
+        cacheManager.getCache("topTracks").put(key(TimeRange.SHORT_TERM), new UserTopItemsResponse<>("tracks", 0,
+                List.of()));
+        cacheManager.getCache("topAlbums").put(key(TimeRange.SHORT_TERM), albums);
+        cacheManager.getCache("topGenres").put(key(TimeRange.SHORT_TERM), albums);
+
+        // when: the tracks page is replaced by a newer one
+        cacheManager.getCache("topTracks").put(key(TimeRange.SHORT_TERM), new UserTopItemsResponse<>("tracks", 1,
+                List.of(new TrackDto("track1", "Track 1", null, List.of(), 80, 180000, null))));
+
+        // then: only the view derived from it goes
+        awaitEvicted(cacheManager.getCache("topAlbums"), key(TimeRange.SHORT_TERM));
+        assertThat(cacheManager.getCache("topGenres").get(key(TimeRange.SHORT_TERM))).isNotNull();
+    }
+
+    @Test
+    void cacheManagerEvictsDerivedViewWhenItsSourcePageIsRemoved() throws Exception {
+        // given
+        CaffeineCacheManager cacheManager = cacheManager(properties);
+        cacheManager.getCache("topArtists").put(key(TimeRange.SHORT_TERM), new UserTopItemsResponse<>("artists", 0,
+                List.of()));
+        cacheManager.getCache("topGenres").put(key(TimeRange.SHORT_TERM), new UserTopItemsResponse<>("genres", 0,
+                List.of()));
+
+        // when
+        cacheManager.getCache("topArtists").evict(key(TimeRange.SHORT_TERM));
+
+        // then
+        awaitEvicted(cacheManager.getCache("topGenres"), key(TimeRange.SHORT_TERM));
+    }
+
+    @Test
+    void otherCachesUseSpringCacheSpec() throws Exception {
+        // given
+        CaffeineCacheManager cacheManager = cacheManager(properties);
+
+        // when/then
+        assertThat(cacheManager.getCache("someOtherCache")).isNotNull();
+        assertThat(nativeCache(cacheManager, "someOtherCache").policy().expireAfterWrite())
+                .hasValueSatisfying(policy -> assertThat(policy.getExpiresAfter()).isEqualTo(Duration.ofSeconds(300)));
+    }
+
+    @Test
+    void diskTierBacksTopItemsCachesAcrossRestarts() throws Exception {
+        // given
+        var withDisk = TestSpotifyProperties.builder()
+                .refreshAhead(TestSpotifyProperties.refreshAhead(true, 60))
+                .stale(TestSpotifyProperties.stale(true, Duration.ofSeconds(1)))
+                .disk(TestSpotifyProperties.disk(true, directory.toString()))
+                .build();
+        var page = new UserTopItemsResponse<>("tracks", 1,
+                List.of(new TrackDto("track1", "Track 1", null, List.of(), 80, 180000, null)));
+        cacheManager(withDisk).getCache("topTracks").put(key(TimeRange.SHORT_TERM), page);
+        diskCacheStore.destroy();
+        refresher.destroy();
+
+        // when
+        CaffeineCacheManager restarted = cacheManager(withDisk);
+        // The segments are indexed in the background after startup; until then lookups miss
+        Cache.ValueWrapper cached = restarted.getCache("topTracks").get(key(TimeRange.SHORT_TERM));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cached == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            cached = restarted.getCache("topTracks").get(key(TimeRange.SHORT_TERM));
+        }
+
+        // then
+        assertThat(cached).isNotNull();
+        assertThat(cached.get()).isEqualTo(page);
+        assertThat(nativeCache(restarted, "topTracks").getIfPresent(key(TimeRange.SHORT_TERM))).isEqualTo(page);
+        assertThat(restarted.getCache("topAlbums")).isInstanceOf(CaffeineCache.class);
+    }
+
+    @Test
+    void compactStorageKeepsEncodedPagesBoundedByBytes() throws Exception {
+        // given
+        var compact = TestSpotifyProperties.builder()
+                .refreshAhead(TestSpotifyProperties.refreshAhead(true, 60))
+                .stale(TestSpotifyProperties.stale(true, Duration.ofSeconds(1)))
+                .disk(TestSpotifyProperties.disk(false, directory.toString()))
+                .compact(TestSpotifyProperties.compact(true))
+                .build();
+        CaffeineCacheManager cacheManager = cacheManager(compact);
+        var page = new UserTopItemsResponse<>("tracks", 1,
+                List.of(new TrackDto("track1", "Track 1", null, List.of(), 80, 180000, null)));
+
+        // when
+        cacheManager.getCache("topTracks").put(key(TimeRange.SHORT_TERM), page);
+
+        // then
+        assertThat(cacheManager.getCache("topTracks").get(key(TimeRange.SHORT_TERM)).get()).isEqualTo(page);
+        assertThat(nativeCache(cacheManager, "topTracks").getIfPresent(key(TimeRange.SHORT_TERM)))
+                .isInstanceOf(byte[].class);
+        assertThat(nativeCache(cacheManager, "topGenres").policy().eviction())
+                .hasValueSatisfying(eviction -> {
+                    assertThat(eviction.isWeighted()).isTrue();
+                    assertThat(eviction.getMaximum()).isEqualTo(64 * 1024);
+                });
+    }
+
+    private CaffeineCacheManager cacheManager(SpotifyProperties properties) throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        refresher = new TopItemsRefresher(mock(TopItemsClient.class), properties, meterRegistry);
+        diskCacheStore = new DiskCacheStore(properties, new TopItemsCodec(new ObjectMapper()), meterRegistry);
+        diskCacheStore.afterPropertiesSet();
+        var springCache = new CacheProperties();
+        springCache.getCaffeine().setSpec("maximumSize=500,expireAfterWrite=300s");
+        springCache.setCacheNames(List.of());
+        return new CacheConfig().cacheManager(springCache, properties, refresher, diskCacheStore,
+                new TopItemsCodec(new ObjectMapper()));
+    }
+
+    /**
+     * Wait for the removal listener, which Caffeine runs on its executor.
+     */
+    private static void awaitEvicted(Cache cache, Object key) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.get(key) != null && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(cache.get(key)).isNull();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache(
+            CaffeineCacheManager cacheManager, String name) {
+        return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cacheManager.getCache(name).getNativeCache();
+    }
+
+    private static TopItemsCacheKey key(TimeRange timeRange) {
+        return new TopItemsCacheKey("testuser", timeRange);
+    }
+}
@@ -0,0 +1,76 @@
+package org.adarssh.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.service.TopItemsCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactValuesTest {
+
+    private final TopItemsCodec codec = new TopItemsCodec(new ObjectMapper());
+
+    @Test
+    void largePagesAreDeflatedAndRoundTrip() {
+        // given
+        var values = new CompactValues(codec, true);
+        UserTopItemsResponse<TrackDto> page = page(50);
+
+        // when
+        byte[] stored = values.encode(page);
+
+        // then
+        assertThat(stored.length).isLessThan(codec.encode(page).length / 2);
+        assertThat(values.decode("topTracks", stored)).isEqualTo(page);
+    }
+
+    @Test
+    void smallPagesAndDisabledCompressionAreStoredAsIs() {
+        // given
+        UserTopItemsResponse<TrackDto> small = new UserTopItemsResponse<>("tracks", 0, List.of());
+        UserTopItemsResponse<TrackDto> large = page(50);
+
+        // when
+        byte[] storedSmall = new CompactValues(codec, true).encode(small);
+        byte[] storedLarge = new CompactValues(codec, false).encode(large);
+
+        // then
+        assertThat(storedSmall).hasSize(codec.encode(small).length + 1);
+        assertThat(storedLarge).hasSize(codec.encode(large).length + 1);
+        assertThat(new CompactValues(codec, true).decode("topTracks", storedLarge)).isEqualTo(large);
+    }
+
+    @Test
+    void entriesWeighTheirBytesPlusOverhead() {
+        // when/then
+        assertThat(CompactValues.weigh("key", new byte[1000])).isEqualTo(1000 + CompactValues.ENTRY_OVERHEAD);
+        assertThat(CompactValues.weigh("key", "not compact")).isEqualTo(CompactValues.ENTRY_OVERHEAD);
+    }
+
+    @Test
+    void pagesWeighTheirCompactEncodingWhenApplicationMapperIndents() throws Exception {
+        // given
+        var indenting = new TopItemsCodec(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT));
+        UserTopItemsResponse<TrackDto> page = page(1);
+        int compactLength = new ObjectMapper().writeValueAsBytes(page).length;
+
+        // when
+        int weight = CompactValues.weigh("key", new CompactValues(indenting, false).encode(page));
+
+        // then
+        assertThat(weight).isEqualTo(CompactValues.ENTRY_OVERHEAD + 1 + compactLength);
+    }
+
+    private static UserTopItemsResponse<TrackDto> page(int size) {
+        List<TrackDto> tracks = IntStream.range(0, size)
+                .mapToObj(i -> new TrackDto("track" + i, "Track " + i, null, List.of(), 80, 180000, null))
+                .toList();
+        return new UserTopItemsResponse<>("tracks", tracks.size(), tracks);
+    }
+}
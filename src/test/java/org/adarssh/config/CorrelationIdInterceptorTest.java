@@ -0,0 +1,61 @@
+package org.adarssh.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CorrelationIdInterceptorTest {
+
+    private final CorrelationIdInterceptor interceptor = new CorrelationIdInterceptor();
+    private final MockClientHttpRequest request =
+            new MockClientHttpRequest(HttpMethod.GET, URI.create("https://api.spotify.com"));
+
+    @AfterEach
+    void tearDown() {
+        MDC.clear();
+    }
+
+    @Test
+    void interceptSendsCurrentCorrelationId() throws Exception {
+        // given
+        MDC.put(CorrelationId.MDC_KEY, "abc-123");
+
+        // when
+        interceptor.intercept(request, new byte[0], (req, body) ->
+                new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+
+        // then
+        assertThat(request.getHeaders().getFirst("X-Correlation-ID")).isEqualTo("abc-123");
+    }
+
+    @Test
+    void interceptSendsNoHeaderOutsideRequest() throws Exception {
+        // when
+        interceptor.intercept(request, new byte[0], (req, body) ->
+                new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+
+        // then
+        assertThat(request.getHeaders().containsKey("X-Correlation-ID")).isFalse();
+    }
+
+    @Test
+    void interceptSendsNoHeaderForInvalidCorrelationId() throws Exception {
+        // given
+        MDC.put(CorrelationId.MDC_KEY, "abc 123");
+
+        // when
+        interceptor.intercept(request, new byte[0], (req, body) ->
+                new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+
+        // then
+        assertThat(request.getHeaders().containsKey("X-Correlation-ID")).isFalse();
+    }
+}
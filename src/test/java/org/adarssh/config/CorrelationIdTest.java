@@ -0,0 +1,140 @@
+package org.adarssh.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CorrelationIdTest {
+
+    @AfterEach
+    void tearDown() {
+        MDC.clear();
+    }
+
+    @Test
+    void generateReturnsUlid() {
+        // when
+        String id = CorrelationId.generate();
+
+        // then
+        assertThat(id).hasSize(26).matches("[0-9A-HJKMNP-TV-Z]{26}");
+    }
+
+    @Test
+    void generateEncodesTimestampFirst() {
+        // when
+        String id = CorrelationId.generate(1_700_000_000_000L);
+
+        // then: 1700000000000 in Crockford base32
+        assertThat(id).startsWith("01HF7YAT00");
+    }
+
+    @Test
+    void generateIsMonotonicWithinOneMillisecond() {
+        // given
+        List<String> ids = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 1_000; i++) {
+            ids.add(CorrelationId.generate(1_700_000_000_000L));
+        }
+
+        // then
+        assertThat(ids).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void generateStaysMonotonicWhenClockGoesBack() {
+        // given
+        String before = CorrelationId.generate(1_700_000_000_500L);
+
+        // when
+        String after = CorrelationId.generate(1_700_000_000_000L);
+
+        // then
+        assertThat(after).isGreaterThan(before);
+    }
+
+    @Test
+    void generateIsUniqueAcrossThreads() throws Exception {
+        // given
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+
+        // when
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        ids.add(CorrelationId.generate());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        // then
+        assertThat(ids).hasSize(80_000);
+    }
+
+    @Test
+    void wrapRunsTaskWithCallersMdc() throws Exception {
+        // given
+        MDC.put(CorrelationId.MDC_KEY, "abc-123");
+        AtomicReference<String> seen = new AtomicReference<>();
+        Runnable task = CorrelationId.wrap(() -> seen.set(CorrelationId.current()));
+
+        // when
+        Thread thread = Thread.ofVirtual().start(task);
+        thread.join();
+
+        // then
+        assertThat(seen.get()).isEqualTo("abc-123");
+    }
+
+    @Test
+    void wrapRestoresMdcOfThreadRunningTheTask() throws Exception {
+        // given
+        MDC.put(CorrelationId.MDC_KEY, "request-1");
+        Runnable task = CorrelationId.wrap(() -> { });
+        MDC.put(CorrelationId.MDC_KEY, "request-2");
+
+        // when
+        task.run();
+
+        // then
+        assertThat(CorrelationId.current()).isEqualTo("request-2");
+    }
+
+    @Test
+    void isValidAcceptsShortAlphanumericIdsWithDashes() {
+        // when/then
+        assertThat(CorrelationId.isValid("abc-123")).isTrue();
+        assertThat(CorrelationId.isValid(CorrelationId.generate())).isTrue();
+        assertThat(CorrelationId.isValid("a".repeat(64))).isTrue();
+    }
+
+    @Test
+    void isValidRejectsMissingOversizedAndUnsafeIds() {
+        // when/then
+        assertThat(CorrelationId.isValid(null)).isFalse();
+        assertThat(CorrelationId.isValid("")).isFalse();
+        assertThat(CorrelationId.isValid("a".repeat(65))).isFalse();
+        assertThat(CorrelationId.isValid("abc\r\nforged log line")).isFalse();
+        assertThat(CorrelationId.isValid("abc_123")).isFalse();
+        assertThat(CorrelationId.isValid("abc\u00e9")).isFalse();
+    }
+}
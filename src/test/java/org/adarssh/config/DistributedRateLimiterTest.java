@@ -0,0 +1,119 @@
+package org.adarssh.config;
+
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import org.adarssh.config.KeyedRateLimiter.Decision;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DistributedRateLimiterTest {
+
+    private static final List<GcraRateLimiter.Limit> LIMITS = List.of(
+            new GcraRateLimiter.Limit(25, Duration.ofHours(1)));
+
+    private final AtomicLong clock = new AtomicLong();
+    private final InMemoryBucketProxyManager proxyManager = spy(new InMemoryBucketProxyManager());
+
+    @Test
+    void tryAcquireTakesOneLeasePerRoundTrip() {
+        // given
+        DistributedRateLimiter limiter = replica(proxyManager);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire("alice", 1).allowed()).isTrue();
+        }
+
+        // then
+        verify(proxyManager, times(1)).builder();
+    }
+
+    @Test
+    void tryAcquireEnforcesLimitAcrossReplicas() {
+        // given
+        DistributedRateLimiter first = replica(proxyManager);
+        DistributedRateLimiter second = replica(proxyManager);
+
+        // when: both replicas admit alternately until neither can
+        int admitted = 0;
+        for (int i = 0; i < 100; i++) {
+            if ((i % 2 == 0 ? first : second).tryAcquire("alice", 1).allowed()) {
+                admitted++;
+            }
+        }
+
+        // then: leases shrink near the limit, so exactly the capacity is admitted
+        assertThat(admitted).isEqualTo(25);
+    }
+
+    @Test
+    void tryAcquireGivesUpExpiredLease() {
+        // given
+        DistributedRateLimiter first = replica(proxyManager);
+        DistributedRateLimiter second = replica(proxyManager);
+        first.tryAcquire("alice", 1);
+
+        // when: the first replica's lease of 10 expires unused
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        Decision afterExpiry = first.tryAcquire("alice", 1);
+        int admittedBySecond = 0;
+        while (second.tryAcquire("alice", 1).allowed()) {
+            admittedBySecond++;
+        }
+
+        // then: the given-up requests are not admitted by anyone, never admitted twice
+        assertThat(afterExpiry.allowed()).isTrue();
+        assertThat(admittedBySecond).isEqualTo(5);
+    }
+
+    @Test
+    void tryAcquireRejectsWithTheWaitForTheSharedBucket() {
+        // given
+        DistributedRateLimiter limiter = replica(proxyManager);
+        for (int i = 0; i < 25; i++) {
+            limiter.tryAcquire("alice", 1);
+        }
+
+        // when
+        Decision decision = limiter.tryAcquire("alice", 1);
+
+        // then
+        assertThat(decision.allowed()).isFalse();
+        assertThat(decision.retryAfter()).isPositive();
+    }
+
+    @Test
+    void tryAcquireLimitsLocallyWhileBackendFails() {
+        // given
+        @SuppressWarnings("unchecked")
+        ProxyManager<String> failing = mock(ProxyManager.class);
+        when(failing.builder()).thenThrow(new IllegalStateException("Connection refused"));
+        DistributedRateLimiter limiter = replica(failing);
+
+        // when
+        int admitted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (limiter.tryAcquire("alice", 1).allowed()) {
+                admitted++;
+            }
+        }
+
+        // then
+        assertThat(admitted).isEqualTo(25);
+    }
+
+    private DistributedRateLimiter replica(ProxyManager<String> backend) {
+        var cluster = new RateLimitProperties.Cluster(RateLimitProperties.Backend.IN_MEMORY, "rate_limit_bucket",
+                false, Duration.ofHours(1), Duration.ofMinutes(5), 10, Duration.ofSeconds(1));
+        return new DistributedRateLimiter(backend, "user:", LIMITS, cluster, 1_000, clock::get);
+    }
+}
@@ -3,6 +3,7 @@ package org.adarssh.config;
 import jakarta.servlet.FilterChain;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletRequest;
@@ -16,23 +17,25 @@ import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 /**
- * Tests for RateLimitingFilter.
+ * Tests for EdgeFilter.
  */
-class RateLimitingFilterTest {
+class EdgeFilterTest {
 
-    private RateLimitingFilter filter;
+    private EdgeFilter filter;
     private MockHttpServletRequest request;
     private MockHttpServletResponse response;
     private FilterChain filterChain;
 
     @BeforeEach
     void setUp() {
-        filter = new RateLimitingFilter();
+        filter = new EdgeFilter(new RateLimitPolicyEngine(
+                () -> new RateLimitProperties(null, 1_000, 24, 64, null, null, null, null), null));
         request = new MockHttpServletRequest();
         response = new MockHttpServletResponse();
         filterChain = mock(FilterChain.class);
@@ -240,4 +243,150 @@ class RateLimitingFilterTest {
         // then
         verify(filterChain, times(1)).doFilter(any(), any());
     }
+
+    @Test
+    void doFilterChargesWrappedRequestsTheirConfiguredCost() throws Exception {
+        // given
+        request.setRequestURI("/api/spotify/wrapped");
+
+        // when
+        filter.doFilter(request, response, filterChain);
+
+        // then
+        assertThat(response.getHeader("X-Rate-Limit-Remaining")).isEqualTo("96");
+    }
+
+    @Test
+    void doFilterLimitsAnonymousCallersPerSubnet() throws Exception {
+        // given - exhaust the limit of one subnet
+        request.setRemoteAddr("203.0.113.7");
+        for (int i = 0; i < 100; i++) {
+            filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        }
+
+        // when
+        MockHttpServletRequest sameSubnet = new MockHttpServletRequest();
+        sameSubnet.setRemoteAddr("203.0.113.99");
+        MockHttpServletResponse sameSubnetResponse = new MockHttpServletResponse();
+        filter.doFilter(sameSubnet, sameSubnetResponse, filterChain);
+        MockHttpServletRequest otherSubnet = new MockHttpServletRequest();
+        otherSubnet.setRemoteAddr("198.51.100.7");
+        MockHttpServletResponse otherSubnetResponse = new MockHttpServletResponse();
+        filter.doFilter(otherSubnet, otherSubnetResponse, filterChain);
+
+        // then
+        assertThat(sameSubnetResponse.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(otherSubnetResponse.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void doFilterDoesNotLimitFreePaths() throws Exception {
+        // given - exhaust the limit
+        for (int i = 0; i < 100; i++) {
+            filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        }
+        request.setRequestURI("/api/health");
+
+        // when
+        filter.doFilter(request, response, filterChain);
+
+        // then
+        verify(filterChain).doFilter(request, response);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader("X-Rate-Limit-Remaining")).isNull();
+    }
+
+    @Test
+    void doFilterUsesIncomingCorrelationIdForMdcAndResponse() throws Exception {
+        // given
+        request.addHeader("X-Correlation-ID", "abc-123");
+        String[] seenInChain = new String[1];
+        doAnswer(invocation -> {
+            seenInChain[0] = MDC.get("correlationId");
+            return null;
+        }).when(filterChain).doFilter(any(), any());
+
+        // when
+        filter.doFilter(request, response, filterChain);
+
+        // then
+        assertThat(seenInChain[0]).isEqualTo("abc-123");
+        assertThat(response.getHeader("X-Correlation-ID")).isEqualTo("abc-123");
+        assertThat(MDC.get("correlationId")).isNull();
+    }
+
+    @Test
+    void doFilterGeneratesCorrelationIdWhenMissing() throws Exception {
+        // given
+        request.addHeader("X-Correlation-ID", " ");
+
+        // when
+        filter.doFilter(request, response, filterChain);
+
+        // then
+        assertThat(response.getHeader("X-Correlation-ID")).hasSize(26);
+    }
+
+    @Test
+    void doFilterReplacesInvalidIncomingCorrelationId() throws Exception {
+        // given
+        request.addHeader("X-Correlation-ID", "abc\r\nforged log line");
+
+        // when
+        filter.doFilter(request, response, filterChain);
+
+        // then
+        assertThat(response.getHeader("X-Correlation-ID")).hasSize(26).isNotEqualTo("abc\r\nforged log line");
+    }
+
+    @Test
+    void doFilterSetsSecurityHeaders() throws Exception {
+        // when
+        filter.doFilter(request, response, filterChain);
+
+        // then
+        assertThat(response.getHeader("Strict-Transport-Security")).isEqualTo("max-age=31536000; includeSubDomains");
+        assertThat(response.getHeader("X-Content-Type-Options")).isEqualTo("nosniff");
+        assertThat(response.getHeader("X-Frame-Options")).isEqualTo("DENY");
+        assertThat(response.getHeader("X-XSS-Protection")).isEqualTo("1; mode=block");
+        assertThat(response.getHeader("Content-Security-Policy"))
+                .startsWith("default-src 'self'; ")
+                .contains("connect-src 'self' https://api.spotify.com https://accounts.spotify.com");
+        assertThat(response.getHeader("Referrer-Policy")).isEqualTo("strict-origin-when-cross-origin");
+        assertThat(response.getHeader("Permissions-Policy")).isEqualTo("geolocation=(), microphone=(), camera=()");
+    }
+
+    @Test
+    void doFilterSetsSecurityHeadersAndCorrelationIdOnRejectedRequests() throws Exception {
+        // given - exhaust rate limit
+        for (int i = 0; i < 100; i++) {
+            filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        }
+
+        // when
+        filter.doFilter(request, response, filterChain);
+
+        // then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(response.getHeader("X-Correlation-ID")).isNotNull();
+        assertThat(response.getHeader("Content-Security-Policy")).isNotNull();
+    }
+
+    @Test
+    void doFilterWritesPreSerializedJsonBodyMatchingRetryAfter() throws Exception {
+        // given - exhaust rate limit
+        for (int i = 0; i < 100; i++) {
+            filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        }
+
+        // when
+        filter.doFilter(request, response, filterChain);
+
+        // then
+        String retryAfter = response.getHeader("Retry-After");
+        String expected = "{\"error\":\"Too Many Requests\",\"message\":\"Rate limit exceeded. Try again in "
+                + retryAfter + " seconds.\",\"status\":429}";
+        assertThat(response.getContentAsString()).isEqualTo(expected);
+        assertThat(response.getContentLength()).isEqualTo(expected.length());
+    }
 }
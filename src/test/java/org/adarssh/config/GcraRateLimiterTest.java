@@ -0,0 +1,187 @@
+package org.adarssh.config;
+
+import org.adarssh.config.KeyedRateLimiter.Decision;
+import org.adarssh.config.GcraRateLimiter.Limit;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GcraRateLimiterTest {
+
+    private static final List<Limit> LIMITS = List.of(
+            new Limit(100, Duration.ofMinutes(1)),
+            new Limit(1000, Duration.ofHours(1)));
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+    private final GcraRateLimiter<String> limiter = new GcraRateLimiter<>(LIMITS, 1_000, Duration.ofHours(1),
+            clock::get);
+
+    @Test
+    void tryAcquireAllowsBurstUpToCapacity() {
+        // when
+        Decision first = limiter.tryAcquire("user");
+        for (int i = 0; i < 98; i++) {
+            limiter.tryAcquire("user");
+        }
+        Decision last = limiter.tryAcquire("user");
+        Decision rejected = limiter.tryAcquire("user");
+
+        // then
+        assertThat(first.allowed()).isTrue();
+        assertThat(first.remaining()).isEqualTo(99);
+        assertThat(last.allowed()).isTrue();
+        assertThat(last.remaining()).isZero();
+        assertThat(rejected.allowed()).isFalse();
+        assertThat(rejected.retryAfter()).isEqualTo(Duration.ofMillis(600));
+    }
+
+    @Test
+    void tryAcquireRefillsOneRequestPerEmissionInterval() {
+        // given
+        drain("user", 100);
+
+        // when
+        clock.addAndGet(599);
+        Decision early = limiter.tryAcquire("user");
+        clock.addAndGet(1);
+        Decision onTime = limiter.tryAcquire("user");
+
+        // then
+        assertThat(early.allowed()).isFalse();
+        assertThat(early.retryAfter()).isEqualTo(Duration.ofMillis(1));
+        assertThat(onTime.allowed()).isTrue();
+        assertThat(onTime.remaining()).isZero();
+    }
+
+    @Test
+    void tryAcquireEnforcesTheLongerLimitAcrossBursts() {
+        // given: eleven minutes of full bursts, 1,100 requests against an hourly budget of 1,000
+        for (int minute = 0; minute < 11; minute++) {
+            drain("user", 100);
+            clock.addAndGet(Duration.ofMinutes(1).toMillis());
+        }
+
+        // when
+        int allowed = 0;
+        Decision decision = limiter.tryAcquire("user");
+        while (decision.allowed()) {
+            allowed++;
+            decision = limiter.tryAcquire("user");
+        }
+
+        // then: the minute limit has refilled, but the hour limit only allows what it refilled
+        assertThat(allowed).isEqualTo(83);
+        assertThat(decision.retryAfter()).isEqualTo(Duration.ofMillis(2_400));
+    }
+
+    @Test
+    void tryAcquireRejectionDoesNotChargeAnyLimit() {
+        // given
+        drain("user", 100);
+        for (int i = 0; i < 1_000; i++) {
+            limiter.tryAcquire("user");
+        }
+
+        // when
+        clock.addAndGet(600);
+        Decision decision = limiter.tryAcquire("user");
+
+        // then
+        assertThat(decision.allowed()).isTrue();
+    }
+
+    @Test
+    void tryAcquireKeepsKeysIndependent() {
+        // given
+        drain("user1", 100);
+
+        // when
+        Decision decision = limiter.tryAcquire("user2");
+
+        // then
+        assertThat(decision.allowed()).isTrue();
+        assertThat(decision.remaining()).isEqualTo(99);
+    }
+
+    @Test
+    void tryAcquireBoundsTheNumberOfKeys() {
+        // when
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("user" + i);
+        }
+
+        // then
+        assertThat(limiter.size()).isLessThanOrEqualTo(1_000);
+    }
+
+    @Test
+    void tryAcquireHandlesClockBeyondThe32BitLaneRange() {
+        // given
+        clock.set(Integer.MAX_VALUE - 10L);
+        GcraRateLimiter<String> limiter = new GcraRateLimiter<>(LIMITS, 1_000, Duration.ofHours(1), clock::get);
+        limiter.tryAcquire("user");
+
+        // when: far more than 2^32 ms later, with the key used regularly in between
+        Decision decision = null;
+        for (int step = 0; step < 2_000; step++) {
+            clock.addAndGet(Duration.ofMinutes(59).toMillis());
+            decision = limiter.tryAcquire("user");
+        }
+
+        // then
+        assertThat(decision.allowed()).isTrue();
+        assertThat(decision.remaining()).isEqualTo(99);
+    }
+
+    @Test
+    void constructorRejectsIdleExpiryShorterThanLongestPeriod() {
+        // when/then
+        assertThatThrownBy(() -> new GcraRateLimiter<String>(LIMITS, 1_000, Duration.ofMinutes(30)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void tryAcquireAllowsExactlyCapacityUnderContention() throws Exception {
+        // given
+        GcraRateLimiter<String> limiter = new GcraRateLimiter<>(
+                List.of(new Limit(10_000, Duration.ofHours(1))), 1_000, Duration.ofHours(1), clock::get);
+        int threads = 16;
+        int attemptsPerThread = 2_000;
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        // when: 32,000 attempts race for 10,000 requests on one key
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        if (limiter.tryAcquire("shared").allowed()) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+
+        // then
+        assertThat(allowed.get()).isEqualTo(10_000);
+    }
+
+    private void drain(String key, int requests) {
+        for (int i = 0; i < requests; i++) {
+            assertThat(limiter.tryAcquire(key).allowed()).isTrue();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.adarssh.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GzipDecompressingInterceptorTest {
+
+    private final GzipDecompressingInterceptor interceptor = new GzipDecompressingInterceptor();
+
+    @Test
+    void interceptRequestsGzipEncoding() throws Exception {
+        // given
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://api.spotify.com"));
+
+        // when
+        interceptor.intercept(request, new byte[0],
+                (req, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+
+        // then
+        assertThat(request.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING)).isEqualTo("gzip");
+    }
+
+    @Test
+    void interceptDecompressesGzipResponse() throws Exception {
+        // given
+        String json = "{\"items\":[]}";
+        MockClientHttpResponse gzipped = new MockClientHttpResponse(gzip(json), HttpStatus.OK);
+        gzipped.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        gzipped.getHeaders().setContentLength(42);
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://api.spotify.com"));
+
+        // when
+        ClientHttpResponse response = interceptor.intercept(request, new byte[0], (req, body) -> gzipped);
+
+        // then
+        assertThat(new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(json);
+        assertThat(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+        assertThat(response.getHeaders().containsKey(HttpHeaders.CONTENT_LENGTH)).isFalse();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void interceptHandlesEmptyGzipResponse() throws Exception {
+        // given
+        MockClientHttpResponse empty = new MockClientHttpResponse(new byte[0], HttpStatus.NO_CONTENT);
+        empty.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://api.spotify.com"));
+
+        // when
+        ClientHttpResponse response = interceptor.intercept(request, new byte[0], (req, body) -> empty);
+
+        // then
+        assertThat(response.getBody().readAllBytes()).isEmpty();
+    }
+
+    @Test
+    void interceptPassesThroughUncompressedResponse() throws Exception {
+        // given
+        MockClientHttpResponse plain = new MockClientHttpResponse(
+                "plain".getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://api.spotify.com"));
+
+        // when
+        ClientHttpResponse response = interceptor.intercept(request, new byte[0], (req, body) -> plain);
+
+        // then
+        assertThat(response).isSameAs(plain);
+    }
+
+    private static byte[] gzip(String value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
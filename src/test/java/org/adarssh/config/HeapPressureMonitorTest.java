@@ -0,0 +1,108 @@
+package org.adarssh.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeapPressureMonitorTest {
+
+    private static final long BUDGET = 64 * 1024;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CaffeineCacheManager cacheManager;
+    private HeapPressureMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache("topTracks", Caffeine.newBuilder()
+                .maximumWeight(BUDGET)
+                .weigher(CompactValues::weigh)
+                .build());
+        var properties = TestSpotifyProperties.builder()
+                .refreshAhead(TestSpotifyProperties.refreshAhead(true, 60))
+                .stale(TestSpotifyProperties.stale(true, Duration.ofSeconds(1)))
+                .compact(TestSpotifyProperties.compact(true))
+                .build();
+        var beanFactory = new StaticListableBeanFactory(Map.of("cacheManager", cacheManager));
+        monitor = new HeapPressureMonitor(properties, beanFactory.getBeanProvider(CacheManager.class), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+    }
+
+    @Test
+    void startAndStopToggleRunningState() {
+        // when
+        monitor.start();
+
+        // then
+        assertThat(monitor.isRunning()).isTrue();
+
+        // when
+        monitor.stop();
+
+        // then
+        assertThat(monitor.isRunning()).isFalse();
+    }
+
+    @Test
+    void budgetsHalveUnderPressureDownToAnEighth() {
+        // when
+        monitor.check(0.9);
+
+        // then
+        assertThat(monitor.limit()).isEqualTo(BUDGET / 2);
+        assertThat(maximum()).isEqualTo(BUDGET / 2);
+        assertThat(meterRegistry.get("spotify.cache.weight.limit").gauge().value()).isEqualTo(BUDGET / 2);
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            monitor.check(0.95);
+        }
+
+        // then
+        assertThat(maximum()).isEqualTo(BUDGET / 8);
+    }
+
+    @Test
+    void budgetsGrowBackOncePressureIsGone() {
+        // given
+        monitor.check(0.9);
+        monitor.check(0.9);
+
+        // when: between the recover and shrink thresholds nothing changes
+        monitor.check(0.7);
+
+        // then
+        assertThat(maximum()).isEqualTo(BUDGET / 4);
+
+        // when
+        monitor.check(0.3);
+        monitor.check(0.3);
+        monitor.check(0.3);
+
+        // then
+        assertThat(maximum()).isEqualTo(BUDGET);
+    }
+
+    private long maximum() {
+        @SuppressWarnings("unchecked")
+        var nativeCache = (com.github.benmanes.caffeine.cache.Cache<Object, Object>)
+                cacheManager.getCache("topTracks").getNativeCache();
+        return nativeCache.policy().eviction().orElseThrow().getMaximum();
+    }
+}
@@ -0,0 +1,48 @@
+package org.adarssh.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InFlightRequestsInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InFlightRequestsInterceptor interceptor = new InFlightRequestsInterceptor(meterRegistry, "api");
+    private final MockClientHttpRequest request =
+            new MockClientHttpRequest(HttpMethod.GET, URI.create("https://api.spotify.com"));
+
+    @Test
+    void interceptCountsRequestWhileItIsInFlight() throws Exception {
+        // given
+        AtomicInteger observed = new AtomicInteger();
+
+        // when
+        interceptor.intercept(request, new byte[0], (req, body) -> {
+            observed.set((int) meterRegistry.get("spotify.http.client.in.flight").tag("client", "api").gauge().value());
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        });
+
+        // then
+        assertThat(observed.get()).isEqualTo(1);
+        assertThat(interceptor.getInFlight()).isZero();
+    }
+
+    @Test
+    void interceptReleasesCountWhenRequestFails() {
+        // when/then
+        assertThatThrownBy(() -> interceptor.intercept(request, new byte[0], (req, body) -> {
+            throw new IOException("connection reset");
+        })).isInstanceOf(IOException.class);
+        assertThat(interceptor.getInFlight()).isZero();
+    }
+}
@@ -0,0 +1,155 @@
+package org.adarssh.config;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.Refill;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JdbcBucketProxyManagerTest {
+
+    private static final List<GcraRateLimiter.Limit> LIMITS = List.of(
+            new GcraRateLimiter.Limit(50, Duration.ofHours(1)));
+    private static final RateLimitProperties.Cluster CLUSTER = new RateLimitProperties.Cluster(
+            RateLimitProperties.Backend.JDBC, "rate_limit_bucket", true, Duration.ofHours(1), Duration.ofMinutes(5),
+            5, Duration.ofSeconds(1));
+
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void replicasShareOneBucketPerKey() throws Exception {
+        // given: three replicas on the same table
+        var proxyManager = proxyManager(Clock.systemUTC());
+        List<DistributedRateLimiter> replicas = List.of(replica(proxyManager), replica(proxyManager),
+                replica(proxyManager));
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        // when: each replica races for the same user on its own threads
+        try (ExecutorService executor = Executors.newFixedThreadPool(6)) {
+            for (int t = 0; t < 6; t++) {
+                DistributedRateLimiter replica = replicas.get(t % replicas.size());
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 40; i++) {
+                        if (replica.tryAcquire("alice", 1).allowed()) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+
+        // then: never more than the capacity, and one row for the user
+        assertThat(admitted.get()).isBetween(40, 50);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rate_limit_bucket", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void deleteExpiredRemovesBucketsPastRetention() {
+        // given
+        var writer = proxyManager(Clock.fixed(Instant.parse("2024-01-01T00:00:00Z"), ZoneOffset.UTC));
+        replica(writer).tryAcquire("alice", 1);
+        var cleaner = proxyManager(Clock.fixed(Instant.parse("2024-01-01T01:00:01Z"), ZoneOffset.UTC));
+
+        // when
+        int deleted = cleaner.deleteExpired();
+
+        // then
+        assertThat(deleted).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rate_limit_bucket", Integer.class)).isZero();
+    }
+
+    @Test
+    void asyncBucketsShareTheTableWithSyncOnes() {
+        // given
+        var proxyManager = proxyManager(Clock.systemUTC());
+        var configuration = BucketConfiguration.builder()
+                .addLimit(Bandwidth.classic(2, Refill.greedy(2, Duration.ofHours(1))))
+                .build();
+        var bucket = proxyManager.asAsync().builder()
+                .build("user:alice", () -> CompletableFuture.completedFuture(configuration));
+
+        // when
+        boolean first = bucket.tryConsume(1).join();
+        boolean second = bucket.tryConsume(1).join();
+        boolean third = bucket.tryConsume(1).join();
+
+        // then
+        assertThat(first).isTrue();
+        assertThat(second).isTrue();
+        assertThat(third).isFalse();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rate_limit_bucket", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void asyncRemoveDeletesTheBucketRow() {
+        // given
+        var proxyManager = proxyManager(Clock.systemUTC());
+        replica(proxyManager).tryAcquire("alice", 1);
+
+        // when
+        proxyManager.asAsync().removeProxy("user:alice").join();
+
+        // then
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rate_limit_bucket", Integer.class)).isZero();
+    }
+
+    @Test
+    void createTableSqlUsesByteaOnPostgres() {
+        // when/then
+        assertThat(JdbcBucketProxyManager.createTableSql("buckets", "PostgreSQL")).contains("state BYTEA NOT NULL");
+        assertThat(JdbcBucketProxyManager.createTableSql("buckets", "H2")).contains("state VARBINARY(4096)");
+        assertThat(JdbcBucketProxyManager.createTableSql("buckets", "MySQL")).contains("state VARBINARY(4096)");
+    }
+
+    @Test
+    void constructorRejectsInvalidTableName() {
+        // given
+        var cluster = new RateLimitProperties.Cluster(RateLimitProperties.Backend.JDBC, "buckets; DROP TABLE users",
+                true, Duration.ofHours(1), Duration.ofMinutes(5), 5, Duration.ofSeconds(1));
+
+        // when/then
+        assertThatThrownBy(() -> new JdbcBucketProxyManager(jdbcTemplate, cluster, Clock.systemUTC()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private JdbcBucketProxyManager proxyManager(Clock clock) {
+        var proxyManager = new JdbcBucketProxyManager(jdbcTemplate, CLUSTER, clock);
+        proxyManager.initializeSchema();
+        return proxyManager;
+    }
+
+    private static DistributedRateLimiter replica(JdbcBucketProxyManager proxyManager) {
+        return new DistributedRateLimiter(proxyManager, "user:", LIMITS, CLUSTER, 1_000);
+    }
+}
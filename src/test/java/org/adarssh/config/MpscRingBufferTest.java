@@ -0,0 +1,92 @@
+package org.adarssh.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MpscRingBufferTest {
+
+    @Test
+    void constructorRoundsCapacityUpToPowerOfTwo() {
+        // when/then
+        assertThat(new MpscRingBuffer<String>(1).capacity()).isEqualTo(1);
+        assertThat(new MpscRingBuffer<String>(5).capacity()).isEqualTo(8);
+        assertThat(new MpscRingBuffer<String>(8).capacity()).isEqualTo(8);
+        assertThatThrownBy(() -> new MpscRingBuffer<String>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void pollReturnsElementsInOfferOrder() {
+        // given
+        MpscRingBuffer<String> buffer = new MpscRingBuffer<>(4);
+        buffer.offer("a");
+        buffer.offer("b");
+
+        // when/then
+        assertThat(buffer.poll()).isEqualTo("a");
+        assertThat(buffer.poll()).isEqualTo("b");
+        assertThat(buffer.poll()).isNull();
+    }
+
+    @Test
+    void offerRejectsWhenFullAndAcceptsAgainAfterPoll() {
+        // given
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(2);
+        buffer.offer(1);
+        buffer.offer(2);
+
+        // when
+        boolean whenFull = buffer.offer(3);
+        buffer.poll();
+        boolean afterPoll = buffer.offer(3);
+
+        // then
+        assertThat(whenFull).isFalse();
+        assertThat(afterPoll).isTrue();
+        assertThat(buffer.size()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentProducersNeitherLoseNorDuplicateElements() throws Exception {
+        // given
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Integer> consumed = new HashSet<>();
+
+        // when: 8 producers offer 10000 elements each while this thread consumes
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                int producer = t;
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 10_000; i++) {
+                        if (!buffer.offer(producer * 10_000 + i)) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            while (consumed.size() + rejected.get() < 80_000) {
+                Integer element = buffer.poll();
+                if (element != null) {
+                    assertThat(consumed.add(element)).isTrue();
+                }
+            }
+        }
+
+        // then
+        assertThat(consumed.size() + rejected.get()).isEqualTo(80_000);
+        assertThat(buffer.poll()).isNull();
+    }
+}
@@ -0,0 +1,147 @@
+package org.adarssh.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimitPolicyEngineTest {
+
+    private final MockEnvironment environment = new MockEnvironment();
+
+    @Test
+    void constructorAppliesDefaultsWithoutConfiguration() {
+        // when
+        RateLimitPolicyEngine engine = new RateLimitPolicyEngine(environment);
+
+        // then
+        RateLimitProperties properties = engine.properties();
+        assertThat(properties.maximumKeys()).isEqualTo(100_000);
+        assertThat(properties.user()).containsExactly(
+                new GcraRateLimiter.Limit(100, Duration.ofMinutes(1)),
+                new GcraRateLimiter.Limit(1000, Duration.ofHours(1)));
+        assertThat(properties.costs()).contains(new RateLimitProperties.Cost("/api/spotify/wrapped", 4));
+    }
+
+    @Test
+    void tryAcquireAllowsFreeRequestsWithoutChargingTheLimiter() {
+        // given
+        environment.setProperty("spotify.rate-limit.user[0].capacity", "2");
+        environment.setProperty("spotify.rate-limit.user[0].period", "1m");
+        RateLimitPolicyEngine engine = new RateLimitPolicyEngine(environment);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            KeyedRateLimiter.Decision probe = engine.tryAcquire("user", request("/api/health"));
+            assertThat(probe.allowed()).isTrue();
+            assertThat(probe.remaining()).isEqualTo(-1);
+        }
+
+        // then
+        assertThat(engine.tryAcquire("user", request("/api/spotify/top/tracks")).remaining()).isEqualTo(1);
+    }
+
+    @Test
+    void reloadAppliesChangedLimits() {
+        // given
+        RateLimitPolicyEngine engine = new RateLimitPolicyEngine(environment);
+        environment.setProperty("spotify.rate-limit.user[0].capacity", "2");
+        environment.setProperty("spotify.rate-limit.user[0].period", "1m");
+
+        // when
+        engine.reload();
+
+        // then
+        assertThat(engine.tryAcquire("user", request("/api/spotify/top/tracks")).allowed()).isTrue();
+        assertThat(engine.tryAcquire("user", request("/api/spotify/top/tracks")).allowed()).isTrue();
+        assertThat(engine.tryAcquire("user", request("/api/spotify/top/tracks")).allowed()).isFalse();
+    }
+
+    @Test
+    void reloadKeepsStateOfUnchangedLimits() {
+        // given
+        RateLimitPolicyEngine engine = new RateLimitPolicyEngine(environment);
+        engine.tryAcquire("user", request("/api/spotify/wrapped"));
+        environment.setProperty("spotify.rate-limit.costs[0].pattern", "/api/spotify/wrapped");
+        environment.setProperty("spotify.rate-limit.costs[0].cost", "10");
+
+        // when
+        engine.reload();
+
+        // then: the earlier cost of 4 is still charged
+        assertThat(engine.tryAcquire("user", request("/api/spotify/wrapped")).remaining()).isEqualTo(86);
+    }
+
+    @Test
+    void reloadKeepsCurrentPolicyWhenNewOneIsInvalid() {
+        // given
+        RateLimitPolicyEngine engine = new RateLimitPolicyEngine(environment);
+        environment.setProperty("spotify.rate-limit.user[0].capacity", "0");
+        environment.setProperty("spotify.rate-limit.user[0].period", "1m");
+
+        // when/then
+        assertThatThrownBy(engine::reload).isInstanceOf(RuntimeException.class);
+        assertThat(engine.properties().user()).hasSize(2);
+    }
+
+    @Test
+    void reloadRereadsPolicyFile(@TempDir Path directory) throws Exception {
+        // given
+        Path file = directory.resolve("rate-limits.yml");
+        Files.writeString(file, """
+                spotify:
+                  rate-limit:
+                    anonymous:
+                      - capacity: 5
+                        period: 1m
+                """);
+        environment.setProperty("spotify.rate-limit.location", file.toUri().toString());
+        RateLimitPolicyEngine engine = new RateLimitPolicyEngine(environment);
+        Files.writeString(file, """
+                spotify:
+                  rate-limit:
+                    anonymous:
+                      - capacity: 1
+                        period: 1m
+                """);
+
+        // when
+        RateLimitProperties before = engine.properties();
+        RateLimitProperties after = engine.reload();
+
+        // then
+        assertThat(before.anonymous()).containsExactly(new GcraRateLimiter.Limit(5, Duration.ofMinutes(1)));
+        assertThat(after.anonymous()).containsExactly(new GcraRateLimiter.Limit(1, Duration.ofMinutes(1)));
+        assertThat(after.user()).hasSize(2);
+    }
+
+    @Test
+    void tryAcquireGroupsIpv6ClientsByPrefix() {
+        // given
+        RateLimitPolicyEngine engine = new RateLimitPolicyEngine(environment);
+        MockHttpServletRequest first = request("/api/");
+        first.setRemoteAddr("2001:db8:1:2:aaaa::1");
+        MockHttpServletRequest sameNetwork = request("/api/");
+        sameNetwork.setRemoteAddr("2001:db8:1:2:bbbb::2");
+
+        // when
+        engine.tryAcquire(null, first);
+        KeyedRateLimiter.Decision decision = engine.tryAcquire(null, sameNetwork);
+
+        // then
+        assertThat(decision.remaining()).isEqualTo(98);
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setRemoteAddr("203.0.113.7");
+        return request;
+    }
+}
@@ -0,0 +1,203 @@
+package org.adarssh.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletResponse;
+import org.adarssh.config.RequestCaptureLog.Capture;
+import org.adarssh.config.RequestCaptureLog.Header;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for RequestCaptureFilter.
+ */
+class RequestCaptureFilterTest {
+
+    private final RequestCaptureLog captureLog = mock(RequestCaptureLog.class);
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        request = new MockHttpServletRequest("GET", "/api/spotify/top/tracks");
+        response = new MockHttpServletResponse();
+    }
+
+    @AfterEach
+    void tearDown() {
+        MDC.clear();
+    }
+
+    @Test
+    void doFilterCapturesSampledRequestWithRedactedHeaders() throws Exception {
+        // given
+        request.setQueryString("limit=10");
+        request.addHeader("Authorization", "Bearer secret-token");
+        request.addHeader("Cookie", "session=abc123");
+        request.addHeader("Accept", "application/json");
+        MDC.put(CorrelationId.MDC_KEY, "abc-123");
+
+        // when
+        filter(1.0, 4096).doFilter(request, response, (req, resp) -> { });
+
+        // then
+        Capture capture = captured();
+        assertThat(capture.reason()).isEqualTo("sampled");
+        assertThat(capture.correlationId()).isEqualTo("abc-123");
+        assertThat(capture.query()).isEqualTo("limit=10");
+        assertThat(capture.requestHeaders()).containsExactlyInAnyOrder(
+                new Header("Authorization", "[REDACTED]"),
+                new Header("Cookie", "[REDACTED]"),
+                new Header("Accept", "application/json"));
+    }
+
+    @Test
+    void doFilterSkipsFastSuccessfulRequestsThatAreNotSampled() throws Exception {
+        // when
+        filter(0.0, 4096).doFilter(request, response, (req, resp) -> { });
+
+        // then
+        verify(captureLog, never()).offer(any());
+    }
+
+    @Test
+    void doFilterCapturesErrorResponses() throws Exception {
+        // when
+        filter(0.0, 4096).doFilter(request, response, (req, resp) -> response.setStatus(503));
+
+        // then
+        Capture capture = captured();
+        assertThat(capture.reason()).isEqualTo("error");
+        assertThat(capture.status()).isEqualTo(503);
+    }
+
+    @Test
+    void doFilterCapturesSlowRequests() throws Exception {
+        // given
+        var filter = new RequestCaptureFilter(new CaptureProperties(true, 0.0, Duration.ofMillis(10), 500, 4096,
+                1024, Duration.ofMillis(200), null), captureLog);
+
+        // when
+        filter.doFilter(request, response, (req, resp) -> sleep(20));
+
+        // then
+        Capture capture = captured();
+        assertThat(capture.reason()).isEqualTo("slow");
+        assertThat(capture.durationMillis()).isGreaterThanOrEqualTo(10);
+    }
+
+    @Test
+    void doFilterCapturesAndRethrowsFailures() {
+        // given
+        FilterChain failingChain = (req, resp) -> {
+            throw new ServletException("handler failed");
+        };
+
+        // when/then
+        assertThatThrownBy(() -> filter(0.0, 4096).doFilter(request, response, failingChain))
+                .isInstanceOf(ServletException.class);
+        Capture capture = captured();
+        assertThat(capture.reason()).isEqualTo("error");
+        assertThat(capture.failure()).contains("handler failed");
+    }
+
+    @Test
+    void doFilterKeepsOnlyTheFirstBytesOfLargeBodies() throws Exception {
+        // given
+        request.setMethod("POST");
+        request.setContent("x".repeat(15_000).getBytes(StandardCharsets.UTF_8));
+        FilterChain chain = (req, resp) -> {
+            req.getInputStream().readAllBytes();
+            resp.getOutputStream().write("y".repeat(15_000).getBytes(StandardCharsets.UTF_8));
+        };
+
+        // when
+        filter(1.0, 100).doFilter(request, response, chain);
+
+        // then - the client still gets the whole response
+        Capture capture = captured();
+        assertThat(capture.requestBody().length()).isEqualTo(100);
+        assertThat(capture.requestBody().total()).isEqualTo(15_000);
+        assertThat(capture.responseBody().length()).isEqualTo(100);
+        assertThat(capture.responseBody().total()).isEqualTo(15_000);
+        assertThat(response.getContentAsString()).hasSize(15_000);
+    }
+
+    @Test
+    void doFilterCapturesBodiesWrittenThroughWriter() throws Exception {
+        // given
+        FilterChain chain = (req, resp) -> resp.getWriter().write("{\"status\":\"ok\"}");
+
+        // when
+        filter(1.0, 4096).doFilter(request, response, chain);
+
+        // then
+        Capture capture = captured();
+        assertThat(new String(capture.responseBody().bytes(), 0, capture.responseBody().length(),
+                StandardCharsets.UTF_8)).isEqualTo("{\"status\":\"ok\"}");
+        assertThat(response.getContentAsString()).isEqualTo("{\"status\":\"ok\"}");
+    }
+
+    @Test
+    void doFilterOnlyPassesRequestsOnWhenDisabled() throws Exception {
+        // given
+        var filter = new RequestCaptureFilter(new CaptureProperties(false, 1.0, Duration.ofSeconds(2), 500, 4096,
+                1024, Duration.ofMillis(200), null), captureLog);
+        FilterChain chain = mock(FilterChain.class);
+
+        // when
+        filter.doFilter(request, response, chain);
+
+        // then
+        verify(chain).doFilter(request, response);
+        verify(captureLog, never()).offer(any());
+    }
+
+    @Test
+    void doFilterPassesThroughNonHttpRequests() throws Exception {
+        // given
+        ServletResponse nonHttpResponse = mock(ServletResponse.class);
+        FilterChain chain = mock(FilterChain.class);
+
+        // when
+        filter(1.0, 4096).doFilter(request, nonHttpResponse, chain);
+
+        // then
+        verify(chain).doFilter(request, nonHttpResponse);
+        verify(captureLog, never()).offer(any());
+    }
+
+    private RequestCaptureFilter filter(double sampleRate, int maxBodyBytes) {
+        return new RequestCaptureFilter(new CaptureProperties(true, sampleRate, Duration.ofSeconds(2), 500,
+                maxBodyBytes, 1024, Duration.ofMillis(200), null), captureLog);
+    }
+
+    private Capture captured() {
+        ArgumentCaptor<Capture> capture = ArgumentCaptor.forClass(Capture.class);
+        verify(captureLog).offer(capture.capture());
+        return capture.getValue();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
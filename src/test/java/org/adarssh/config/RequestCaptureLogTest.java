@@ -0,0 +1,102 @@
+package org.adarssh.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.RequestCaptureLog.Body;
+import org.adarssh.config.RequestCaptureLog.Capture;
+import org.adarssh.config.RequestCaptureLog.Header;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestCaptureLogTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void formatWritesRealLineBreaks() {
+        // given
+        Capture capture = capture("slow", Body.EMPTY);
+
+        // when
+        String message = RequestCaptureLog.format(capture);
+
+        // then
+        assertThat(message)
+                .startsWith("HTTP capture (slow): GET /api/spotify/top/tracks?limit=10 HTTP/1.1 -> 200 in 2500 ms")
+                .contains(System.lineSeparator() + "Request headers:" + System.lineSeparator()
+                        + "  Authorization: [REDACTED]")
+                .doesNotContain("%n");
+    }
+
+    @Test
+    void formatMarksTruncatedBodies() {
+        // given
+        byte[] bytes = "{\"items\":[".getBytes(StandardCharsets.UTF_8);
+        Capture capture = capture("error", new Body(bytes, bytes.length, 15_000));
+
+        // when
+        String message = RequestCaptureLog.format(capture);
+
+        // then
+        assertThat(message).contains("Response body (10 of 15000 bytes):" + System.lineSeparator()
+                + "{\"items\":[... [TRUNCATED]");
+    }
+
+    @Test
+    void drainWritesEveryQueuedCapture() {
+        // given
+        RequestCaptureLog captureLog = new RequestCaptureLog(properties(8), meterRegistry);
+        captureLog.offer(capture("sampled", Body.EMPTY));
+        captureLog.offer(capture("error", Body.EMPTY));
+
+        // when
+        int written = captureLog.drain();
+
+        // then
+        assertThat(written).isEqualTo(2);
+        assertThat(captureLog.drain()).isZero();
+        assertThat(meterRegistry.get("spotify.capture.backlog").gauge().value()).isZero();
+    }
+
+    @Test
+    void offerDropsCapturesWhenBufferIsFull() {
+        // given
+        RequestCaptureLog captureLog = new RequestCaptureLog(properties(1), meterRegistry);
+        captureLog.offer(capture("slow", Body.EMPTY));
+
+        // when
+        boolean queued = captureLog.offer(capture("slow", Body.EMPTY));
+
+        // then
+        assertThat(queued).isFalse();
+        assertThat(meterRegistry.get("spotify.capture").tags("reason", "slow", "result", "dropped").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("spotify.capture").tags("reason", "slow", "result", "queued").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void constructorRegistersCountersForEveryReasonAndResult() {
+        // when
+        new RequestCaptureLog(properties(1), meterRegistry);
+
+        // then
+        assertThat(meterRegistry.get("spotify.capture").counters()).hasSize(6);
+    }
+
+    private static CaptureProperties properties(int bufferSize) {
+        return new CaptureProperties(true, 0.01, Duration.ofSeconds(2), 500, 4096, bufferSize,
+                Duration.ofMillis(200), null);
+    }
+
+    private static Capture capture(String reason, Body responseBody) {
+        return new Capture(reason, "01HF7YAT00NF6G28T5CY4TQKFF", "GET", "/api/spotify/top/tracks", "limit=10",
+                "HTTP/1.1", 200, 2500, null,
+                List.of(new Header("Authorization", "[REDACTED]"), new Header("Accept", "application/json")),
+                Body.EMPTY, List.of(new Header("Content-Type", "application/json")), responseBody);
+    }
+}
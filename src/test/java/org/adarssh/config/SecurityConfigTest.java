@@ -0,0 +1,43 @@
+package org.adarssh.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecurityConfigTest {
+
+    private final GrantedAuthoritiesMapper mapper = SecurityConfig.adminAuthoritiesMapper(Set.of("admin"));
+
+    @Test
+    void adminAuthoritiesMapperGrantsAdminRoleToListedUsers() {
+        // given
+        var user = new OAuth2UserAuthority(Map.of("id", "admin"));
+
+        // when
+        Collection<? extends GrantedAuthority> authorities = mapper.mapAuthorities(List.of(user));
+
+        // then
+        assertThat(authorities).containsExactlyInAnyOrder(user, new SimpleGrantedAuthority("ROLE_ADMIN"));
+    }
+
+    @Test
+    void adminAuthoritiesMapperKeepsOtherUsersAuthorities() {
+        // given
+        var user = new OAuth2UserAuthority(Map.of("id", "listener"));
+
+        // when
+        Collection<? extends GrantedAuthority> authorities = mapper.mapAuthorities(List.of(user));
+
+        // then
+        assertThat(authorities).containsExactly(user);
+    }
+}
@@ -0,0 +1,252 @@
+package org.adarssh.config;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Builds SpotifyProperties for unit tests, with the same defaults as the bound configuration.
+ * <p>
+ * Tests start from {@link #builder()} and set only the settings they care about, so a new
+ * settings group only has to be added here.
+ */
+public final class TestSpotifyProperties {
+
+    private TestSpotifyProperties() {
+    }
+
+    /**
+     * Properties with refresh-ahead enabled, the last-known-good tier, the disk tier, compact
+     * storage, hedging and the concurrency limit disabled.
+     *
+     * @return the properties
+     */
+    public static SpotifyProperties defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Start from the defaults.
+     *
+     * @return a builder holding the defaults
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Refresh-ahead after 4m on a single thread.
+     *
+     * @param enabled whether refresh-ahead is enabled
+     * @param budgetPerMinute refresh calls allowed per minute
+     * @return the refresh-ahead settings
+     */
+    public static SpotifyProperties.RefreshAhead refreshAhead(boolean enabled, int budgetPerMinute) {
+        return new SpotifyProperties.RefreshAhead(enabled, Duration.ofMinutes(4), 1, 10, budgetPerMinute);
+    }
+
+    /**
+     * Last-known-good tier with a 24h grace window.
+     *
+     * @param enabled whether stale pages are served
+     * @param serveAfter how long to wait for Spotify before serving a stale page
+     * @return the last-known-good settings
+     */
+    public static SpotifyProperties.Stale stale(boolean enabled, Duration serveAfter) {
+        return new SpotifyProperties.Stale(enabled, Duration.ofHours(24), serveAfter, Duration.ofSeconds(30));
+    }
+
+    /**
+     * Disk tier with 1KB segments, at most 3 of them, and room for 100 queued writes.
+     *
+     * @param enabled whether the disk tier is enabled
+     * @param directory where the segment files are kept
+     * @return the disk tier settings
+     */
+    public static SpotifyProperties.Disk disk(boolean enabled, String directory) {
+        return new SpotifyProperties.Disk(enabled, directory, DataSize.ofKilobytes(1), 3, 100);
+    }
+
+    /**
+     * Compact storage with a 64KB budget per cache, shrinking at 85% heap usage.
+     *
+     * @param enabled whether entries are stored compactly
+     * @return the compact storage settings
+     */
+    public static SpotifyProperties.Compact compact(boolean enabled) {
+        return new SpotifyProperties.Compact(enabled, DataSize.ofKilobytes(64), true, 0.85, Duration.ofSeconds(10));
+    }
+
+    /**
+     * App-token settings.
+     *
+     * @param expirySkew how long before its stated expiry a token is no longer used
+     * @param refreshAhead how long before that point the token is renewed in the background
+     * @return the app-token settings
+     */
+    public static SpotifyProperties.AppToken appToken(Duration expirySkew, Duration refreshAhead) {
+        return new SpotifyProperties.AppToken(expirySkew, refreshAhead);
+    }
+
+    /**
+     * User-token settings with a lookup cache of 100 users, short-circuiting a user for a minute
+     * after 3 rejected calls.
+     *
+     * @param expirySkew how long before its stated expiry a token is no longer used
+     * @param refreshAhead how long before expiry a token is renewed
+     * @return the user-token settings
+     */
+    public static SpotifyProperties.UserToken userToken(Duration expirySkew, Duration refreshAhead) {
+        return new SpotifyProperties.UserToken(expirySkew, refreshAhead, 100, 3, Duration.ofMinutes(1));
+    }
+
+    /**
+     * Catalog settings with a 1h entity TTL, 100 entities per type and a 5s lookup timeout.
+     *
+     * @param batchWindow how long lookups are collected before a batch is sent
+     * @return the catalog settings
+     */
+    public static SpotifyProperties.Catalog catalog(Duration batchWindow) {
+        return new SpotifyProperties.Catalog(batchWindow, Duration.ofHours(1), 100, Duration.ofSeconds(5));
+    }
+
+    /**
+     * Hedging at the 95th percentile, with a 10ms floor, 20 samples and a 50% budget.
+     *
+     * @param enabled whether top-items calls are hedged
+     * @param initialDelay hedge delay until enough latencies have been observed
+     * @return the hedging settings
+     */
+    public static SpotifyProperties.Hedging hedging(boolean enabled, Duration initialDelay) {
+        return new SpotifyProperties.Hedging(enabled, 0.95, initialDelay, Duration.ofMillis(10),
+                Duration.ofSeconds(2), 20, 50);
+    }
+
+    /**
+     * Concurrency limit settings between 1 and 100, shrinking after misses slower than 100ms,
+     * with no waiting for a free slot.
+     *
+     * @param enabled whether concurrent misses are limited
+     * @param initialLimit limit to start from
+     * @return the concurrency limit settings
+     */
+    public static SpotifyProperties.Concurrency concurrency(boolean enabled, int initialLimit) {
+        return new SpotifyProperties.Concurrency(enabled, initialLimit, 1, 100, Duration.ofMillis(100), 0.5,
+                Duration.ZERO);
+    }
+
+    /**
+     * Mutable holder of the settings groups; every group starts at the test default.
+     */
+    public static final class Builder {
+
+        private SpotifyProperties.Wrapped wrapped = new SpotifyProperties.Wrapped(true);
+        private SpotifyProperties.Http http;
+        private Duration shortTermTtl = Duration.ofMinutes(5);
+        private SpotifyProperties.RefreshAhead refreshAhead = TestSpotifyProperties.refreshAhead(true, 120);
+        private SpotifyProperties.Stale stale = TestSpotifyProperties.stale(false, Duration.ofSeconds(1));
+        private SpotifyProperties.Disk disk = TestSpotifyProperties.disk(false, "data/cache");
+        private SpotifyProperties.Compact compact = TestSpotifyProperties.compact(false);
+        private SpotifyProperties.AppToken appToken =
+                TestSpotifyProperties.appToken(Duration.ofSeconds(30), Duration.ofMinutes(5));
+        private SpotifyProperties.UserToken userToken =
+                TestSpotifyProperties.userToken(Duration.ofSeconds(30), Duration.ofMinutes(5));
+        private SpotifyProperties.Catalog catalog = TestSpotifyProperties.catalog(Duration.ofMillis(10));
+        private SpotifyProperties.Hedging hedging = TestSpotifyProperties.hedging(false, Duration.ofMillis(500));
+        private SpotifyProperties.Concurrency concurrency = TestSpotifyProperties.concurrency(false, 20);
+
+        private Builder() {
+        }
+
+        public Builder wrapped(SpotifyProperties.Wrapped wrapped) {
+            this.wrapped = wrapped;
+            return this;
+        }
+
+        public Builder http(SpotifyProperties.Http http) {
+            this.http = http;
+            return this;
+        }
+
+        /**
+         * Set the short_term TTL; medium_term and long_term stay at 15m and 1h.
+         *
+         * @param shortTermTtl lifetime of short_term entries
+         * @return this builder
+         */
+        public Builder shortTermTtl(Duration shortTermTtl) {
+            this.shortTermTtl = shortTermTtl;
+            return this;
+        }
+
+        public Builder refreshAhead(SpotifyProperties.RefreshAhead refreshAhead) {
+            this.refreshAhead = refreshAhead;
+            return this;
+        }
+
+        public Builder stale(SpotifyProperties.Stale stale) {
+            this.stale = stale;
+            return this;
+        }
+
+        public Builder disk(SpotifyProperties.Disk disk) {
+            this.disk = disk;
+            return this;
+        }
+
+        public Builder compact(SpotifyProperties.Compact compact) {
+            this.compact = compact;
+            return this;
+        }
+
+        public Builder appToken(SpotifyProperties.AppToken appToken) {
+            this.appToken = appToken;
+            return this;
+        }
+
+        public Builder userToken(SpotifyProperties.UserToken userToken) {
+            this.userToken = userToken;
+            return this;
+        }
+
+        public Builder catalog(SpotifyProperties.Catalog catalog) {
+            this.catalog = catalog;
+            return this;
+        }
+
+        public Builder hedging(SpotifyProperties.Hedging hedging) {
+            this.hedging = hedging;
+            return this;
+        }
+
+        public Builder concurrency(SpotifyProperties.Concurrency concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Build the properties; caches hold 1000 entries with TTLs of 5m (short_term unless set),
+         * 15m (medium_term) and 1h (long_term).
+         *
+         * @return the properties
+         */
+        public SpotifyProperties build() {
+            var cache = new SpotifyProperties.Cache(1000, shortTermTtl, Duration.ofMinutes(15), Duration.ofHours(1),
+                    refreshAhead, stale, disk, compact);
+            return new SpotifyProperties(
+                    "https://api.spotify.com/v1",
+                    "https://accounts.spotify.com/api/token",
+                    "test-client-id",
+                    "test-client-secret",
+                    5,
+                    wrapped,
+                    http,
+                    cache,
+                    appToken,
+                    userToken,
+                    catalog,
+                    hedging,
+                    concurrency);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.adarssh.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.exception.SpotifyApiException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamRateGovernorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UpstreamRateGovernor governor = new UpstreamRateGovernor(
+            new SpotifyProperties.Governor(true, 20, 2, Duration.ofSeconds(2), Duration.ofSeconds(5),
+                    Duration.ZERO, Duration.ofSeconds(30)),
+            meterRegistry);
+    private final MockClientHttpRequest request =
+            new MockClientHttpRequest(HttpMethod.GET, URI.create("https://api.spotify.com/v1/me/top/tracks"));
+
+    @Test
+    void interceptPassesSuccessfulResponseThrough() throws Exception {
+        // when
+        ClientHttpResponse response = governor.intercept(request, new byte[0],
+                (req, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+
+        // then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(governor.currentRate()).isEqualTo(20);
+    }
+
+    @Test
+    void interceptWaitsOutShortRetryAfterAndSendsTheCallAgain() throws Exception {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+        long start = System.nanoTime();
+
+        // when
+        ClientHttpResponse response = governor.intercept(request, new byte[0], (req, body) ->
+                calls.incrementAndGet() == 1 ? tooManyRequests("1") : new MockClientHttpResponse(new byte[0],
+                        HttpStatus.OK));
+
+        // then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(900));
+        assertThat(governor.currentRate()).isEqualTo(10);
+        assertThat(meterRegistry.get("spotify.http.client.throttled").tag("source", "upstream").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void interceptSendsTheCallAgainWhenRetryAfterEqualsMaxWait() throws Exception {
+        // given
+        UpstreamRateGovernor jittered = new UpstreamRateGovernor(
+                new SpotifyProperties.Governor(true, 20, 2, Duration.ofSeconds(2), Duration.ofSeconds(5),
+                        Duration.ofMillis(250), Duration.ofSeconds(30)),
+                meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+
+        // when
+        ClientHttpResponse response = jittered.intercept(request, new byte[0], (req, body) ->
+                calls.incrementAndGet() == 1 ? tooManyRequests("2") : new MockClientHttpResponse(new byte[0],
+                        HttpStatus.OK));
+
+        // then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(meterRegistry.get("spotify.http.client.throttled").tag("source", "governor").counter().count())
+                .isZero();
+    }
+
+    @Test
+    void interceptHandsBackLongRetryAfterAndFailsFastUntilThePauseEnds() throws Exception {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+
+        // when
+        ClientHttpResponse response = governor.intercept(request, new byte[0], (req, body) -> {
+            calls.incrementAndGet();
+            return tooManyRequests("60");
+        });
+
+        // then: the 429 reaches the caller, and nothing is sent while the pause lasts
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThatThrownBy(() -> governor.intercept(request, new byte[0], (req, body) -> {
+            calls.incrementAndGet();
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        }))
+                .isInstanceOfSatisfying(SpotifyApiException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(429);
+                    assertThat(e.getRetryAfter()).isGreaterThan(Duration.ofSeconds(50));
+                });
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("spotify.http.client.throttled").tag("source", "governor").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void interceptDoesNotLowerRateBelowMinimum() throws Exception {
+        // given
+        UpstreamRateGovernor slow = new UpstreamRateGovernor(
+                new SpotifyProperties.Governor(true, 3, 2, Duration.ofSeconds(2), Duration.ofSeconds(5),
+                        Duration.ZERO, Duration.ofSeconds(30)),
+                new SimpleMeterRegistry());
+
+        // when
+        slow.intercept(request, new byte[0], (req, body) -> tooManyRequests("60"));
+
+        // then
+        assertThat(slow.currentRate()).isEqualTo(2);
+    }
+
+    @Test
+    void parseRetryAfterAcceptsSecondsAndHttpDates() {
+        // given
+        String inTenSeconds = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(10));
+
+        // when/then
+        assertThat(UpstreamRateGovernor.parseRetryAfter("7")).isEqualTo(Duration.ofSeconds(7));
+        assertThat(UpstreamRateGovernor.parseRetryAfter(inTenSeconds))
+                .isBetween(Duration.ofSeconds(8), Duration.ofSeconds(10));
+        assertThat(UpstreamRateGovernor.parseRetryAfter("soon")).isNull();
+        assertThat(UpstreamRateGovernor.parseRetryAfter(null)).isNull();
+    }
+
+    private static MockClientHttpResponse tooManyRequests(String retryAfter) {
+        MockClientHttpResponse response = new MockClientHttpResponse(new byte[0], HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfter);
+        return response;
+    }
+}
@@ -0,0 +1,71 @@
+package org.adarssh.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadPinningMonitorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private VirtualThreadPinningMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        monitor = new VirtualThreadPinningMonitor(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+    }
+
+    @Test
+    void startAndStopToggleRunningState() {
+        // when
+        monitor.start();
+
+        // then
+        assertThat(monitor.isRunning()).isTrue();
+
+        // when
+        monitor.stop();
+
+        // then
+        assertThat(monitor.isRunning()).isFalse();
+    }
+
+    @Test
+    void blockingInsideSynchronizedBlockIsRecordedAsPinned() throws Exception {
+        // given
+        monitor.start();
+        Object lock = new Object();
+
+        // when - sleeping while holding a monitor pins the virtual thread to its carrier
+        Thread.ofVirtual().start(() -> {
+            synchronized (lock) {
+                try {
+                    Thread.sleep(Duration.ofMillis(100));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).join();
+
+        // then - JFR flushes events to the stream roughly once per second
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (pinnedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(pinnedCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    private long pinnedCount() {
+        return meterRegistry.get("spotify.virtual.threads.pinned").timer().count();
+    }
+}
@@ -1,7 +1,7 @@
 package org.adarssh.controller;
 
-import org.adarssh.config.CorrelationIdFilter;
-import org.adarssh.config.RateLimitingFilter;
+import org.adarssh.config.EdgeFilter;
+import org.adarssh.config.RequestCaptureFilter;
 import org.adarssh.config.TestSecurityConfig;
 import org.adarssh.exception.GlobalExceptionHandler;
 import org.junit.jupiter.api.Test;
@@ -27,7 +27,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @WebMvcTest(value = HomeController.class, excludeFilters = @ComponentScan.Filter(
         type = FilterType.ASSIGNABLE_TYPE,
-        classes = {RateLimitingFilter.class, CorrelationIdFilter.class}
+        classes = {EdgeFilter.class, RequestCaptureFilter.class}
 ))
 @Import({TestSecurityConfig.class, GlobalExceptionHandler.class})
 @org.springframework.test.context.ActiveProfiles("test")
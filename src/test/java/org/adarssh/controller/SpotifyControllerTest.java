@@ -1,15 +1,17 @@
 package org.adarssh.controller;
 
-import org.adarssh.config.CorrelationIdFilter;
-import org.adarssh.config.RateLimitingFilter;
+import org.adarssh.config.EdgeFilter;
+import org.adarssh.config.RequestCaptureFilter;
 import org.adarssh.config.TestSecurityConfig;
 import org.adarssh.exception.GlobalExceptionHandler;
 import org.adarssh.dto.AlbumDto;
 import org.adarssh.dto.ArtistDto;
 import org.adarssh.dto.ExternalUrls;
+import org.adarssh.dto.SpotifyWrappedResponse;
 import org.adarssh.dto.TrackDto;
 import org.adarssh.dto.UserTopItemsResponse;
 import org.adarssh.service.SpotifyService;
+import org.adarssh.service.WrappedService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -34,7 +36,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @WebMvcTest(value = SpotifyController.class, excludeFilters = @ComponentScan.Filter(
         type = FilterType.ASSIGNABLE_TYPE,
-        classes = {RateLimitingFilter.class, CorrelationIdFilter.class}
+        classes = {EdgeFilter.class, RequestCaptureFilter.class}
 ))
 @Import({TestSecurityConfig.class, GlobalExceptionHandler.class})
 @org.springframework.test.context.ActiveProfiles("test")
@@ -46,6 +48,9 @@ class SpotifyControllerTest {
     @MockBean
     private SpotifyService spotifyService;
 
+    @MockBean
+    private WrappedService wrappedService;
+
     @MockBean
     private OAuth2AuthorizedClientService authorizedClientService;
 
@@ -315,10 +320,8 @@ class SpotifyControllerTest {
         UserTopItemsResponse<String> genresResponse = new UserTopItemsResponse<>(
                 "genres", 1, List.of("rock"));
 
-        when(spotifyService.getTopTracks(limit, "medium_term")).thenReturn(tracksResponse);
-        when(spotifyService.getTopArtists(limit, "medium_term")).thenReturn(artistsResponse);
-        when(spotifyService.getTopAlbums(limit, "medium_term")).thenReturn(albumsResponse);
-        when(spotifyService.getTopGenres(limit, "medium_term")).thenReturn(genresResponse);
+        when(wrappedService.getWrapped(limit, "medium_term")).thenReturn(new SpotifyWrappedResponse(
+                tracksResponse, artistsResponse, albumsResponse, genresResponse));
 
         // when/then
         mockMvc.perform(get("/api/spotify/wrapped").param("limit", "5"))
@@ -332,10 +335,7 @@ class SpotifyControllerTest {
                 .andExpect(jsonPath("$.topAlbums.count").value(1))
                 .andExpect(jsonPath("$.topGenres.count").value(1));
 
-        verify(spotifyService).getTopTracks(5, "medium_term");
-        verify(spotifyService).getTopArtists(5, "medium_term");
-        verify(spotifyService).getTopAlbums(5, "medium_term");
-        verify(spotifyService).getTopGenres(5, "medium_term");
+        verify(wrappedService).getWrapped(5, "medium_term");
     }
 
     @Test
@@ -351,10 +351,8 @@ class SpotifyControllerTest {
         UserTopItemsResponse<String> genresResponse = new UserTopItemsResponse<>(
                 "genres", 0, List.of());
 
-        when(spotifyService.getTopTracks(5, "medium_term")).thenReturn(tracksResponse);
-        when(spotifyService.getTopArtists(5, "medium_term")).thenReturn(artistsResponse);
-        when(spotifyService.getTopAlbums(5, "medium_term")).thenReturn(albumsResponse);
-        when(spotifyService.getTopGenres(5, "medium_term")).thenReturn(genresResponse);
+        when(wrappedService.getWrapped(5, "medium_term")).thenReturn(new SpotifyWrappedResponse(
+                tracksResponse, artistsResponse, albumsResponse, genresResponse));
 
         // when/then
         mockMvc.perform(get("/api/spotify/wrapped"))
@@ -364,10 +362,7 @@ class SpotifyControllerTest {
                 .andExpect(jsonPath("$.topAlbums").exists())
                 .andExpect(jsonPath("$.topGenres").exists());
 
-        verify(spotifyService).getTopTracks(5, "medium_term");
-        verify(spotifyService).getTopArtists(5, "medium_term");
-        verify(spotifyService).getTopAlbums(5, "medium_term");
-        verify(spotifyService).getTopGenres(5, "medium_term");
+        verify(wrappedService).getWrapped(5, "medium_term");
     }
 
     @Test
@@ -377,10 +372,7 @@ class SpotifyControllerTest {
         mockMvc.perform(get("/api/spotify/wrapped").param("limit", "0"))
                 .andExpect(status().isBadRequest());
 
-        verify(spotifyService, never()).getTopTracks(anyInt(), anyString());
-        verify(spotifyService, never()).getTopArtists(anyInt(), anyString());
-        verify(spotifyService, never()).getTopAlbums(anyInt(), anyString());
-        verify(spotifyService, never()).getTopGenres(anyInt(), anyString());
+        verify(wrappedService, never()).getWrapped(anyInt(), anyString());
     }
 
     @Test
@@ -389,9 +381,6 @@ class SpotifyControllerTest {
         mockMvc.perform(get("/api/spotify/wrapped").param("limit", "5"))
                 .andExpect(status().isUnauthorized());
 
-        verify(spotifyService, never()).getTopTracks(anyInt(), anyString());
-        verify(spotifyService, never()).getTopArtists(anyInt(), anyString());
-        verify(spotifyService, never()).getTopAlbums(anyInt(), anyString());
-        verify(spotifyService, never()).getTopGenres(anyInt(), anyString());
+        verify(wrappedService, never()).getWrapped(anyInt(), anyString());
     }
 }
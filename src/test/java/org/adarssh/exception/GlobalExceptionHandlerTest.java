@@ -1,14 +1,19 @@
 package org.adarssh.exception;
 
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
 
@@ -82,6 +87,39 @@ class GlobalExceptionHandlerTest {
         assertThat(response.getBody().path()).isEqualTo("uri=/api/spotify/top/tracks");
     }
 
+    @Test
+    void handleSpotifyApiExceptionWithRetryAfterSetsRetryAfterHeader() {
+        // given
+        SpotifyApiException exception = new SpotifyApiException(
+                "Rate limited by Spotify", 429, Duration.ofMillis(2500), null);
+        when(webRequest.getDescription(false)).thenReturn("uri=/api/spotify/top/tracks");
+
+        // when
+        ResponseEntity<GlobalExceptionHandler.ErrorResponse> response =
+                exceptionHandler.handleSpotifyApiException(exception, webRequest);
+
+        // then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+    }
+
+    @Test
+    void handleBulkheadFullExceptionReturnsServiceUnavailableWithRetryAfter() {
+        // given
+        BulkheadFullException exception = BulkheadFullException.createBulkheadFullException(
+                Bulkhead.ofDefaults("topTracks-interactive"));
+        when(webRequest.getDescription(false)).thenReturn("uri=/api/spotify/top/tracks");
+
+        // when
+        ResponseEntity<GlobalExceptionHandler.ErrorResponse> response =
+                exceptionHandler.handleBulkheadFullException(exception, webRequest);
+
+        // then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(response.getBody().status()).isEqualTo(503);
+    }
+
     @Test
     void handleSpotifyApiExceptionWith404StatusReturnsNotFound() {
         // given
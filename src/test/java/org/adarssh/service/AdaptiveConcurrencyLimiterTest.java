@@ -0,0 +1,201 @@
+package org.adarssh.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.SpotifyProperties;
+import org.adarssh.service.AdaptiveConcurrencyLimiter.Permit;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void tryAcquireShedsOnceTheLimitIsReached() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = limiter(2, Duration.ZERO);
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+
+        // when
+        Permit permit = limiter.tryAcquire();
+
+        // then
+        assertThat(permit).isNull();
+        assertThat(limiter.inFlight()).isEqualTo(2);
+        assertThat(meterRegistry.get("spotify.concurrency.in.flight").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void slowMissesShrinkTheLimitDownToTheMinimum() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = limiter(10, Duration.ZERO);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            Permit permit = limiter.tryAcquire();
+            nanos.addAndGet(Duration.ofMillis(150).toNanos());
+            permit.release();
+        }
+
+        // then: 10 -> 5 -> 2.5 -> 2 (min-limit)
+        assertThat(limiter.limit()).isEqualTo(2);
+        assertThat(meterRegistry.get("spotify.concurrency.limit").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void slowMissesFinishingTogetherShrinkTheLimitOncePerLatencyWindow() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = limiter(10, Duration.ZERO);
+        Permit[] permits = new Permit[10];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = limiter.tryAcquire();
+        }
+        nanos.addAndGet(Duration.ofMillis(150).toNanos());
+
+        // when
+        for (Permit permit : permits) {
+            permit.release();
+        }
+        int afterBurst = limiter.limit();
+        Permit late = limiter.tryAcquire();
+        nanos.addAndGet(Duration.ofMillis(150).toNanos());
+        late.release();
+
+        // then: one halving for the burst, another once a window has passed
+        assertThat(afterBurst).isEqualTo(5);
+        assertThat(limiter.limit()).isEqualTo(2);
+    }
+
+    @Test
+    void fastMissesGrowTheLimitOnlyWhileItIsInUse() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = limiter(4, Duration.ZERO);
+
+        // when: one miss at a time never uses half the limit
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire().release();
+        }
+        int idleLimit = limiter.limit();
+        Permit first = limiter.tryAcquire();
+        Permit second = limiter.tryAcquire();
+        second.release();
+        first.release();
+
+        // then
+        assertThat(idleLimit).isEqualTo(4);
+        assertThat(limiter.limit()).isEqualTo(5);
+    }
+
+    @Test
+    void limitNeverGrowsPastTheMaximum() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = limiter(10, Duration.ZERO);
+
+        // when
+        for (int i = 0; i < 20; i++) {
+            Permit[] permits = new Permit[limiter.limit()];
+            for (int p = 0; p < permits.length; p++) {
+                permits[p] = limiter.tryAcquire();
+            }
+            for (Permit permit : permits) {
+                permit.release();
+            }
+        }
+
+        // then
+        assertThat(limiter.limit()).isEqualTo(20);
+    }
+
+    @Test
+    void releaseOnlyCountsOnce() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = limiter(2, Duration.ZERO);
+        Permit permit = limiter.tryAcquire();
+        limiter.tryAcquire();
+
+        // when
+        permit.release();
+        permit.release();
+
+        // then
+        assertThat(limiter.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void tryAcquireWaitsForAReleasedPermit() throws Exception {
+        // given
+        AdaptiveConcurrencyLimiter limiter = limiter(1, Duration.ofSeconds(5));
+        Permit held = limiter.tryAcquire();
+
+        // when
+        CompletableFuture<Permit> waiter = CompletableFuture.supplyAsync(limiter::tryAcquire);
+        Thread.sleep(50);
+        held.release();
+
+        // then
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(limiter.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void tryAcquireGivesUpAfterMaxWait() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = limiter(1, Duration.ofMillis(20));
+        limiter.tryAcquire();
+
+        // when
+        Permit permit = limiter.tryAcquire();
+
+        // then
+        assertThat(permit).isNull();
+    }
+
+    @Test
+    void tryAcquireNeverShedsWhenDisabled() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new SpotifyProperties.Concurrency(
+                false, 1, 1, 1, Duration.ofMillis(100), 0.5, Duration.ZERO), meterRegistry, nanos::get);
+
+        // when
+        limiter.tryAcquire();
+        Permit permit = limiter.tryAcquire();
+        permit.release();
+
+        // then
+        assertThat(permit).isNotNull();
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void onShedCountsStaleAndRejectedAnswers() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = limiter(1, Duration.ZERO);
+
+        // when
+        limiter.onShed(true);
+        limiter.onShed(false);
+        limiter.onShed(false);
+
+        // then
+        assertThat(meterRegistry.get("spotify.concurrency.shed").tag("result", "stale").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("spotify.concurrency.shed").tag("result", "rejected").counter().count())
+                .isEqualTo(2);
+    }
+
+    /**
+     * A limiter between 2 and 20 that halves after a miss slower than 100ms.
+     */
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit, Duration maxWait) {
+        return new AdaptiveConcurrencyLimiter(new SpotifyProperties.Concurrency(true, initialLimit, 2, 20,
+                Duration.ofMillis(100), 0.5, maxWait), meterRegistry, nanos::get);
+    }
+}
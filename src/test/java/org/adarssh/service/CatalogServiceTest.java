@@ -0,0 +1,161 @@
+package org.adarssh.service;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.TestSpotifyProperties;
+import org.adarssh.dto.ArtistDto;
+import org.adarssh.exception.SpotifyApiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogServiceTest {
+
+    @Mock
+    private SpotifyAuthService authService;
+
+    private final RestClient.Builder builder = RestClient.builder().baseUrl("https://api.spotify.com/v1");
+    private final MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+    private CatalogService catalogService;
+
+    @AfterEach
+    void tearDown() {
+        if (catalogService != null) {
+            catalogService.destroy();
+        }
+    }
+
+    @Test
+    void getArtistsBatchesConcurrentLookupsIntoOneCall() throws Exception {
+        // given
+        catalogService = catalogService(Duration.ofMillis(200));
+        when(authService.obtainAccessToken()).thenReturn("app-token");
+        server.expect(ExpectedCount.once(), requestTo(startsWith("https://api.spotify.com/v1/artists?ids=")))
+                .andExpect(header("Authorization", "Bearer app-token"))
+                .andExpect(request -> assertThat(ids(request.getURI().getQuery()))
+                        .containsExactlyInAnyOrder("a1", "a2"))
+                .andRespond(withSuccess(artistsJson("a1", "a2"), MediaType.APPLICATION_JSON));
+
+        // when
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var first = CompletableFuture.supplyAsync(() -> catalogService.getArtists(List.of("a1")), executor);
+            var second = CompletableFuture.supplyAsync(() -> catalogService.getArtists(List.of("a2")), executor);
+
+            // then
+            assertThat(first.get()).containsOnlyKeys("a1");
+            assertThat(second.get()).containsOnlyKeys("a2");
+        }
+        server.verify();
+    }
+
+    @Test
+    void getArtistsServesCachedEntitiesWithoutCallingSpotify() {
+        // given
+        catalogService = catalogService(Duration.ofMillis(10));
+        when(authService.obtainAccessToken()).thenReturn("app-token");
+        server.expect(ExpectedCount.once(), requestTo(startsWith("https://api.spotify.com/v1/artists?ids=")))
+                .andRespond(withSuccess(artistsJson("a1"), MediaType.APPLICATION_JSON));
+        catalogService.getArtists(List.of("a1"));
+
+        // when
+        Map<String, ArtistDto> cached = catalogService.getArtists(List.of("a1"));
+
+        // then
+        assertThat(cached.get("a1").name()).isEqualTo("Artist a1");
+        server.verify();
+    }
+
+    @Test
+    void getArtistsLeavesOutIdsSpotifyDoesNotKnow() {
+        // given
+        catalogService = catalogService(Duration.ofMillis(10));
+        when(authService.obtainAccessToken()).thenReturn("app-token");
+        server.expect(requestTo(startsWith("https://api.spotify.com/v1/artists?ids=")))
+                .andRespond(withSuccess("{\"artists\":[{\"id\":\"a1\",\"name\":\"Artist a1\"},null]}",
+                        MediaType.APPLICATION_JSON));
+
+        // when
+        Map<String, ArtistDto> found = catalogService.getArtists(List.of("a1", "unknown"));
+
+        // then
+        assertThat(found).containsOnlyKeys("a1");
+    }
+
+    @Test
+    void getArtistsSplitsLookupsIntoBatchesOfFifty() {
+        // given
+        catalogService = catalogService(Duration.ofMillis(10));
+        when(authService.obtainAccessToken()).thenReturn("app-token");
+        List<String> ids = IntStream.range(0, 60).mapToObj(i -> "a" + i).toList();
+        server.expect(ExpectedCount.twice(), requestTo(startsWith("https://api.spotify.com/v1/artists?ids=")))
+                .andRespond(request -> withSuccess(
+                        artistsJson(ids(request.getURI().getQuery()).toArray(String[]::new)),
+                        MediaType.APPLICATION_JSON).createResponse(request));
+
+        // when
+        Map<String, ArtistDto> found = catalogService.getArtists(ids);
+
+        // then
+        assertThat(found).hasSize(60);
+        server.verify();
+    }
+
+    @Test
+    void getArtistsMapsUpstreamRateLimitTo429() {
+        // given
+        catalogService = catalogService(Duration.ofMillis(10));
+        when(authService.obtainAccessToken()).thenReturn("app-token");
+        server.expect(requestTo(startsWith("https://api.spotify.com/v1/artists?ids=")))
+                .andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "30"));
+
+        // when/then
+        assertThatThrownBy(() -> catalogService.getArtists(List.of("a1")))
+                .isInstanceOfSatisfying(SpotifyApiException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(429);
+                    assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(30));
+                });
+    }
+
+    private CatalogService catalogService(Duration batchWindow) {
+        return new CatalogService(builder.build(), authService,
+                new UpstreamBulkheads(BulkheadRegistry.ofDefaults(), new SimpleMeterRegistry()),
+                TestSpotifyProperties.builder().catalog(TestSpotifyProperties.catalog(batchWindow)).build(),
+                new SimpleMeterRegistry());
+    }
+
+    private static List<String> ids(String query) {
+        return Arrays.asList(query.substring("ids=".length()).split(","));
+    }
+
+    private static String artistsJson(String... ids) {
+        return Arrays.stream(ids)
+                .map(id -> "{\"id\":\"" + id + "\",\"name\":\"Artist " + id + "\"}")
+                .collect(Collectors.joining(",", "{\"artists\":[", "]}"));
+    }
+}
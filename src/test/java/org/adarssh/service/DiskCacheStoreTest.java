@@ -0,0 +1,224 @@
+package org.adarssh.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.SpotifyProperties;
+import org.adarssh.config.TestSpotifyProperties;
+import org.adarssh.dto.TimeRange;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskCacheStoreTest {
+
+    private static final TopItemsCacheKey KEY = new TopItemsCacheKey("testuser", TimeRange.SHORT_TERM);
+
+    @TempDir
+    private Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<DiskCacheStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(DiskCacheStore::destroy);
+    }
+
+    @Test
+    void pageIsReadBackWithRemainingLifetime() throws Exception {
+        // given
+        DiskCacheStore store = start(TestSpotifyProperties.disk(true, directory.toString()));
+        UserTopItemsResponse<TrackDto> page = page("track1");
+
+        // when
+        store.put("topTracks", KEY, page);
+        DiskCacheStore.StoredPage stored = store.get("topTracks", KEY);
+
+        // then
+        assertThat(stored.page()).isEqualTo(page);
+        assertThat(stored.timeToLive()).isPositive().isLessThanOrEqualTo(Duration.ofMinutes(5));
+        assertThat(store.get("topArtists", KEY)).isNull();
+        assertThat(meterRegistry.get("spotify.cache.disk").tag("result", "hit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void pagesSurviveRestart() throws Exception {
+        // given
+        DiskCacheStore before = start(TestSpotifyProperties.disk(true, directory.toString()));
+        before.put("topTracks", KEY, page("old"));
+        before.put("topTracks", KEY, page("new"));
+        before.destroy();
+
+        // when
+        DiskCacheStore after = start(TestSpotifyProperties.disk(true, directory.toString()));
+
+        // then
+        assertThat(after.get("topTracks", KEY).page()).isEqualTo(page("new"));
+    }
+
+    @Test
+    void evictionSurvivesRestart() throws Exception {
+        // given
+        DiskCacheStore before = start(TestSpotifyProperties.disk(true, directory.toString()));
+        before.put("topTracks", KEY, page("track1"));
+        before.evict("topTracks", KEY);
+        assertThat(before.get("topTracks", KEY)).isNull();
+        before.destroy();
+
+        // when
+        DiskCacheStore after = start(TestSpotifyProperties.disk(true, directory.toString()));
+
+        // then
+        assertThat(after.get("topTracks", KEY)).isNull();
+    }
+
+    @Test
+    void tornRecordAtEndOfSegmentIsIgnored() throws Exception {
+        // given
+        DiskCacheStore before = start(TestSpotifyProperties.disk(true, directory.toString()));
+        before.put("topTracks", KEY, page("track1"));
+        before.destroy();
+        Files.write(segments().get(0), new byte[] {0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+
+        // when
+        DiskCacheStore after = start(TestSpotifyProperties.disk(true, directory.toString()));
+
+        // then
+        assertThat(after.get("topTracks", KEY).page()).isEqualTo(page("track1"));
+    }
+
+    @Test
+    void expiredPagesAreNotServed() throws Exception {
+        // given
+        DiskCacheStore store = start(TestSpotifyProperties.builder()
+                .shortTermTtl(Duration.ofMillis(1))
+                .refreshAhead(TestSpotifyProperties.refreshAhead(false, 60))
+                .disk(TestSpotifyProperties.disk(true, directory.toString()))
+                .build());
+
+        // when
+        store.put("topTracks", KEY, page("track1"));
+        Thread.sleep(5);
+
+        // then
+        assertThat(store.get("topTracks", KEY)).isNull();
+    }
+
+    @Test
+    void oldestSegmentsAreDeletedBeyondMaxSegments() throws Exception {
+        // given: 1KB segments, at most 3
+        DiskCacheStore store = start(TestSpotifyProperties.disk(true, directory.toString()));
+
+        // when
+        for (int i = 0; i < 40; i++) {
+            store.put("topTracks", new TopItemsCacheKey("user" + i, TimeRange.LONG_TERM), page("track" + i));
+        }
+        store.awaitWritten();
+
+        // then
+        assertThat(segments()).hasSize(3);
+        assertThat(store.get("topTracks", new TopItemsCacheKey("user0", TimeRange.LONG_TERM))).isNull();
+        assertThat(store.get("topTracks", new TopItemsCacheKey("user39", TimeRange.LONG_TERM))).isNotNull();
+    }
+
+    @Test
+    void segmentsAreNotDeletedWhileStartupScanIsRunning() throws Exception {
+        // given: 1KB segments, at most 100
+        var disk = new SpotifyProperties.Disk(true, directory.toString(), DataSize.ofKilobytes(1), 100, 100);
+        DiskCacheStore before = start(disk);
+        before.put("topTracks", KEY, page("track1"));
+        before.destroy();
+
+        // when: rolls happen before the old segment has been indexed
+        DiskCacheStore after = start(disk, false);
+        for (int i = 0; i < 20; i++) {
+            after.put("topTracks", new TopItemsCacheKey("user" + i, TimeRange.LONG_TERM), page("track" + i));
+        }
+        after.awaitWritten();
+        after.awaitLoaded();
+
+        // then
+        assertThat(after.get("topTracks", KEY).page()).isEqualTo(page("track1"));
+    }
+
+    @Test
+    void putIsWrittenInTheBackgroundAndServedUntilThen() throws Exception {
+        // given
+        DiskCacheStore store = start(TestSpotifyProperties.disk(true, directory.toString()));
+        long emptySegment = Files.size(segments().get(0));
+
+        // when
+        store.put("topTracks", KEY, page("track1"));
+        DiskCacheStore.StoredPage beforeWrite = store.get("topTracks", KEY);
+        store.awaitWritten();
+
+        // then
+        assertThat(beforeWrite.page()).isEqualTo(page("track1"));
+        assertThat(Files.size(segments().get(0))).isGreaterThan(emptySegment);
+        assertThat(store.get("topTracks", KEY).page()).isEqualTo(page("track1"));
+    }
+
+    @Test
+    void disabledStoreTouchesNothing() throws Exception {
+        // given
+        Path unused = directory.resolve("unused");
+        DiskCacheStore store = start(TestSpotifyProperties.disk(false, unused.toString()));
+
+        // when
+        store.put("topTracks", KEY, page("track1"));
+
+        // then
+        assertThat(store.get("topTracks", KEY)).isNull();
+        assertThat(unused).doesNotExist();
+    }
+
+    private DiskCacheStore start(SpotifyProperties.Disk disk) throws Exception {
+        return start(disk, true);
+    }
+
+    private DiskCacheStore start(SpotifyProperties.Disk disk, boolean awaitLoaded) throws Exception {
+        return start(TestSpotifyProperties.builder()
+                .refreshAhead(TestSpotifyProperties.refreshAhead(false, 60))
+                .disk(disk)
+                .build(), awaitLoaded);
+    }
+
+    private DiskCacheStore start(SpotifyProperties properties) throws Exception {
+        return start(properties, true);
+    }
+
+    private DiskCacheStore start(SpotifyProperties properties, boolean awaitLoaded) throws Exception {
+        var store = new DiskCacheStore(properties, new TopItemsCodec(new ObjectMapper()), meterRegistry);
+        stores.add(store);
+        store.afterPropertiesSet();
+        if (awaitLoaded) {
+            store.awaitLoaded();
+        }
+        return store;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static UserTopItemsResponse<TrackDto> page(String id) {
+        return new UserTopItemsResponse<>("tracks", 1,
+                List.of(new TrackDto(id, "Track " + id, null, List.of(), 80, 180000, null)));
+    }
+}
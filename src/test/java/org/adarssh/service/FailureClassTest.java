@@ -0,0 +1,41 @@
+package org.adarssh.service;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import org.adarssh.exception.SpotifyApiException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FailureClassTest {
+
+    @Test
+    void ofSeparatesUserScopedErrorsFromUpstreamHealth() {
+        // given
+        var badRequest = new SpotifyApiException("Failed (Spotify returned 400)", 502,
+                HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null));
+
+        // when/then
+        assertThat(FailureClass.of(new SpotifyApiException("Unauthorized", 401))).isEqualTo(FailureClass.USER);
+        assertThat(FailureClass.of(new SpotifyApiException("Forbidden", 403))).isEqualTo(FailureClass.USER);
+        assertThat(FailureClass.of(new SpotifyApiException("Not found", 404))).isEqualTo(FailureClass.REQUEST);
+        assertThat(FailureClass.of(badRequest)).isEqualTo(FailureClass.REQUEST);
+        assertThat(FailureClass.of(new SpotifyApiException("Rate limited", 429))).isEqualTo(FailureClass.THROTTLED);
+        assertThat(FailureClass.of(BulkheadFullException.createBulkheadFullException(Bulkhead.ofDefaults("b"))))
+                .isEqualTo(FailureClass.THROTTLED);
+    }
+
+    @Test
+    void ofTreatsServerErrorsAndIoFailuresAsUpstreamHealth() {
+        // when/then
+        assertThat(FailureClass.of(new SpotifyApiException("Bad gateway", 502))).isEqualTo(FailureClass.UPSTREAM);
+        assertThat(FailureClass.of(new SpotifyApiException("Timeout", 504))).isEqualTo(FailureClass.UPSTREAM);
+        assertThat(FailureClass.of(new ResourceAccessException("Connection reset")))
+                .isEqualTo(FailureClass.UPSTREAM);
+        assertThat(new UpstreamHealthFailure().test(new SpotifyApiException("Unauthorized", 401))).isFalse();
+        assertThat(new UpstreamHealthFailure().test(new SpotifyApiException("Unavailable", 503))).isTrue();
+    }
+}
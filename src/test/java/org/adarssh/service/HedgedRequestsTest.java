@@ -0,0 +1,102 @@
+package org.adarssh.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.TestSpotifyProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgedRequestsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void executeRunsCallOnCallerThreadWhenDisabled() {
+        // given
+        HedgedRequests hedgedRequests = hedgedRequests(false);
+        Thread caller = Thread.currentThread();
+
+        // when
+        Thread ran = hedgedRequests.execute("tracks", Thread::currentThread);
+
+        // then
+        assertThat(ran).isSameAs(caller);
+    }
+
+    @Test
+    void executeDoesNotHedgeCallThatAnswersWithinDelay() {
+        // given
+        HedgedRequests hedgedRequests = hedgedRequests(true);
+        AtomicInteger calls = new AtomicInteger();
+
+        // when
+        String result = hedgedRequests.execute("tracks", () -> "page-" + calls.incrementAndGet());
+
+        // then
+        assertThat(result).isEqualTo("page-1");
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("spotify.upstream.hedge").counters())
+                .hasSize(6)
+                .allSatisfy(counter -> assertThat(counter.count()).isZero());
+    }
+
+    @Test
+    void executeReturnsHedgeAndCancelsSlowOriginal() throws Exception {
+        // given
+        HedgedRequests hedgedRequests = hedgedRequests(true);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch originalCancelled = new CountDownLatch(1);
+
+        // when
+        String result = hedgedRequests.execute("tracks", () -> {
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(Duration.ofSeconds(10));
+                } catch (InterruptedException e) {
+                    originalCancelled.countDown();
+                    throw new IllegalStateException("cancelled", e);
+                }
+                return "original";
+            }
+            return "hedge";
+        });
+
+        // then
+        assertThat(result).isEqualTo("hedge");
+        assertThat(originalCancelled.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("spotify.upstream.hedge")
+                .tag("endpoint", "tracks")
+                .tag("result", "won")
+                .counter()
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    void hedgeDelayFollowsObservedLatencyOnceEnoughSamplesAreSeen() {
+        // given
+        HedgedRequests hedgedRequests = hedgedRequests(true);
+        Duration initial = hedgedRequests.hedgeDelay("artists");
+
+        // when
+        for (int i = 0; i < 20; i++) {
+            hedgedRequests.execute("artists", () -> "page");
+        }
+
+        // then: calls answer in well under the 10ms floor
+        assertThat(initial).isEqualTo(Duration.ofMillis(50));
+        assertThat(hedgedRequests.hedgeDelay("artists")).isEqualTo(Duration.ofMillis(10));
+    }
+
+    private HedgedRequests hedgedRequests(boolean enabled) {
+        return new HedgedRequests(
+                TestSpotifyProperties.builder()
+                        .hedging(TestSpotifyProperties.hedging(enabled, Duration.ofMillis(50)))
+                        .build(),
+                meterRegistry);
+    }
+}
@@ -0,0 +1,173 @@
+package org.adarssh.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.TestSpotifyProperties;
+import org.adarssh.dto.TimeRange;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.exception.SpotifyApiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LastKnownGoodCacheTest {
+
+    private static final TopItemsCacheKey KEY = new TopItemsCacheKey("testuser", TimeRange.SHORT_TERM);
+    private static final Duration SERVE_AFTER = Duration.ofMillis(100);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CacheManager cacheManager = new ConcurrentMapCacheManager("topTracks");
+    private final UserTopItemsResponse<TrackDto> oldPage = page("old");
+    private final UserTopItemsResponse<TrackDto> newPage = page("new");
+
+    private LastKnownGoodCache lastKnownGood = lastKnownGood(true);
+
+    @AfterEach
+    void tearDown() {
+        lastKnownGood.destroy();
+    }
+
+    @Test
+    void executeWithoutLastKnownGoodRunsLoaderOnCallerThread() {
+        // given
+        Thread caller = Thread.currentThread();
+
+        // when
+        UserTopItemsResponse<TrackDto> result = lastKnownGood.execute("topTracks", KEY, () -> {
+            assertThat(Thread.currentThread()).isSameAs(caller);
+            return newPage;
+        });
+
+        // then
+        assertThat(result).isSameAs(newPage);
+    }
+
+    @Test
+    void executeReturnsFreshPageWhenUpstreamAnswersInTime() {
+        // given
+        lastKnownGood.remember("topTracks", KEY, oldPage);
+
+        // when
+        UserTopItemsResponse<TrackDto> result = lastKnownGood.execute("topTracks", KEY, () -> newPage);
+
+        // then
+        assertThat(result).isSameAs(newPage);
+        assertThat(result.stale()).isNull();
+    }
+
+    @Test
+    void executeServesStalePageWhenUpstreamIsSlowAndRevalidatesInBackground() throws Exception {
+        // given
+        lastKnownGood.remember("topTracks", KEY, oldPage);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // when
+        UserTopItemsResponse<TrackDto> result = lastKnownGood.execute("topTracks", KEY, () -> {
+            await(release);
+            return newPage;
+        });
+        release.countDown();
+
+        // then
+        assertThat(result.items()).isEqualTo(oldPage.items());
+        assertThat(result.stale()).isTrue();
+        assertThat(served("slow")).isEqualTo(1);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cacheManager.getCache("topTracks").get(KEY) == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(cacheManager.getCache("topTracks").get(KEY).get()).isSameAs(newPage);
+    }
+
+    @Test
+    void executePropagatesUpstreamFailure() {
+        // given
+        lastKnownGood.remember("topTracks", KEY, oldPage);
+
+        // when/then
+        assertThatThrownBy(() -> lastKnownGood.execute("topTracks", KEY, () -> {
+            throw new SpotifyApiException("Failed to fetch top tracks from Spotify API", 500);
+        })).isInstanceOf(SpotifyApiException.class);
+    }
+
+    @Test
+    void serveOnErrorReturnsLastKnownGoodPageMarkedStale() {
+        // given
+        lastKnownGood.remember("topTracks", KEY, oldPage);
+
+        // when
+        UserTopItemsResponse<TrackDto> result = lastKnownGood.serveOnError("topTracks", KEY);
+
+        // then
+        assertThat(result.items()).isEqualTo(oldPage.items());
+        assertThat(result.stale()).isTrue();
+        assertThat(served("error")).isEqualTo(1);
+    }
+
+    @Test
+    void serveOnErrorWithoutLastKnownGoodReturnsNull() {
+        // when/then
+        assertThat(lastKnownGood.<TrackDto>serveOnError("topTracks", KEY)).isNull();
+        assertThat(lastKnownGood.<TrackDto>serveOnError("topArtists", KEY)).isNull();
+    }
+
+    @Test
+    void servedCountersAreRegisteredUpFront() {
+        // when/then
+        assertThat(meterRegistry.get("spotify.cache.stale.served").counters()).hasSize(4);
+        assertThat(served("error")).isZero();
+        assertThat(served("slow")).isZero();
+    }
+
+    @Test
+    void disabledTierKeepsNothing() {
+        // given
+        lastKnownGood.destroy();
+        lastKnownGood = lastKnownGood(false);
+        lastKnownGood.remember("topTracks", KEY, oldPage);
+
+        // when/then
+        assertThat(lastKnownGood.<TrackDto>serveOnError("topTracks", KEY)).isNull();
+    }
+
+    private LastKnownGoodCache lastKnownGood(boolean enabled) {
+        var properties = TestSpotifyProperties.builder()
+                .stale(TestSpotifyProperties.stale(enabled, SERVE_AFTER))
+                .build();
+        var beanFactory = new StaticListableBeanFactory(Map.of("cacheManager", cacheManager));
+        return new LastKnownGoodCache(properties, beanFactory.getBeanProvider(CacheManager.class), meterRegistry);
+    }
+
+    private double served(String reason) {
+        return meterRegistry.get("spotify.cache.stale.served")
+                .tag("cache", "topTracks")
+                .tag("reason", reason)
+                .counter()
+                .count();
+    }
+
+    private static UserTopItemsResponse<TrackDto> page(String id) {
+        return new UserTopItemsResponse<>("tracks", 1,
+                List.of(new TrackDto(id, "Track " + id, null, List.of(), 80, 180000, null)));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.adarssh.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.TestSpotifyProperties;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,14 +11,25 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
-import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthorizationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+
+import java.time.Duration;
+import java.time.Instant;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -24,7 +37,7 @@ import static org.mockito.Mockito.when;
 class OAuth2TokenServiceTest {
 
     @Mock
-    private OAuth2AuthorizedClientService authorizedClientService;
+    private OAuth2AuthorizedClientManager authorizedClientManager;
 
     @Mock
     private SecurityContext securityContext;
@@ -35,14 +48,12 @@ class OAuth2TokenServiceTest {
     @Mock
     private OAuth2AuthorizedClient oAuth2AuthorizedClient;
 
-    @Mock
-    private OAuth2AccessToken oAuth2AccessToken;
-
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     private OAuth2TokenService tokenService;
 
     @BeforeEach
     void setUp() {
-        tokenService = new OAuth2TokenService(authorizedClientService);
+        tokenService = tokenService(Duration.ofMinutes(5));
         SecurityContextHolder.setContext(securityContext);
     }
 
@@ -56,10 +67,8 @@ class OAuth2TokenServiceTest {
         when(securityContext.getAuthentication()).thenReturn(oAuth2AuthenticationToken);
         when(oAuth2AuthenticationToken.getAuthorizedClientRegistrationId()).thenReturn(clientRegistrationId);
         when(oAuth2AuthenticationToken.getName()).thenReturn(principalName);
-        when(authorizedClientService.loadAuthorizedClient(clientRegistrationId, principalName))
-                .thenReturn(oAuth2AuthorizedClient);
-        when(oAuth2AuthorizedClient.getAccessToken()).thenReturn(oAuth2AccessToken);
-        when(oAuth2AccessToken.getTokenValue()).thenReturn(expectedToken);
+        when(authorizedClientManager.authorize(any())).thenReturn(oAuth2AuthorizedClient);
+        when(oAuth2AuthorizedClient.getAccessToken()).thenReturn(accessToken(expectedToken, Duration.ofHours(1)));
 
         // when
         String actualToken = tokenService.getUserAccessToken();
@@ -67,7 +76,9 @@ class OAuth2TokenServiceTest {
         // then
         assertThat(actualToken).isEqualTo(expectedToken);
         verify(securityContext).getAuthentication();
-        verify(authorizedClientService).loadAuthorizedClient(clientRegistrationId, principalName);
+        verify(authorizedClientManager).authorize(argThat((OAuth2AuthorizeRequest request) ->
+                clientRegistrationId.equals(request.getClientRegistrationId())
+                        && principalName.equals(request.getPrincipal().getName())));
     }
 
     @Test
@@ -96,14 +107,10 @@ class OAuth2TokenServiceTest {
     @Test
     void getUserAccessTokenWhenAuthorizedClientIsNullThrowsIllegalStateException() {
         // given
-        String clientRegistrationId = "spotify";
-        String principalName = "testUser";
-
         when(securityContext.getAuthentication()).thenReturn(oAuth2AuthenticationToken);
-        when(oAuth2AuthenticationToken.getAuthorizedClientRegistrationId()).thenReturn(clientRegistrationId);
-        when(oAuth2AuthenticationToken.getName()).thenReturn(principalName);
-        when(authorizedClientService.loadAuthorizedClient(clientRegistrationId, principalName))
-                .thenReturn(null);
+        when(oAuth2AuthenticationToken.getAuthorizedClientRegistrationId()).thenReturn("spotify");
+        when(oAuth2AuthenticationToken.getName()).thenReturn("testUser");
+        when(authorizedClientManager.authorize(any())).thenReturn(null);
 
         // when/then
         assertThatThrownBy(() -> tokenService.getUserAccessToken())
@@ -114,14 +121,10 @@ class OAuth2TokenServiceTest {
     @Test
     void getUserAccessTokenWhenAccessTokenIsNullThrowsIllegalStateException() {
         // given
-        String clientRegistrationId = "spotify";
-        String principalName = "testUser";
-
         when(securityContext.getAuthentication()).thenReturn(oAuth2AuthenticationToken);
-        when(oAuth2AuthenticationToken.getAuthorizedClientRegistrationId()).thenReturn(clientRegistrationId);
-        when(oAuth2AuthenticationToken.getName()).thenReturn(principalName);
-        when(authorizedClientService.loadAuthorizedClient(clientRegistrationId, principalName))
-                .thenReturn(oAuth2AuthorizedClient);
+        when(oAuth2AuthenticationToken.getAuthorizedClientRegistrationId()).thenReturn("spotify");
+        when(oAuth2AuthenticationToken.getName()).thenReturn("testUser");
+        when(authorizedClientManager.authorize(any())).thenReturn(oAuth2AuthorizedClient);
         when(oAuth2AuthorizedClient.getAccessToken()).thenReturn(null);
 
         // when/then
@@ -130,27 +133,129 @@ class OAuth2TokenServiceTest {
                 .hasMessageContaining("No access token available. Please re-authenticate.");
     }
 
+    @Test
+    void getUserAccessTokenWhenRefreshTokenIsRejectedThrowsIllegalStateException() {
+        // given
+        when(securityContext.getAuthentication()).thenReturn(oAuth2AuthenticationToken);
+        when(oAuth2AuthenticationToken.getAuthorizedClientRegistrationId()).thenReturn("spotify");
+        when(oAuth2AuthenticationToken.getName()).thenReturn("testUser");
+        when(authorizedClientManager.authorize(any()))
+                .thenThrow(new OAuth2AuthorizationException(new OAuth2Error("invalid_grant")));
+
+        // when/then
+        assertThatThrownBy(() -> tokenService.getUserAccessToken())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("No access token available. Please re-authenticate.");
+    }
+
     @Test
     void getUserAccessTokenLogsDebugMessageWithUsername() {
         // given
         String expectedToken = "test-token";
-        String clientRegistrationId = "spotify";
-        String principalName = "john.doe";
 
         when(securityContext.getAuthentication()).thenReturn(oAuth2AuthenticationToken);
-        when(oAuth2AuthenticationToken.getAuthorizedClientRegistrationId()).thenReturn(clientRegistrationId);
-        when(oAuth2AuthenticationToken.getName()).thenReturn(principalName);
-        when(authorizedClientService.loadAuthorizedClient(clientRegistrationId, principalName))
-                .thenReturn(oAuth2AuthorizedClient);
-        when(oAuth2AuthorizedClient.getAccessToken()).thenReturn(oAuth2AccessToken);
-        when(oAuth2AccessToken.getTokenValue()).thenReturn(expectedToken);
+        when(oAuth2AuthenticationToken.getAuthorizedClientRegistrationId()).thenReturn("spotify");
+        when(oAuth2AuthenticationToken.getName()).thenReturn("john.doe");
+        when(authorizedClientManager.authorize(any())).thenReturn(oAuth2AuthorizedClient);
+        when(oAuth2AuthorizedClient.getAccessToken()).thenReturn(accessToken(expectedToken, Duration.ofHours(1)));
 
         // when
         String actualToken = tokenService.getUserAccessToken();
 
         // then
         assertThat(actualToken).isEqualTo(expectedToken);
-        // getName() is called twice: once for loadAuthorizedClient and once for debug log
         verify(oAuth2AuthenticationToken, atLeastOnce()).getName();
     }
+
+    @Test
+    void getAccessTokenLoadsStoredClientWithoutSecurityContext() {
+        // given
+        when(authorizedClientManager.authorize(any())).thenReturn(oAuth2AuthorizedClient);
+        when(oAuth2AuthorizedClient.getAccessToken()).thenReturn(accessToken("stored-token", Duration.ofHours(1)));
+
+        // when
+        String actualToken = tokenService.getAccessToken("testUser");
+
+        // then
+        assertThat(actualToken).isEqualTo("stored-token");
+        verify(securityContext, never()).getAuthentication();
+    }
+
+    @Test
+    void getAccessTokenWhenNoStoredClientThrowsIllegalStateException() {
+        // given
+        when(authorizedClientManager.authorize(any())).thenReturn(null);
+
+        // when/then
+        assertThatThrownBy(() -> tokenService.getAccessToken("testUser"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("No stored access token for user: testUser");
+    }
+
+    @Test
+    void getAccessTokenServesCachedTokenWithoutAuthorizingAgain() {
+        // given
+        when(authorizedClientManager.authorize(any())).thenReturn(oAuth2AuthorizedClient);
+        when(oAuth2AuthorizedClient.getAccessToken()).thenReturn(accessToken("cached-token", Duration.ofHours(1)));
+
+        // when
+        tokenService.getAccessToken("testUser");
+        String second = tokenService.getAccessToken("testUser");
+
+        // then
+        assertThat(second).isEqualTo("cached-token");
+        verify(authorizedClientManager, times(1)).authorize(any());
+        assertThat(meterRegistry.get("spotify.upstream.single.flight")
+                .tag("operation", "user-token")
+                .tag("result", "leader")
+                .counter()
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    void getAccessTokenRenewsExpiredTokenBeforeReturning() {
+        // given: the token expires within the 30s skew, so it is never served from the cache
+        when(authorizedClientManager.authorize(any())).thenReturn(oAuth2AuthorizedClient);
+        when(oAuth2AuthorizedClient.getAccessToken()).thenReturn(
+                accessToken("expiring-token", Duration.ofSeconds(10)),
+                accessToken("renewed-token", Duration.ofHours(1)));
+
+        // when
+        tokenService.getAccessToken("testUser");
+        String renewed = tokenService.getAccessToken("testUser");
+
+        // then
+        assertThat(renewed).isEqualTo("renewed-token");
+        verify(authorizedClientManager, times(2)).authorize(any());
+    }
+
+    @Test
+    void getAccessTokenRenewsTokenInBackgroundAheadOfExpiry() {
+        // given: refresh-ahead is longer than the token lives, so every read is due for renewal
+        OAuth2TokenService service = tokenService(Duration.ofHours(2));
+        when(authorizedClientManager.authorize(any())).thenReturn(oAuth2AuthorizedClient);
+        when(oAuth2AuthorizedClient.getAccessToken()).thenReturn(
+                accessToken("current-token", Duration.ofHours(1)),
+                accessToken("renewed-token", Duration.ofHours(1)));
+        service.getAccessToken("testUser");
+
+        // when
+        String current = service.getAccessToken("testUser");
+
+        // then: the caller is not held up, the token is renewed behind it
+        assertThat(current).isEqualTo("current-token");
+        verify(authorizedClientManager, timeout(5000).times(2)).authorize(any());
+    }
+
+    private OAuth2TokenService tokenService(Duration refreshAhead) {
+        var properties = TestSpotifyProperties.builder()
+                .userToken(TestSpotifyProperties.userToken(Duration.ofSeconds(30), refreshAhead))
+                .build();
+        return new OAuth2TokenService(authorizedClientManager, properties, meterRegistry);
+    }
+
+    private static OAuth2AccessToken accessToken(String value, Duration expiresIn) {
+        Instant now = Instant.now();
+        return new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, value, now, now.plus(expiresIn));
+    }
 }
@@ -0,0 +1,155 @@
+package org.adarssh.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.exception.SpotifyApiException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 10;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight(meterRegistry);
+
+    @Test
+    void executeReturnsLoaderResult() {
+        // when
+        String result = singleFlight.execute("key", () -> "value");
+
+        // then
+        assertThat(result).isEqualTo("value");
+        assertThat(count("leader")).isEqualTo(1);
+        assertThat(count("coalesced")).isZero();
+    }
+
+    @Test
+    void concurrentCallsWithSameKeyShareOneLoad() throws Exception {
+        // given
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        // when
+        List<Future<String>> results = runConcurrently(() -> singleFlight.execute("key", () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "value";
+        }), release);
+
+        // then
+        for (Future<String> result : results) {
+            assertThat(result.get()).isEqualTo("value");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(count("leader")).isEqualTo(1);
+        assertThat(count("coalesced")).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void concurrentCallsShareLeaderFailure() throws Exception {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+
+        // when
+        List<Future<String>> results = runConcurrently(() -> singleFlight.<String>execute("key", () -> {
+            await(release);
+            throw new SpotifyApiException("Failed to fetch top tracks from Spotify API", 500);
+        }), release);
+
+        // then
+        for (Future<String> result : results) {
+            assertThatThrownBy(result::get)
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(SpotifyApiException.class);
+        }
+    }
+
+    @Test
+    void keyIsReleasedAfterCompletion() {
+        // when
+        singleFlight.execute("key", () -> "first");
+        String second = singleFlight.execute("key", () -> "second");
+
+        // then
+        assertThat(second).isEqualTo("second");
+        assertThat(count("leader")).isEqualTo(2);
+        assertThat(meterRegistry.get("spotify.upstream.single.flight.in.flight")
+                .tag("operation", "top-items")
+                .gauge()
+                .value()).isZero();
+    }
+
+    @Test
+    void differentKeysDoNotCoalesce() {
+        // when
+        singleFlight.execute("user1", () -> "first");
+        singleFlight.execute("user2", () -> "second");
+
+        // then
+        assertThat(count("leader")).isEqualTo(2);
+        assertThat(count("coalesced")).isZero();
+    }
+
+    @Test
+    void metricsAreTaggedWithTheOperation() {
+        // given
+        var tokens = new SingleFlight(meterRegistry, "user-token");
+
+        // when
+        tokens.execute("user1", () -> "token");
+
+        // then
+        assertThat(count("leader")).isZero();
+        assertThat(meterRegistry.get("spotify.upstream.single.flight")
+                .tag("operation", "user-token")
+                .tag("result", "leader")
+                .counter()
+                .count()).isEqualTo(1);
+    }
+
+        private List<Future<String>> runConcurrently(Callable<String> call, CountDownLatch release)
+            throws InterruptedException {
+        List<Future<String>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(call));
+            }
+            // Let every caller reach the single-flight before the leader completes
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (count("leader") + count("coalesced") < CALLERS && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+        }
+        return results;
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("spotify.upstream.single.flight")
+                .tag("operation", "top-items")
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
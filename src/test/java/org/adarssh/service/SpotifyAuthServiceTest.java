@@ -1,9 +1,10 @@
 package org.adarssh.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.adarssh.config.SpotifyProperties;
+import org.adarssh.config.TestSpotifyProperties;
 import org.adarssh.dto.SpotifyTokenResponse;
 import org.adarssh.exception.SpotifyAuthenticationException;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -12,13 +13,17 @@ import org.springframework.http.MediaType;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestClient;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,9 +33,6 @@ class SpotifyAuthServiceTest {
     @Mock
     private RestClient authRestClient;
 
-    @Mock
-    private SpotifyProperties spotifyProperties;
-
     @Mock
     private RestClient.RequestBodyUriSpec requestBodyUriSpec;
 
@@ -40,32 +42,16 @@ class SpotifyAuthServiceTest {
     @Mock
     private RestClient.ResponseSpec responseSpec;
 
-    private SpotifyAuthService authService;
-
-    @BeforeEach
-    void setUp() {
-        authService = new SpotifyAuthService(authRestClient, spotifyProperties);
-    }
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @Test
     void obtainAccessTokenWithValidCredentialsReturnsToken() {
         // given
-        String clientId = "test-client-id";
-        String clientSecret = "test-client-secret";
         String expectedToken = "test-access-token-12345";
-
-        SpotifyTokenResponse tokenResponse = new SpotifyTokenResponse(
-                expectedToken, "Bearer", 3600);
-
-        when(spotifyProperties.clientId()).thenReturn(clientId);
-        when(spotifyProperties.clientSecret()).thenReturn(clientSecret);
-        when(authRestClient.post()).thenReturn(requestBodyUriSpec);
-        when(requestBodyUriSpec.contentType(MediaType.APPLICATION_FORM_URLENCODED))
-                .thenReturn(requestBodySpec);
-        when(requestBodySpec.header(anyString(), anyString())).thenReturn(requestBodySpec);
-        when(requestBodySpec.body(any(MultiValueMap.class))).thenReturn(requestBodySpec);
-        when(requestBodySpec.retrieve()).thenReturn(responseSpec);
-        when(responseSpec.body(SpotifyTokenResponse.class)).thenReturn(tokenResponse);
+        SpotifyAuthService authService = authService(Duration.ofMinutes(5));
+        stubTokenRequest();
+        when(responseSpec.body(SpotifyTokenResponse.class))
+                .thenReturn(new SpotifyTokenResponse(expectedToken, "Bearer", 3600));
 
         // when
         String actualToken = authService.obtainAccessToken();
@@ -73,28 +59,17 @@ class SpotifyAuthServiceTest {
         // then
         assertThat(actualToken).isEqualTo(expectedToken);
         verify(authRestClient).post();
-        verify(spotifyProperties).clientId();
-        verify(spotifyProperties).clientSecret();
     }
 
     @Test
     void obtainAccessTokenWhenResponseIsNullThrowsException() {
         // given
-        String clientId = "test-client-id";
-        String clientSecret = "test-client-secret";
-
-        when(spotifyProperties.clientId()).thenReturn(clientId);
-        when(spotifyProperties.clientSecret()).thenReturn(clientSecret);
-        when(authRestClient.post()).thenReturn(requestBodyUriSpec);
-        when(requestBodyUriSpec.contentType(MediaType.APPLICATION_FORM_URLENCODED))
-                .thenReturn(requestBodySpec);
-        when(requestBodySpec.header(anyString(), anyString())).thenReturn(requestBodySpec);
-        when(requestBodySpec.body(any(MultiValueMap.class))).thenReturn(requestBodySpec);
-        when(requestBodySpec.retrieve()).thenReturn(responseSpec);
+        SpotifyAuthService authService = authService(Duration.ofMinutes(5));
+        stubTokenRequest();
         when(responseSpec.body(SpotifyTokenResponse.class)).thenReturn(null);
 
         // when/then
-        assertThatThrownBy(() -> authService.obtainAccessToken())
+        assertThatThrownBy(authService::obtainAccessToken)
                 .isInstanceOf(SpotifyAuthenticationException.class)
                 .hasMessageContaining("Failed to obtain access token: null response");
     }
@@ -102,24 +77,13 @@ class SpotifyAuthServiceTest {
     @Test
     void obtainAccessTokenWhenTokenIsNullThrowsException() {
         // given
-        String clientId = "test-client-id";
-        String clientSecret = "test-client-secret";
-
-        SpotifyTokenResponse tokenResponse = new SpotifyTokenResponse(
-                null, "Bearer", 3600);
-
-        when(spotifyProperties.clientId()).thenReturn(clientId);
-        when(spotifyProperties.clientSecret()).thenReturn(clientSecret);
-        when(authRestClient.post()).thenReturn(requestBodyUriSpec);
-        when(requestBodyUriSpec.contentType(MediaType.APPLICATION_FORM_URLENCODED))
-                .thenReturn(requestBodySpec);
-        when(requestBodySpec.header(anyString(), anyString())).thenReturn(requestBodySpec);
-        when(requestBodySpec.body(any(MultiValueMap.class))).thenReturn(requestBodySpec);
-        when(requestBodySpec.retrieve()).thenReturn(responseSpec);
-        when(responseSpec.body(SpotifyTokenResponse.class)).thenReturn(tokenResponse);
+        SpotifyAuthService authService = authService(Duration.ofMinutes(5));
+        stubTokenRequest();
+        when(responseSpec.body(SpotifyTokenResponse.class))
+                .thenReturn(new SpotifyTokenResponse(null, "Bearer", 3600));
 
         // when/then
-        assertThatThrownBy(() -> authService.obtainAccessToken())
+        assertThatThrownBy(authService::obtainAccessToken)
                 .isInstanceOf(SpotifyAuthenticationException.class)
                 .hasMessageContaining("Failed to obtain access token: null response");
     }
@@ -127,11 +91,7 @@ class SpotifyAuthServiceTest {
     @Test
     void obtainAccessTokenWhenApiThrowsExceptionThrowsSpotifyAuthenticationException() {
         // given
-        String clientId = "test-client-id";
-        String clientSecret = "test-client-secret";
-
-        when(spotifyProperties.clientId()).thenReturn(clientId);
-        when(spotifyProperties.clientSecret()).thenReturn(clientSecret);
+        SpotifyAuthService authService = authService(Duration.ofMinutes(5));
         when(authRestClient.post()).thenReturn(requestBodyUriSpec);
         when(requestBodyUriSpec.contentType(MediaType.APPLICATION_FORM_URLENCODED))
                 .thenReturn(requestBodySpec);
@@ -140,65 +100,123 @@ class SpotifyAuthServiceTest {
         when(requestBodySpec.retrieve()).thenThrow(new RuntimeException("Network error"));
 
         // when/then
-        assertThatThrownBy(() -> authService.obtainAccessToken())
+        assertThatThrownBy(authService::obtainAccessToken)
                 .isInstanceOf(SpotifyAuthenticationException.class)
                 .hasMessageContaining("Failed to authenticate with Spotify API")
                 .hasCauseInstanceOf(RuntimeException.class);
+        assertThat(meterRegistry.get("spotify.auth.app.token.refresh").tag("result", "failure").timer().count())
+                .isEqualTo(1);
     }
 
     @Test
     void obtainAccessTokenSendsCorrectAuthorizationHeader() {
         // given
-        String clientId = "myClientId";
-        String clientSecret = "mySecret";
-        String expectedToken = "access-token";
-
-        SpotifyTokenResponse tokenResponse = new SpotifyTokenResponse(
-                expectedToken, "Bearer", 3600);
-
-        when(spotifyProperties.clientId()).thenReturn(clientId);
-        when(spotifyProperties.clientSecret()).thenReturn(clientSecret);
-        when(authRestClient.post()).thenReturn(requestBodyUriSpec);
-        when(requestBodyUriSpec.contentType(MediaType.APPLICATION_FORM_URLENCODED))
-                .thenReturn(requestBodySpec);
-        when(requestBodySpec.header(anyString(), anyString())).thenReturn(requestBodySpec);
-        when(requestBodySpec.body(any(MultiValueMap.class))).thenReturn(requestBodySpec);
-        when(requestBodySpec.retrieve()).thenReturn(responseSpec);
-        when(responseSpec.body(SpotifyTokenResponse.class)).thenReturn(tokenResponse);
+        SpotifyAuthService authService = authService(Duration.ofMinutes(5));
+        stubTokenRequest();
+        when(responseSpec.body(SpotifyTokenResponse.class))
+                .thenReturn(new SpotifyTokenResponse("access-token", "Bearer", 3600));
+        String expected = "Basic " + Base64.getEncoder()
+                .encodeToString("test-client-id:test-client-secret".getBytes(StandardCharsets.UTF_8));
 
         // when
         String token = authService.obtainAccessToken();
 
         // then
-        assertThat(token).isEqualTo(expectedToken);
-        verify(requestBodySpec).header(eq("Authorization"), startsWith("Basic "));
+        assertThat(token).isEqualTo("access-token");
+        verify(requestBodySpec).header("Authorization", expected);
     }
 
     @Test
     void obtainAccessTokenSendsClientCredentialsGrantType() {
         // given
-        String clientId = "test-id";
-        String clientSecret = "test-secret";
-        String expectedToken = "token-123";
+        SpotifyAuthService authService = authService(Duration.ofMinutes(5));
+        stubTokenRequest();
+        when(responseSpec.body(SpotifyTokenResponse.class))
+                .thenReturn(new SpotifyTokenResponse("token-123", "Bearer", 3600));
+
+        // when
+        authService.obtainAccessToken();
+
+        // then
+        verify(requestBodySpec).body(argThat((MultiValueMap<String, String> map) ->
+                map != null && "client_credentials".equals(map.getFirst("grant_type"))));
+    }
+
+    @Test
+    void obtainAccessTokenReusesCachedTokenUntilItExpires() {
+        // given
+        SpotifyAuthService authService = authService(Duration.ofMinutes(5));
+        stubTokenRequest();
+        when(responseSpec.body(SpotifyTokenResponse.class))
+                .thenReturn(new SpotifyTokenResponse("token-123", "Bearer", 3600));
+
+        // when
+        String first = authService.obtainAccessToken();
+        String second = authService.obtainAccessToken();
+
+        // then
+        assertThat(first).isEqualTo("token-123");
+        assertThat(second).isEqualTo("token-123");
+        verify(authRestClient, times(1)).post();
+        assertThat(meterRegistry.get("spotify.auth.app.token.refresh").tag("result", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("spotify.auth.app.token.age").gauge().value()).isGreaterThanOrEqualTo(0);
+        assertThat(meterRegistry.get("spotify.upstream.single.flight")
+                .tag("operation", "app-token")
+                .tag("result", "leader")
+                .counter()
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    void obtainAccessTokenRenewsExpiredTokenBeforeReturning() {
+        // given: expires_in is within the 30s skew, so the token is never usable for long
+        SpotifyAuthService authService = authService(Duration.ofMinutes(5));
+        stubTokenRequest();
+        when(responseSpec.body(SpotifyTokenResponse.class)).thenReturn(
+                new SpotifyTokenResponse("expiring-token", "Bearer", 10),
+                new SpotifyTokenResponse("renewed-token", "Bearer", 3600));
+
+        // when
+        authService.obtainAccessToken();
+        String renewed = authService.obtainAccessToken();
+
+        // then
+        assertThat(renewed).isEqualTo("renewed-token");
+        verify(authRestClient, times(2)).post();
+    }
+
+    @Test
+    void obtainAccessTokenRenewsTokenInBackgroundAheadOfExpiry() {
+        // given: refresh-ahead is longer than the token lives, so every read is due for renewal
+        SpotifyAuthService authService = authService(Duration.ofHours(2));
+        stubTokenRequest();
+        when(responseSpec.body(SpotifyTokenResponse.class)).thenReturn(
+                new SpotifyTokenResponse("current-token", "Bearer", 3600),
+                new SpotifyTokenResponse("renewed-token", "Bearer", 3600));
+        authService.obtainAccessToken();
 
-        SpotifyTokenResponse tokenResponse = new SpotifyTokenResponse(
-                expectedToken, "Bearer", 3600);
+        // when
+        String current = authService.obtainAccessToken();
+
+        // then: the caller is not held up, the token is renewed behind it
+        assertThat(current).isEqualTo("current-token");
+        verify(authRestClient, timeout(5000).times(2)).post();
+    }
 
-        when(spotifyProperties.clientId()).thenReturn(clientId);
-        when(spotifyProperties.clientSecret()).thenReturn(clientSecret);
+    private SpotifyAuthService authService(Duration refreshAhead) {
+        SpotifyProperties properties = TestSpotifyProperties.builder()
+                .appToken(TestSpotifyProperties.appToken(Duration.ofSeconds(30), refreshAhead))
+                .build();
+        return new SpotifyAuthService(authRestClient, properties, meterRegistry);
+    }
+
+    private void stubTokenRequest() {
         when(authRestClient.post()).thenReturn(requestBodyUriSpec);
         when(requestBodyUriSpec.contentType(MediaType.APPLICATION_FORM_URLENCODED))
                 .thenReturn(requestBodySpec);
         when(requestBodySpec.header(anyString(), anyString())).thenReturn(requestBodySpec);
         when(requestBodySpec.body(any(MultiValueMap.class))).thenReturn(requestBodySpec);
         when(requestBodySpec.retrieve()).thenReturn(responseSpec);
-        when(responseSpec.body(SpotifyTokenResponse.class)).thenReturn(tokenResponse);
-
-        // when
-        authService.obtainAccessToken();
-
-        // then
-        verify(requestBodySpec).body(argThat((MultiValueMap<String, String> map) ->
-                map != null && "client_credentials".equals(map.getFirst("grant_type"))));
     }
 }
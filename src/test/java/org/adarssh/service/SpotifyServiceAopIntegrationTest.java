@@ -7,10 +7,13 @@ import org.adarssh.dto.ExternalUrls;
 import org.adarssh.dto.SpotifyPagedResponse;
 import org.adarssh.dto.TrackDto;
 import org.adarssh.dto.UserTopItemsResponse;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.web.client.RestClient;
@@ -24,8 +27,8 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 /**
- * Integration tests for SpotifyService methods that use AOP proxy for self-invocation.
- * These tests require Spring Boot context to test @Cacheable, @Retry, and @CircuitBreaker annotations.
+ * Integration tests for SpotifyService methods backed by {@link TopItemsClient}.
+ * These tests require Spring Boot context to test the cache, retry and circuit breaker wiring.
  */
 @SpringBootTest
 @ActiveProfiles("test")
@@ -40,9 +43,19 @@ class SpotifyServiceAopIntegrationTest {
     @MockBean
     private OAuth2TokenService oauth2TokenService;
 
-    @MockBean
+    // Spied rather than mocked: the RestClient configuration reads nested properties at startup
+    @SpyBean
     private SpotifyProperties spotifyProperties;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void clearCaches() {
+        // Canonical pages are keyed by user and time range only, so entries would leak between tests
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
     @Test
     void getTopAlbumsExtractsAlbumsFromTopTracks() {
         // given
@@ -1,18 +1,22 @@
 package org.adarssh.service;
 
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import org.adarssh.config.SpotifyProperties;
+import org.adarssh.config.TestSpotifyProperties;
 import org.adarssh.dto.AlbumDto;
 import org.adarssh.dto.ArtistDto;
 import org.adarssh.dto.ExternalUrls;
 import org.adarssh.dto.SpotifyPagedResponse;
 import org.adarssh.dto.TrackDto;
 import org.adarssh.dto.UserTopItemsResponse;
-import org.adarssh.exception.SpotifyApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.CacheManager;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.util.UriBuilder;
@@ -20,9 +24,9 @@ import org.springframework.web.util.UriBuilder;
 import java.net.URI;
 import java.util.List;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
@@ -51,11 +55,19 @@ class SpotifyServiceTest {
     @Mock
     private RestClient.ResponseSpec responseSpec;
 
+    private final LastKnownGoodCache lastKnownGood = new LastKnownGoodCache(TestSpotifyProperties.defaults(),
+            new StaticListableBeanFactory().getBeanProvider(CacheManager.class), new SimpleMeterRegistry());
+
     private SpotifyService spotifyService;
 
     @BeforeEach
     void setUp() {
-        spotifyService = new SpotifyService(spotifyRestClient, oauth2TokenService, spotifyProperties);
+        TopItemsClient topItemsClient = new TopItemsClient(spotifyRestClient, oauth2TokenService,
+                TestTopItemsPipeline.uncached(lastKnownGood),
+                new HedgedRequests(TestSpotifyProperties.defaults(), new SimpleMeterRegistry()),
+                new UpstreamBulkheads(BulkheadRegistry.ofDefaults(), new SimpleMeterRegistry()), lastKnownGood);
+        spotifyService = new SpotifyService(
+                topItemsClient, new WrappedAggregator(topItemsClient, mock(CatalogService.class)), spotifyProperties);
     }
 
     @Test
@@ -133,7 +145,7 @@ class SpotifyServiceTest {
     }
 
     @Test
-    void getTopTracksWhenNullResponseThrowsException() {
+    void getTopTracksWhenNullResponseServesEmptyStalePage() {
         // given
         when(oauth2TokenService.getUserAccessToken()).thenReturn("token");
         when(spotifyRestClient.get()).thenReturn(requestHeadersUriSpec);
@@ -142,14 +154,17 @@ class SpotifyServiceTest {
         when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
         when(responseSpec.body(any(ParameterizedTypeReference.class))).thenReturn(null);
 
-        // when/then
-        assertThatThrownBy(() -> spotifyService.getTopTracks(5, "medium_term"))
-                .isInstanceOf(SpotifyApiException.class)
-                .hasMessageContaining("Failed to retrieve top tracks");
+        // when
+        var result = spotifyService.getTopTracks(5, "medium_term");
+
+        // then: retried, then answered by the fallback, which is marked stale and not cached
+        assertThat(result.type()).isEqualTo("tracks");
+        assertThat(result.items()).isEmpty();
+        assertThat(result.stale()).isTrue();
     }
 
     @Test
-    void getTopTracksWhenApiThrowsExceptionThrowsSpotifyApiException() {
+    void getTopTracksWhenApiThrowsExceptionServesEmptyStalePage() {
         // given
         when(oauth2TokenService.getUserAccessToken()).thenReturn("token");
         when(spotifyRestClient.get()).thenReturn(requestHeadersUriSpec);
@@ -157,10 +172,13 @@ class SpotifyServiceTest {
         when(requestHeadersSpec.header(anyString(), anyString())).thenReturn(requestHeadersSpec);
         when(requestHeadersSpec.retrieve()).thenThrow(new RuntimeException("API Error"));
 
-        // when/then
-        assertThatThrownBy(() -> spotifyService.getTopTracks(5, "medium_term"))
-                .isInstanceOf(SpotifyApiException.class)
-                .hasMessageContaining("Failed to fetch top tracks from Spotify API");
+        // when
+        var result = spotifyService.getTopTracks(5, "medium_term");
+
+        // then: retried, then answered by the fallback, which is marked stale and not cached
+        assertThat(result.type()).isEqualTo("tracks");
+        assertThat(result.items()).isEmpty();
+        assertThat(result.stale()).isTrue();
     }
 
     @Test
@@ -206,7 +224,7 @@ class SpotifyServiceTest {
     }
 
     @Test
-    void getTopArtistsWhenNullResponseThrowsException() {
+    void getTopArtistsWhenNullResponseServesEmptyStalePage() {
         // given
         when(oauth2TokenService.getUserAccessToken()).thenReturn("token");
         when(spotifyRestClient.get()).thenReturn(requestHeadersUriSpec);
@@ -215,14 +233,17 @@ class SpotifyServiceTest {
         when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
         when(responseSpec.body(any(ParameterizedTypeReference.class))).thenReturn(null);
 
-        // when/then
-        assertThatThrownBy(() -> spotifyService.getTopArtists(10, "medium_term"))
-                .isInstanceOf(SpotifyApiException.class)
-                .hasMessageContaining("Failed to retrieve top artists");
+        // when
+        var result = spotifyService.getTopArtists(10, "medium_term");
+
+        // then: retried, then answered by the fallback, which is marked stale and not cached
+        assertThat(result.type()).isEqualTo("artists");
+        assertThat(result.items()).isEmpty();
+        assertThat(result.stale()).isTrue();
     }
 
     @Test
-    void getTopArtistsWhenApiThrowsExceptionThrowsSpotifyApiException() {
+    void getTopArtistsWhenApiThrowsExceptionServesEmptyStalePage() {
         // given
         when(oauth2TokenService.getUserAccessToken()).thenReturn("token");
         when(spotifyRestClient.get()).thenReturn(requestHeadersUriSpec);
@@ -230,10 +251,13 @@ class SpotifyServiceTest {
         when(requestHeadersSpec.header(anyString(), anyString())).thenReturn(requestHeadersSpec);
         when(requestHeadersSpec.retrieve()).thenThrow(new RuntimeException("API Error"));
 
-        // when/then
-        assertThatThrownBy(() -> spotifyService.getTopArtists(10, "medium_term"))
-                .isInstanceOf(SpotifyApiException.class)
-                .hasMessageContaining("Failed to fetch top artists from Spotify API");
+        // when
+        var result = spotifyService.getTopArtists(10, "medium_term");
+
+        // then: retried, then answered by the fallback, which is marked stale and not cached
+        assertThat(result.type()).isEqualTo("artists");
+        assertThat(result.items()).isEmpty();
+        assertThat(result.stale()).isTrue();
     }
 
     @Test
@@ -284,51 +308,50 @@ class SpotifyServiceTest {
     }
 
     @Test
-    void getTopTracksFallbackReturnsEmptyResponse() throws Exception {
+    void getTopTracksServesSmallerLimitsAsSliceOfCanonicalPage() {
         // given
-        Integer limit = 5;
-        String timeRange = "medium_term";
-        Exception testException = new RuntimeException("Spotify API unavailable");
-
-        // Use reflection to access private fallback method
-        var method = SpotifyService.class.getDeclaredMethod(
-                "getTopTracksFallback", Integer.class, String.class, Exception.class);
-        method.setAccessible(true);
+        List<TrackDto> tracks = IntStream.range(0, TopItemsClient.MAX_PAGE_SIZE)
+                .mapToObj(i -> new TrackDto("track" + i, "Track " + i, null, List.of(), 50, 1000, null))
+                .toList();
+        when(requestHeadersUriSpec.uri(any(Function.class))).thenReturn(requestHeadersSpec);
+        stubTopItemsResponse(new SpotifyPagedResponse<>(tracks, 50, 50, 0, null, null));
 
         // when
-        @SuppressWarnings("unchecked")
-        UserTopItemsResponse<TrackDto> result =
-                (UserTopItemsResponse<TrackDto>) method.invoke(spotifyService, limit, timeRange, testException);
+        UserTopItemsResponse<TrackDto> result = spotifyService.getTopTracks(5, "medium_term");
 
         // then
-        assertThat(result).isNotNull();
-        assertThat(result.type()).isEqualTo("tracks");
-        assertThat(result.count()).isEqualTo(0);
-        assertThat(result.items()).isEmpty();
+        assertThat(result.count()).isEqualTo(5);
+        assertThat(result.items()).extracting(TrackDto::id)
+                .containsExactly("track0", "track1", "track2", "track3", "track4");
     }
 
     @Test
-    void getTopArtistsFallbackReturnsEmptyResponse() throws Exception {
+    void getTopArtistsAlwaysRequestsMaximumPageWithNormalizedTimeRange() {
         // given
-        Integer limit = 5;
-        String timeRange = "medium_term";
-        Exception testException = new RuntimeException("Spotify API unavailable");
-
-        // Use reflection to access private fallback method
-        var method = SpotifyService.class.getDeclaredMethod(
-                "getTopArtistsFallback", Integer.class, String.class, Exception.class);
-        method.setAccessible(true);
+        UriBuilder uriBuilder = mock(UriBuilder.class);
+        when(uriBuilder.path(anyString())).thenReturn(uriBuilder);
+        when(uriBuilder.queryParam(anyString(), any(Object[].class))).thenReturn(uriBuilder);
+        when(uriBuilder.build()).thenReturn(URI.create("http://api.spotify.com/me/top/artists"));
+        doAnswer(invocation -> {
+            Function<UriBuilder, URI> uriFunction = invocation.getArgument(0);
+            uriFunction.apply(uriBuilder);
+            return requestHeadersSpec;
+        }).when(requestHeadersUriSpec).uri(any(Function.class));
+        stubTopItemsResponse(new SpotifyPagedResponse<>(List.of(), 0, 50, 0, null, null));
 
         // when
-        @SuppressWarnings("unchecked")
-        UserTopItemsResponse<ArtistDto> result =
-                (UserTopItemsResponse<ArtistDto>) method.invoke(spotifyService, limit, timeRange, testException);
+        spotifyService.getTopArtists(5, "SHORT_TERM");
 
         // then
-        assertThat(result).isNotNull();
-        assertThat(result.type()).isEqualTo("artists");
-        assertThat(result.count()).isEqualTo(0);
-        assertThat(result.items()).isEmpty();
+        verify(uriBuilder).queryParam("limit", TopItemsClient.MAX_PAGE_SIZE);
+        verify(uriBuilder).queryParam("time_range", "short_term");
     }
 
+    private void stubTopItemsResponse(SpotifyPagedResponse<?> response) {
+        when(oauth2TokenService.getUserAccessToken()).thenReturn("token");
+        when(spotifyRestClient.get()).thenReturn(requestHeadersUriSpec);
+        when(requestHeadersSpec.header(anyString(), anyString())).thenReturn(requestHeadersSpec);
+        when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
+        when(responseSpec.body(any(ParameterizedTypeReference.class))).thenReturn(response);
+    }
 }
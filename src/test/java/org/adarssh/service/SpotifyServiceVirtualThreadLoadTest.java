@@ -0,0 +1,140 @@
+package org.adarssh.service;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import org.adarssh.config.SpotifyProperties;
+import org.adarssh.config.TestSpotifyProperties;
+import org.adarssh.dto.SpotifyPagedResponse;
+import org.adarssh.dto.TrackDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load comparison between the platform-thread and virtual-thread serving modes.
+ * <p>
+ * Many concurrent requests each block in a slow upstream call. A bounded platform pool
+ * (standing in for Tomcat's worker pool) has to queue them, while one virtual thread per
+ * request lets them all wait at the same time.
+ */
+@ExtendWith(MockitoExtension.class)
+class SpotifyServiceVirtualThreadLoadTest {
+
+    private static final int CONCURRENT_REQUESTS = 1000;
+    private static final int PLATFORM_POOL_SIZE = 50;
+    private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(100);
+
+    @Mock
+    private RestClient spotifyRestClient;
+
+    @Mock
+    private OAuth2TokenService oauth2TokenService;
+
+    @Mock
+    private SpotifyProperties spotifyProperties;
+
+    @Mock
+    private RestClient.RequestHeadersUriSpec requestHeadersUriSpec;
+
+    @Mock
+    private RestClient.RequestHeadersSpec requestHeadersSpec;
+
+    @Mock
+    private RestClient.ResponseSpec responseSpec;
+
+    private final LastKnownGoodCache lastKnownGood = new LastKnownGoodCache(TestSpotifyProperties.defaults(),
+            new StaticListableBeanFactory().getBeanProvider(CacheManager.class), new SimpleMeterRegistry());
+
+    private SpotifyService spotifyService;
+
+    @BeforeEach
+    void setUp() {
+        TopItemsClient topItemsClient = new TopItemsClient(spotifyRestClient, oauth2TokenService,
+                TestTopItemsPipeline.uncached(lastKnownGood),
+                new HedgedRequests(TestSpotifyProperties.defaults(), new SimpleMeterRegistry()),
+                new UpstreamBulkheads(unboundedBulkheads(), new SimpleMeterRegistry()), lastKnownGood);
+        spotifyService = new SpotifyService(
+                topItemsClient, new WrappedAggregator(topItemsClient, mock(CatalogService.class)), spotifyProperties);
+
+        SpotifyPagedResponse<TrackDto> response = new SpotifyPagedResponse<>(List.of(), 0, 5, 0, null, null);
+        when(oauth2TokenService.getUserAccessToken()).thenReturn("token");
+        when(spotifyRestClient.get()).thenReturn(requestHeadersUriSpec);
+        when(requestHeadersUriSpec.uri(any(java.util.function.Function.class))).thenReturn(requestHeadersSpec);
+        when(requestHeadersSpec.header(anyString(), anyString())).thenReturn(requestHeadersSpec);
+        when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
+        when(responseSpec.body(any(ParameterizedTypeReference.class))).thenAnswer(invocation -> {
+            Thread.sleep(UPSTREAM_LATENCY);
+            return response;
+        });
+    }
+
+    @Test
+    void virtualThreadsServeSlowUpstreamCallsWithoutQueueing() throws Exception {
+        // when
+        Duration platform;
+        try (ExecutorService executor = Executors.newFixedThreadPool(PLATFORM_POOL_SIZE)) {
+            platform = runConcurrently(executor);
+        }
+        Duration virtual;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            virtual = runConcurrently(executor);
+        }
+
+        // then - the platform pool needs CONCURRENT_REQUESTS / PLATFORM_POOL_SIZE sequential waves
+        assertThat(platform).isGreaterThanOrEqualTo(
+                UPSTREAM_LATENCY.multipliedBy(CONCURRENT_REQUESTS / PLATFORM_POOL_SIZE));
+        assertThat(virtual).isLessThan(platform.dividedBy(4));
+    }
+
+    private static BulkheadRegistry unboundedBulkheads() {
+        // The bulkhead would otherwise cap the concurrency this test measures
+        BulkheadRegistry registry = BulkheadRegistry.ofDefaults();
+        registry.addConfiguration("interactive", BulkheadConfig.custom()
+                .maxConcurrentCalls(CONCURRENT_REQUESTS)
+                .build());
+        return registry;
+    }
+
+    private Duration runConcurrently(ExecutorService executor) throws Exception {
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(CONCURRENT_REQUESTS);
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            // Distinct users, so single-flight coalescing does not collapse the load
+            String username = "user-" + i;
+            futures.add(executor.submit(() -> {
+                SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(username, null));
+                try {
+                    return spotifyService.getTopTracks(5, "medium_term");
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,87 @@
+package org.adarssh.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.TestSpotifyProperties;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+
+/**
+ * Factories for {@link TopItemsPipeline} instances in unit tests: default circuit breaker,
+ * three attempts with no noticeable backoff, no concurrency limit unless given one.
+ */
+final class TestTopItemsPipeline {
+
+    private TestTopItemsPipeline() {
+    }
+
+    /**
+     * Create a pipeline without a regular cache, so every call is a miss.
+     *
+     * @param lastKnownGood the last-known-good tier
+     * @return the pipeline
+     */
+    static TopItemsPipeline uncached(LastKnownGoodCache lastKnownGood) {
+        return create(new StaticListableBeanFactory(), lastKnownGood, CircuitBreakerRegistry.ofDefaults(),
+                unlimited());
+    }
+
+    /**
+     * Create a pipeline in front of the given caches.
+     *
+     * @param cacheManager provides the topTracks and topArtists caches
+     * @param lastKnownGood the last-known-good tier
+     * @param circuitBreakers provides the spotifyApi circuit breaker
+     * @return the pipeline
+     */
+    static TopItemsPipeline cached(
+            CacheManager cacheManager,
+            LastKnownGoodCache lastKnownGood,
+            CircuitBreakerRegistry circuitBreakers) {
+        return limited(cacheManager, lastKnownGood, circuitBreakers, unlimited());
+    }
+
+    /**
+     * Create a pipeline in front of the given caches whose misses go through the given limiter.
+     *
+     * @param cacheManager provides the topTracks and topArtists caches
+     * @param lastKnownGood the last-known-good tier
+     * @param circuitBreakers provides the spotifyApi circuit breaker
+     * @param concurrencyLimiter limits the misses waiting for Spotify
+     * @return the pipeline
+     */
+    static TopItemsPipeline limited(
+            CacheManager cacheManager,
+            LastKnownGoodCache lastKnownGood,
+            CircuitBreakerRegistry circuitBreakers,
+            AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        var beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("cacheManager", cacheManager);
+        return create(beanFactory, lastKnownGood, circuitBreakers, concurrencyLimiter);
+    }
+
+    private static AdaptiveConcurrencyLimiter unlimited() {
+        return new AdaptiveConcurrencyLimiter(TestSpotifyProperties.defaults(), new SimpleMeterRegistry());
+    }
+
+    private static TopItemsPipeline create(
+            StaticListableBeanFactory beanFactory,
+            LastKnownGoodCache lastKnownGood,
+            CircuitBreakerRegistry circuitBreakers,
+            AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        var retries = RetryRegistry.of(RetryConfig.custom()
+                .maxAttempts(3)
+                .waitDuration(Duration.ofMillis(1))
+                .build());
+        var resilience = new TopItemsResilience(circuitBreakers, retries,
+                new UserCircuitBreaker(TestSpotifyProperties.defaults(), new SimpleMeterRegistry()), lastKnownGood,
+                concurrencyLimiter);
+        return new TopItemsPipeline(beanFactory.getBeanProvider(CacheManager.class),
+                new SingleFlight(new SimpleMeterRegistry()), resilience, TestSpotifyProperties.defaults(),
+                new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,85 @@
+package org.adarssh.service;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.TestSpotifyProperties;
+import org.adarssh.dto.TimeRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class TopItemsClientTest {
+
+    @Mock
+    private RestClient spotifyRestClient;
+
+    @Mock
+    private OAuth2TokenService oauth2TokenService;
+
+    private final LastKnownGoodCache lastKnownGood = new LastKnownGoodCache(
+            TestSpotifyProperties.builder().stale(TestSpotifyProperties.stale(true, Duration.ofSeconds(1))).build(),
+            new StaticListableBeanFactory().getBeanProvider(CacheManager.class),
+            new SimpleMeterRegistry());
+
+    private TopItemsClient topItemsClient;
+
+    @BeforeEach
+    void setUp() {
+        topItemsClient = new TopItemsClient(spotifyRestClient, oauth2TokenService,
+                TestTopItemsPipeline.uncached(lastKnownGood),
+                new HedgedRequests(TestSpotifyProperties.defaults(), new SimpleMeterRegistry()),
+                new UpstreamBulkheads(BulkheadRegistry.ofDefaults(), new SimpleMeterRegistry()), lastKnownGood);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void keyGeneratorIgnoresLimitAndNormalizesTimeRange() throws Exception {
+        // given
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("testuser", null));
+        TopItemsKeyGenerator keyGenerator = new TopItemsKeyGenerator();
+        var method = TopItemsClient.class.getMethod("getTopTracks", TimeRange.class);
+
+        // when
+        Object lowerCase = keyGenerator.generate(topItemsClient, method, TimeRange.fromString("medium_term"));
+        Object upperCase = keyGenerator.generate(topItemsClient, method, TimeRange.fromString("MEDIUM_TERM"));
+        Object defaulted = keyGenerator.generate(topItemsClient, method, TimeRange.fromString(null));
+
+        // then
+        assertThat(lowerCase).isEqualTo(new TopItemsCacheKey("testuser", TimeRange.MEDIUM_TERM));
+        assertThat(upperCase).isEqualTo(lowerCase);
+        assertThat(defaulted).isEqualTo(lowerCase);
+    }
+
+    @Test
+    void keyGeneratorSeparatesUsers() throws Exception {
+        // given
+        TopItemsKeyGenerator keyGenerator = new TopItemsKeyGenerator();
+        var method = TopItemsClient.class.getMethod("getTopTracks", TimeRange.class);
+
+        // when
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user1", null));
+        Object first = keyGenerator.generate(topItemsClient, method, TimeRange.SHORT_TERM);
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user2", null));
+        Object second = keyGenerator.generate(topItemsClient, method, TimeRange.SHORT_TERM);
+
+        // then
+        assertThat(first).isNotEqualTo(second);
+    }
+}
@@ -0,0 +1,32 @@
+package org.adarssh.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopItemsCodecTest {
+
+    private final TopItemsCodec codec =
+            new TopItemsCodec(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT));
+
+    @Test
+    void encodeIgnoresIndentOutputOfApplicationMapper() {
+        // given
+        var page = new UserTopItemsResponse<>("tracks", 1,
+                List.of(new TrackDto("track1", "Track 1", null, List.of(), 80, 180000, null)));
+
+        // when
+        byte[] encoded = codec.encode(page);
+
+        // then
+        assertThat(new String(encoded, StandardCharsets.UTF_8)).doesNotContain("\n");
+        assertThat(codec.decode("topTracks", encoded)).isEqualTo(page);
+    }
+}
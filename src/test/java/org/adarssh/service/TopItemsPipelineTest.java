@@ -0,0 +1,353 @@
+package org.adarssh.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.TestSpotifyProperties;
+import org.adarssh.dto.TimeRange;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.exception.SpotifyApiException;
+import org.adarssh.service.TopItemsPipeline.Endpoint;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TopItemsPipelineTest {
+
+    private static final TopItemsCacheKey KEY = new TopItemsCacheKey("testuser", TimeRange.MEDIUM_TERM);
+    private static final UserTopItemsResponse<TrackDto> PAGE = new UserTopItemsResponse<>("tracks", 1,
+            List.of(new TrackDto("track1", "Track 1", null, List.of(), 80, 180000, null)));
+
+    private final CacheManager cacheManager = new ConcurrentMapCacheManager("topTracks", "topArtists");
+    private final CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.ofDefaults();
+    private final LastKnownGoodCache lastKnownGood = new LastKnownGoodCache(
+            TestSpotifyProperties.builder().stale(TestSpotifyProperties.stale(true, Duration.ofSeconds(1))).build(),
+            new StaticListableBeanFactory().getBeanProvider(CacheManager.class),
+            new SimpleMeterRegistry());
+    private final TopItemsPipeline pipeline = TestTopItemsPipeline.cached(cacheManager, lastKnownGood, circuitBreakers);
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    @Test
+    void executeCachesFreshPage() {
+        // when
+        UserTopItemsResponse<TrackDto> result = pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token",
+                answering(PAGE));
+
+        // then
+        assertThat(result).isEqualTo(PAGE);
+        assertThat(cacheManager.getCache("topTracks").get(KEY).get()).isEqualTo(PAGE);
+    }
+
+    @Test
+    void executeServesCacheHitsWithoutEnteringTheResilienceStages() {
+        // given
+        pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token", answering(PAGE));
+        AtomicInteger tokenLookups = new AtomicInteger();
+
+        // when
+        for (int i = 0; i < 10_000; i++) {
+            pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token-" + tokenLookups.incrementAndGet(),
+                    answering(PAGE));
+        }
+
+        // then: hits cost neither a token lookup nor a circuit-breaker or retry call
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+        assertThat(tokenLookups.get()).isZero();
+        assertThat(circuitBreakers.circuitBreaker("spotifyApi").getMetrics().getNumberOfBufferedCalls())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void executeRetriesFailedAttemptsWithinOneCircuitBreakerCall() {
+        // when
+        UserTopItemsResponse<TrackDto> result = pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token", token -> {
+            if (upstreamCalls.incrementAndGet() == 1) {
+                throw new SpotifyApiException("Bad gateway", 502);
+            }
+            return PAGE;
+        });
+
+        // then: the circuit breaker sees one successful call
+        assertThat(result).isEqualTo(PAGE);
+        assertThat(upstreamCalls.get()).isEqualTo(2);
+        assertThat(circuitBreakers.circuitBreaker("spotifyApi").getMetrics().getNumberOfSuccessfulCalls())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void executeServesEmptyStalePageWithoutCachingItAsGood() {
+        // when
+        UserTopItemsResponse<TrackDto> first = pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token", failing());
+        UserTopItemsResponse<TrackDto> second = pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token", failing());
+
+        // then: the degraded answer is reused briefly instead of retrying the outage every request
+        assertThat(first.items()).isEmpty();
+        assertThat(first.type()).isEqualTo("tracks");
+        assertThat(first.stale()).isTrue();
+        assertThat(second).isEqualTo(first);
+        assertThat(upstreamCalls.get()).isEqualTo(3);
+        assertThat(cacheManager.getCache("topTracks").get(KEY)).isNull();
+    }
+
+    @Test
+    void executeServesLastKnownGoodPageMarkedStaleWhenUpstreamFails() {
+        // given
+        lastKnownGood.remember("topTracks", KEY, PAGE);
+
+        // when
+        UserTopItemsResponse<TrackDto> result = pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token",
+                failing());
+
+        // then
+        assertThat(result.items()).isEqualTo(PAGE.items());
+        assertThat(result.stale()).isTrue();
+        assertThat(cacheManager.getCache("topTracks").get(KEY)).isNull();
+    }
+
+    @Test
+    void executePrefersGoodEntryOverEarlierDegradedAnswer() {
+        // given
+        pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token", failing());
+        cacheManager.getCache("topTracks").put(KEY, PAGE);
+
+        // when
+        UserTopItemsResponse<TrackDto> result = pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token",
+                failing());
+
+        // then
+        assertThat(result).isEqualTo(PAGE);
+    }
+
+    @Test
+    void executeServesEmptyStalePageWhenTokenLookupFails() {
+        // when
+        UserTopItemsResponse<TrackDto> result = pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> {
+            throw new IllegalStateException("No access token available. Please re-authenticate.");
+        }, answering(PAGE));
+
+        // then
+        assertThat(result.items()).isEmpty();
+        assertThat(result.stale()).isTrue();
+        assertThat(upstreamCalls.get()).isZero();
+    }
+
+    @Test
+    void executeRethrowsRateLimitWhenThereIsNoStalePage() {
+        // given
+        SpotifyApiException rateLimited = new SpotifyApiException("Rate limited", 429, Duration.ofSeconds(30), null);
+
+        // when/then
+        assertThatThrownBy(() -> pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token", token -> {
+            throw rateLimited;
+        })).isSameAs(rateLimited);
+        assertThat(cacheManager.getCache("topTracks").get(KEY)).isNull();
+    }
+
+    @Test
+    void executeKeepsSharedBreakerClosedForUserErrorsAndShortCircuitsThatUser() {
+        // given
+        CircuitBreakerRegistry healthOnly = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .recordException(new UpstreamHealthFailure())
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .build());
+        TopItemsPipeline pipeline = TestTopItemsPipeline.cached(cacheManager, lastKnownGood, healthOnly);
+
+        // when: the same broken session asks for every time range, then once more
+        for (TimeRange timeRange : TimeRange.values()) {
+            pipeline.execute(Endpoint.TOP_TRACKS, new TopItemsCacheKey("broken", timeRange), () -> "token",
+                    rejecting());
+        }
+        int callsBeforeShortCircuit = upstreamCalls.get();
+        UserTopItemsResponse<TrackDto> shortCircuited = pipeline.execute(Endpoint.TOP_ARTISTS,
+                new TopItemsCacheKey("broken", TimeRange.SHORT_TERM), () -> "token", rejecting());
+        UserTopItemsResponse<TrackDto> healthy = pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token",
+                answering(PAGE));
+
+        // then
+        assertThat(healthOnly.circuitBreaker("spotifyApi").getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(shortCircuited.stale()).isTrue();
+        assertThat(upstreamCalls.get()).isEqualTo(callsBeforeShortCircuit + 1);
+        assertThat(healthy).isEqualTo(PAGE);
+    }
+
+    @Test
+    void executeOpensSharedBreakerForUpstreamFailures() {
+        // given
+        CircuitBreakerRegistry healthOnly = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .recordException(new UpstreamHealthFailure())
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .build());
+        TopItemsPipeline pipeline = TestTopItemsPipeline.cached(cacheManager, lastKnownGood, healthOnly);
+
+        // when
+        for (TimeRange timeRange : List.of(TimeRange.SHORT_TERM, TimeRange.LONG_TERM)) {
+            pipeline.execute(Endpoint.TOP_TRACKS, new TopItemsCacheKey("testuser", timeRange), () -> "token",
+                    failing());
+        }
+
+        // then
+        assertThat(healthOnly.circuitBreaker("spotifyApi").getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void executeServesCacheHitsWhileTheConcurrencyLimitIsReached() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = fullLimiter();
+        TopItemsPipeline pipeline = TestTopItemsPipeline.limited(cacheManager, lastKnownGood, circuitBreakers,
+                limiter);
+        cacheManager.getCache("topTracks").put(KEY, PAGE);
+
+        // when
+        UserTopItemsResponse<TrackDto> result = pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token",
+                answering(PAGE));
+
+        // then
+        assertThat(result).isEqualTo(PAGE);
+        assertThat(upstreamCalls.get()).isZero();
+    }
+
+    @Test
+    void executeAnswersShedMissWithLastKnownGoodPage() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = fullLimiter();
+        TopItemsPipeline pipeline = TestTopItemsPipeline.limited(cacheManager, lastKnownGood, circuitBreakers,
+                limiter);
+        lastKnownGood.remember("topTracks", KEY, PAGE);
+
+        // when
+        UserTopItemsResponse<TrackDto> result = pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token",
+                answering(PAGE));
+
+        // then: Spotify is not called and the breaker sees nothing
+        assertThat(result.items()).isEqualTo(PAGE.items());
+        assertThat(result.stale()).isTrue();
+        assertThat(upstreamCalls.get()).isZero();
+        assertThat(circuitBreakers.circuitBreaker("spotifyApi").getMetrics().getNumberOfBufferedCalls()).isZero();
+    }
+
+    @Test
+    void executeRejectsShedMissWithoutStalePage() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = fullLimiter();
+        TopItemsPipeline pipeline = TestTopItemsPipeline.limited(cacheManager, lastKnownGood, circuitBreakers,
+                limiter);
+
+        // when/then
+        assertThatThrownBy(() -> pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token", answering(PAGE)))
+                .isInstanceOfSatisfying(SpotifyApiException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(503);
+                    assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(1));
+                });
+        assertThat(upstreamCalls.get()).isZero();
+        assertThat(cacheManager.getCache("topTracks").get(KEY)).isNull();
+    }
+
+    @Test
+    void executeReleasesItsPermitOnceTheMissIsAnswered() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                TestSpotifyProperties.builder().concurrency(TestSpotifyProperties.concurrency(true, 1)).build(),
+                new SimpleMeterRegistry());
+        TopItemsPipeline pipeline = TestTopItemsPipeline.limited(cacheManager, lastKnownGood, circuitBreakers,
+                limiter);
+
+        // when
+        pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token", failing());
+
+        // then
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void executeLetsFollowersWaitForTheLeaderWithoutAPermit() throws Exception {
+        // given: a limit of one, taken by the leader while Spotify is slow
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                TestSpotifyProperties.builder().concurrency(TestSpotifyProperties.concurrency(true, 1)).build(),
+                new SimpleMeterRegistry());
+        TopItemsPipeline pipeline = TestTopItemsPipeline.limited(cacheManager, lastKnownGood, circuitBreakers,
+                limiter);
+        CountDownLatch upstreamEntered = new CountDownLatch(1);
+        CountDownLatch answer = new CountDownLatch(1);
+        Function<String, UserTopItemsResponse<TrackDto>> slow = token -> {
+            upstreamCalls.incrementAndGet();
+            upstreamEntered.countDown();
+            await(answer);
+            return PAGE;
+        };
+
+        // when
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<UserTopItemsResponse<TrackDto>> leader =
+                    executor.submit(() -> pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token", slow));
+            assertThat(upstreamEntered.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<UserTopItemsResponse<TrackDto>> follower =
+                    executor.submit(() -> pipeline.execute(Endpoint.TOP_TRACKS, KEY, () -> "token", slow));
+            Thread.sleep(50);
+            answer.countDown();
+
+            // then: the follower shares the leader's page instead of being shed
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(PAGE);
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(PAGE);
+        }
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A limiter of one whose only permit is already taken.
+     */
+    private static AdaptiveConcurrencyLimiter fullLimiter() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                TestSpotifyProperties.builder().concurrency(TestSpotifyProperties.concurrency(true, 1)).build(),
+                new SimpleMeterRegistry());
+        assertThat(limiter.tryAcquire()).isNotNull();
+        return limiter;
+    }
+
+    private Function<String, UserTopItemsResponse<TrackDto>> answering(UserTopItemsResponse<TrackDto> page) {
+        return token -> {
+            upstreamCalls.incrementAndGet();
+            return page;
+        };
+    }
+
+    private Function<String, UserTopItemsResponse<TrackDto>> failing() {
+        return token -> {
+            upstreamCalls.incrementAndGet();
+            throw new SpotifyApiException("Service unavailable", 503);
+        };
+    }
+
+    private Function<String, UserTopItemsResponse<TrackDto>> rejecting() {
+        return token -> {
+            upstreamCalls.incrementAndGet();
+            throw new SpotifyApiException("Failed to fetch top tracks from Spotify API", 401);
+        };
+    }
+}
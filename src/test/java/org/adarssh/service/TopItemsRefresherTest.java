@@ -0,0 +1,124 @@
+package org.adarssh.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.TestSpotifyProperties;
+import org.adarssh.dto.TimeRange;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.exception.SpotifyApiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TopItemsRefresherTest {
+
+    private static final TopItemsCacheKey KEY = new TopItemsCacheKey("testuser", TimeRange.SHORT_TERM);
+
+    @Mock
+    private TopItemsClient topItemsClient;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserTopItemsResponse<TrackDto> oldPage = new UserTopItemsResponse<>("tracks", 0, List.of());
+    private final UserTopItemsResponse<TrackDto> newPage = new UserTopItemsResponse<>("tracks", 1,
+            List.of(new TrackDto("track1", "Track 1", null, List.of(), 80, 180000, null)));
+
+    private TopItemsRefresher refresher;
+
+    @BeforeEach
+    void setUp() {
+        refresher = refresher(10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        refresher.destroy();
+    }
+
+    @Test
+    void loadLeavesMissesToCacheableMethod() throws Exception {
+        // when/then
+        assertThat(refresher.topTracksLoader().load(KEY)).isNull();
+    }
+
+    @Test
+    void asyncReloadReturnsTheFreshPageForCaffeineToInstall() throws Exception {
+        // given
+        when(topItemsClient.refreshTopTracks(KEY)).thenReturn(newPage);
+
+        // when
+        Object reloaded = refresher.topTracksLoader().asyncReload(KEY, oldPage, ForkJoinPool.commonPool()).get();
+
+        // then
+        assertThat(reloaded).isSameAs(newPage);
+        assertThat(count("topTracks", "success")).isEqualTo(1);
+    }
+
+    @Test
+    void loadersRegisterRefreshCountersForEveryCacheAndResult() {
+        // when
+        refresher.topTracksLoader();
+        refresher.topArtistsLoader();
+
+        // then
+        assertThat(meterRegistry.get("spotify.cache.refresh").counters()).hasSize(6);
+    }
+
+    @Test
+    void asyncReloadFailureIsReportedToCaffeine() {
+        // given
+        when(topItemsClient.refreshTopTracks(KEY))
+                .thenThrow(new SpotifyApiException("Failed to fetch top tracks from Spotify API", 500));
+
+        // when
+        CompletableFuture<Object> reload =
+                refresher.topTracksLoader().asyncReload(KEY, oldPage, ForkJoinPool.commonPool());
+
+        // then
+        assertThatThrownBy(reload::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(SpotifyApiException.class);
+        assertThat(count("topTracks", "failure")).isEqualTo(1);
+    }
+
+    @Test
+    void asyncReloadIsRejectedOnceBudgetIsSpent() throws Exception {
+        // given
+        refresher.destroy();
+        refresher = refresher(1);
+        when(topItemsClient.refreshTopTracks(KEY)).thenReturn(newPage);
+        refresher.topTracksLoader().asyncReload(KEY, oldPage, ForkJoinPool.commonPool()).get();
+
+        // when
+        CompletableFuture<Object> reload =
+                refresher.topTracksLoader().asyncReload(KEY, oldPage, ForkJoinPool.commonPool());
+
+        // then
+        assertThatThrownBy(reload::get).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(count("topTracks", "rejected")).isEqualTo(1);
+    }
+
+    private TopItemsRefresher refresher(int budgetPerMinute) {
+        var properties = TestSpotifyProperties.builder()
+                .refreshAhead(TestSpotifyProperties.refreshAhead(true, budgetPerMinute))
+                .build();
+        return new TopItemsRefresher(topItemsClient, properties, meterRegistry);
+    }
+
+    private double count(String cache, String result) {
+        return meterRegistry.get("spotify.cache.refresh").tag("cache", cache).tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,125 @@
+package org.adarssh.service;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.service.UpstreamBulkheads.Operation;
+import org.adarssh.service.UpstreamBulkheads.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamBulkheadsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void constructorAddsDefaultPriorityConfigurations() {
+        // given
+        BulkheadRegistry registry = BulkheadRegistry.ofDefaults();
+
+        // when
+        new UpstreamBulkheads(registry, meterRegistry);
+
+        // then
+        assertThat(registry.getConfiguration("interactive")).hasValueSatisfying(config ->
+                assertThat(config.getMaxConcurrentCalls()).isEqualTo(25));
+        assertThat(registry.getConfiguration("background")).hasValueSatisfying(config ->
+                assertThat(config.getMaxWaitDuration()).isEqualTo(Duration.ZERO));
+    }
+
+    @Test
+    void executeRejectsAndCountsCallsBeyondTheLimit() throws Exception {
+        // given
+        UpstreamBulkheads bulkheads = new UpstreamBulkheads(registry(1), meterRegistry);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(() ->
+                    bulkheads.execute(Operation.TOP_TRACKS, Priority.BACKGROUND, () -> {
+                        running.countDown();
+                        await(release);
+                        return "page";
+                    }), executor);
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // when/then
+            assertThatThrownBy(() -> bulkheads.execute(Operation.TOP_TRACKS, Priority.BACKGROUND, () -> "page"))
+                    .isInstanceOf(BulkheadFullException.class);
+            release.countDown();
+            assertThat(first.get()).isEqualTo("page");
+        }
+        assertThat(meterRegistry.get("spotify.upstream.bulkhead.rejected")
+                .tag("bulkhead", "topTracks-background").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void executeKeepsBackgroundCallsFromStarvingInteractiveCalls() throws Exception {
+        // given
+        UpstreamBulkheads bulkheads = new UpstreamBulkheads(registry(1), meterRegistry);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> bulkheads.execute(Operation.TOP_TRACKS, Priority.BACKGROUND, () -> {
+                running.countDown();
+                await(release);
+                return "page";
+            }));
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // when
+            String interactive = bulkheads.execute(Operation.TOP_TRACKS, Priority.INTERACTIVE, () -> "page");
+            String otherOperation = bulkheads.execute(Operation.TOP_ARTISTS, Priority.BACKGROUND, () -> "page");
+
+            // then
+            assertThat(interactive).isEqualTo("page");
+            assertThat(otherOperation).isEqualTo("page");
+            release.countDown();
+        }
+    }
+
+    @Test
+    void executeReleasesPermitWhenCallFails() {
+        // given
+        UpstreamBulkheads bulkheads = new UpstreamBulkheads(registry(1), meterRegistry);
+        assertThatThrownBy(() -> bulkheads.execute(Operation.CATALOG, Priority.INTERACTIVE, () -> {
+            throw new IllegalStateException("upstream failed");
+        })).isInstanceOf(IllegalStateException.class);
+
+        // when
+        String result = bulkheads.execute(Operation.CATALOG, Priority.INTERACTIVE, () -> "page");
+
+        // then
+        assertThat(result).isEqualTo("page");
+    }
+
+    private static BulkheadRegistry registry(int maxConcurrentCalls) {
+        BulkheadRegistry registry = BulkheadRegistry.ofDefaults();
+        BulkheadConfig config = BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build();
+        registry.addConfiguration("interactive", config);
+        registry.addConfiguration("background", config);
+        return registry;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
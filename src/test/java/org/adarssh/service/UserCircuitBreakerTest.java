@@ -0,0 +1,58 @@
+package org.adarssh.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.adarssh.config.TestSpotifyProperties;
+import org.adarssh.exception.SpotifyApiException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserCircuitBreakerTest {
+
+    private static final SpotifyApiException REJECTED = new SpotifyApiException("Unauthorized", 401);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserCircuitBreaker breaker = new UserCircuitBreaker(TestSpotifyProperties.defaults(), meterRegistry);
+
+    @Test
+    void acquirePermissionShortCircuitsUserAfterRepeatedRejections() {
+        // given
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure("broken", REJECTED);
+        }
+
+        // when/then
+        assertThatThrownBy(() -> breaker.acquirePermission("broken"))
+                .isInstanceOfSatisfying(SpotifyApiException.class, e -> assertThat(e.getStatusCode()).isEqualTo(401));
+        assertThatCode(() -> breaker.acquirePermission("healthy")).doesNotThrowAnyException();
+        assertThat(meterRegistry.get("spotify.upstream.user.circuit").tag("result", "opened").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void onFailureIgnoresUpstreamHealthFailures() {
+        // given
+        for (int i = 0; i < 5; i++) {
+            breaker.onFailure("user", new SpotifyApiException("Service unavailable", 503));
+        }
+
+        // when/then
+        assertThatCode(() -> breaker.acquirePermission("user")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void onSuccessResetsConsecutiveRejections() {
+        // given
+        breaker.onFailure("user", REJECTED);
+        breaker.onFailure("user", REJECTED);
+        breaker.onSuccess("user");
+
+        // when
+        breaker.onFailure("user", REJECTED);
+
+        // then
+        assertThatCode(() -> breaker.acquirePermission("user")).doesNotThrowAnyException();
+    }
+}
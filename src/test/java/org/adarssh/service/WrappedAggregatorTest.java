@@ -0,0 +1,199 @@
+package org.adarssh.service;
+
+import org.adarssh.dto.AlbumDto;
+import org.adarssh.dto.ArtistDto;
+import org.adarssh.dto.ExternalUrls;
+import org.adarssh.dto.TimeRange;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.exception.SpotifyApiException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WrappedAggregatorTest {
+
+    @Mock
+    private TopItemsClient topItemsClient;
+
+    @Mock
+    private CatalogService catalogService;
+
+    @InjectMocks
+    private WrappedAggregator wrappedAggregator;
+
+    @Test
+    void getTopAlbumsRanksByTrackFrequencyThenPosition() {
+        // given
+        AlbumDto first = album("album1");
+        AlbumDto second = album("album2");
+        AlbumDto third = album("album3");
+        when(topItemsClient.getTopTracks(TimeRange.MEDIUM_TERM)).thenReturn(new UserTopItemsResponse<>("tracks", 5,
+                List.of(track(first), track(second), track(third), track(second), track(null))));
+
+        // when
+        UserTopItemsResponse<AlbumDto> result = wrappedAggregator.getTopAlbums(TimeRange.MEDIUM_TERM);
+
+        // then
+        assertThat(result.type()).isEqualTo("albums");
+        assertThat(result.count()).isEqualTo(3);
+        assertThat(result.items()).containsExactly(second, first, third);
+    }
+
+    @Test
+    void getTopAlbumsDeduplicatesById() {
+        // given
+        AlbumDto album = album("album1");
+        AlbumDto sameAlbumOtherImages = new AlbumDto("album1", "Album album1", "album", "2024-01-01",
+                List.of(), null, new ExternalUrls("https://spotify.com/other"));
+        when(topItemsClient.getTopTracks(TimeRange.SHORT_TERM)).thenReturn(new UserTopItemsResponse<>("tracks", 2,
+                List.of(track(album), track(sameAlbumOtherImages))));
+
+        // when
+        UserTopItemsResponse<AlbumDto> result = wrappedAggregator.getTopAlbums(TimeRange.SHORT_TERM);
+
+        // then
+        assertThat(result.items()).containsExactly(album);
+    }
+
+    @Test
+    void getTopAlbumsLeavesOutAlbumsWithoutId() {
+        // given: two local files, whose albums have no id
+        AlbumDto album = album("album1");
+        when(topItemsClient.getTopTracks(TimeRange.SHORT_TERM)).thenReturn(new UserTopItemsResponse<>("tracks", 3,
+                List.of(track(album(null)), track(album), track(album(null)))));
+
+        // when
+        UserTopItemsResponse<AlbumDto> result = wrappedAggregator.getTopAlbums(TimeRange.SHORT_TERM);
+
+        // then
+        assertThat(result.items()).containsExactly(album);
+    }
+
+    @Test
+    void getTopAlbumsFromStalePageIsMarkedStale() {
+        // given
+        AlbumDto album = album("album1");
+        when(topItemsClient.getTopTracks(TimeRange.SHORT_TERM)).thenReturn(
+                new UserTopItemsResponse<>("tracks", 1, List.of(track(album))).asStale());
+
+        // when
+        UserTopItemsResponse<AlbumDto> result = wrappedAggregator.getTopAlbums(TimeRange.SHORT_TERM);
+
+        // then
+        assertThat(result.items()).containsExactly(album);
+        assertThat(result.stale()).isTrue();
+    }
+
+    @Test
+    void getTopGenresWeightsGenresByArtistRank() {
+        // given
+        List<ArtistDto> artists = List.of(
+                artist("artist1", List.of("indie")),
+                artist("artist2", List.of("pop", "rock")),
+                artist("artist3", List.of("rock")),
+                artist("artist4", null));
+        when(topItemsClient.getTopArtists(TimeRange.LONG_TERM))
+                .thenReturn(new UserTopItemsResponse<>("artists", 4, artists));
+
+        // when
+        UserTopItemsResponse<String> result = wrappedAggregator.getTopGenres(TimeRange.LONG_TERM);
+
+        // then: rock = 3 + 2, indie = 4, pop = 3
+        assertThat(result.type()).isEqualTo("genres");
+        assertThat(result.items()).containsExactly("rock", "indie", "pop");
+    }
+
+    @Test
+    void getTopGenresBreaksTiesByFirstAppearance() {
+        // given
+        when(topItemsClient.getTopArtists(TimeRange.MEDIUM_TERM)).thenReturn(new UserTopItemsResponse<>("artists", 1,
+                List.of(artist("artist1", List.of("rock", "indie", "pop")))));
+
+        // when
+        UserTopItemsResponse<String> result = wrappedAggregator.getTopGenres(TimeRange.MEDIUM_TERM);
+
+        // then
+        assertThat(result.items()).containsExactly("rock", "indie", "pop");
+    }
+
+    @Test
+    void getTopGenresLooksUpArtistsListedWithoutGenresInTheCatalog() {
+        // given
+        when(topItemsClient.getTopArtists(TimeRange.SHORT_TERM)).thenReturn(new UserTopItemsResponse<>("artists", 2,
+                List.of(artist("artist1", List.of("indie")), artist("artist2", List.of()))));
+        when(catalogService.getArtists(List.of("artist2")))
+                .thenReturn(Map.of("artist2", artist("artist2", List.of("jazz", "indie"))));
+
+        // when
+        UserTopItemsResponse<String> result = wrappedAggregator.getTopGenres(TimeRange.SHORT_TERM);
+
+        // then: indie = 2 + 1, jazz = 1
+        assertThat(result.items()).containsExactly("indie", "jazz");
+    }
+
+    @Test
+    void getTopGenresRanksWithoutCatalogDataWhenTheLookupFails() {
+        // given
+        when(topItemsClient.getTopArtists(TimeRange.SHORT_TERM)).thenReturn(new UserTopItemsResponse<>("artists", 2,
+                List.of(artist("artist1", List.of("indie")), artist("artist2", null))));
+        when(catalogService.getArtists(List.of("artist2")))
+                .thenThrow(new SpotifyApiException("Failed to look up artists in the Spotify catalog", 502));
+
+        // when
+        UserTopItemsResponse<String> result = wrappedAggregator.getTopGenres(TimeRange.SHORT_TERM);
+
+        // then
+        assertThat(result.items()).containsExactly("indie");
+        assertThat(result.stale()).isTrue();
+    }
+
+    @Test
+    void getTopGenresSkipsTheCatalogWhenEveryArtistHasGenres() {
+        // given
+        when(topItemsClient.getTopArtists(TimeRange.SHORT_TERM)).thenReturn(new UserTopItemsResponse<>("artists", 1,
+                List.of(artist("artist1", List.of("indie")))));
+
+        // when
+        wrappedAggregator.getTopGenres(TimeRange.SHORT_TERM);
+
+        // then
+        verifyNoInteractions(catalogService);
+    }
+
+    @Test
+    void emptyPagesProduceEmptyViews() {
+        // given
+        when(topItemsClient.getTopTracks(TimeRange.MEDIUM_TERM))
+                .thenReturn(new UserTopItemsResponse<>("tracks", 0, List.of()));
+        when(topItemsClient.getTopArtists(TimeRange.MEDIUM_TERM))
+                .thenReturn(new UserTopItemsResponse<>("artists", 0, List.of()));
+
+        // when/then
+        assertThat(wrappedAggregator.getTopAlbums(TimeRange.MEDIUM_TERM).items()).isEmpty();
+        assertThat(wrappedAggregator.getTopGenres(TimeRange.MEDIUM_TERM).items()).isEmpty();
+    }
+
+    private static AlbumDto album(String id) {
+        return new AlbumDto(id, "Album " + id, "album", "2024-01-01",
+                List.of(), List.of(), new ExternalUrls("https://spotify.com/" + id));
+    }
+
+    private static TrackDto track(AlbumDto album) {
+        return new TrackDto("track", "Track", album, List.of(), 80, 180000, null);
+    }
+
+    private static ArtistDto artist(String id, List<String> genres) {
+        return new ArtistDto(id, "Artist " + id, genres, 80, new ExternalUrls("https://spotify.com"), List.of());
+    }
+}
@@ -0,0 +1,173 @@
+package org.adarssh.service;
+
+import org.adarssh.config.SpotifyProperties;
+import org.adarssh.config.TestSpotifyProperties;
+import org.adarssh.dto.AlbumDto;
+import org.adarssh.dto.ArtistDto;
+import org.adarssh.dto.ExternalUrls;
+import org.adarssh.dto.SpotifyWrappedResponse;
+import org.adarssh.dto.TrackDto;
+import org.adarssh.dto.UserTopItemsResponse;
+import org.adarssh.exception.SpotifyApiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WrappedServiceTest {
+
+    private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(300);
+
+    @Mock
+    private SpotifyService spotifyService;
+
+    private final AlbumDto album = new AlbumDto("album1", "Test Album", "album", "2024-01-01",
+            List.of(), List.of(), new ExternalUrls("https://spotify.com"));
+    private final ArtistDto artist = new ArtistDto("artist1", "Test Artist", List.of("rock", "pop"),
+            80, new ExternalUrls("https://spotify.com"), List.of());
+    private final UserTopItemsResponse<TrackDto> tracks = new UserTopItemsResponse<>("tracks", 2, List.of(
+            new TrackDto("track1", "Track 1", album, List.of(artist), 85, 180000, null),
+            new TrackDto("track2", "Track 2", album, List.of(artist), 80, 200000, null)));
+    private final UserTopItemsResponse<ArtistDto> artists =
+            new UserTopItemsResponse<>("artists", 1, List.of(artist));
+    private final UserTopItemsResponse<AlbumDto> albums = new UserTopItemsResponse<>("albums", 1, List.of(album));
+    private final UserTopItemsResponse<String> genres =
+            new UserTopItemsResponse<>("genres", 2, List.of("rock", "pop"));
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void getWrappedConcurrentlyCombinesAllCategories() {
+        // given
+        stubAllCategories();
+
+        // when
+        SpotifyWrappedResponse result = wrappedService(true).getWrapped(5, "medium_term");
+
+        // then
+        assertThat(result.topTracks()).isSameAs(tracks);
+        assertThat(result.topArtists()).isSameAs(artists);
+        assertThat(result.topAlbums()).isSameAs(albums);
+        assertThat(result.topGenres()).isSameAs(genres);
+
+        verify(spotifyService).getTopTracks(5, "medium_term");
+        verify(spotifyService).getTopArtists(5, "medium_term");
+        verify(spotifyService).getTopAlbums(5, "medium_term");
+        verify(spotifyService).getTopGenres(5, "medium_term");
+    }
+
+    @Test
+    void getWrappedSequentiallyReturnsSameResult() {
+        // given
+        stubAllCategories();
+
+        // when
+        SpotifyWrappedResponse result = wrappedService(false).getWrapped(5, "medium_term");
+
+        // then
+        assertThat(result.topTracks()).isSameAs(tracks);
+        assertThat(result.topArtists()).isSameAs(artists);
+        assertThat(result.topAlbums()).isSameAs(albums);
+        assertThat(result.topGenres()).isSameAs(genres);
+    }
+
+    @Test
+    void getWrappedConcurrentlyPropagatesSecurityContextToForkedTasks() {
+        // given
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("testuser", null));
+        AtomicReference<String> tracksUser = new AtomicReference<>();
+        AtomicReference<String> artistsUser = new AtomicReference<>();
+        when(spotifyService.getTopTracks(5, "medium_term")).thenAnswer(invocation -> {
+            tracksUser.set(SecurityContextHolder.getContext().getAuthentication().getName());
+            return tracks;
+        });
+        when(spotifyService.getTopArtists(5, "medium_term")).thenAnswer(invocation -> {
+            artistsUser.set(SecurityContextHolder.getContext().getAuthentication().getName());
+            return artists;
+        });
+
+        // when
+        wrappedService(true).getWrapped(5, "medium_term");
+
+        // then
+        assertThat(tracksUser.get()).isEqualTo("testuser");
+        assertThat(artistsUser.get()).isEqualTo("testuser");
+    }
+
+    @Test
+    void getWrappedConcurrentlyFailsFastAndCancelsSiblingFetch() {
+        // given
+        when(spotifyService.getTopTracks(5, "medium_term"))
+                .thenThrow(new SpotifyApiException("Failed to fetch top tracks from Spotify API", 500));
+        // The artists fetch may be cancelled before it starts, so this stub is not always used
+        lenient().when(spotifyService.getTopArtists(5, "medium_term")).thenAnswer(invocation -> {
+            Thread.sleep(Duration.ofSeconds(10));
+            return artists;
+        });
+
+        // when/then
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> wrappedService(true).getWrapped(5, "medium_term"))
+                .isInstanceOf(SpotifyApiException.class)
+                .hasMessageContaining("Failed to fetch top tracks");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void getWrappedConcurrentlyTakesAboutOneUpstreamRoundTrip() {
+        // given
+        when(spotifyService.getTopTracks(5, "medium_term")).thenAnswer(invocation -> {
+            Thread.sleep(UPSTREAM_LATENCY);
+            return tracks;
+        });
+        when(spotifyService.getTopArtists(5, "medium_term")).thenAnswer(invocation -> {
+            Thread.sleep(UPSTREAM_LATENCY);
+            return artists;
+        });
+
+        // when
+        Duration sequential = timed(wrappedService(false), 5);
+        Duration concurrent = timed(wrappedService(true), 5);
+
+        // then
+        assertThat(sequential).isGreaterThanOrEqualTo(UPSTREAM_LATENCY.multipliedBy(2));
+        assertThat(concurrent).isLessThan(UPSTREAM_LATENCY.multipliedBy(2));
+    }
+
+    private void stubAllCategories() {
+        when(spotifyService.getTopTracks(5, "medium_term")).thenReturn(tracks);
+        when(spotifyService.getTopArtists(5, "medium_term")).thenReturn(artists);
+        when(spotifyService.getTopAlbums(5, "medium_term")).thenReturn(albums);
+        when(spotifyService.getTopGenres(5, "medium_term")).thenReturn(genres);
+    }
+
+    private Duration timed(WrappedService service, int limit) {
+        long start = System.nanoTime();
+        service.getWrapped(limit, "medium_term");
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    private WrappedService wrappedService(boolean concurrent) {
+        SpotifyProperties properties = TestSpotifyProperties.builder()
+                .wrapped(new SpotifyProperties.Wrapped(concurrent))
+                .build();
+        return new WrappedService(spotifyService, properties);
+    }
+}